@@ -1,12 +1,22 @@
 package net.coderodde.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.TreeMap;
 import net.coderodde.util.VanEmdeBoasTreeIntMap.KeyIterator;
 import net.coderodde.util.VanEmdeBoasTreeIntMap.KeyValueIterator;
 import net.coderodde.util.VanEmdeBoasTreeIntMap.KeyValueMapping;
+import net.coderodde.util.VanEmdeBoasTreeIntMap.ValueCodec;
 
 /**
  * This class benchmarks the {@link VanEmdeBoasTreeIntMap} against a 
@@ -22,6 +32,21 @@ public final class Benchmark {
     private static final int INTEGER_ARRAY_LENGTH = 1_500_000;
     private static final Random RANDOM;
     
+    private static final ValueCodec<Integer> INTEGER_CODEC = 
+            new ValueCodec<Integer>() {
+        
+        @Override
+        public void write(Integer value, DataOutput output) 
+        throws IOException {
+            output.writeInt(value);
+        }
+        
+        @Override
+        public Integer read(DataInput input) throws IOException {
+            return input.readInt();
+        }
+    };
+    
     static {
         long seed = System.currentTimeMillis();
         System.out.println("Seed = " + seed);
@@ -45,6 +70,66 @@ public final class Benchmark {
         benchmarkHashMap(testArray);
         System.out.println();
         benchmarkVebMap(testArray);
+        System.out.println();
+        benchmarkPriorityQueues();
+    }
+    
+    /**
+     * Runs the hold model of a monotone priority queue, as in Dijkstra's 
+     * algorithm and in event scheduling: each step polls the smallest 
+     * priority and adds a slightly larger one.
+     */
+    private static void benchmarkPriorityQueues() {
+        System.out.println("--- Priority queues ---");
+        int queueSize = 200_000;
+        int steps = 2 * INTEGER_ARRAY_LENGTH;
+        int[] initialPriorities = new int[queueSize];
+        int[] increments = new int[steps];
+        
+        for (int i = 0; i < queueSize; ++i) {
+            initialPriorities[i] = RANDOM.nextInt(1_000);
+        }
+        
+        for (int i = 0; i < steps; ++i) {
+            increments[i] = RANDOM.nextInt(1_000);
+        }
+        
+        long startTime = System.currentTimeMillis();
+        PriorityQueue<Integer> priorityQueue = new PriorityQueue<>();
+        
+        for (int priority : initialPriorities) {
+            priorityQueue.add(priority);
+        }
+        
+        for (int increment : increments) {
+            priorityQueue.add(priorityQueue.poll() + increment);
+        }
+        
+        long endTime = System.currentTimeMillis();
+        
+        System.out.println(
+                PriorityQueue.class.getSimpleName() + " in " + 
+                (endTime - startTime) + " milliseconds.");
+        
+        startTime = System.currentTimeMillis();
+        VanEmdeBoasTreeIntPriorityQueue vebQueue = 
+                new VanEmdeBoasTreeIntPriorityQueue(0, Integer.MAX_VALUE);
+        
+        for (int priority : initialPriorities) {
+            vebQueue.add(priority, priority);
+        }
+        
+        for (int increment : increments) {
+            int priority = vebQueue.peekFirstPriority();
+            vebQueue.pollFirst();
+            vebQueue.add(priority, priority + increment);
+        }
+        
+        endTime = System.currentTimeMillis();
+        
+        System.out.println(
+                VanEmdeBoasTreeIntPriorityQueue.class.getSimpleName() + 
+                " in " + (endTime - startTime) + " milliseconds.");
     }
     
     private static void benchmarkTreeMap(Integer[] testArray) {
@@ -118,6 +203,15 @@ public final class Benchmark {
                 "Key/value iteration in " + (endTime - startTime) +
                 " milliseconds.");
         
+        // toKeyArray().
+        startTime = System.currentTimeMillis();
+        map.toKeyArray();
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "toKeyArray() in " + (endTime - startTime) + " milliseconds.");
+        
         // get().
         startTime = System.currentTimeMillis();
         
@@ -144,6 +238,178 @@ public final class Benchmark {
         System.out.println(
                 "contains() in " + (endTime - startTime) + " milliseconds.");
         
+        // getAll() and containsAll() over the same keys.
+        int[] keys = new int[testArray.length];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = testArray[i];
+        }
+        
+        startTime = System.currentTimeMillis();
+        map.getAll(keys, new Integer[keys.length]);
+        map.containsAll(keys, new long[(keys.length + 63) / 64]);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "getAll()/containsAll() in " + (endTime - startTime) + 
+                " milliseconds.");
+        
+        // getNextIntKey() and getPreviousIntKey().
+        startTime = System.currentTimeMillis();
+        
+        for (Integer i : testArray) {
+            map.getNextIntKey(i);
+            map.getPreviousIntKey(i);
+        }
+        
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "getNextIntKey()/getPreviousIntKey() in " + 
+                (endTime - startTime) + " milliseconds.");
+        
+        // successors() and predecessors() against per-key queries over the 
+        // same sorted queries.
+        int[] sortedKeys = keys.clone();
+        int[] neighbors = new int[sortedKeys.length];
+        Arrays.sort(sortedKeys);
+        startTime = System.currentTimeMillis();
+        
+        for (int i = 0; i < sortedKeys.length; ++i) {
+            neighbors[i] = map.getNextIntKey(sortedKeys[i]);
+            neighbors[i] = map.getPreviousIntKey(sortedKeys[i]);
+        }
+        
+        endTime = System.currentTimeMillis();
+        
+        System.out.println(
+                "Sorted getNextIntKey()/getPreviousIntKey() in " + 
+                (endTime - startTime) + " milliseconds.");
+        
+        startTime = System.currentTimeMillis();
+        map.successors(sortedKeys, neighbors);
+        map.predecessors(sortedKeys, neighbors);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "successors()/predecessors() in " + (endTime - startTime) + 
+                " milliseconds.");
+        
+        // intersectionSize() against a key-by-key intersection.
+        VanEmdeBoasTreeIntMap<Integer> otherMap = 
+                new VanEmdeBoasTreeIntMap<>(MINIMUM_KEY, MAXIMUM_KEY);
+        
+        for (int i = 0; i < testArray.length; i += 2) {
+            otherMap.put(testArray[i], testArray[i]);
+        }
+        
+        startTime = System.currentTimeMillis();
+        int intersectionSize = map.intersectionSize(otherMap);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "intersectionSize() in " + (endTime - startTime) + 
+                " milliseconds.");
+        
+        startTime = System.currentTimeMillis();
+        keyIterator = otherMap.treeKeyIterator();
+        
+        while (keyIterator.hasNextKey()) {
+            if (map.containsKey(keyIterator.nextKey())) {
+                intersectionSize--;
+            }
+        }
+        
+        endTime = System.currentTimeMillis();
+        
+        System.out.println(
+                "Key-by-key intersection in " + (endTime - startTime) + 
+                " milliseconds (size difference " + intersectionSize + ").");
+        
+        // bulkLoad() of the sorted keys into an empty map.
+        int[] uniqueKeys = map.toKeyArray();
+        Integer[] uniqueValues = new Integer[uniqueKeys.length];
+        
+        for (int i = 0; i < uniqueKeys.length; ++i) {
+            uniqueValues[i] = uniqueKeys[i];
+        }
+        
+        VanEmdeBoasTreeIntMap<Integer> loadedMap = 
+                new VanEmdeBoasTreeIntMap<>(MINIMUM_KEY, MAXIMUM_KEY);
+        startTime = System.currentTimeMillis();
+        loadedMap.bulkLoad(uniqueKeys, uniqueValues);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "bulkLoad() in " + (endTime - startTime) + " milliseconds.");
+        
+        // parallelBulkLoad() of the same keys.
+        loadedMap = new VanEmdeBoasTreeIntMap<>(MINIMUM_KEY, MAXIMUM_KEY);
+        startTime = System.currentTimeMillis();
+        loadedMap.parallelBulkLoad(uniqueKeys, uniqueValues);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "parallelBulkLoad() in " + (endTime - startTime) + 
+                " milliseconds.");
+        
+        // A sum over the whole range, sequentially and with sumValues().
+        long[] sequentialSum = { 0L };
+        startTime = System.currentTimeMillis();
+        loadedMap.forEachInRange(MINIMUM_KEY, 
+                                 MAXIMUM_KEY, 
+                                 (key, value) -> sequentialSum[0] += value);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "forEachInRange() sum in " + (endTime - startTime) + 
+                " milliseconds.");
+        
+        startTime = System.currentTimeMillis();
+        long parallelSum = loadedMap.sumValues(MINIMUM_KEY, 
+                                               MAXIMUM_KEY, 
+                                               Integer::longValue);
+        endTime = System.currentTimeMillis();
+        totalTime += endTime - startTime;
+        
+        System.out.println(
+                "sumValues() in " + (endTime - startTime) + 
+                " milliseconds (sums agree: " + 
+                (parallelSum == sequentialSum[0]) + ").");
+        
+        // writeTo() and readFrom() through memory.
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            startTime = System.currentTimeMillis();
+            map.writeTo(bytes, INTEGER_CODEC);
+            endTime = System.currentTimeMillis();
+            totalTime += endTime - startTime;
+            
+            System.out.println(
+                    "writeTo() in " + (endTime - startTime) + 
+                    " milliseconds (" + bytes.size() + " bytes).");
+            
+            startTime = System.currentTimeMillis();
+            VanEmdeBoasTreeIntMap.readFrom(
+                    new ByteArrayInputStream(bytes.toByteArray()), 
+                    INTEGER_CODEC);
+            endTime = System.currentTimeMillis();
+            totalTime += endTime - startTime;
+            
+            System.out.println(
+                    "readFrom() in " + (endTime - startTime) + 
+                    " milliseconds.");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        
         // remove().
         startTime = System.currentTimeMillis();
         
@@ -234,6 +500,25 @@ public final class Benchmark {
         System.out.println(
                 "containsKey() in " + (endTime - startTime) + " milliseconds.");
         
+        if (map instanceof NavigableMap) {
+            // higherKey() and lowerKey().
+            NavigableMap<Integer, Integer> navigableMap = 
+                    (NavigableMap<Integer, Integer>) map;
+            startTime = System.currentTimeMillis();
+            
+            for (Integer i : testArray) {
+                navigableMap.higherKey(i);
+                navigableMap.lowerKey(i);
+            }
+            
+            endTime = System.currentTimeMillis();
+            totalTime += endTime - startTime;
+            
+            System.out.println(
+                    "higherKey()/lowerKey() in " + (endTime - startTime) + 
+                    " milliseconds.");
+        }
+        
         // remove().
         startTime = System.currentTimeMillis();
         
@@ -274,6 +559,27 @@ public final class Benchmark {
             hashMap.containsKey(i);
         }
         
+        int[] keys = new int[randomIntegerArray.length];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = randomIntegerArray[i];
+        }
+        
+        for (int i = 0; i < 5; ++i) {
+            vebMap.getAll(keys, new Integer[keys.length]);
+            vebMap.containsAll(keys, new long[(keys.length + 63) / 64]);
+        }
+        
+        vebMap.toKeyArray();
+        vebMap.toKeyArray();
+        int[] neighbors = new int[keys.length];
+        Arrays.sort(keys);
+        
+        for (int i = 0; i < 5; ++i) {
+            vebMap.successors(keys, neighbors);
+            vebMap.predecessors(keys, neighbors);
+        }
+        
         for (Map.Entry<Integer, Integer> e : treeMap.entrySet()) {
             
         }
@@ -317,6 +623,24 @@ public final class Benchmark {
             keyValueIterator.nextKeyValuePair(mapping);
         }
         
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            vebMap.writeTo(bytes, INTEGER_CODEC);
+            VanEmdeBoasTreeIntMap.readFrom(
+                    new ByteArrayInputStream(bytes.toByteArray()), 
+                    INTEGER_CODEC);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        
+        int[] sortedKeys = vebMap.toKeyArray();
+        Integer[] sortedValues = new Integer[sortedKeys.length];
+        new VanEmdeBoasTreeIntMap<Integer>(MINIMUM_KEY, MAXIMUM_KEY)
+                .bulkLoad(sortedKeys, sortedValues);
+        new VanEmdeBoasTreeIntMap<Integer>(MINIMUM_KEY, MAXIMUM_KEY)
+                .parallelBulkLoad(sortedKeys, sortedValues);
+        vebMap.sumValues(MINIMUM_KEY, MAXIMUM_KEY, Integer::longValue);
+        
         for (Integer i : randomIntegerArray) {
             vebMap.remove(i);
             treeMap.remove(i);
@@ -0,0 +1,562 @@
+package net.coderodde.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import net.coderodde.util.VanEmdeBoasTreeIntMap.ValueCodec;
+
+/**
+ * This class implements a durable wrapper of a {@link VanEmdeBoasTreeIntMap}.
+ * Each modification is appended to a write-ahead log before it is
+ * acknowledged, so that the map survives a crash: on opening, the log is
+ * replayed over the last snapshot. A snapshot is written by
+ * {@link #checkpoint()}, after which the log starts over.
+ * <p>
+ * The modifying threads are group-committed: while one thread forces the log
+ * to the disk, the records of the others are buffered, and the next force
+ * covers all of them, so that a single {@link FileChannel#force(boolean)}
+ * acknowledges a whole batch of concurrent writes. The reads see the writes
+ * that are not yet durable. All the methods are thread-safe.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Dec 9, 2017)
+ * @param <V> the type of values.
+ */
+public final class VanEmdeBoasTreeDurableIntMap<V> implements Closeable {
+    
+    /**
+     * The name of the snapshot file in the map directory.
+     */
+    static final String SNAPSHOT_FILE_NAME = "map.snapshot";
+    
+    /**
+     * The name of the log file in the map directory.
+     */
+    static final String LOG_FILE_NAME = "map.log";
+    
+    /**
+     * The name of the snapshot file while it is being written.
+     */
+    private static final String TEMPORARY_SNAPSHOT_FILE_NAME =
+            "map.snapshot.tmp";
+    
+    /**
+     * The record types of the log.
+     */
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    
+    private final VanEmdeBoasTreeIntMap<V> map;
+    private final ValueCodec<V> codec;
+    private final Path directory;
+    private final FileChannel log;
+    
+    /**
+     * Guards all the state, including the map.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    /**
+     * Signaled whenever a batch is committed or fails.
+     */
+    private final Condition batchCommitted = lock.newCondition();
+    
+    /**
+     * The encoded records appended since the last batch was taken for
+     * writing.
+     */
+    private ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+    
+    /**
+     * The buffer of the batch being written, swapped with
+     * {@link #pendingRecords}.
+     */
+    private ByteArrayOutputStream spareRecords = new ByteArrayOutputStream();
+    
+    /**
+     * The sequence number of the last appended record.
+     */
+    private long appendedSequence;
+    
+    /**
+     * The sequence number of the last record forced to the disk.
+     */
+    private long durableSequence;
+    
+    /**
+     * Whether a thread is writing and forcing a batch.
+     */
+    private boolean committing;
+    
+    /**
+     * The failure of the log, after which no modification is accepted, or
+     * {@code null}.
+     */
+    private IOException failure;
+    
+    private boolean closed;
+    
+    private VanEmdeBoasTreeDurableIntMap(VanEmdeBoasTreeIntMap<V> map,
+                                         ValueCodec<V> codec,
+                                         Path directory,
+                                         FileChannel log) {
+        this.map = map;
+        this.codec = codec;
+        this.directory = directory;
+        this.log = log;
+    }
+    
+    /**
+     * Opens the durable map kept in {@code directory}, recovering it from its
+     * last snapshot and its log. A torn record at the end of the log, left by
+     * a crash during an append, is cut off. If the directory holds no
+     * snapshot, the map starts empty with the key range
+     * {@code [minimumKey, maximumKey]}.
+     * 
+     * @param <V>        the value type.
+     * @param directory  the directory of the map files.
+     * @param minimumKey the smallest key of a new map.
+     * @param maximumKey the largest key of a new map.
+     * @param codec      the value codec.
+     * @return the recovered map.
+     * @throws IOException if the files cannot be read or are corrupt.
+     */
+    public static <V> VanEmdeBoasTreeDurableIntMap<V>
+        open(Path directory,
+             int minimumKey,
+             int maximumKey,
+             ValueCodec<V> codec) throws IOException {
+        Objects.requireNonNull(directory, "The directory is null.");
+        Objects.requireNonNull(codec, "The value codec is null.");
+        Files.createDirectories(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE_NAME);
+        VanEmdeBoasTreeIntMap<V> map;
+        
+        if (Files.exists(snapshot)) {
+            try (InputStream input = new BufferedInputStream(
+                    Files.newInputStream(snapshot))) {
+                map = VanEmdeBoasTreeIntMap.readFrom(input, codec);
+            }
+        } else {
+            map = new VanEmdeBoasTreeIntMap<>(minimumKey, maximumKey);
+        }
+        
+        FileChannel log = FileChannel.open(directory.resolve(LOG_FILE_NAME),
+                                           StandardOpenOption.CREATE,
+                                           StandardOpenOption.READ,
+                                           StandardOpenOption.WRITE);
+        
+        try {
+            long end = replay(log, map, codec);
+            log.truncate(end);
+            log.position(end);
+            forceDirectory(directory);
+        } catch (IOException | RuntimeException ex) {
+            log.close();
+            throw ex;
+        }
+        
+        return new VanEmdeBoasTreeDurableIntMap<>(map, codec, directory, log);
+    }
+    
+    public int size() {
+        lock.lock();
+        
+        try {
+            return map.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+    
+    public boolean containsKey(int key) {
+        lock.lock();
+        
+        try {
+            return map.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public V get(int key) {
+        lock.lock();
+        
+        try {
+            return map.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Maps {@code key} to {@code value} and returns once the modification is
+     * durable.
+     * 
+     * @param key   the key.
+     * @param value the value.
+     * @return the previous value of the key, or {@code null} if none.
+     * @throws IOException if the log fails.
+     */
+    public V put(int key, V value) throws IOException {
+        byte[] record = encode(PUT, key, value);
+        V previousValue;
+        long sequence;
+        lock.lock();
+        
+        try {
+            checkWritable();
+            previousValue = map.put(key, value);
+            sequence = append(record);
+        } finally {
+            lock.unlock();
+        }
+        
+        awaitDurable(sequence);
+        return previousValue;
+    }
+    
+    /**
+     * Removes {@code key} and returns once the modification is durable.
+     * 
+     * @param key the key.
+     * @return the value of the key, or {@code null} if none.
+     * @throws IOException if the log fails.
+     */
+    public V remove(int key) throws IOException {
+        byte[] record = encode(REMOVE, key, null);
+        V previousValue;
+        long sequence;
+        lock.lock();
+        
+        try {
+            checkWritable();
+            
+            if (!map.containsKey(key)) {
+                return null;
+            }
+            
+            previousValue = map.remove(key);
+            sequence = append(record);
+        } finally {
+            lock.unlock();
+        }
+        
+        awaitDurable(sequence);
+        return previousValue;
+    }
+    
+    /**
+     * Writes a snapshot of the map and starts the log over. The snapshot is 
+     * written to a temporary file, forced to the disk and moved over the old
+     * snapshot atomically, and the directory is forced before the log is 
+     * truncated, so that a crash at any point leaves a snapshot and a log 
+     * that recover the map. The records 
+     * still pending become durable through the snapshot. The modifications 
+     * wait for the checkpoint to finish.
+     * 
+     * @throws IOException if the snapshot or the log fails.
+     */
+    public void checkpoint() throws IOException {
+        lock.lock();
+        
+        try {
+            checkWritable();
+            
+            // Let the batch in flight reach the log:
+            while (committing) {
+                batchCommitted.awaitUninterruptibly();
+            }
+            
+            checkWritable();
+            Path temporary = directory.resolve(TEMPORARY_SNAPSHOT_FILE_NAME);
+            
+            try (FileChannel channel = 
+                    FileChannel.open(temporary, 
+                                     StandardOpenOption.CREATE,
+                                     StandardOpenOption.TRUNCATE_EXISTING,
+                                     StandardOpenOption.WRITE)) {
+                map.writeTo(new BufferedOutputStream(
+                                    Channels.newOutputStream(channel)), 
+                            codec);
+                channel.force(true);
+            }
+            
+            Files.move(temporary, 
+                       directory.resolve(SNAPSHOT_FILE_NAME),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            
+            // The rename must be durable before the log it replaces is gone:
+            forceDirectory(directory);
+            log.truncate(0L);
+            log.force(true);
+            pendingRecords.reset();
+            durableSequence = appendedSequence;
+            batchCommitted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Waits for the pending records to become durable and closes the log.
+     * 
+     * @throws IOException if the log fails.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        
+        try {
+            if (closed) {
+                return;
+            }
+            
+            // No more records are appended from now on:
+            closed = true;
+            
+            while (committing) {
+                batchCommitted.awaitUninterruptibly();
+            }
+            
+            try {
+                if (failure == null && appendedSequence != durableSequence) {
+                    commitBatch();
+                }
+            } finally {
+                log.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Appends the encoded record to the pending batch. The caller holds the 
+     * lock.
+     * 
+     * @param record the encoded record.
+     * @return the sequence number of the record.
+     */
+    private long append(byte[] record) {
+        pendingRecords.write(record, 0, record.length);
+        return ++appendedSequence;
+    }
+    
+    /**
+     * Returns once the record {@code sequence} is durable. If no batch is 
+     * being committed, the calling thread commits the pending batch, 
+     * including the records appended by the others in the meantime.
+     * 
+     * @param sequence the sequence number of the record.
+     * @throws IOException if the log fails.
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        
+        try {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new IOException("The log failed.", failure);
+                }
+                
+                if (committing) {
+                    batchCommitted.awaitUninterruptibly();
+                } else {
+                    commitBatch();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Writes the pending batch to the log and forces it to the disk. The 
+     * caller holds the lock, which is released during the I/O, so that the 
+     * other threads keep appending to the next batch meanwhile.
+     * 
+     * @throws IOException if the log fails.
+     */
+    private void commitBatch() throws IOException {
+        ByteArrayOutputStream batch = pendingRecords;
+        pendingRecords = spareRecords;
+        spareRecords = batch;
+        long batchSequence = appendedSequence;
+        committing = true;
+        IOException batchFailure = null;
+        lock.unlock();
+        
+        try {
+            // Only the committing thread touches the spare buffer:
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+            
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            
+            log.force(false);
+        } catch (IOException ex) {
+            batchFailure = ex;
+        } finally {
+            lock.lock();
+        }
+        
+        batch.reset();
+        committing = false;
+        
+        if (batchFailure == null) {
+            durableSequence = Math.max(durableSequence, batchSequence);
+        } else {
+            failure = batchFailure;
+        }
+        
+        batchCommitted.signalAll();
+        
+        if (batchFailure != null) {
+            throw batchFailure;
+        }
+    }
+    
+    /**
+     * Forces the entries of {@code directory} to the disk, so that the files
+     * created or renamed in it survive a crash. The platforms that cannot 
+     * open a directory for reading, such as Windows, keep their directory 
+     * entries durable on their own, and are skipped.
+     * 
+     * @param directory the directory to force.
+     * @throws IOException if the directory cannot be forced.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            return;
+        }
+        
+        try (FileChannel directoryChannel = channel) {
+            directoryChannel.force(true);
+        }
+    }
+    
+    private void checkWritable() throws IOException {
+        if (closed) {
+            throw new IOException("The map is closed.");
+        }
+        
+        if (failure != null) {
+            throw new IOException("The log failed.", failure);
+        }
+    }
+    
+    /**
+     * Encodes a log record: its payload length, the payload holding the type,
+     * the key and the value, and the CRC-32 of the payload.
+     */
+    private byte[] encode(byte type, int key, V value) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+        payload.writeInt(key);
+        
+        if (type == PUT) {
+            codec.write(value, payload);
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(payloadBytes.toByteArray());
+        ByteArrayOutputStream recordBytes =
+                new ByteArrayOutputStream(payloadBytes.size() + 8);
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(record);
+        record.writeInt((int) crc.getValue());
+        return recordBytes.toByteArray();
+    }
+    
+    /**
+     * Applies the records of {@code log} to {@code map} in order, stopping at
+     * the end of the log or at the first torn or corrupt record.
+     * 
+     * @return the length of the intact prefix of the log.
+     */
+    private static <V> long replay(FileChannel log,
+                                   VanEmdeBoasTreeIntMap<V> map,
+                                   ValueCodec<V> codec) throws IOException {
+        log.position(0L);
+        DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(log)));
+        long end = 0L;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[0];
+        
+        for (;;) {
+            int length;
+            int checksum;
+            
+            try {
+                length = input.readInt();
+                
+                if (length < 5 || length > log.size() - end) {
+                    return end;
+                }
+                
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                
+                input.readFully(payload, 0, length);
+                checksum = input.readInt();
+            } catch (EOFException ex) {
+                return end;
+            }
+            
+            crc.reset();
+            crc.update(payload, 0, length);
+            
+            if ((int) crc.getValue() != checksum) {
+                return end;
+            }
+            
+            DataInputStream record = new DataInputStream(
+                    new ByteArrayInputStream(payload, 0, length));
+            byte type = record.readByte();
+            int key = record.readInt();
+            
+            if (type == PUT) {
+                map.put(key, codec.read(record));
+            } else if (type == REMOVE) {
+                map.remove(key);
+            } else {
+                throw new IOException("The log holds an unknown record.");
+            }
+            
+            end += 8 + length;
+        }
+    }
+}
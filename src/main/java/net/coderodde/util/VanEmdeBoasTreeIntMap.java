@@ -1,7 +1,27 @@
 package net.coderodde.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.ToLongFunction;
 
 /**
  * This class implements a sorted map mapping integer keys to values of 
@@ -14,39 +34,158 @@ import java.util.Objects;
 public final class VanEmdeBoasTreeIntMap<V> {
     
     /**
-     * The minimum universe size a node of a van Emde Boas tree can hold.
+     * The binary logarithm of the largest universe size of a leaf node in a 
+     * van Emde Boas tree. A leaf keeps all its keys in a single 64-bit word.
      */
-    private static final int MINIMUM_UNIVERSE_SIZE = 2;
+    private static final int LEAF_UNIVERSE_SHIFT = 6;
     
     /**
-     * The value used to denote the absence of an integer key.
+     * The binary logarithm of the largest number of clusters of a vEB node.
      */
-    private static final int NULL_KEY = -1;
+    private static final int MAXIMUM_FANOUT_SHIFT = 30;
+    
+    /**
+     * The binary logarithm of the number of bits in a summary word.
+     */
+    private static final int WORD_SHIFT = 6;
+    
+    /**
+     * The mask used to compute the bit index within a summary word.
+     */
+    private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+    
+    /**
+     * The binary logarithm of the maximum length of a value table page.
+     */
+    private static final int MAXIMUM_PAGE_SHIFT = 10;
+    
+    /**
+     * The binary logarithm of the maximum number of pages in a page directory.
+     */
+    private static final int MAXIMUM_DIRECTORY_SHIFT = 11;
+    
+    /**
+     * The estimated sizes in bytes of an array header, an object reference 
+     * and a vEB node, assuming compressed references. Used for reporting the
+     * memory reclaimed by {@link #trimToSize()}.
+     */
+    private static final int ARRAY_HEADER_BYTES = 16;
+    private static final int REFERENCE_BYTES = 4;
+    private static final int NODE_BYTES = 40;
+    
+    /**
+     * The first four bytes of a serialized map.
+     */
+    private static final int STREAM_MAGIC = 0x76454231;
+    
+    /**
+     * The first four bytes of a serialized delta.
+     */
+    private static final int DELTA_MAGIC = 0x76454244;
+    
+    /**
+     * The number of mappings per chunk of a serialized map.
+     */
+    private static final int CHUNK_LENGTH = 4096;
+    
+    /**
+     * The number of keys below which a parallel operation runs sequentially.
+     */
+    private static final int PARALLEL_GRAIN = 1 << 13;
+    
+    /**
+     * Returned by the {@code find} methods when there is no such key. It lies
+     * outside the range of {@code int}, so that unlike the sentinel keys 
+     * returned by the {@code int} methods, it never equals a key.
+     */
+    public static final long NO_KEY = Long.MIN_VALUE;
     
     /**
      * Used to denote that there is an integer mapped to a {@code null} value.
+     * Shared by all the maps so that the values may be copied between them.
      */
-    private final V NULL_VALUE = (V) new Object();
+    private static final Object NULL_VALUE = new Object();
     
     /**
-     * This static inner class implements a node in a van Emde Boas tree.
+     * This interface specifies how the universe of a vEB node is split into 
+     * clusters. Splitting off more high bits gives wider nodes and a shallower
+     * tree: fewer dependent memory loads per query at the price of larger 
+     * cluster arrays and summaries. The splitting stops as soon as the universe
+     * fits in a 64-bit word; such nodes are leaves.
      */
-    private static final class VEBTree {
+    @FunctionalInterface
+    public interface SplitPolicy {
         
         /**
-         * The universe size of this vEB node.
+         * The classic van Emde Boas split of a universe of size {@code U} into
+         * {@code sqrt(U)} clusters of size {@code sqrt(U)}. For odd exponents 
+         * the clusters are the smaller half.
          */
-        private final int universeSize;
+        public static final SplitPolicy SQUARE_ROOT = 
+                (level, universeShift) -> universeShift >>> 1;
         
         /**
-         * The shift length for computing the high indices.
+         * Returns the binary logarithm of the cluster universe size of a node 
+         * at depth {@code level} whose universe size is 
+         * {@code 2^universeShift}. The result must be at least one and smaller
+         * than {@code universeShift}.
+         * 
+         * @param level         the depth of the node, zero for the root.
+         * @param universeShift the binary logarithm of the universe size of 
+         *                      the node, larger than 6.
+         * @return the binary logarithm of the cluster universe size.
          */
-        private final int highShift;
+        public int getClusterShift(int level, int universeShift);
         
         /**
-         * The mask used to compute the low indices.
+         * Returns a split policy in which a node at depth {@code level} has
+         * {@code 2^fanoutShifts[level]} clusters. The levels not covered by
+         * {@code fanoutShifts} are split by {@link #SQUARE_ROOT}. For example,
+         * {@code withFanoutShifts(12, 4)} splits a universe of {@code 2^22} 
+         * keys into {@code 2^12} clusters of {@code 2^10} keys, each of which 
+         * consists of 16 word leaves.
+         * 
+         * @param fanoutShifts the binary logarithms of the fanouts per level.
+         * @return a split policy.
          */
-        private final int lowMask;
+        public static SplitPolicy withFanoutShifts(int... fanoutShifts) {
+            int[] shifts = fanoutShifts.clone();
+            
+            for (int shift : shifts) {
+                if (shift < 1 || shift > MAXIMUM_FANOUT_SHIFT) {
+                    throw new IllegalArgumentException(
+                            "Bad fanout shift (" + shift + "). Must be " +
+                            "within [1, " + MAXIMUM_FANOUT_SHIFT + "].");
+                }
+            }
+            
+            return (level, universeShift) -> {
+                if (level < shifts.length) {
+                    return Math.max(1, universeShift - shifts[level]);
+                }
+                
+                return SQUARE_ROOT.getClusterShift(level, universeShift);
+            };
+        }
+    }
+    
+    /**
+     * This static inner class implements a node in a van Emde Boas tree. The
+     * nodes are created lazily: a node exists only while it holds at least one
+     * key, so an absent cluster is represented by {@code null} and the memory
+     * consumption is proportional to the number of stored keys. All keys are 
+     * treated as unsigned integers, which allows the universe of size 
+     * {@code 2^32}.
+     * <p>
+     * A node does not know its universe size: all the nodes at the same depth
+     * share it, so the shifts and masks are kept in the per-level tables of the
+     * map, and the tree is operated on by the loops in the map instead of by
+     * recursive calls. The summary of a node is a hierarchical bit vector with
+     * 64-way fanout, in which each bit of a word one level up tells whether the
+     * respective word below is non-zero. The leaves store their keys in a 
+     * single word.
+     */
+    private static final class VEBTree {
         
         /**
          * The minimum integer key in the tree starting from this node.
@@ -59,238 +198,515 @@ public final class VanEmdeBoasTreeIntMap<V> {
         private int max;
         
         /**
-         * The summary vEB-tree.
+         * The summary bit vector. Is {@code null} if there is no clusters.
+         */
+        private long[] summary;
+        
+        /**
+         * The children nodes of this vEB node. Is {@code null} if there is no
+         * clusters.
          */
-        private final VEBTree summary;
+        private VEBTree[] cluster;
         
         /**
-         * The children nodes of this vEB node.
+         * All the keys of a leaf node as a bit vector.
          */
-        private final VEBTree[] cluster;
+        private long bits;
         
-        VEBTree(int universeSize) {
-            this.universeSize = universeSize;
+        /**
+         * Constructs a vEB node holding the only key {@code x}.
+         * 
+         * @param x    the only key of the new node.
+         * @param leaf whether the new node is a leaf.
+         */
+        VEBTree(int x, boolean leaf) {
+            this.min = x;
+            this.max = x;
             
-            int universeSizeLowerSquare = lowerSquare(universeSize);
+            if (leaf) {
+                this.bits = 1L << x;
+            }
+        }
+    }
+    
+    /**
+     * Compares two keys as unsigned integers.
+     * 
+     * @param a the first key.
+     * @param b the second key.
+     * @return {@code true} if {@code a} is smaller than {@code b}.
+     */
+    private static boolean less(int a, int b) {
+        return a + Integer.MIN_VALUE < b + Integer.MIN_VALUE;
+    }
+    
+    /**
+     * Sets the bit {@code index} in the summary bit vector.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the index of the bit to set.
+     */
+    private static void summarySet(long[] summary, int[] offsets, int index) {
+        for (int offset : offsets) {
+            int wordIndex = offset + (index >>> WORD_SHIFT);
+            long word = summary[wordIndex];
+            summary[wordIndex] = word | (1L << index);
             
-            this.lowMask = universeSizeLowerSquare - 1;
-            this.highShift = 
-                    Integer.numberOfTrailingZeros(universeSizeLowerSquare);
+            if (word != 0L) {
+                return;
+            }
             
-            this.min = NULL_KEY;
-            this.max = NULL_KEY;
+            index >>>= WORD_SHIFT;
+        }
+    }
+    
+    /**
+     * Clears the bit {@code index} in the summary bit vector.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the index of the bit to clear.
+     * @return {@code true} if the summary became empty.
+     */
+    private static boolean summaryClear(long[] summary, 
+                                        int[] offsets,
+                                        int index) {
+        for (int offset : offsets) {
+            int wordIndex = offset + (index >>> WORD_SHIFT);
+            long word = summary[wordIndex] & ~(1L << index);
+            summary[wordIndex] = word;
             
-            if (universeSize != MINIMUM_UNIVERSE_SIZE) {
-                int upperUniverseSizeSquare = upperSquare(universeSize);
-                int lowerUniverseSizeSquare = lowerSquare(universeSize);
-                this.summary = new VEBTree(upperUniverseSizeSquare);
-                this.cluster = new VEBTree[upperUniverseSizeSquare];
-                
-                for (int i = 0; i != upperUniverseSizeSquare; ++i) {
-                    this.cluster[i] = new VEBTree(lowerUniverseSizeSquare);
-                }
-            } else {
-                this.summary = null;
-                this.cluster = null;
+            if (word != 0L) {
+                return false;
             }
+            
+            index >>>= WORD_SHIFT;
         }
         
-        int getUniverseSize() {
-            return universeSize;
-        }
+        return true;
+    }
+    
+    /**
+     * Moves all the bits not smaller than {@code index} from the summary bit 
+     * vector {@code summary} to the empty summary bit vector {@code upper}. 
+     * The whole words of the finest level are moved at once, after which the 
+     * coarser levels of both vectors are rebuilt.
+     * 
+     * @param summary the summary bit vector to split.
+     * @param upper   the summary bit vector receiving the upper bits.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the smallest bit index to move.
+     * @return {@code true} if {@code summary} became empty.
+     */
+    private static boolean summarySplit(long[] summary, 
+                                        long[] upper,
+                                        int[] offsets, 
+                                        int index) {
+        int words = offsets.length > 1 ? offsets[1] : 1;
+        int wordIndex = index >>> WORD_SHIFT;
         
-        int getMinimumKey() {
-            return min;
+        if (wordIndex < words) {
+            long mask = -1L << index;
+            upper[wordIndex] = summary[wordIndex] & mask;
+            summary[wordIndex] &= ~mask;
+            System.arraycopy(summary, 
+                             wordIndex + 1, 
+                             upper, 
+                             wordIndex + 1, 
+                             words - wordIndex - 1);
+            Arrays.fill(summary, wordIndex + 1, words, 0L);
         }
         
-        int getMaximumKey() {
-            return max;
-        }
+        summaryRebuild(upper, offsets);
+        return summaryRebuild(summary, offsets);
+    }
+    
+    /**
+     * Shifts the bits of the finest level of the summary bit vector down by 
+     * {@code distance}, dropping the lowest ones, after which the coarser 
+     * levels are rebuilt.
+     * 
+     * @param summary  the summary bit vector.
+     * @param offsets  the offsets of the summary levels, the finest first.
+     * @param distance the shift distance.
+     * @return {@code true} if the summary became empty.
+     */
+    private static boolean summaryShiftDown(long[] summary, 
+                                            int[] offsets, 
+                                            int distance) {
+        int words = offsets.length > 1 ? offsets[1] : 1;
+        int wordShift = distance >>> WORD_SHIFT;
+        int bitShift = distance & WORD_MASK;
         
-        int getSuccessor(int x) {
-            if (universeSize == MINIMUM_UNIVERSE_SIZE) {
-                if (x == 0 && max == 1) {
-                    return 1;
-                }
-                
-                return NULL_KEY;
-            }
-            
-            if (min != NULL_KEY && x < min) {
-                return min;
-            }
-            
-            int maximumLow = cluster[high(x)].getMaximumKey();
-            
-            if (maximumLow != NULL_KEY && low(x) < maximumLow) {
-                int offset = cluster[high(x)].getSuccessor(low(x));
-                return index(high(x), offset);
-            }
+        for (int i = 0; i != words; ++i) {
+            int source = i + wordShift;
+            long word = source < words ? summary[source] >>> bitShift : 0L;
             
-            int successorCluster = summary.getSuccessor(high(x));
-            
-            if (successorCluster == NULL_KEY) {
-                return NULL_KEY;
+            if (bitShift != 0 && source + 1 < words) {
+                word |= summary[source + 1] << (Long.SIZE - bitShift);
             }
             
-            int offset = cluster[successorCluster].getMinimumKey();
-            return index(successorCluster, offset);
+            summary[i] = word;
         }
         
-        int getPredecessor(int x) {
-            if (universeSize == MINIMUM_UNIVERSE_SIZE) {
-                if (min == NULL_KEY) {
-                    return NULL_KEY;
-                }
-                
-                if (x == 1 && min == 0) {
-                    return 0;
-                }
-                
-                return NULL_KEY;
-            }
-            
-            if (max != NULL_KEY && x > max) {
-                return max;
-            }
-            
-            int minimumLow = cluster[high(x)].getMinimumKey();
-            
-            if (minimumLow != NULL_KEY && low(x) > minimumLow) {
-                int offset = cluster[high(x)].getPredecessor(low(x));
-                return index(high(x), offset);
-            }
-            
-            int predecessorCluster = summary.getPredecessor(high(x));
+        return summaryRebuild(summary, offsets);
+    }
+    
+    /**
+     * Recomputes the coarser levels of the summary bit vector from its finest
+     * level.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @return {@code true} if the summary is empty.
+     */
+    private static boolean summaryRebuild(long[] summary, int[] offsets) {
+        for (int level = 1; level < offsets.length; ++level) {
+            int from = offsets[level - 1];
+            int words = offsets[level] - from;
+            Arrays.fill(summary, 
+                        offsets[level], 
+                        offsets[level] + ((words + WORD_MASK) >>> WORD_SHIFT),
+                        0L);
             
-            if (predecessorCluster == NULL_KEY) {
-                if (min != NULL_KEY && x > min) {
-                    return min;
+            for (int i = 0; i != words; ++i) {
+                if (summary[from + i] != 0L) {
+                    summary[offsets[level] + (i >>> WORD_SHIFT)] |= 1L << i;
                 }
-                
-                return NULL_KEY;
             }
-            
-            int offset = cluster[predecessorCluster].getMaximumKey();
-            return index(predecessorCluster, offset);
         }
         
-        void treeInsert(int x) {
-            if (min == NULL_KEY) {
-                emptyTreeInsert(x);
-                return;
+        // The coarsest level is always a single word:
+        return summary[summary.length - 1] == 0L;
+    }
+    
+    /**
+     * Returns the smallest set bit of the non-empty summary bit vector.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @return the index of the smallest set bit.
+     */
+    private static int summaryFirst(long[] summary, int[] offsets) {
+        int index = 0;
+        
+        for (int level = offsets.length - 1; level >= 0; --level) {
+            long word = summary[offsets[level] + index];
+            index = (index << WORD_SHIFT) | Long.numberOfTrailingZeros(word);
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Returns the largest set bit of the non-empty summary bit vector.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @return the index of the largest set bit.
+     */
+    private static int summaryLast(long[] summary, int[] offsets) {
+        int index = 0;
+        
+        for (int level = offsets.length - 1; level >= 0; --level) {
+            long word = summary[offsets[level] + index];
+            index = (index << WORD_SHIFT) | 
+                    (WORD_MASK - Long.numberOfLeadingZeros(word));
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Returns the smallest set bit larger than {@code index}, or {@code -1} if
+     * there is no such.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the bit index to start from.
+     * @return the index of the next set bit or {@code -1}.
+     */
+    private static int summaryNext(long[] summary, int[] offsets, int index) {
+        int level = 0;
+        
+        for (;; ++level) {
+            if (level == offsets.length) {
+                return -1;
             }
             
-            if (x < min) {
-                int tmp = x;
-                x = min;
-                min = tmp;
-            }
+            long word = summary[offsets[level] + (index >>> WORD_SHIFT)] &
+                        (-2L << index);
             
-            if (universeSize != MINIMUM_UNIVERSE_SIZE) {
-                int minimum = cluster[high(x)].getMinimumKey();
-                
-                if (minimum == NULL_KEY) {
-                    summary.treeInsert(high(x));
-                    cluster[high(x)].emptyTreeInsert(low(x));
-                } else {
-                    cluster[high(x)].treeInsert(low(x));
-                }
+            if (word != 0L) {
+                index = (index & ~WORD_MASK) | 
+                        Long.numberOfTrailingZeros(word);
+                break;
             }
             
-            if (max < x) {
-                max = x;
-            }
+            index >>>= WORD_SHIFT;
         }
         
-        void treeDelete(int x) {
-            if (min == max) {
-                min = NULL_KEY;
-                max = NULL_KEY;
-                return;
+        while (level > 0) {
+            long word = summary[offsets[--level] + index];
+            index = (index << WORD_SHIFT) | Long.numberOfTrailingZeros(word);
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Returns the largest set bit smaller than {@code index}, or {@code -1} if
+     * there is no such.
+     * 
+     * @param summary the summary bit vector.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the bit index to start from.
+     * @return the index of the previous set bit or {@code -1}.
+     */
+    private static int summaryPrevious(long[] summary, 
+                                       int[] offsets,
+                                       int index) {
+        int level = 0;
+        
+        for (;; ++level) {
+            if (level == offsets.length) {
+                return -1;
             }
             
-            if (universeSize == MINIMUM_UNIVERSE_SIZE) {
-                if (x == 0) {
-                    min = 1;
-                } else {
-                    max = 0;
-                }
-                
-                max = min;
-                return;
-            }
+            long word = summary[offsets[level] + (index >>> WORD_SHIFT)] &
+                        ((1L << index) - 1);
             
-            if (min == x) {
-                int firstCluster = summary.getMinimumKey();
-                x = index(firstCluster, cluster[firstCluster].getMinimumKey());
-                min = x;
+            if (word != 0L) {
+                index = (index & ~WORD_MASK) | 
+                        (WORD_MASK - Long.numberOfLeadingZeros(word));
+                break;
             }
             
-            cluster[high(x)].treeDelete(low(x));
-            
-            if (cluster[high(x)].getMinimumKey() == NULL_KEY) {
-                summary.treeDelete(high(x));
-                
-                if (x == max) {
-                    int summaryMaximum = summary.getMaximumKey();
-                    
-                    if (summaryMaximum == NULL_KEY) {
-                        max = min;
-                    } else {
-                        int maximumKey = 
-                                cluster[summaryMaximum].getMaximumKey();
-                        max = index(summaryMaximum, maximumKey);
-                    }
-                }
-            } else if (x == max) {
-                int maximumKey = cluster[high(x)].getMaximumKey();
-                max = index(high(x), maximumKey);
-            }
-        }
-        
-        private void emptyTreeInsert(int x) {
-            min = x;
-            max = x;
-        }
-        
-        private int high(int x) {
-            return x >>> highShift;
+            index >>>= WORD_SHIFT;
         }
         
-        private int low(int x) {
-            return x & lowMask;
+        while (level > 0) {
+            long word = summary[offsets[--level] + index];
+            index = (index << WORD_SHIFT) | 
+                    (WORD_MASK - Long.numberOfLeadingZeros(word));
         }
         
-        private int index(int x, int y) {
-            return (x << highShift) | (y & lowMask);
-        }
-    }
-    
-    private static int upperSquare(int number) {
-        double exponent = Math.ceil(Math.log(number) / Math.log(2.0) / 2.0);
-        return (int) Math.pow(2.0, exponent);
+        return index;
     }
     
-    private static int lowerSquare(int number) {
-        double exponent = Math.floor(Math.log(number) / Math.log(2.0) / 2.0);
-        return (int) Math.pow(2.0, exponent);
-    }
+    /**
+     * The root node of the vEB tree, or {@code null} if this map is empty.
+     */
+    private VEBTree root;
     
-    private final VEBTree root;
-    private final int minimumKey;
-    private final int maximumKey;
-    private final V[] table;
+    /**
+     * The smallest and the largest key this map may hold. The smallest one is
+     * also the translation origin of the keys. Both move when the key range 
+     * slides.
+     */
+    private int minimumKey;
+    private int maximumKey;
+    private int universeShift;
     private int size;
     
+    /**
+     * Whether {@link #put(int, java.lang.Object)} grows the key range instead
+     * of rejecting the keys outside of it.
+     */
+    private boolean autoGrowing;
+    
+    /**
+     * The bit vector of the value pages modified since the last checkpoint,
+     * or {@code null} if no checkpoint is tracked.
+     */
+    private long[] dirtyPages;
+    
+    /**
+     * Whether the key range changed since the last checkpoint, so that no 
+     * delta can be written before the next one.
+     */
+    private boolean checkpointLost;
+    
+    /**
+     * The number of structural modifications, that is, the additions and 
+     * removals of keys. Used by the fail-fast iterators of the 
+     * {@link VanEmdeBoasTreeNavigableMap} adapter.
+     */
+    int modCount;
+    
+    /**
+     * The index of the deepest level, where the vEB nodes are leaves.
+     */
+    private int leafLevel;
+    
+    /**
+     * The shift lengths for computing the high indices of the nodes at each
+     * level.
+     */
+    private int[] levelShift;
+    
+    /**
+     * The masks used to compute the low indices of the nodes at each level.
+     */
+    private int[] levelMask;
+    
+    /**
+     * The number of clusters of the nodes at each level.
+     */
+    private int[] levelFanout;
+    
+    /**
+     * The length of the summary bit vectors of the nodes at each level.
+     */
+    private int[] levelSummaryLength;
+    
+    /**
+     * The offsets of the summary bit vector levels of the nodes at each level.
+     */
+    private int[][] levelSummaryOffsets;
+    
+    /**
+     * Scratch space for the nodes on the deletion path.
+     */
+    private VEBTree[] deletionPath;
+    
+    /**
+     * Scratch space for the cluster indices on the deletion path.
+     */
+    private int[] deletionPathHigh;
+    
+    /**
+     * The value table is split into pages, each covering one root cluster (or
+     * a {@code 2^MAXIMUM_PAGE_SHIFT} long slice of it). The pages are grouped 
+     * into directories. Both pages and directories are allocated on the first 
+     * write to them and released as soon as they become empty.
+     */
+    private V[][][] directories;
+    
+    /**
+     * The number of mappings stored in each directory.
+     */
+    private int[] directorySizes;
+    
+    /**
+     * The number of mappings stored in each page, grouped by directories.
+     */
+    private int[][] pageSizes;
+    
+    /**
+     * The shift length for computing the page index of a translated key.
+     */
+    private int pageShift;
+    
+    /**
+     * The mask used to compute the index of a translated key within its page.
+     */
+    private int pageMask;
+    
+    /**
+     * The shift length for computing the directory index of a translated key.
+     */
+    private int directoryShift;
+    
+    /**
+     * The mask used to compute the index of a page within its directory.
+     */
+    private int directoryMask;
+    
     public VanEmdeBoasTreeIntMap(int minimumKey, int maximumKey) {
+        this(minimumKey, maximumKey, SplitPolicy.SQUARE_ROOT);
+    }
+    
+    public VanEmdeBoasTreeIntMap(int minimumKey, 
+                                 int maximumKey, 
+                                 SplitPolicy splitPolicy) {
         checkBounds(minimumKey, maximumKey);
+        Objects.requireNonNull(splitPolicy, "The split policy is null.");
         this.minimumKey = minimumKey;
         this.maximumKey = maximumKey;
-        int universeSize = maximumKey - minimumKey + 1;
-        universeSize = fixUniverseSize(universeSize);
-        this.root = new VEBTree(universeSize);
-        this.table = (V[]) new Object[universeSize];
+        long universeSize = (long) maximumKey - minimumKey + 1;
+        this.universeShift = computeUniverseShift(universeSize);
+        
+        // Ask the split policy for the universe sizes of all levels:
+        int[] universeShifts = new int[Integer.SIZE];
+        int levels = 0;
+        universeShifts[0] = universeShift;
+        
+        while (universeShifts[levels] > LEAF_UNIVERSE_SHIFT) {
+            int shift = universeShifts[levels];
+            int clusterShift = splitPolicy.getClusterShift(levels, shift);
+            checkClusterShift(clusterShift, shift);
+            universeShifts[++levels] = clusterShift;
+        }
+        
+        this.leafLevel = levels++;
+        this.levelShift = new int[levels];
+        this.levelMask = new int[levels];
+        this.levelFanout = new int[levels];
+        this.levelSummaryLength = new int[levels];
+        this.levelSummaryOffsets = new int[levels][];
+        
+        for (int level = 0; level != leafLevel; ++level) {
+            int lowShift = universeShifts[level + 1];
+            int highShift = universeShifts[level] - lowShift;
+            levelShift[level] = lowShift;
+            levelMask[level] = (1 << lowShift) - 1;
+            levelFanout[level] = 1 << highShift;
+            levelSummaryOffsets[level] = computeSummaryOffsets(highShift);
+            levelSummaryLength[level] = 
+                    computeSummaryLength(levelSummaryOffsets[level]);
+        }
+        
+        this.deletionPath = new VEBTree[levels];
+        this.deletionPathHigh = new int[levels];
+        allocateTable();
+    }
+    
+    /**
+     * Allocates an empty value table for the current levels, with the pages 
+     * no longer than the root clusters.
+     */
+    private void allocateTable() {
+        pageShift = Math.min(leafLevel == 0 ? universeShift : levelShift[0],
+                             MAXIMUM_PAGE_SHIFT);
+        pageMask = (1 << pageShift) - 1;
+        int directoryShiftDelta = Math.min(universeShift - pageShift,
+                                           MAXIMUM_DIRECTORY_SHIFT);
+        directoryShift = pageShift + directoryShiftDelta;
+        directoryMask = (1 << directoryShiftDelta) - 1;
+        int numberOfDirectories = 1 << (universeShift - directoryShift);
+        directories = (V[][][]) new Object[numberOfDirectories][][];
+        directorySizes = new int[numberOfDirectories];
+        pageSizes = new int[numberOfDirectories][];
+    }
+    
+    /**
+     * Constructs an empty map with the same key range and split policy as 
+     * {@code layout}. The level tables are immutable and thus shared.
+     * 
+     * @param layout the map whose layout to copy.
+     */
+    private VanEmdeBoasTreeIntMap(VanEmdeBoasTreeIntMap<V> layout) {
+        this.minimumKey = layout.minimumKey;
+        this.maximumKey = layout.maximumKey;
+        this.universeShift = layout.universeShift;
+        this.leafLevel = layout.leafLevel;
+        this.levelShift = layout.levelShift;
+        this.levelMask = layout.levelMask;
+        this.levelFanout = layout.levelFanout;
+        this.levelSummaryLength = layout.levelSummaryLength;
+        this.levelSummaryOffsets = layout.levelSummaryOffsets;
+        this.deletionPath = new VEBTree[layout.deletionPath.length];
+        this.deletionPathHigh = new int[layout.deletionPathHigh.length];
+        this.pageShift = layout.pageShift;
+        this.pageMask = layout.pageMask;
+        this.directoryShift = layout.directoryShift;
+        this.directoryMask = layout.directoryMask;
+        int numberOfDirectories = layout.directories.length;
+        this.directories = (V[][][]) new Object[numberOfDirectories][][];
+        this.directorySizes = new int[numberOfDirectories];
+        this.pageSizes = new int[numberOfDirectories][];
     }
     
     public int size() {
@@ -301,484 +717,5840 @@ public final class VanEmdeBoasTreeIntMap<V> {
         return size == 0;
     }
     
+    /**
+     * Returns the smallest key of this map, or {@code maximumKey + 1} of the 
+     * key range if this map is empty. If the key range ends at 
+     * {@link Integer#MAX_VALUE}, the sentinel wraps around to 
+     * {@link Integer#MIN_VALUE}, which is a valid key; use 
+     * {@link #isEmpty()} or {@link #findMinimumKey()} to tell them apart.
+     * 
+     * @return the smallest key.
+     */
     public int getMinimumKey() {
         return size != 0 ? root.min + minimumKey : this.maximumKey + 1;
     }
     
-    public int getMaximumKey() {
+    /**
+     * Returns the largest key of this map, or {@code minimumKey - 1} of the 
+     * key range if this map is empty. If the key range starts at 
+     * {@link Integer#MIN_VALUE}, the sentinel wraps around to 
+     * {@link Integer#MAX_VALUE}, which is a valid key; use 
+     * {@link #isEmpty()} or {@link #findMaximumKey()} to tell them apart.
+     * 
+     * @return the largest key.
+     */
+    public int getMaximumKey() {
         return size != 0 ? root.max + minimumKey : this.minimumKey - 1;
     }
     
-    public int getNextIntKey(int key) {
-        checkKey(key);
-        int nextKey = root.getSuccessor(key - minimumKey);
-        return nextKey == NULL_KEY ?
-                this.minimumKey - 1 :
-                nextKey + minimumKey;
+    /**
+     * Returns the smallest key of this map, or {@link #NO_KEY} if this map is
+     * empty.
+     * 
+     * @return the smallest key or {@link #NO_KEY}.
+     */
+    public long findMinimumKey() {
+        return size != 0 ? root.min + minimumKey : NO_KEY;
     }
     
-    public int getPreviousIntKey(int key) {
-        checkKey(key);
-        int previousKey = root.getPredecessor(key - minimumKey);
-        return previousKey == NULL_KEY ? 
-                this.maximumKey + 1 : 
-                previousKey + minimumKey;
+    /**
+     * Returns the largest key of this map, or {@link #NO_KEY} if this map is 
+     * empty.
+     * 
+     * @return the largest key or {@link #NO_KEY}.
+     */
+    public long findMaximumKey() {
+        return size != 0 ? root.max + minimumKey : NO_KEY;
     }
     
-    public boolean containsKey(int key) {
-        checkKey(key);
-        return table[key - minimumKey] != null;
+    /**
+     * Returns the smallest key this map may currently hold.
+     * 
+     * @return the lower bound of the key range.
+     */
+    public int getRangeMinimumKey() {
+        return minimumKey;
     }
     
-    public V get(int key) {
-        checkKey(key);
-        V value = table[key - minimumKey];
-        return (value == null || value == NULL_VALUE) ? null : value;
+    /**
+     * Returns the largest key this map may currently hold.
+     * 
+     * @return the upper bound of the key range.
+     */
+    public int getRangeMaximumKey() {
+        return maximumKey;
     }
     
-    public V put(int key, V value) {
+    /**
+     * Returns the smallest key larger than {@code key}, or 
+     * {@code minimumKey - 1} of the key range if there is no such. If the key
+     * range starts at {@link Integer#MIN_VALUE}, the sentinel wraps around to
+     * {@link Integer#MAX_VALUE}, which is a valid key; use 
+     * {@link #findNextKey(int)} to tell them apart.
+     * 
+     * @param key the query key.
+     * @return the next key.
+     */
+    public int getNextIntKey(int key) {
+        return orLowSentinel(findNextKey(key));
+    }
+    
+    /**
+     * Returns the largest key smaller than {@code key}, or 
+     * {@code maximumKey + 1} of the key range if there is no such. If the key
+     * range ends at {@link Integer#MAX_VALUE}, the sentinel wraps around to 
+     * {@link Integer#MIN_VALUE}, which is a valid key; use 
+     * {@link #findPreviousKey(int)} to tell them apart.
+     * 
+     * @param key the query key.
+     * @return the previous key.
+     */
+    public int getPreviousIntKey(int key) {
+        return orHighSentinel(findPreviousKey(key));
+    }
+    
+    /**
+     * Returns the smallest key larger than {@code key}, or {@link #NO_KEY} if
+     * there is no such.
+     * 
+     * @param key the query key.
+     * @return the next key or {@link #NO_KEY}.
+     */
+    public long findNextKey(int key) {
         checkKey(key);
-        // Translate the key:
         key -= minimumKey;
-        V currentValue = table[key];
         
-        if (currentValue != null) {
-            // key is present in this map.
-            V oldValue = table[key];
-            table[key] = value == null ? NULL_VALUE : value;
-            return oldValue;
-        } else {
-            root.treeInsert(key);
-            table[key] = value != null ? value : NULL_VALUE;
-            size++;
-            return null;
+        if (root == null || !less(key, root.max)) {
+            return NO_KEY;
         }
+        
+        return treeSuccessor(key) + minimumKey;
     }
     
-    public V remove(int key) {
+    /**
+     * Returns the largest key smaller than {@code key}, or {@link #NO_KEY} if
+     * there is no such.
+     * 
+     * @param key the query key.
+     * @return the previous key or {@link #NO_KEY}.
+     */
+    public long findPreviousKey(int key) {
         checkKey(key);
-        // Translate the key:
         key -= minimumKey;
-        V value = table[key];
         
-        if (value != null) {
-            // key is in this map.
-            table[key] = null;
-            root.treeDelete(key);
-            size--;
-            return value == NULL_VALUE ? null : value;
-        } else {
-            return null;
+        if (root == null || !less(root.min, key)) {
+            return NO_KEY;
         }
+        
+        return treePredecessor(key) + minimumKey;
     }
     
-    public void clear() {
-        int key = root.min;
-        int nextKey;
+    /**
+     * Returns the smallest key not smaller than {@code key}, or 
+     * {@code minimumKey - 1} if there is no such. Unlike 
+     * {@link #getNextIntKey(int)}, accepts any integer. The sentinel wraps 
+     * around like the one of {@link #getNextIntKey(int)}; 
+     * {@link #findCeilingKey(int)} tells it apart from a key.
+     * 
+     * @param key the query key.
+     * @return the ceiling key.
+     */
+    public int ceilingKey(int key) {
+        return orLowSentinel(findCeilingKey(key));
+    }
+    
+    /**
+     * Returns the smallest key larger than {@code key}, or 
+     * {@code minimumKey - 1} if there is no such. Unlike 
+     * {@link #getNextIntKey(int)}, accepts any integer. The sentinel wraps 
+     * around like the one of {@link #getNextIntKey(int)}; 
+     * {@link #findHigherKey(int)} tells it apart from a key.
+     * 
+     * @param key the query key.
+     * @return the higher key.
+     */
+    public int higherKey(int key) {
+        return orLowSentinel(findHigherKey(key));
+    }
+    
+    /**
+     * Returns the largest key not larger than {@code key}, or 
+     * {@code maximumKey + 1} if there is no such. Unlike 
+     * {@link #getPreviousIntKey(int)}, accepts any integer. The sentinel 
+     * wraps around like the one of {@link #getPreviousIntKey(int)}; 
+     * {@link #findFloorKey(int)} tells it apart from a key.
+     * 
+     * @param key the query key.
+     * @return the floor key.
+     */
+    public int floorKey(int key) {
+        return orHighSentinel(findFloorKey(key));
+    }
+    
+    /**
+     * Returns the largest key smaller than {@code key}, or 
+     * {@code maximumKey + 1} if there is no such. Unlike 
+     * {@link #getPreviousIntKey(int)}, accepts any integer. The sentinel 
+     * wraps around like the one of {@link #getPreviousIntKey(int)}; 
+     * {@link #findLowerKey(int)} tells it apart from a key.
+     * 
+     * @param key the query key.
+     * @return the lower key.
+     */
+    public int lowerKey(int key) {
+        return orHighSentinel(findLowerKey(key));
+    }
+    
+    /**
+     * Returns the smallest key not smaller than {@code key}, or 
+     * {@link #NO_KEY} if there is no such. Accepts any integer.
+     * 
+     * @param key the query key.
+     * @return the ceiling key or {@link #NO_KEY}.
+     */
+    public long findCeilingKey(int key) {
+        if (root == null || key > maximumKey) {
+            return NO_KEY;
+        }
         
-        for (int i = 0; i != size; ++i) {
-            nextKey = root.getSuccessor(key);
-            root.treeDelete(key); // Remove key.
-            table[key] = null;    // Remove value.
-            key = nextKey;
+        if (key < minimumKey) {
+            return root.min + minimumKey;
         }
         
-        size = 0;
+        key -= minimumKey;
+        
+        if (less(root.max, key)) {
+            return NO_KEY;
+        }
+        
+        return treeCeiling(key) + minimumKey;
     }
     
     /**
-     * This inner interface specifies the API for key iterators.
+     * Returns the smallest key larger than {@code key}, or {@link #NO_KEY} if
+     * there is no such. Accepts any integer.
+     * 
+     * @param key the query key.
+     * @return the higher key or {@link #NO_KEY}.
      */
-    public interface KeyIterator {
+    public long findHigherKey(int key) {
+        if (root == null || key >= maximumKey) {
+            return NO_KEY;
+        }
         
-        /**
-         * Returns {@code true} only if there is more keys to iterate.
-         * 
-         * @return {@code true} if there is more keys to iterate.
-         */
-        public boolean hasNextKey();
+        if (key < minimumKey) {
+            return root.min + minimumKey;
+        }
         
-        /**
-         * Returns the next key in the sorted iteration order.
-         * 
-         * @return the next key.
-         */
-        public int nextKey();
+        key -= minimumKey;
         
-        /**
-         * Removes the entire key/value pair of the current key.
-         */
-        public void removeKey();
+        if (!less(key, root.max)) {
+            return NO_KEY;
+        }
+        
+        return treeSuccessor(key) + minimumKey;
     }
     
     /**
-     * Holds a mapping while iterating the data structure.
+     * Returns the largest key not larger than {@code key}, or {@link #NO_KEY}
+     * if there is no such. Accepts any integer.
      * 
-     * @param <V> the value type.
+     * @param key the query key.
+     * @return the floor key or {@link #NO_KEY}.
      */
-    public static final class KeyValueMapping<V> {
+    public long findFloorKey(int key) {
+        if (root == null || key < minimumKey) {
+            return NO_KEY;
+        }
         
-        public int key;
-        public V value;
+        if (key > maximumKey) {
+            return root.max + minimumKey;
+        }
         
-        @Override
-        public boolean equals(Object o) {
-            if (o == this) {
-                return true;
-            }
-            
-            if (o == null) {
-                return false;
-            }
-            
-            if (!getClass().equals(o.getClass())) {
-                return false;
-            }
-            
-            KeyValueMapping<V> other = (KeyValueMapping<V>) o;
-            return key == other.key && Objects.equals(value, other.value);
+        key -= minimumKey;
+        
+        if (less(key, root.min)) {
+            return NO_KEY;
         }
+        
+        return treeFloor(key) + minimumKey;
     }
     
     /**
-     * This inner interface specifies the API for the key/value iterators.
+     * Returns the largest key smaller than {@code key}, or {@link #NO_KEY} if
+     * there is no such. Accepts any integer.
      * 
-     * @param <V> the value type.
+     * @param key the query key.
+     * @return the lower key or {@link #NO_KEY}.
      */
-    public interface KeyValueIterator<V> {
+    public long findLowerKey(int key) {
+        if (root == null || key <= minimumKey) {
+            return NO_KEY;
+        }
         
-        /**
-         * Returns {@code true} only if there is more key/value pairs to 
-         * iterate.
-         * 
-         * @return {@code true} if there is more pairs to iterate.
-         */
-        public boolean hasNextKeyValuePair();
+        if (key > maximumKey) {
+            return root.max + minimumKey;
+        }
         
-        /**
-         * Loads the current key/value pair.
-         * 
-         * @param keyValueMapping the key/value pair where to store the data.
-         */
-        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping);
+        key -= minimumKey;
         
-        /**
-         * Removes the previously iterated key/value pair.
-         */
-        public void removeKeyValuePair();
+        if (!less(root.min, key)) {
+            return NO_KEY;
+        }
+        
+        return treePredecessor(key) + minimumKey;
     }
     
     /**
-     * Implements the key iterator that traverses the integers in order via the
-     * underlying van Emde Boas tree.
+     * Stores to {@code out[i]} the result of 
+     * {@code getNextIntKey(sortedQueries[i])} for each query. The queries must
+     * be sorted in ascending order. Each query starts its descent from the 
+     * deepest node on the descent path of the previous query that holds its 
+     * answer, so that the queries falling into the same or a nearby cluster 
+     * skip the upper levels of the tree.
+     * 
+     * @param sortedQueries the query keys in ascending order.
+     * @param out           the array receiving the next keys.
      */
-    public final class TreeKeyIterator implements KeyIterator {
-        
-        private int iterated;
-        private int lastReturned;
+    public void successors(int[] sortedQueries, int[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkSortedKeys(sortedQueries, out.length);
+        Finger finger = new Finger();
+        int i = 0;
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public boolean hasNextKey() {
-            return iterated < size;
+        for (; i < sortedQueries.length; ++i) {
+            int x = sortedQueries[i] - minimumKey;
+            
+            if (root == null || !less(x, root.max)) {
+                // So do all the remaining queries:
+                break;
+            }
+            
+            out[i] = finger.successor(x) + minimumKey;
         }
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public int nextKey() {
-            if (!hasNextKey()) {
-                throw new NoSuchElementException("Nothing to iterate left.");
-            }
+        Arrays.fill(out, i, sortedQueries.length, this.minimumKey - 1);
+    }
+    
+    /**
+     * Works like {@link #successors(int[], int[])}, but stores 
+     * {@link #NO_KEY} for the queries that have no next key, so that the 
+     * results are unambiguous over the full integer range.
+     * 
+     * @param sortedQueries the query keys in ascending order.
+     * @param out           the array receiving the next keys.
+     */
+    public void successors(int[] sortedQueries, long[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkSortedKeys(sortedQueries, out.length);
+        Finger finger = new Finger();
+        int i = 0;
+        
+        for (; i < sortedQueries.length; ++i) {
+            int x = sortedQueries[i] - minimumKey;
             
-            if (iterated == 0) {
-                lastReturned = getMinimumKey();
-                iterated++;
-                return lastReturned;
-            } else {
-                int next = getNextIntKey(lastReturned);
-                lastReturned = next;
-                iterated++;
-                return next;
+            if (root == null || !less(x, root.max)) {
+                break;
             }
+            
+            out[i] = finger.successor(x) + minimumKey;
         }
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public void removeKey() {
-            if (iterated == 0) {
-                throw new IllegalStateException(
-                        "No current key to remove yet.");
+        Arrays.fill(out, i, sortedQueries.length, NO_KEY);
+    }
+    
+    /**
+     * Stores to {@code out[i]} the result of 
+     * {@code getPreviousIntKey(sortedQueries[i])} for each query. The queries
+     * must be sorted in ascending order. They are answered from the last one
+     * backwards, each starting its descent from the deepest node on the 
+     * descent path of the previous query that holds its answer.
+     * 
+     * @param sortedQueries the query keys in ascending order.
+     * @param out           the array receiving the previous keys.
+     */
+    public void predecessors(int[] sortedQueries, int[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkSortedKeys(sortedQueries, out.length);
+        Finger finger = new Finger();
+        int i = sortedQueries.length - 1;
+        
+        for (; i >= 0; --i) {
+            int x = sortedQueries[i] - minimumKey;
+            
+            if (root == null || !less(root.min, x)) {
+                // So do all the remaining queries:
+                break;
             }
             
-            remove(lastReturned);
+            out[i] = finger.predecessor(x) + minimumKey;
         }
+        
+        Arrays.fill(out, 0, i + 1, this.maximumKey + 1);
     }
     
     /**
-     * Implements a key iterator that traverses directly the mapping table. This
-     * may provide a speed up over the {@link TreeKeyIterator} if the table is 
-     * densely populated.
+     * Works like {@link #predecessors(int[], int[])}, but stores 
+     * {@link #NO_KEY} for the queries that have no previous key, so that the
+     * results are unambiguous over the full integer range.
+     * 
+     * @param sortedQueries the query keys in ascending order.
+     * @param out           the array receiving the previous keys.
      */
-    public final class TableKeyIterator implements KeyIterator {
-
-        private int iterated;
-        private int currentIndex;
+    public void predecessors(int[] sortedQueries, long[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkSortedKeys(sortedQueries, out.length);
+        Finger finger = new Finger();
+        int i = sortedQueries.length - 1;
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public boolean hasNextKey() {
-            return iterated < size;
-        }
-
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public int nextKey() {
-            if (!hasNextKey()) {
-                throw new NoSuchElementException("Nothing to iterate left.");
+        for (; i >= 0; --i) {
+            int x = sortedQueries[i] - minimumKey;
+            
+            if (root == null || !less(root.min, x)) {
+                break;
             }
             
-            if (iterated == 0) {
-                currentIndex = getMinimumKey() - minimumKey;
-                iterated++;
-                return getMinimumKey();
-            } else {
-                for (currentIndex++; 
-                        table[currentIndex] == null; 
-                        currentIndex++) {}
-                
+            out[i] = finger.predecessor(x) + minimumKey;
+        }
+        
+        Arrays.fill(out, 0, i + 1, NO_KEY);
+    }
+    
+    /**
+     * Returns {@code true} only if this map contains no keys within 
+     * {@code [lo, hi]}.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return {@code true} if the range holds no keys.
+     */
+    public boolean isRangeEmpty(int lo, int hi) {
+        checkRange(lo, hi);
+        return treeFirstInRange(lo - minimumKey, hi - minimumKey) == -1L;
+    }
+    
+    /**
+     * Returns the smallest key within {@code [lo, hi]}, or 
+     * {@code maximumKey + 1} if the range holds no keys. The sentinel wraps 
+     * around like the one of {@link #getPreviousIntKey(int)}; 
+     * {@link #findFirstInRange(int, int)} tells it apart from a key.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return the smallest key in the range.
+     */
+    public int firstInRange(int lo, int hi) {
+        return orHighSentinel(findFirstInRange(lo, hi));
+    }
+    
+    /**
+     * Returns the largest key within {@code [lo, hi]}, or 
+     * {@code minimumKey - 1} if the range holds no keys. The sentinel wraps 
+     * around like the one of {@link #getNextIntKey(int)}; 
+     * {@link #findLastInRange(int, int)} tells it apart from a key.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return the largest key in the range.
+     */
+    public int lastInRange(int lo, int hi) {
+        return orLowSentinel(findLastInRange(lo, hi));
+    }
+    
+    /**
+     * Returns the smallest key within {@code [lo, hi]}, or {@link #NO_KEY} if
+     * the range holds no keys.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return the smallest key in the range or {@link #NO_KEY}.
+     */
+    public long findFirstInRange(int lo, int hi) {
+        checkRange(lo, hi);
+        long key = treeFirstInRange(lo - minimumKey, hi - minimumKey);
+        return key == -1L ? NO_KEY : (int) key + minimumKey;
+    }
+    
+    /**
+     * Returns the largest key within {@code [lo, hi]}, or {@link #NO_KEY} if 
+     * the range holds no keys.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return the largest key in the range or {@link #NO_KEY}.
+     */
+    public long findLastInRange(int lo, int hi) {
+        checkRange(lo, hi);
+        long key = treeLastInRange(lo - minimumKey, hi - minimumKey);
+        return key == -1L ? NO_KEY : (int) key + minimumKey;
+    }
+    
+    /**
+     * Feeds all the mappings whose keys are within {@code [lo, hi]} to 
+     * {@code consumer} in ascending key order. The traversal allocates 
+     * nothing and skips the clusters lying outside the range. The consumer 
+     * must not modify this map.
+     * 
+     * @param lo       the lower bound of the range.
+     * @param hi       the upper bound of the range.
+     * @param consumer the mapping consumer.
+     */
+    public void forEachInRange(int lo, 
+                               int hi, 
+                               KeyValueConsumer<? super V> consumer) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(consumer, "The input consumer is null.");
+        
+        if (root != null) {
+            treeForEach(root, 0, 0, lo - minimumKey, hi - minimumKey, consumer);
+        }
+    }
+    
+    /**
+     * Reduces all the mappings whose keys are within {@code [lo, hi]} in 
+     * parallel on the common {@link ForkJoinPool}. The range is split at the
+     * boundaries of the non-empty root clusters, found through the root 
+     * summary, until the pieces hold at most {@link #PARALLEL_GRAIN} 
+     * mappings. Each piece is reduced in ascending key order starting from
+     * {@code identity}, and the results of adjacent pieces are combined left
+     * to right, so that {@code combiner} need not be commutative. As with the
+     * three-argument {@code Stream.reduce}, {@code identity} must be an 
+     * identity of {@code combiner}, and the functions must not modify this 
+     * map. This map must not be modified during the reduction.
+     * 
+     * @param <R>         the result type.
+     * @param lo          the lower bound of the range.
+     * @param hi          the upper bound of the range.
+     * @param identity    the result of an empty piece.
+     * @param accumulator folds a mapping into the result of a piece.
+     * @param combiner    combines the results of two adjacent pieces.
+     * @return the reduced result.
+     */
+    public <R> R reduceRange(int lo, 
+                             int hi, 
+                             R identity, 
+                             KeyValueReducer<R, ? super V> accumulator,
+                             BinaryOperator<R> combiner) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(accumulator, "The accumulator is null.");
+        Objects.requireNonNull(combiner, "The combiner is null.");
+        
+        if (root == null) {
+            return identity;
+        }
+        
+        return new RangeReducer<>(lo - minimumKey, 
+                                  hi - minimumKey, 
+                                  identity, 
+                                  accumulator, 
+                                  combiner).invoke();
+    }
+    
+    /**
+     * Returns the sum of {@code valueFunction} over the values of all the 
+     * mappings whose keys are within {@code [lo, hi]}, computed in parallel 
+     * like {@link #reduceRange} but without boxing. The function receives the
+     * {@code null} values as well.
+     * 
+     * @param lo            the lower bound of the range.
+     * @param hi            the upper bound of the range.
+     * @param valueFunction maps a value to the number to add up.
+     * @return the sum, or zero if the range is empty.
+     */
+    public long sumValues(int lo, 
+                          int hi, 
+                          ToLongFunction<? super V> valueFunction) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(valueFunction, "The value function is null.");
+        
+        if (root == null) {
+            return 0L;
+        }
+        
+        return new RangeSummer(lo - minimumKey, 
+                               hi - minimumKey, 
+                               valueFunction).invoke();
+    }
+    
+    /**
+     * Returns all the keys of this map in ascending order.
+     * 
+     * @return the array of the keys.
+     */
+    public int[] toKeyArray() {
+        int[] keys = new int[size];
+        keysInto(keys, 0);
+        return keys;
+    }
+    
+    /**
+     * Returns all the keys within {@code [lo, hi]} in ascending order.
+     * 
+     * @param lo the lower bound of the range.
+     * @param hi the upper bound of the range.
+     * @return the array of the keys.
+     */
+    public int[] toKeyArray(int lo, int hi) {
+        checkRange(lo, hi);
+        int[] keys = new int[tableCountRange(lo - minimumKey, 
+                                             hi - minimumKey)];
+        copyKeys(lo, hi, keys, null, 0);
+        return keys;
+    }
+    
+    /**
+     * Writes all the keys of this map in ascending order to {@code dst} 
+     * starting from the index {@code off}. The keys are emitted by a single
+     * in-order walk of the tree.
+     * 
+     * @param dst the destination array.
+     * @param off the index of the first key in {@code dst}.
+     * @return the number of written keys.
+     */
+    public int keysInto(int[] dst, int off) {
+        Objects.requireNonNull(dst, "The destination array is null.");
+        checkRoom(dst.length, off, size);
+        return copyKeys(minimumKey, maximumKey, dst, null, off);
+    }
+    
+    /**
+     * Writes all the keys within {@code [lo, hi]} in ascending order to 
+     * {@code dst} starting from the index {@code off}. The keys are emitted 
+     * by a single in-order walk skipping the clusters outside the range.
+     * 
+     * @param lo  the lower bound of the range.
+     * @param hi  the upper bound of the range.
+     * @param dst the destination array.
+     * @param off the index of the first key in {@code dst}.
+     * @return the number of written keys.
+     */
+    public int keysInto(int lo, int hi, int[] dst, int off) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(dst, "The destination array is null.");
+        checkRoom(dst.length, 
+                  off, 
+                  tableCountRange(lo - minimumKey, hi - minimumKey));
+        return copyKeys(lo, hi, dst, null, off);
+    }
+    
+    /**
+     * Puts all the keys of this map in ascending order to {@code dst}, 
+     * advancing its position.
+     * 
+     * @param dst the destination buffer.
+     * @return the number of written keys.
+     */
+    public int keysInto(IntBuffer dst) {
+        return keysInto(minimumKey, maximumKey, dst);
+    }
+    
+    /**
+     * Puts all the keys within {@code [lo, hi]} in ascending order to 
+     * {@code dst}, advancing its position. The keys are written directly to
+     * the backing array of a heap buffer, and staged in a temporary array 
+     * otherwise.
+     * 
+     * @param lo  the lower bound of the range.
+     * @param hi  the upper bound of the range.
+     * @param dst the destination buffer.
+     * @return the number of written keys.
+     */
+    public int keysInto(int lo, int hi, IntBuffer dst) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(dst, "The destination buffer is null.");
+        int count = lo == minimumKey && hi == maximumKey ? 
+                    size : 
+                    tableCountRange(lo - minimumKey, hi - minimumKey);
+        checkRoom(dst.remaining(), 0, count);
+        
+        if (dst.hasArray()) {
+            copyKeys(lo, 
+                     hi, 
+                     dst.array(), 
+                     null, 
+                     dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + count);
+        } else {
+            int[] keys = new int[count];
+            copyKeys(lo, hi, keys, null, 0);
+            dst.put(keys);
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Writes all the mappings of this map in ascending key order to 
+     * {@code keys} and {@code values}, so that {@code values[i]} is the value
+     * of {@code keys[i]}.
+     * 
+     * @param keys   the array receiving the keys.
+     * @param values the array receiving the values.
+     * @return the number of written mappings.
+     */
+    public int entriesInto(int[] keys, V[] values) {
+        return entriesInto(minimumKey, maximumKey, keys, values);
+    }
+    
+    /**
+     * Writes all the mappings whose keys are within {@code [lo, hi]} in 
+     * ascending key order to {@code keys} and {@code values}, so that 
+     * {@code values[i]} is the value of {@code keys[i]}.
+     * 
+     * @param lo     the lower bound of the range.
+     * @param hi     the upper bound of the range.
+     * @param keys   the array receiving the keys.
+     * @param values the array receiving the values.
+     * @return the number of written mappings.
+     */
+    public int entriesInto(int lo, int hi, int[] keys, V[] values) {
+        checkRange(lo, hi);
+        Objects.requireNonNull(keys, "The key array is null.");
+        Objects.requireNonNull(values, "The value array is null.");
+        int count = lo == minimumKey && hi == maximumKey ? 
+                    size : 
+                    tableCountRange(lo - minimumKey, hi - minimumKey);
+        checkRoom(Math.min(keys.length, values.length), 0, count);
+        return copyKeys(lo, hi, keys, values, 0);
+    }
+    
+    public boolean containsKey(int key) {
+        checkKey(key);
+        return tableGet(key - minimumKey) != null;
+    }
+    
+    public V get(int key) {
+        checkKey(key);
+        V value = tableGet(key - minimumKey);
+        return (value == null || value == NULL_VALUE) ? null : value;
+    }
+    
+    /**
+     * Stores the value of each key {@code keys[i]} to {@code out[i]}, or 
+     * {@code null} if the key is not present. All the keys are validated 
+     * before the lookups, which are then done four at a time so that the 
+     * independent table accesses may overlap.
+     * 
+     * @param keys the keys to look up.
+     * @param out  the array receiving the values.
+     * @return the number of the present keys.
+     */
+    public int getAll(int[] keys, V[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkKeys(keys, out.length);
+        int length = keys.length;
+        int found = 0;
+        int i = 0;
+        
+        for (; i + 4 <= length; i += 4) {
+            V value0 = tableGet(keys[i] - minimumKey);
+            V value1 = tableGet(keys[i + 1] - minimumKey);
+            V value2 = tableGet(keys[i + 2] - minimumKey);
+            V value3 = tableGet(keys[i + 3] - minimumKey);
+            found += (value0 != null ? 1 : 0) + (value1 != null ? 1 : 0) +
+                     (value2 != null ? 1 : 0) + (value3 != null ? 1 : 0);
+            out[i] = value0 == NULL_VALUE ? null : value0;
+            out[i + 1] = value1 == NULL_VALUE ? null : value1;
+            out[i + 2] = value2 == NULL_VALUE ? null : value2;
+            out[i + 3] = value3 == NULL_VALUE ? null : value3;
+        }
+        
+        for (; i < length; ++i) {
+            V value = tableGet(keys[i] - minimumKey);
+            
+            if (value != null) {
+                found++;
+            }
+            
+            out[i] = value == NULL_VALUE ? null : value;
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Stores to {@code out[i]} whether the key {@code keys[i]} is present. 
+     * All the keys are validated before the lookups.
+     * 
+     * @param keys the keys to look up.
+     * @param out  the array receiving the results.
+     * @return the number of the present keys.
+     */
+    public int containsAll(int[] keys, boolean[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkKeys(keys, out.length);
+        int found = 0;
+        
+        for (int i = 0; i != keys.length; ++i) {
+            boolean present = tableGet(keys[i] - minimumKey) != null;
+            out[i] = present;
+            found += present ? 1 : 0;
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Sets the bit {@code i} of the bitmask, that is the bit 
+     * {@code i % 64} of {@code bitmask[i / 64]}, if the key {@code keys[i]} 
+     * is present, and clears it otherwise. All the keys are validated before 
+     * the lookups, which are then done four at a time so that the 
+     * independent table accesses may overlap. The bits of the last word 
+     * beyond the number of the keys are cleared.
+     * 
+     * @param keys    the keys to look up.
+     * @param bitmask the bitmask receiving the results.
+     * @return the number of the present keys.
+     */
+    public int containsAll(int[] keys, long[] bitmask) {
+        Objects.requireNonNull(bitmask, "The bitmask is null.");
+        checkKeys(keys, (long) bitmask.length * Long.SIZE);
+        int length = keys.length;
+        int found = 0;
+        
+        for (int wordStart = 0; wordStart < length; wordStart += Long.SIZE) {
+            int wordEnd = Math.min(length, wordStart + Long.SIZE);
+            long word = 0L;
+            int i = wordStart;
+            
+            for (; i + 4 <= wordEnd; i += 4) {
+                V value0 = tableGet(keys[i] - minimumKey);
+                V value1 = tableGet(keys[i + 1] - minimumKey);
+                V value2 = tableGet(keys[i + 2] - minimumKey);
+                V value3 = tableGet(keys[i + 3] - minimumKey);
+                word |= (value0 != null ? 1L : 0L) << i | 
+                        (value1 != null ? 2L : 0L) << i |
+                        (value2 != null ? 4L : 0L) << i |
+                        (value3 != null ? 8L : 0L) << i;
+            }
+            
+            for (; i < wordEnd; ++i) {
+                if (tableGet(keys[i] - minimumKey) != null) {
+                    word |= 1L << i;
+                }
+            }
+            
+            bitmask[wordStart / Long.SIZE] = word;
+            found += Long.bitCount(word);
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Sets whether this map grows its key range to fit the keys outside of it
+     * passed to {@link #put(int, java.lang.Object)}. The other operations 
+     * keep rejecting such keys. See {@link #growToInclude(int)}.
+     * 
+     * @param autoGrowing whether to grow the key range on demand.
+     */
+    public void setAutoGrowing(boolean autoGrowing) {
+        this.autoGrowing = autoGrowing;
+    }
+    
+    public boolean isAutoGrowing() {
+        return autoGrowing;
+    }
+    
+    /**
+     * Grows the key range of this map so that it includes {@code key}. If the
+     * key lies past the requested key range but within the power-of-two 
+     * universe already allocated, only the bound moves. Otherwise the 
+     * universe grows by adding a new root level, under which the current root
+     * becomes one of the clusters as is: no node or value is copied, and the 
+     * value pages are moved by pointer. Each new level multiplies the 
+     * universe size by up to its current size, so that a growing map stays 
+     * about as shallow as one allocated with the final key range.
+     * <p>
+     * A universe of all the integers must start at 
+     * {@link Integer#MIN_VALUE}. If the current universe cannot become one of
+     * its clusters because its start is not aligned to its size, or if it 
+     * cannot grow downwards any more without reaching that size, the map is 
+     * rebuilt once with the universe of all the integers. Thus any 
+     * {@code int} key may be included.
+     * 
+     * @param key the key to include.
+     */
+    public void growToInclude(int key) {
+        while (key < minimumKey || key > maximumKey) {
+            long universeSize = 1L << universeShift;
+            long universeEnd = (long) minimumKey + universeSize - 1;
+            
+            if (key > maximumKey && key <= universeEnd) {
+                loseCheckpoint();
+                maximumKey = (int) Math.min(universeEnd, Integer.MAX_VALUE);
+                return;
+            }
+            
+            int maximumGrowthShift = Math.min(MAXIMUM_FANOUT_SHIFT, 
+                                              Integer.SIZE - universeShift);
+            
+            // The number of universes of the current size to prepend, at 
+            // least as many as needed to reach the key:
+            long prepend = key < minimumKey ? 
+                    ((long) minimumKey - key + universeSize - 1) >>> 
+                    universeShift : 
+                    0L;
+            long span = key < minimumKey ? 
+                    prepend + 1 : 
+                    (((long) key - minimumKey) >>> universeShift) + 1;
+            int spanShift = Long.SIZE - Long.numberOfLeadingZeros(span - 1);
+            int growthShift = Math.min(Math.max(Math.min(universeShift, 
+                                                         maximumGrowthShift),
+                                                spanShift),
+                                       maximumGrowthShift);
+            long offset = (long) minimumKey - Integer.MIN_VALUE;
+            
+            if (universeShift + growthShift == Integer.SIZE) {
+                // The universe of all the integers starts at the smallest 
+                // one:
+                if ((offset & (universeSize - 1)) != 0L) {
+                    growToAllIntegers();
+                    return;
+                }
+                
+                prepend = offset >>> universeShift;
+            } else {
+                // Rather than letting the new universe reach past the largest
+                // integer, prepend more to it, as far as the smallest integer
+                // allows:
+                long overflow = (long) minimumKey + 
+                                (universeSize << growthShift) - 1 - 
+                                Integer.MAX_VALUE;
+                
+                if (overflow > 0L) {
+                    prepend = Math.max(prepend, 
+                                       (overflow + universeSize - 1) >>> 
+                                       universeShift);
+                }
+                
+                prepend = Math.min(prepend, (1L << growthShift) - 1);
+                prepend = Math.min(prepend, offset >>> universeShift);
+                
+                if (key < minimumKey && prepend == 0L) {
+                    growToAllIntegers();
+                    return;
+                }
+            }
+            
+            long newMinimumKey = (long) minimumKey - (prepend << universeShift);
+            loseCheckpoint();
+            addRootLevel(growthShift, (int) prepend);
+            minimumKey = (int) newMinimumKey;
+            maximumKey = (int) Math.min(newMinimumKey + 
+                                        (1L << universeShift) - 1,
+                                        Integer.MAX_VALUE);
+        }
+    }
+    
+    /**
+     * Grows the universe to all the integers, starting from 
+     * {@link Integer#MIN_VALUE}. The root levels are added over an emptied 
+     * tree, and the mappings are appended back in ascending key order.
+     */
+    private void growToAllIntegers() {
+        int[] keys = new int[size];
+        V[] values = (V[]) new Object[size];
+        int count = entriesInto(keys, values);
+        loseCheckpoint();
+        clear();
+        
+        while (universeShift < Integer.SIZE) {
+            int growthShift = Math.min(Math.max(universeShift, 1),
+                                       Math.min(Integer.SIZE - universeShift,
+                                                MAXIMUM_FANOUT_SHIFT));
+            addRootLevel(growthShift, 0);
+        }
+        
+        minimumKey = Integer.MIN_VALUE;
+        maximumKey = Integer.MAX_VALUE;
+        appendSorted(keys, values, count);
+    }
+    
+    public V put(int key, V value) {
+        if (autoGrowing) {
+            growToInclude(key);
+        }
+        
+        checkKey(key);
+        // Translate the key:
+        key -= minimumKey;
+        V currentValue = tableGet(key);
+        
+        if (currentValue != null) {
+            // key is present in this map.
+            tableSet(key, value == null ? (V) NULL_VALUE : value);
+            return currentValue == NULL_VALUE ? null : currentValue;
+        } else {
+            if (root == null) {
+                root = new VEBTree(key, leafLevel == 0);
+            } else {
+                treeInsert(root, 0, key);
+            }
+            
+            tableSet(key, value != null ? value : (V) NULL_VALUE);
+            size++;
+            modCount++;
+            return null;
+        }
+    }
+    
+    /**
+     * Appends the mappings {@code sortedKeys[i] -> values[i]} to this map. 
+     * The keys must be strictly ascending and larger than all the keys 
+     * already present, so that each one is linked in below the deepest node 
+     * on the path of the previous one that covers it, instead of descending 
+     * from the root. The arguments are validated before this map is 
+     * modified.
+     * 
+     * @param sortedKeys the keys in strictly ascending order.
+     * @param values     the values of the keys.
+     */
+    public void bulkLoad(int[] sortedKeys, V[] values) {
+        checkBulkLoad(sortedKeys, values);
+        
+        if (sortedKeys.length != 0) {
+            appendSorted(sortedKeys, values, sortedKeys.length);
+        }
+    }
+    
+    /**
+     * Works like {@link #bulkLoad(int[], java.lang.Object[])}, but builds the
+     * subtrees of the root clusters in parallel on the common 
+     * {@link ForkJoinPool}. The keys are partitioned at the root cluster 
+     * boundaries, so that no two tasks share a node or a value page; the 
+     * root summary is assembled once all the subtrees are built. The keys 
+     * falling into the root cluster of the current maximum key are appended
+     * sequentially.
+     * 
+     * @param sortedKeys the keys in strictly ascending order.
+     * @param values     the values of the keys.
+     */
+    public void parallelBulkLoad(int[] sortedKeys, V[] values) {
+        checkBulkLoad(sortedKeys, values);
+        int count = sortedKeys.length;
+        
+        if (count == 0) {
+            return;
+        }
+        
+        if (leafLevel == 0 || count <= PARALLEL_GRAIN) {
+            appendSorted(sortedKeys, values, count);
+            return;
+        }
+        
+        // The root minimum and the keys sharing a root cluster with the 
+        // current maximum key go the sequential way:
+        int shift = levelShift[0];
+        int boundaryHigh = (root == null ? 
+                            sortedKeys[0] - minimumKey : 
+                            root.max) >>> shift;
+        int first = runEnd(sortedKeys, 
+                           0, 
+                           count, 
+                           (long) minimumKey + 
+                           ((long) (boundaryHigh + 1) << shift) - 1);
+        
+        if (first != 0) {
+            appendSorted(sortedKeys, values, first);
+        }
+        
+        if (first == count) {
+            return;
+        }
+        
+        if (root.summary == null) {
+            root.summary = new long[levelSummaryLength[0]];
+            root.cluster = new VEBTree[levelFanout[0]];
+        }
+        
+        // Several root clusters may share a directory, so the directories 
+        // are allocated and counted before the tasks start:
+        for (int i = first; i < count;) {
+            int directoryIndex = 
+                    (sortedKeys[i] - minimumKey) >>> directoryShift;
+            int end = runEnd(sortedKeys, 
+                             i, 
+                             count, 
+                             (long) minimumKey + 
+                             ((long) (directoryIndex + 1) << directoryShift) - 
+                             1);
+            
+            if (directories[directoryIndex] == null) {
+                directories[directoryIndex] = 
+                        (V[][]) new Object[directoryMask + 1][];
+                pageSizes[directoryIndex] = new int[directoryMask + 1];
+            }
+            
+            directorySizes[directoryIndex] += end - i;
+            i = end;
+        }
+        
+        new ClusterLoader(sortedKeys, values, first, count).invoke();
+        int firstX = sortedKeys[first] - minimumKey;
+        int lastX = sortedKeys[count - 1] - minimumKey;
+        
+        for (int high = firstX >>> shift; high <= lastX >>> shift; ++high) {
+            if (root.cluster[high] != null) {
+                summarySet(root.summary, levelSummaryOffsets[0], high);
+            }
+        }
+        
+        root.max = lastX;
+        
+        if (dirtyPages != null) {
+            markDirty(firstX, lastX);
+        }
+        
+        size += count - first;
+        modCount++;
+    }
+    
+    public V remove(int key) {
+        checkKey(key);
+        // Translate the key:
+        key -= minimumKey;
+        V value = tableGet(key);
+        
+        if (value != null) {
+            // key is in this map.
+            tableClear(key);
+            
+            if (size == 1) {
+                root = null;
+            } else {
+                treeDelete(root, 0, key);
+            }
+            
+            size--;
+            modCount++;
+            return value == NULL_VALUE ? null : value;
+        } else {
+            return null;
+        }
+    }
+    
+    /**
+     * Removes all the mappings whose keys are within {@code [lo, hi]}. The 
+     * tree clusters and the value table pages that lie entirely within the
+     * range are released as a whole.
+     * 
+     * @param lo the smallest key to remove.
+     * @param hi the largest key to remove.
+     * @return the number of removed mappings.
+     */
+    public int removeRange(int lo, int hi) {
+        checkRange(lo, hi);
+        
+        if (root == null) {
+            return 0;
+        }
+        
+        lo -= minimumKey;
+        hi -= minimumKey;
+        root = treeRemoveRange(root, 0, lo, hi);
+        int removed = tableClearRange(lo, hi);
+        size -= removed;
+        modCount++;
+        return removed;
+    }
+    
+    /**
+     * Drops all the mappings whose keys are smaller than 
+     * {@code newMinimumKey} and slides the key range of this map upwards, 
+     * keeping its length. The range moves by the largest multiple of the 
+     * width of a root cluster not exceeding the distance to 
+     * {@code newMinimumKey}, so that the surviving root clusters and value 
+     * pages are only moved down by pointer and the slots freed at the low end
+     * are reused at the high end. No node or value is copied. The range views
+     * keep their absolute bounds, and cover only the part of them within the
+     * new key range.
+     * 
+     * @param newMinimumKey the smallest key to keep.
+     * @return the new smallest key of the range of this map.
+     */
+    public int slideTo(int newMinimumKey) {
+        if (newMinimumKey < minimumKey) {
+            throw new IllegalArgumentException(
+                    "The new minimum key (" + newMinimumKey + ") is " +
+                    "smaller than the current one (" + minimumKey + ").");
+        }
+        
+        int granularityShift = leafLevel == 0 ? universeShift : levelShift[0];
+        long shift = (((long) newMinimumKey - minimumKey) >>> 
+                      granularityShift) << granularityShift;
+        
+        if ((long) maximumKey + shift > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(
+                    "Cannot slide the key range past the largest integer.");
+        }
+        
+        if (newMinimumKey > minimumKey) {
+            removeRange(minimumKey, Math.min(newMinimumKey - 1, maximumKey));
+        }
+        
+        if (shift == 0L) {
+            return minimumKey;
+        }
+        
+        loseCheckpoint();
+        
+        if (root != null) {
+            // All the remaining keys lie at or above the shift:
+            int clusterShift = (int) (shift >>> granularityShift);
+            int fanout = levelFanout[0];
+            root.min -= (int) shift;
+            root.max -= (int) shift;
+            
+            if (root.summary != null) {
+                System.arraycopy(root.cluster, 
+                                 clusterShift, 
+                                 root.cluster, 
+                                 0, 
+                                 fanout - clusterShift);
+                Arrays.fill(root.cluster, fanout - clusterShift, fanout, null);
+                
+                if (summaryShiftDown(root.summary, 
+                                     levelSummaryOffsets[0], 
+                                     clusterShift)) {
+                    root.summary = null;
+                    root.cluster = null;
+                }
+            }
+            
+            tableShiftDown((int) (shift >>> pageShift));
+        }
+        
+        minimumKey += (int) shift;
+        maximumKey += (int) shift;
+        modCount++;
+        return minimumKey;
+    }
+    
+    /**
+     * Removes all the mappings whose keys are not present in {@code other}. 
+     * The two maps must have the same key range and split policy. The trees 
+     * are walked together so that the clusters missing from {@code other} are
+     * dropped as a whole, and the leaves are intersected a word at a time.
+     * 
+     * @param other the map whose keys to retain.
+     * @return the number of removed mappings.
+     */
+    public int retainAll(VanEmdeBoasTreeIntMap<?> other) {
+        checkSameLayout(other);
+        
+        if (other == this || root == null) {
+            return 0;
+        }
+        
+        int sizeBefore = size;
+        
+        if (other.root == null) {
+            clear();
+        } else {
+            root = treeRetainAll(root, other.root, 0, 0);
+            modCount++;
+        }
+        
+        return sizeBefore - size;
+    }
+    
+    /**
+     * Copies all the mappings of {@code other} whose keys are not present in 
+     * this map. The values of the keys present in both maps are kept. The two
+     * maps must have the same key range and split policy. The clusters 
+     * missing from this map are copied as a whole, and the leaves are merged
+     * a word at a time.
+     * 
+     * @param other the map whose mappings to add.
+     * @return the number of added mappings.
+     */
+    public int addAll(VanEmdeBoasTreeIntMap<? extends V> other) {
+        checkSameLayout(other);
+        
+        if (other == this || other.root == null) {
+            return 0;
+        }
+        
+        int sizeBefore = size;
+        
+        if (root == null) {
+            root = copySubtree(other, other.root, 0, 0);
+        } else {
+            treeAddAll(root, other.root, 0, 0, other);
+        }
+        
+        modCount++;
+        return size - sizeBefore;
+    }
+    
+    /**
+     * Removes all the mappings whose keys are present in {@code other}. The 
+     * two maps must have the same key range and split policy. Only the 
+     * clusters present in both trees are visited, and the leaves are 
+     * subtracted a word at a time.
+     * 
+     * @param other the map whose keys to remove.
+     * @return the number of removed mappings.
+     */
+    public int removeAll(VanEmdeBoasTreeIntMap<?> other) {
+        checkSameLayout(other);
+        
+        if (root == null || other.root == null) {
+            return 0;
+        }
+        
+        int sizeBefore = size;
+        
+        if (other == this) {
+            clear();
+        } else {
+            root = treeRemoveAll(root, other.root, 0, 0);
+            modCount++;
+        }
+        
+        return sizeBefore - size;
+    }
+    
+    /**
+     * Returns the number of keys present both in this map and in 
+     * {@code other}. The two maps must have the same key range and split 
+     * policy. Only the clusters present in both trees are visited, and the 
+     * leaves are intersected a word at a time.
+     * 
+     * @param other the other map.
+     * @return the size of the key set intersection.
+     */
+    public int intersectionSize(VanEmdeBoasTreeIntMap<?> other) {
+        checkSameLayout(other);
+        
+        if (other == this) {
+            return size;
+        }
+        
+        if (root == null || other.root == null) {
+            return 0;
+        }
+        
+        return treeIntersectionSize(root, other.root, 0);
+    }
+    
+    /**
+     * Moves all the mappings whose keys are not smaller than {@code key} to a
+     * new map with the same key range and split policy. The clusters and the 
+     * value table pages lying entirely above {@code key} are handed over as a
+     * whole, so that only the nodes on the path to {@code key} are split.
+     * 
+     * @param key the smallest key of the upper part.
+     * @return the map holding the upper part.
+     */
+    public VanEmdeBoasTreeIntMap<V> splitAt(int key) {
+        checkKey(key);
+        VanEmdeBoasTreeIntMap<V> upper = new VanEmdeBoasTreeIntMap<>(this);
+        int x = key - minimumKey;
+        
+        if (root == null || less(root.max, x)) {
+            return upper;
+        }
+        
+        if (less(root.min, x)) {
+            upper.root = treeSplit(root, 0, x);
+        } else {
+            upper.root = root;
+            root = null;
+        }
+        
+        if (dirtyPages != null) {
+            markDirty(x, -1);
+        }
+        
+        int moved = tableSplit(x, upper);
+        upper.size = moved;
+        size -= moved;
+        modCount++;
+        return upper;
+    }
+    
+    /**
+     * Moves all the mappings of {@code other} to this map, leaving 
+     * {@code other} empty. The two maps must have the same key range and 
+     * split policy, and all the keys of one of them must be smaller than all
+     * the keys of the other. The clusters and the value table pages are 
+     * handed over as a whole, so that only the nodes where the two key sets 
+     * meet are merged.
+     * 
+     * @param other the map whose mappings to move.
+     */
+    public void join(VanEmdeBoasTreeIntMap<V> other) {
+        checkSameLayout(other);
+        
+        if (other.root == null) {
+            return;
+        }
+        
+        if (root == null) {
+            root = other.root;
+        } else if (less(root.max, other.root.min)) {
+            treeJoin(root, other.root, 0);
+        } else if (less(other.root.max, root.min)) {
+            treeJoin(other.root, root, 0);
+            root = other.root;
+        } else {
+            throw new IllegalArgumentException(
+                    "The key ranges of the maps overlap.");
+        }
+        
+        if (dirtyPages != null) {
+            markDirty(other.root.min, other.root.max);
+        }
+        
+        if (other.dirtyPages != null) {
+            other.markDirty(other.root.min, other.root.max);
+        }
+        
+        tableJoin(other);
+        size += other.size;
+        other.root = null;
+        other.size = 0;
+        modCount++;
+        other.modCount++;
+    }
+    
+    /**
+     * Writes this map to {@code output} in ascending key order. The stream 
+     * starts with the key range and the number of mappings, followed by 
+     * chunks of up to {@value #CHUNK_LENGTH} mappings, each framed by its 
+     * number of mappings and its length in bytes. Within a chunk, the keys 
+     * come first as variable-length gaps to the previous key, followed by 
+     * the values as encoded by {@code codec}. Only one chunk is buffered at a
+     * time. The output is flushed but not closed.
+     * 
+     * @param output the output stream.
+     * @param codec  the value codec.
+     * @throws IOException if the output or the codec fails.
+     */
+    public void writeTo(OutputStream output, ValueCodec<? super V> codec) 
+    throws IOException {
+        Objects.requireNonNull(output, "The output stream is null.");
+        Objects.requireNonNull(codec, "The value codec is null.");
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(STREAM_MAGIC);
+        dataOutput.writeInt(minimumKey);
+        dataOutput.writeInt(maximumKey);
+        dataOutput.writeInt(size);
+        ChunkWriter<V> chunkWriter = 
+                new ChunkWriter<>(dataOutput, codec, minimumKey);
+        
+        try {
+            forEachInRange(minimumKey, maximumKey, chunkWriter);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        
+        chunkWriter.flush();
+        // The empty chunk marks the end of the stream:
+        writeVarLong(dataOutput, 0L);
+        dataOutput.flush();
+    }
+    
+    /**
+     * Writes this map to {@code channel}. See 
+     * {@link #writeTo(OutputStream, ValueCodec)}.
+     * 
+     * @param channel the output channel.
+     * @param codec   the value codec.
+     * @throws IOException if the channel or the codec fails.
+     */
+    public void writeTo(WritableByteChannel channel, 
+                        ValueCodec<? super V> codec) throws IOException {
+        Objects.requireNonNull(channel, "The output channel is null.");
+        writeTo(Channels.newOutputStream(channel), codec);
+    }
+    
+    /**
+     * Reads a map written by {@link #writeTo(OutputStream, ValueCodec)} from
+     * {@code input}. The chunks are decoded one at a time and fed to 
+     * {@link #bulkLoad(int[], Object[])}. The returned map uses the default 
+     * split policy. Exactly the bytes of the map are consumed from 
+     * {@code input}, which is not closed.
+     * 
+     * @param <V>   the value type.
+     * @param input the input stream.
+     * @param codec the value codec.
+     * @return the map read.
+     * @throws IOException if the input or the codec fails, or the stream is 
+     *                     corrupt.
+     */
+    public static <V> VanEmdeBoasTreeIntMap<V> 
+        readFrom(InputStream input, ValueCodec<? extends V> codec) 
+        throws IOException {
+        Objects.requireNonNull(input, "The input stream is null.");
+        Objects.requireNonNull(codec, "The value codec is null.");
+        DataInputStream dataInput = new DataInputStream(input);
+        
+        if (dataInput.readInt() != STREAM_MAGIC) {
+            throw new IOException("The stream does not hold a map.");
+        }
+        
+        int minimumKey = dataInput.readInt();
+        int maximumKey = dataInput.readInt();
+        int size = dataInput.readInt();
+        
+        if (minimumKey > maximumKey || size < 0) {
+            throw new IOException("The stream header is corrupt.");
+        }
+        
+        VanEmdeBoasTreeIntMap<V> map = 
+                new VanEmdeBoasTreeIntMap<>(minimumKey, maximumKey);
+        new ChunkReader<V>(dataInput, codec).read(map, 
+                                                  (long) minimumKey - 1, 
+                                                  maximumKey, 
+                                                  true);
+        
+        if (map.size != size) {
+            throw new IOException(
+                    "The stream holds " + map.size + " mappings instead of " +
+                    size + ".");
+        }
+        
+        return map;
+    }
+    
+    /**
+     * Reads a map written by 
+     * {@link #writeTo(WritableByteChannel, ValueCodec)} from 
+     * {@code channel}. See {@link #readFrom(InputStream, ValueCodec)}.
+     * 
+     * @param <V>     the value type.
+     * @param channel the input channel.
+     * @param codec   the value codec.
+     * @return the map read.
+     * @throws IOException if the channel or the codec fails, or the stream is
+     *                     corrupt.
+     */
+    public static <V> VanEmdeBoasTreeIntMap<V> 
+        readFrom(ReadableByteChannel channel, ValueCodec<? extends V> codec)
+        throws IOException {
+        Objects.requireNonNull(channel, "The input channel is null.");
+        return readFrom(Channels.newInputStream(channel), codec);
+    }
+    
+    /**
+     * Marks a checkpoint: from now on, the value pages modified are tracked,
+     * so that {@link #writeDelta(OutputStream, ValueCodec)} may write out 
+     * only the mappings changed since then. The checkpoint usually coincides
+     * with writing a full snapshot by 
+     * {@link #writeTo(OutputStream, ValueCodec)}. Tracking costs a bit per 
+     * value page.
+     */
+    public void markCheckpoint() {
+        long pages = 1L << (universeShift - pageShift);
+        dirtyPages = new long[(int) Math.max(1L, pages >>> WORD_SHIFT)];
+        checkpointLost = false;
+    }
+    
+    /**
+     * Writes the changes made to this map since the last checkpoint to 
+     * {@code output}, and marks a new checkpoint. The delta consists of the 
+     * runs of the value pages modified, each with all the mappings currently
+     * in its key range, encoded in chunks as by 
+     * {@link #writeTo(OutputStream, ValueCodec)}. Applying the delta by 
+     * {@link #readDelta(InputStream, ValueCodec)} to the state of the last 
+     * checkpoint replaces each run with its mappings. The output is flushed 
+     * but not closed.
+     * 
+     * @param output the output stream.
+     * @param codec  the value codec.
+     * @throws IOException           if the output or the codec fails.
+     * @throws IllegalStateException if no checkpoint was marked, or the key
+     *                               range changed since the last one.
+     */
+    public void writeDelta(OutputStream output, ValueCodec<? super V> codec)
+    throws IOException {
+        Objects.requireNonNull(output, "The output stream is null.");
+        Objects.requireNonNull(codec, "The value codec is null.");
+        
+        if (dirtyPages == null) {
+            throw new IllegalStateException(
+                    checkpointLost ? 
+                    "The key range changed since the last checkpoint." :
+                    "No checkpoint has been marked.");
+        }
+        
+        DataOutputStream dataOutput = new DataOutputStream(output);
+        dataOutput.writeInt(DELTA_MAGIC);
+        dataOutput.writeInt(minimumKey);
+        dataOutput.writeInt(maximumKey);
+        dataOutput.writeByte(pageShift);
+        long pages = 1L << (universeShift - pageShift);
+        long previousPage = 0L;
+        long page = nextDirtyPage(0L, pages);
+        
+        while (page < pages) {
+            long end = nextCleanPage(page, pages);
+            writeVarLong(dataOutput, end - page);
+            writeVarLong(dataOutput, page - previousPage);
+            long lo = (long) minimumKey + (page << pageShift);
+            long hi = Math.min((long) minimumKey + (end << pageShift) - 1, 
+                               maximumKey);
+            ChunkWriter<V> chunkWriter = 
+                    new ChunkWriter<>(dataOutput, codec, (int) lo);
+            
+            try {
+                forEachInRange((int) lo, (int) hi, chunkWriter);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            
+            chunkWriter.flush();
+            writeVarLong(dataOutput, 0L);
+            previousPage = end;
+            page = nextDirtyPage(end, pages);
+        }
+        
+        // The empty run ends the delta, and the size lets the reader verify
+        // that the delta was applied to the right state:
+        writeVarLong(dataOutput, 0L);
+        dataOutput.writeInt(size);
+        dataOutput.flush();
+        Arrays.fill(dirtyPages, 0L);
+    }
+    
+    /**
+     * Writes the changes made to this map since the last checkpoint to 
+     * {@code channel}. See {@link #writeDelta(OutputStream, ValueCodec)}.
+     * 
+     * @param channel the output channel.
+     * @param codec   the value codec.
+     * @throws IOException if the channel or the codec fails.
+     */
+    public void writeDelta(WritableByteChannel channel, 
+                           ValueCodec<? super V> codec) throws IOException {
+        Objects.requireNonNull(channel, "The output channel is null.");
+        writeDelta(Channels.newOutputStream(channel), codec);
+    }
+    
+    /**
+     * Applies a delta written by 
+     * {@link #writeDelta(OutputStream, ValueCodec)} to this map, which must 
+     * be in the state of the checkpoint the delta starts from, such as a map
+     * read from the snapshot taken at that checkpoint with the earlier deltas
+     * applied in order. Exactly the bytes of the delta are consumed from 
+     * {@code input}, which is not closed.
+     * 
+     * @param input the input stream.
+     * @param codec the value codec.
+     * @throws IOException if the input or the codec fails, the delta is 
+     *                     corrupt or does not apply to this map.
+     */
+    public void readDelta(InputStream input, ValueCodec<? extends V> codec) 
+    throws IOException {
+        Objects.requireNonNull(input, "The input stream is null.");
+        Objects.requireNonNull(codec, "The value codec is null.");
+        DataInputStream dataInput = new DataInputStream(input);
+        
+        if (dataInput.readInt() != DELTA_MAGIC) {
+            throw new IOException("The stream does not hold a delta.");
+        }
+        
+        if (dataInput.readInt() != minimumKey || 
+                dataInput.readInt() != maximumKey) {
+            throw new IOException(
+                    "The delta was written for another key range.");
+        }
+        
+        // The runs are measured in the pages of the writer:
+        int deltaPageShift = dataInput.readUnsignedByte();
+        
+        if (deltaPageShift > MAXIMUM_PAGE_SHIFT) {
+            throw new IOException("The delta header is corrupt.");
+        }
+        
+        ChunkReader<V> chunkReader = new ChunkReader<>(dataInput, codec);
+        long pages = 1L << (Integer.SIZE - deltaPageShift);
+        long previousPage = 0L;
+        
+        for (;;) {
+            long length = readVarLong(dataInput);
+            
+            if (length == 0L) {
+                break;
+            }
+            
+            long page = previousPage + readVarLong(dataInput);
+            long end = page + length;
+            
+            long lo = (long) minimumKey + (page << deltaPageShift);
+            long hi = Math.min((long) minimumKey + 
+                               (end << deltaPageShift) - 1, 
+                               maximumKey);
+            
+            if (page < previousPage || end > pages || lo > maximumKey) {
+                throw new IOException("A run of the delta is corrupt.");
+            }
+
+            removeRange((int) lo, (int) hi);
+            chunkReader.read(this, lo - 1, hi, false);
+            previousPage = end;
+        }
+        
+        int expectedSize = dataInput.readInt();
+        
+        if (size != expectedSize) {
+            throw new IOException(
+                    "The map holds " + size + " mappings after the delta " +
+                    "instead of " + expectedSize + ".");
+        }
+    }
+    
+    /**
+     * Applies a delta read from {@code channel} to this map. See 
+     * {@link #readDelta(InputStream, ValueCodec)}.
+     * 
+     * @param channel the input channel.
+     * @param codec   the value codec.
+     * @throws IOException if the channel or the codec fails, the delta is 
+     *                     corrupt or does not apply to this map.
+     */
+    public void readDelta(ReadableByteChannel channel, 
+                          ValueCodec<? extends V> codec) throws IOException {
+        Objects.requireNonNull(channel, "The input channel is null.");
+        readDelta(Channels.newInputStream(channel), codec);
+    }
+    
+    /**
+     * Trims this map without narrowing its key range, and returns the 
+     * estimated number of bytes reclaimed. See {@link #trimToSize(boolean)}.
+     * 
+     * @return the estimated number of bytes reclaimed.
+     */
+    public long trimToSize() {
+        return trimToSize(false);
+    }
+    
+    /**
+     * Shrinks the universe of this map to the smallest cluster holding all 
+     * its keys and returns the estimated number of bytes reclaimed. The empty
+     * clusters and value pages are released as soon as they become empty, so
+     * what a mass deletion leaves behind are the root levels sized by the 
+     * universe: the cluster arrays and summaries of the root nodes and the 
+     * directory arrays of the value table. Each root level whose keys all 
+     * fall into a single cluster is removed, its cluster becoming the new 
+     * root, after which the value table is rebuilt for the smaller universe.
+     * An empty map or a map whose keys spread over several root clusters is 
+     * left as is.
+     * <p>
+     * Unless {@code shrinkKeyRange} is set, a root level is removed only if 
+     * the key range still fits in its remaining cluster, so that every key 
+     * accepted before is accepted after. Otherwise the key range is narrowed
+     * to the new universe, and the keys outside of it are rejected from then 
+     * on, unless this map is auto-growing, in which case the key range grows
+     * back as needed. The range views cover only the part of them within the
+     * narrowed key range.
+     * 
+     * @param shrinkKeyRange whether the key range may be narrowed.
+     * @return the estimated number of bytes reclaimed.
+     */
+    public long trimToSize(boolean shrinkKeyRange) {
+        if (root == null) {
+            return 0L;
+        }
+        
+        int oldLeafLevel = leafLevel;
+        long reclaimed = 0L;
+        long offset = 0L;
+        
+        while (leafLevel != 0) {
+            int shift = levelShift[0];
+            int high = root.min >>> shift;
+            
+            if (high != root.max >>> shift) {
+                break;
+            }
+            
+            if (!shrinkKeyRange && 
+                    (high != 0 || 
+                     ((long) maximumKey - minimumKey) >>> shift != 0L)) {
+                break;
+            }
+            
+            int low = root.min & levelMask[0];
+            VEBTree child = root.cluster == null ? null : root.cluster[high];
+            reclaimed += NODE_BYTES;
+            
+            if (root.cluster != null) {
+                reclaimed += arrayBytes(levelSummaryLength[0], Long.BYTES) + 
+                             arrayBytes(levelFanout[0], REFERENCE_BYTES);
+            }
+            
+            if (child == null) {
+                child = new VEBTree(low, leafLevel == 1);
+                reclaimed -= NODE_BYTES;
+            } else {
+                treeInsert(child, 1, low);
+            }
+            
+            root = child;
+            removeRootLevel();
+            offset += (long) high << shift;
+        }
+        
+        if (leafLevel == oldLeafLevel) {
+            return 0L;
+        }
+        
+        loseCheckpoint();
+        reclaimed += tableBytes();
+        tableRebuild((int) offset);
+        reclaimed -= tableBytes();
+        minimumKey += (int) offset;
+        maximumKey = (int) Math.min(maximumKey, 
+                                    (long) minimumKey + 
+                                    (1L << universeShift) - 1);
+        modCount++;
+        return reclaimed;
+    }
+    
+    public void clear() {
+        if (dirtyPages != null) {
+            markDirty(0, -1);
+        }
+        
+        // Drop the entire tree and all the value pages at once:
+        root = null;
+        Arrays.fill(directories, null);
+        Arrays.fill(directorySizes, 0);
+        Arrays.fill(pageSizes, null);
+        size = 0;
+        modCount++;
+    }
+    
+    /**
+     * Returns the smallest translated key larger than {@code x}. The caller 
+     * must make sure that {@code x} is smaller than the maximum key of the 
+     * tree.
+     * 
+     * @param x the translated query key.
+     * @return the translated successor key.
+     */
+    private int treeSuccessor(int x) {
+        VEBTree node = root;
+        int base = 0;
+        
+        for (int level = 0;; ++level) {
+            if (level == leafLevel) {
+                return base | 
+                       Long.numberOfTrailingZeros(node.bits & (-2L << x));
+            }
+            
+            if (less(x, node.min)) {
+                return base | node.min;
+            }
+            
+            int shift = levelShift[level];
+            int high = x >>> shift;
+            int low = x & levelMask[level];
+            VEBTree child = node.cluster[high];
+            
+            if (child != null && less(low, child.max)) {
+                base |= high << shift;
+                node = child;
+                x = low;
+                continue;
+            }
+            
+            high = summaryNext(node.summary, levelSummaryOffsets[level], high);
+            return base | (high << shift) | node.cluster[high].min;
+        }
+    }
+    
+    /**
+     * Returns the largest translated key smaller than {@code x}. The caller 
+     * must make sure that {@code x} is larger than the minimum key of the 
+     * tree.
+     * 
+     * @param x the translated query key.
+     * @return the translated predecessor key.
+     */
+    private int treePredecessor(int x) {
+        VEBTree node = root;
+        int base = 0;
+        
+        for (int level = 0;; ++level) {
+            if (level == leafLevel) {
+                return base | (WORD_MASK - Long.numberOfLeadingZeros(
+                                           node.bits & ((1L << x) - 1)));
+            }
+            
+            if (less(node.max, x)) {
+                return base | node.max;
+            }
+            
+            int shift = levelShift[level];
+            int high = x >>> shift;
+            int low = x & levelMask[level];
+            VEBTree child = node.cluster[high];
+            
+            if (child != null && less(child.min, low)) {
+                base |= high << shift;
+                node = child;
+                x = low;
+                continue;
+            }
+            
+            high = summaryPrevious(node.summary, 
+                                   levelSummaryOffsets[level], 
+                                   high);
+            
+            return high == -1 ?
+                   base | node.min :
+                   base | (high << shift) | node.cluster[high].max;
+        }
+    }
+    
+    /**
+     * Remembers the descent path of the last successor or predecessor query
+     * of a sorted batch. The answer of the next query lies in the subtree of
+     * the deepest node on the path that covers the query key and holds a key 
+     * beyond it, and all the ancestors of that node let the query pass 
+     * through, so that the descent may start from there.
+     */
+    private final class Finger {
+        
+        /**
+         * The nodes on the descent path, indexed by their levels.
+         */
+        private final VEBTree[] path = new VEBTree[leafLevel + 1];
+        
+        /**
+         * The translated key of the smallest key covered by each node on the 
+         * path.
+         */
+        private final int[] pathBase = new int[leafLevel + 1];
+        
+        /**
+         * The level of the deepest node on the path, or {@code -1} if there 
+         * is no path yet.
+         */
+        private int depth = -1;
+        
+        /**
+         * The level of the shallowest node on the path. Is zero unless the 
+         * finger is confined to a subtree by {@link #startAt}.
+         */
+        private int top;
+        
+        /**
+         * Confines the appends to the subtree of {@code node}, which is at 
+         * the level {@code level} and covers the keys starting from the 
+         * translated key {@code base}.
+         */
+        void startAt(int level, VEBTree node, int base) {
+            path[level] = node;
+            pathBase[level] = base;
+            depth = level;
+            top = level;
+        }
+        
+        /**
+         * Returns the smallest translated key larger than {@code x}. The 
+         * queries must not decrease, and {@code x} must be smaller than the 
+         * maximum key of the tree.
+         * 
+         * @param x the translated query key.
+         * @return the translated successor key.
+         */
+        int successor(int x) {
+            int level = depth;
+            
+            while (level > 0 && 
+                    !(covers(level, x) && 
+                      less(x ^ pathBase[level], path[level].max))) {
+                level--;
+            }
+            
+            VEBTree node = level > 0 ? path[level] : root;
+            int base = level > 0 ? pathBase[level] : 0;
+            level = Math.max(level, 0);
+            x ^= base;
+            
+            for (;; ++level) {
+                path[level] = node;
+                pathBase[level] = base;
+                depth = level;
+                
+                if (level == leafLevel) {
+                    return base | 
+                           Long.numberOfTrailingZeros(node.bits & (-2L << x));
+                }
+                
+                if (less(x, node.min)) {
+                    return base | node.min;
+                }
+                
+                int shift = levelShift[level];
+                int high = x >>> shift;
+                int low = x & levelMask[level];
+                VEBTree child = node.cluster[high];
+                
+                if (child != null && less(low, child.max)) {
+                    base |= high << shift;
+                    node = child;
+                    x = low;
+                    continue;
+                }
+                
+                high = summaryNext(node.summary, 
+                                   levelSummaryOffsets[level], 
+                                   high);
+                
+                return base | (high << shift) | node.cluster[high].min;
+            }
+        }
+        
+        /**
+         * Returns the largest translated key smaller than {@code x}. The 
+         * queries must not increase, and {@code x} must be larger than the 
+         * minimum key of the tree.
+         * 
+         * @param x the translated query key.
+         * @return the translated predecessor key.
+         */
+        int predecessor(int x) {
+            int level = depth;
+            
+            while (level > 0 && 
+                    !(covers(level, x) && 
+                      less(path[level].min, x ^ pathBase[level]))) {
+                level--;
+            }
+            
+            VEBTree node = level > 0 ? path[level] : root;
+            int base = level > 0 ? pathBase[level] : 0;
+            level = Math.max(level, 0);
+            x ^= base;
+            
+            for (;; ++level) {
+                path[level] = node;
+                pathBase[level] = base;
+                depth = level;
+                
+                if (level == leafLevel) {
+                    return base | (WORD_MASK - Long.numberOfLeadingZeros(
+                                               node.bits & ((1L << x) - 1)));
+                }
+                
+                if (less(node.max, x)) {
+                    return base | node.max;
+                }
+                
+                int shift = levelShift[level];
+                int high = x >>> shift;
+                int low = x & levelMask[level];
+                VEBTree child = node.cluster[high];
+                
+                if (child != null && less(child.min, low)) {
+                    base |= high << shift;
+                    node = child;
+                    x = low;
+                    continue;
+                }
+                
+                high = summaryPrevious(node.summary, 
+                                       levelSummaryOffsets[level], 
+                                       high);
+                
+                return high == -1 ?
+                       base | node.min :
+                       base | (high << shift) | node.cluster[high].max;
+            }
+        }
+        
+        /**
+         * Inserts the translated key {@code x}, which must be larger than all
+         * the keys of the tree, below the deepest node on the path that 
+         * covers it. The key becomes the maximum of all the nodes above.
+         * 
+         * @param x the translated key to append.
+         */
+        void append(int x) {
+            if (root == null) {
+                root = new VEBTree(x, leafLevel == 0);
+                startAt(0, root, 0);
+                return;
+            }
+            
+            if (depth == -1) {
+                startAt(0, root, 0);
+            }
+            
+            int level = depth;
+            
+            while (level > top && !covers(level, x)) {
+                level--;
+            }
+            
+            for (int i = top; i < level; ++i) {
+                path[i].max = x ^ pathBase[i];
+            }
+            
+            VEBTree node = path[level];
+            int base = pathBase[level];
+            x ^= base;
+            
+            for (;; ++level) {
+                path[level] = node;
+                pathBase[level] = base;
+                depth = level;
+                node.max = x;
+                
+                if (level == leafLevel) {
+                    node.bits |= 1L << x;
+                    return;
+                }
+                
+                int shift = levelShift[level];
+                int high = x >>> shift;
+                int low = x & levelMask[level];
+                
+                if (node.summary == null) {
+                    node.summary = new long[levelSummaryLength[level]];
+                    node.cluster = new VEBTree[levelFanout[level]];
+                }
+                
+                VEBTree child = node.cluster[high];
+                
+                if (child == null) {
+                    child = new VEBTree(low, level + 1 == leafLevel);
+                    node.cluster[high] = child;
+                    summarySet(node.summary, levelSummaryOffsets[level], high);
+                    path[level + 1] = child;
+                    pathBase[level + 1] = base | (high << shift);
+                    depth = level + 1;
+                    return;
+                }
+                
+                base |= high << shift;
+                node = child;
+                x = low;
+            }
+        }
+        
+        /**
+         * Returns {@code true} if the translated key {@code x} falls into the 
+         * universe of the node at the level {@code level} > 0 of the path.
+         */
+        private boolean covers(int level, int x) {
+            return (x ^ pathBase[level]) >>> levelShift[level - 1] == 0;
+        }
+    }
+    
+    /**
+     * Appends the first {@code count} mappings {@code keys[i] -> values[i]} 
+     * to this map. The keys must be within the key range, strictly ascending
+     * and larger than all the keys present.
+     * 
+     * @param keys   the keys to append.
+     * @param values the values of the keys.
+     * @param count  the number of mappings to append.
+     */
+    private void appendSorted(int[] keys, V[] values, int count) {
+        Finger finger = new Finger();
+        
+        for (int i = 0; i < count; ++i) {
+            int x = keys[i] - minimumKey;
+            finger.append(x);
+            tableSet(x, values[i] == null ? (V) NULL_VALUE : values[i]);
+        }
+        
+        size += count;
+        modCount++;
+    }
+    
+    /**
+     * Builds the subtrees of the root clusters of a run of sorted keys, 
+     * forking while the run spans more than one root cluster and is longer 
+     * than {@link #PARALLEL_GRAIN}. Each task owns whole root clusters, and 
+     * thus their slots in the root cluster array and their value pages. The
+     * directories of the keys must already be allocated and counted.
+     */
+    private final class ClusterLoader extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final int[] keys;
+        private final V[] values;
+        private final int from;
+        private final int to;
+        
+        ClusterLoader(int[] keys, V[] values, int from, int to) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            int shift = levelShift[0];
+            int firstHigh = (keys[from] - minimumKey) >>> shift;
+            int lastHigh = (keys[to - 1] - minimumKey) >>> shift;
+            
+            if (to - from <= PARALLEL_GRAIN || firstHigh == lastHigh) {
+                loadClusters();
+                return;
+            }
+            
+            // Split at the start of the root cluster of the middle key:
+            int middleHigh = (keys[(from + to) >>> 1] - minimumKey) >>> shift;
+            
+            if (middleHigh == firstHigh) {
+                middleHigh++;
+            }
+            
+            int split = runEnd(keys, 
+                               from, 
+                               to, 
+                               (long) minimumKey + 
+                               ((long) middleHigh << shift) - 1);
+            invokeAll(new ClusterLoader(keys, values, from, split),
+                      new ClusterLoader(keys, values, split, to));
+        }
+        
+        private void loadClusters() {
+            int shift = levelShift[0];
+            Finger finger = new Finger();
+            
+            for (int i = from; i < to; ++i) {
+                int x = keys[i] - minimumKey;
+                int high = x >>> shift;
+                
+                if (root.cluster[high] == null) {
+                    VEBTree cluster = new VEBTree(x & levelMask[0], 
+                                                  leafLevel == 1);
+                    root.cluster[high] = cluster;
+                    finger.startAt(1, cluster, high << shift);
+                } else {
+                    finger.append(x);
+                }
+                
+                tableFill(x, values[i] == null ? (V) NULL_VALUE : values[i]);
+            }
+        }
+    }
+    
+    /**
+     * Reduces the mappings within a range of translated keys, splitting it 
+     * in two at a root cluster boundary while the range spans several 
+     * non-empty root clusters and holds more than {@link #PARALLEL_GRAIN} 
+     * mappings. The pieces are reduced sequentially by feeding their 
+     * mappings to the task itself.
+     * 
+     * @param <R> the result type.
+     */
+    private abstract class RangeTask<R> extends RecursiveTask<R> 
+            implements KeyValueConsumer<V> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        /**
+         * The bounds of the range as translated keys.
+         */
+        final int lo;
+        final int hi;
+        
+        RangeTask(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+        
+        /**
+         * Returns the task reducing the translated keys {@code [lo, hi]}.
+         */
+        abstract RangeTask<R> subtask(int lo, int hi);
+        
+        /**
+         * Returns the result of the mappings fed to this task so far.
+         */
+        abstract R result();
+        
+        /**
+         * Combines the results of two adjacent ranges.
+         */
+        abstract R combine(R left, R right);
+        
+        @Override
+        protected R compute() {
+            if (leafLevel != 0 && !less(hi, root.min) && !less(root.max, lo)) {
+                int shift = levelShift[0];
+                int[] summaryOffsets = levelSummaryOffsets[0];
+                int firstHigh = lo >>> shift;
+                int lastHigh = hi >>> shift;
+                
+                if (root.summary != null) {
+                    if (root.cluster[firstHigh] == null) {
+                        firstHigh = summaryNext(root.summary, 
+                                                summaryOffsets, 
+                                                firstHigh);
+                    }
+                    
+                    if (root.cluster[lastHigh] == null) {
+                        lastHigh = summaryPrevious(root.summary, 
+                                                   summaryOffsets, 
+                                                   lastHigh);
+                    }
+                }
+                
+                if (root.summary != null &&
+                        firstHigh != -1 && 
+                        firstHigh < lastHigh &&
+                        tableCountRange(lo, hi) > PARALLEL_GRAIN) {
+                    int middleHigh = (firstHigh + lastHigh) >>> 1;
+                    int split = (middleHigh + 1) << shift;
+                    RangeTask<R> left = subtask(lo, split - 1);
+                    RangeTask<R> right = subtask(split, hi);
+                    left.fork();
+                    R rightResult = right.compute();
+                    return combine(left.join(), rightResult);
+                }
+            }
+            
+            treeForEach(root, 0, 0, lo, hi, this);
+            return result();
+        }
+    }
+    
+    /**
+     * Reduces a range of mappings with the functions of 
+     * {@link #reduceRange(int, int, Object, KeyValueReducer, BinaryOperator)}.
+     * 
+     * @param <R> the result type.
+     */
+    private final class RangeReducer<R> extends RangeTask<R> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final R identity;
+        private final KeyValueReducer<R, ? super V> accumulator;
+        private final BinaryOperator<R> combiner;
+        private R result;
+        
+        RangeReducer(int lo, 
+                     int hi, 
+                     R identity, 
+                     KeyValueReducer<R, ? super V> accumulator,
+                     BinaryOperator<R> combiner) {
+            super(lo, hi);
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.result = identity;
+        }
+        
+        @Override
+        RangeTask<R> subtask(int lo, int hi) {
+            return new RangeReducer<>(lo, hi, identity, accumulator, combiner);
+        }
+        
+        @Override
+        R result() {
+            return result;
+        }
+        
+        @Override
+        R combine(R left, R right) {
+            return combiner.apply(left, right);
+        }
+        
+        @Override
+        public void accept(int key, V value) {
+            result = accumulator.reduce(result, key, value);
+        }
+    }
+    
+    /**
+     * Adds up a function of the values in a range of mappings.
+     */
+    private final class RangeSummer extends RangeTask<Long> {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final ToLongFunction<? super V> valueFunction;
+        private long sum;
+        
+        RangeSummer(int lo, int hi, ToLongFunction<? super V> valueFunction) {
+            super(lo, hi);
+            this.valueFunction = valueFunction;
+        }
+        
+        @Override
+        RangeTask<Long> subtask(int lo, int hi) {
+            return new RangeSummer(lo, hi, valueFunction);
+        }
+        
+        @Override
+        Long result() {
+            return sum;
+        }
+        
+        @Override
+        Long combine(Long left, Long right) {
+            return left + right;
+        }
+        
+        @Override
+        public void accept(int key, V value) {
+            sum += valueFunction.applyAsLong(value);
+        }
+    }
+    
+    /**
+     * Returns the smallest translated key not smaller than {@code x}. The 
+     * caller must make sure that {@code x} is not larger than the maximum key
+     * of the tree.
+     * 
+     * @param x the translated query key.
+     * @return the translated ceiling key.
+     */
+    private int treeCeiling(int x) {
+        return less(root.min, x) ? treeSuccessor(x - 1) : root.min;
+    }
+    
+    /**
+     * Returns the largest translated key not larger than {@code x}. The 
+     * caller must make sure that {@code x} is not smaller than the minimum key
+     * of the tree.
+     * 
+     * @param x the translated query key.
+     * @return the translated floor key.
+     */
+    private int treeFloor(int x) {
+        return less(x, root.max) ? treePredecessor(x + 1) : root.max;
+    }
+    
+    /**
+     * Returns the smallest translated key within {@code [lo, hi]} as an 
+     * unsigned value, or {@code -1} if there is no such.
+     * 
+     * @param lo the translated lower bound.
+     * @param hi the translated upper bound.
+     * @return the smallest translated key in the range or {@code -1}.
+     */
+    private long treeFirstInRange(int lo, int hi) {
+        if (root == null || less(root.max, lo) || less(hi, root.min)) {
+            return -1L;
+        }
+        
+        int key = treeCeiling(lo);
+        return less(hi, key) ? -1L : key & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Returns the largest translated key within {@code [lo, hi]} as an 
+     * unsigned value, or {@code -1} if there is no such.
+     * 
+     * @param lo the translated lower bound.
+     * @param hi the translated upper bound.
+     * @return the largest translated key in the range or {@code -1}.
+     */
+    private long treeLastInRange(int lo, int hi) {
+        if (root == null || less(root.max, lo) || less(hi, root.min)) {
+            return -1L;
+        }
+        
+        int key = treeFloor(hi);
+        return less(key, lo) ? -1L : key & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Feeds the mappings of the subtree rooted at {@code node} whose keys are 
+     * within {@code [lo, hi]} to {@code consumer}.
+     * 
+     * @param node     the root of the subtree.
+     * @param level    the level of {@code node}.
+     * @param base     the translated key at which the subtree starts.
+     * @param lo       the lower bound, relative to {@code node}.
+     * @param hi       the upper bound, relative to {@code node}.
+     * @param consumer the mapping consumer.
+     */
+    private void treeForEach(VEBTree node, 
+                             int level, 
+                             int base, 
+                             int lo, 
+                             int hi, 
+                             KeyValueConsumer<? super V> consumer) {
+        if (less(hi, node.min) || less(node.max, lo)) {
+            return;
+        }
+        
+        if (level == leafLevel) {
+            long bits = node.bits & (-1L << lo) & (-1L >>> (WORD_MASK - hi));
+            
+            while (bits != 0L) {
+                accept(base | Long.numberOfTrailingZeros(bits), consumer);
+                bits &= bits - 1;
+            }
+            
+            return;
+        }
+        
+        if (!less(node.min, lo)) {
+            accept(base | node.min, consumer);
+        }
+        
+        if (node.summary == null) {
+            return;
+        }
+        
+        int shift = levelShift[level];
+        int mask = levelMask[level];
+        int[] summaryOffsets = levelSummaryOffsets[level];
+        int highLo = lo >>> shift;
+        int highHi = hi >>> shift;
+        int high = node.cluster[highLo] != null ? 
+                   highLo : 
+                   summaryNext(node.summary, summaryOffsets, highLo);
+        
+        while (high != -1 && high <= highHi) {
+            treeForEach(node.cluster[high],
+                        level + 1, 
+                        base | (high << shift), 
+                        high == highLo ? lo & mask : 0, 
+                        high == highHi ? hi & mask : mask, 
+                        consumer);
+            
+            high = summaryNext(node.summary, summaryOffsets, high);
+        }
+    }
+    
+    /**
+     * Copies the keys within {@code [lo, hi]}, and optionally their values, 
+     * to the given arrays starting from the index {@code offset}. The caller
+     * must make sure the arrays have enough room.
+     * 
+     * @param lo     the lower bound of the range.
+     * @param hi     the upper bound of the range.
+     * @param keys   the array receiving the keys.
+     * @param values the array receiving the values, or {@code null}.
+     * @param offset the index of the first mapping in the arrays.
+     * @return the number of copied mappings.
+     */
+    private int copyKeys(int lo, int hi, int[] keys, V[] values, int offset) {
+        if (root == null) {
+            return 0;
+        }
+        
+        return treeCopyKeys(root, 
+                            0, 
+                            0, 
+                            lo - minimumKey, 
+                            hi - minimumKey, 
+                            keys, 
+                            values, 
+                            offset) - offset;
+    }
+    
+    /**
+     * Copies the keys within {@code [lo, hi]} of the subtree rooted at 
+     * {@code node}, and optionally their values, to the given arrays in 
+     * ascending key order. Works like 
+     * {@link #treeForEach(VEBTree, int, int, int, int, KeyValueConsumer)}.
+     * 
+     * @param node   the root of the subtree.
+     * @param level  the level of {@code node}.
+     * @param base   the translated key of the smallest key covered by 
+     *               {@code node}.
+     * @param lo     the lower bound of the range, relative to {@code node}.
+     * @param hi     the upper bound of the range, relative to {@code node}.
+     * @param keys   the array receiving the keys.
+     * @param values the array receiving the values, or {@code null}.
+     * @param offset the index of the next mapping in the arrays.
+     * @return the index following the last copied mapping.
+     */
+    private int treeCopyKeys(VEBTree node, 
+                             int level, 
+                             int base, 
+                             int lo, 
+                             int hi, 
+                             int[] keys, 
+                             V[] values, 
+                             int offset) {
+        if (less(hi, node.min) || less(node.max, lo)) {
+            return offset;
+        }
+        
+        if (level == leafLevel) {
+            long bits = node.bits & (-1L << lo) & (-1L >>> (WORD_MASK - hi));
+            
+            while (bits != 0L) {
+                copyKey(base | Long.numberOfTrailingZeros(bits), 
+                        keys, 
+                        values, 
+                        offset++);
+                bits &= bits - 1;
+            }
+            
+            return offset;
+        }
+        
+        if (!less(node.min, lo)) {
+            copyKey(base | node.min, keys, values, offset++);
+        }
+        
+        if (node.summary == null) {
+            return offset;
+        }
+        
+        int shift = levelShift[level];
+        int mask = levelMask[level];
+        int[] summaryOffsets = levelSummaryOffsets[level];
+        int highLo = lo >>> shift;
+        int highHi = hi >>> shift;
+        int high = node.cluster[highLo] != null ? 
+                   highLo : 
+                   summaryNext(node.summary, summaryOffsets, highLo);
+        
+        while (high != -1 && high <= highHi) {
+            offset = treeCopyKeys(node.cluster[high],
+                                  level + 1, 
+                                  base | (high << shift), 
+                                  high == highLo ? lo & mask : 0, 
+                                  high == highHi ? hi & mask : mask, 
+                                  keys, 
+                                  values, 
+                                  offset);
+            
+            high = summaryNext(node.summary, summaryOffsets, high);
+        }
+        
+        return offset;
+    }
+    
+    private void copyKey(int x, int[] keys, V[] values, int offset) {
+        keys[offset] = x + minimumKey;
+        
+        if (values != null) {
+            V value = tableGet(x);
+            values[offset] = value == NULL_VALUE ? null : value;
+        }
+    }
+    
+    private void accept(int x, KeyValueConsumer<? super V> consumer) {
+        V value = tableGet(x);
+        consumer.accept(x + minimumKey, value == NULL_VALUE ? null : value);
+    }
+    
+    /**
+     * Inserts the key {@code x} that is not yet present in the subtree rooted
+     * at {@code node}.
+     * 
+     * @param node  the root of the subtree.
+     * @param level the level of {@code node}.
+     * @param x     the key to insert, relative to {@code node}.
+     */
+    private void treeInsert(VEBTree node, int level, int x) {
+        for (;; ++level) {
+            if (level == leafLevel) {
+                node.bits |= 1L << x;
+                node.min = Math.min(node.min, x);
+                node.max = Math.max(node.max, x);
+                return;
+            }
+            
+            if (less(x, node.min)) {
+                int tmp = x;
+                x = node.min;
+                node.min = tmp;
+            }
+            
+            if (less(node.max, x)) {
+                node.max = x;
+            }
+            
+            int high = x >>> levelShift[level];
+            int low = x & levelMask[level];
+            
+            if (node.summary == null) {
+                node.summary = new long[levelSummaryLength[level]];
+                node.cluster = new VEBTree[levelFanout[level]];
+            }
+            
+            VEBTree child = node.cluster[high];
+            
+            if (child == null) {
+                node.cluster[high] = new VEBTree(low, level + 1 == leafLevel);
+                summarySet(node.summary, levelSummaryOffsets[level], high);
+                return;
+            }
+            
+            node = child;
+            x = low;
+        }
+    }
+    
+    /**
+     * Deletes the present key {@code x} from the subtree rooted at 
+     * {@code node}. The caller must make sure the subtree holds at least two 
+     * keys.
+     * 
+     * @param node  the root of the subtree.
+     * @param level the level of {@code node}.
+     * @param x     the key to delete, relative to {@code node}.
+     */
+    private void treeDelete(VEBTree node, int level, int x) {
+        // Bit 'i' is set if the maximum of the node at level 'i' must be 
+        // recomputed after its cluster is updated.
+        int pendingMaximumLevels = 0;
+        int startLevel = level;
+        
+        for (;; ++level) {
+            if (level == leafLevel) {
+                long bits = node.bits & ~(1L << x);
+                node.bits = bits;
+                node.min = Long.numberOfTrailingZeros(bits);
+                node.max = WORD_MASK - Long.numberOfLeadingZeros(bits);
+                break;
+            }
+            
+            int shift = levelShift[level];
+            int[] summaryOffsets = levelSummaryOffsets[level];
+            
+            if (x == node.min) {
+                int firstCluster = summaryFirst(node.summary, summaryOffsets);
+                x = (firstCluster << shift) | node.cluster[firstCluster].min;
+                node.min = x;
+            }
+            
+            int high = x >>> shift;
+            VEBTree child = node.cluster[high];
+            
+            if (child.min == child.max) {
+                // Drop the entire cluster.
+                node.cluster[high] = null;
+                
+                if (summaryClear(node.summary, summaryOffsets, high)) {
+                    node.summary = null;
+                    node.cluster = null;
+                    node.max = node.min;
+                } else if (x == node.max) {
+                    int lastCluster = summaryLast(node.summary, 
+                                                  summaryOffsets);
+                    node.max = (lastCluster << shift) | 
+                               node.cluster[lastCluster].max;
+                }
+                
+                break;
+            }
+            
+            if (x == node.max) {
+                pendingMaximumLevels |= 1 << level;
+            }
+            
+            deletionPath[level] = node;
+            deletionPathHigh[level] = high;
+            node = child;
+            x &= levelMask[level];
+        }
+        
+        // Fix the maximums bottom-up:
+        while (level-- > startLevel) {
+            if ((pendingMaximumLevels & (1 << level)) != 0) {
+                VEBTree parent = deletionPath[level];
+                int high = deletionPathHigh[level];
+                parent.max = (high << levelShift[level]) | 
+                             parent.cluster[high].max;
+            }
+            
+            deletionPath[level] = null;
+        }
+    }
+    
+    /**
+     * Removes all the keys within {@code [lo, hi]} from the subtree rooted at 
+     * {@code node}. The clusters lying entirely within the range are dropped
+     * as a whole; only the two boundary clusters are descended into.
+     * 
+     * @param node  the root of the subtree.
+     * @param level the level of {@code node}.
+     * @param lo    the smallest key to remove, relative to {@code node}.
+     * @param hi    the largest key to remove, relative to {@code node}.
+     * @return {@code node} or {@code null} if the subtree became empty.
+     */
+    private VEBTree treeRemoveRange(VEBTree node, int level, int lo, int hi) {
+        if (less(hi, node.min) || less(node.max, lo)) {
+            return node;
+        }
+        
+        if (!less(node.min, lo) && !less(hi, node.max)) {
+            return null;
+        }
+        
+        if (level == leafLevel) {
+            long bits = node.bits & ~((-1L << lo) & (-1L >>> (WORD_MASK - hi)));
+            node.bits = bits;
+            node.min = Long.numberOfTrailingZeros(bits);
+            node.max = WORD_MASK - Long.numberOfLeadingZeros(bits);
+            return node;
+        }
+        
+        // Here, the node holds at least two keys and thus has clusters.
+        boolean minimumRemoved = !less(node.min, lo);
+        int shift = levelShift[level];
+        int mask = levelMask[level];
+        int[] summaryOffsets = levelSummaryOffsets[level];
+        int highLo = lo >>> shift;
+        int highHi = hi >>> shift;
+        boolean summaryEmpty = false;
+        
+        if (highLo == highHi) {
+            summaryEmpty = removeRangeInCluster(node, 
+                                                level, 
+                                                highLo, 
+                                                lo & mask, 
+                                                hi & mask);
+        } else {
+            summaryEmpty = removeRangeInCluster(node, 
+                                                level, 
+                                                highLo, 
+                                                lo & mask, 
+                                                mask);
+            
+            // Drop all the clusters strictly between the boundary clusters:
+            for (int high = summaryNext(node.summary, summaryOffsets, highLo);
+                    high != -1 && high < highHi; 
+                    high = summaryNext(node.summary, summaryOffsets, high)) {
+                node.cluster[high] = null;
+                summaryEmpty = summaryClear(node.summary, summaryOffsets, high);
+            }
+            
+            if (!summaryEmpty) {
+                summaryEmpty = removeRangeInCluster(node, 
+                                                    level, 
+                                                    highHi, 
+                                                    0, 
+                                                    hi & mask);
+            }
+        }
+        
+        if (summaryEmpty) {
+            node.summary = null;
+            node.cluster = null;
+            
+            if (minimumRemoved) {
+                return null;
+            }
+            
+            node.max = node.min;
+            return node;
+        }
+        
+        if (minimumRemoved) {
+            // Pull the new minimum out of the first cluster:
+            int high = summaryFirst(node.summary, summaryOffsets);
+            VEBTree child = node.cluster[high];
+            node.min = (high << shift) | child.min;
+            
+            if (child.min == child.max) {
+                node.cluster[high] = null;
+                
+                if (summaryClear(node.summary, summaryOffsets, high)) {
+                    node.summary = null;
+                    node.cluster = null;
+                    node.max = node.min;
+                    return node;
+                }
+            } else {
+                treeDelete(child, level + 1, child.min);
+            }
+        }
+        
+        int high = summaryLast(node.summary, summaryOffsets);
+        node.max = (high << shift) | node.cluster[high].max;
+        return node;
+    }
+    
+    /**
+     * Removes from the subtree {@code a} all the keys missing from the 
+     * subtree {@code b} of the other map at the same position.
+     * 
+     * @param a     the subtree of this map.
+     * @param b     the subtree of the other map.
+     * @param level the level of the subtrees.
+     * @param base  the translated key at which the subtrees start.
+     * @return {@code a} or {@code null} if it became empty.
+     */
+    private VEBTree treeRetainAll(VEBTree a, VEBTree b, int level, int base) {
+        if (less(a.max, b.min) || less(b.max, a.min)) {
+            size -= tableClearRange(base | a.min, base | a.max);
+            return null;
+        }
+        
+        if (level == leafLevel) {
+            tableDropBits(base, a.bits & ~b.bits);
+            return setLeafBits(a, a.bits & b.bits);
+        }
+        
+        // The minimum of 'b' is not stored in its clusters, so the walk below
+        // drops it from 'a'. Remember its value in order to put it back.
+        V minimumValue = b.min != a.min && treeContains(a, level, b.min) ?
+                         tableGet(base | b.min) : 
+                         null;
+        int shift = levelShift[level];
+        int[] offsets = levelSummaryOffsets[level];
+        int words = a.summary == null ? 0 : 
+                    offsets.length > 1 ? offsets[1] : 1;
+        
+        for (int i = 0; 
+                i < words; 
+                i = nextSummaryWord(a.summary, null, offsets, i + 1)) {
+            long word = a.summary[i];
+            long otherWord = b.summary != null ? b.summary[i] : 0L;
+            long dropped = word & ~otherWord;
+            long common = word & otherWord;
+            
+            while (dropped != 0L) {
+                int high = (i << WORD_SHIFT) | 
+                           Long.numberOfTrailingZeros(dropped);
+                // The cluster spans keys only above the minimum of 'a':
+                VEBTree child = a.cluster[high];
+                int clusterBase = base | (high << shift);
+                size -= tableClearRange(clusterBase | child.min, 
+                                        clusterBase | child.max);
+                dropCluster(a, level, high);
+                dropped &= dropped - 1;
+            }
+            
+            while (common != 0L) {
+                int high = (i << WORD_SHIFT) | 
+                           Long.numberOfTrailingZeros(common);
+                
+                if (treeRetainAll(a.cluster[high], 
+                                  b.cluster[high], 
+                                  level + 1, 
+                                  base | (high << shift)) == null) {
+                    dropCluster(a, level, high);
+                }
+                
+                common &= common - 1;
+            }
+            
+            if (a.summary == null) {
+                break;
+            }
+        }
+        
+        if (minimumValue != null) {
+            insertIntoClusters(a, level, b.min);
+            tableSet(base | b.min, minimumValue);
+            size++;
+        }
+        
+        if (!treeContains(b, level, a.min)) {
+            tableDrop(base | a.min);
+            
+            if (!pullMinimum(a, level)) {
+                return null;
+            }
+        }
+        
+        fixMaximum(a, level);
+        return a;
+    }
+    
+    /**
+     * Adds to the subtree {@code a} all the keys of the subtree {@code b} of
+     * {@code other} at the same position, copying their values.
+     * 
+     * @param a     the subtree of this map.
+     * @param b     the subtree of {@code other}.
+     * @param level the level of the subtrees.
+     * @param base  the translated key at which the subtrees start.
+     * @param other the other map.
+     */
+    private void treeAddAll(VEBTree a, 
+                            VEBTree b, 
+                            int level, 
+                            int base, 
+                            VanEmdeBoasTreeIntMap<? extends V> other) {
+        if (level == leafLevel) {
+            long added = b.bits & ~a.bits;
+            setLeafBits(a, a.bits | b.bits);
+            
+            while (added != 0L) {
+                copyValue(other, base | Long.numberOfTrailingZeros(added));
+                added &= added - 1;
+            }
+            
+            return;
+        }
+        
+        if (less(b.min, a.min)) {
+            insertIntoClusters(a, level, a.min);
+            a.min = b.min;
+            copyValue(other, base | b.min);
+        } else if (b.min != a.min && tableGet(base | b.min) == null) {
+            insertIntoClusters(a, level, b.min);
+            copyValue(other, base | b.min);
+        }
+        
+        if (less(a.max, b.max)) {
+            a.max = b.max;
+        }
+        
+        if (b.summary == null) {
+            return;
+        }
+        
+        if (a.summary == null) {
+            a.summary = new long[levelSummaryLength[level]];
+            a.cluster = new VEBTree[levelFanout[level]];
+        }
+        
+        int shift = levelShift[level];
+        int[] offsets = levelSummaryOffsets[level];
+        int words = offsets.length > 1 ? offsets[1] : 1;
+        
+        for (int i = nextSummaryWord(null, b.summary, offsets, 0); 
+                i < words; 
+                i = nextSummaryWord(null, b.summary, offsets, i + 1)) {
+            long word = a.summary[i];
+            long otherWord = b.summary[i];
+            long copied = otherWord & ~word;
+            long common = otherWord & word;
+            
+            while (copied != 0L) {
+                int high = (i << WORD_SHIFT) | 
+                           Long.numberOfTrailingZeros(copied);
+                a.cluster[high] = copySubtree(other, 
+                                              b.cluster[high], 
+                                              level + 1, 
+                                              base | (high << shift));
+                summarySet(a.summary, offsets, high);
+                copied &= copied - 1;
+            }
+            
+            while (common != 0L) {
+                int high = (i << WORD_SHIFT) | 
+                           Long.numberOfTrailingZeros(common);
+                treeAddAll(a.cluster[high], 
+                           b.cluster[high], 
+                           level + 1, 
+                           base | (high << shift), 
+                           other);
+                common &= common - 1;
+            }
+        }
+    }
+    
+    /**
+     * Removes from the subtree {@code a} all the keys present in the subtree 
+     * {@code b} of the other map at the same position.
+     * 
+     * @param a     the subtree of this map.
+     * @param b     the subtree of the other map.
+     * @param level the level of the subtrees.
+     * @param base  the translated key at which the subtrees start.
+     * @return {@code a} or {@code null} if it became empty.
+     */
+    private VEBTree treeRemoveAll(VEBTree a, VEBTree b, int level, int base) {
+        if (less(a.max, b.min) || less(b.max, a.min)) {
+            return a;
+        }
+        
+        if (level == leafLevel) {
+            tableDropBits(base, a.bits & b.bits);
+            return setLeafBits(a, a.bits & ~b.bits);
+        }
+        
+        int shift = levelShift[level];
+        int[] offsets = levelSummaryOffsets[level];
+        int words = offsets.length > 1 ? offsets[1] : 1;
+        
+        if (a.summary != null && b.summary != null) {
+            for (int i = nextSummaryWord(a.summary, b.summary, offsets, 0); 
+                    i < words; 
+                    i = nextSummaryWord(a.summary, b.summary, offsets, i + 1)) {
+                long common = a.summary[i] & b.summary[i];
+                
+                while (common != 0L) {
+                    int high = (i << WORD_SHIFT) | 
+                               Long.numberOfTrailingZeros(common);
+                    
+                    if (treeRemoveAll(a.cluster[high], 
+                                      b.cluster[high], 
+                                      level + 1, 
+                                      base | (high << shift)) == null) {
+                        dropCluster(a, level, high);
+                    }
+                    
+                    common &= common - 1;
+                }
+                
+                if (a.summary == null) {
+                    break;
+                }
+            }
+        }
+        
+        // The minimum of 'b' is not stored in its clusters:
+        if (b.min != a.min && treeContains(a, level, b.min)) {
+            deleteFromClusters(a, level, b.min);
+            tableDrop(base | b.min);
+        }
+        
+        if (treeContains(b, level, a.min)) {
+            tableDrop(base | a.min);
+            
+            if (!pullMinimum(a, level)) {
+                return null;
+            }
+        }
+        
+        fixMaximum(a, level);
+        return a;
+    }
+    
+    /**
+     * Counts the keys present both in the subtree {@code a} and in the 
+     * subtree {@code b} of the other map at the same position.
+     * 
+     * @param a     the subtree of this map.
+     * @param b     the subtree of the other map.
+     * @param level the level of the subtrees.
+     * @return the number of the common keys.
+     */
+    private int treeIntersectionSize(VEBTree a, VEBTree b, int level) {
+        if (less(a.max, b.min) || less(b.max, a.min)) {
+            return 0;
+        }
+        
+        if (level == leafLevel) {
+            return Long.bitCount(a.bits & b.bits);
+        }
+        
+        // The minimums are not stored in the clusters, so look them up in
+        // the other subtree:
+        int count = treeContains(b, level, a.min) ? 1 : 0;
+        
+        if (b.min != a.min && treeContains(a, level, b.min)) {
+            count++;
+        }
+        
+        if (a.summary == null || b.summary == null) {
+            return count;
+        }
+        
+        int[] offsets = levelSummaryOffsets[level];
+        int words = offsets.length > 1 ? offsets[1] : 1;
+        
+        for (int i = nextSummaryWord(a.summary, b.summary, offsets, 0); 
+                i < words; 
+                i = nextSummaryWord(a.summary, b.summary, offsets, i + 1)) {
+            long common = a.summary[i] & b.summary[i];
+            
+            while (common != 0L) {
+                int high = (i << WORD_SHIFT) | 
+                           Long.numberOfTrailingZeros(common);
+                count += treeIntersectionSize(a.cluster[high], 
+                                              b.cluster[high], 
+                                              level + 1);
+                common &= common - 1;
+            }
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Moves all the keys of the subtree rooted at {@code node} that are not 
+     * smaller than {@code x} to a new subtree. The clusters lying entirely 
+     * above {@code x} are moved as a whole, and the cluster holding 
+     * {@code x} is split recursively. The caller must make sure that the 
+     * minimum of {@code node} is smaller than {@code x} and that its maximum
+     * is not.
+     * 
+     * @param node  the root of the subtree.
+     * @param level the level of {@code node}.
+     * @param x     the smallest key to move, relative to {@code node}.
+     * @return the root of the subtree holding the moved keys.
+     */
+    private VEBTree treeSplit(VEBTree node, int level, int x) {
+        if (level == leafLevel) {
+            long mask = -1L << x;
+            VEBTree upper = setLeafBits(new VEBTree(0, true), node.bits & mask);
+            setLeafBits(node, node.bits & ~mask);
+            return upper;
+        }
+        
+        // The maximum is at least 'x' and thus is stored in the clusters:
+        int high = x >>> levelShift[level];
+        int low = x & levelMask[level];
+        int fanout = levelFanout[level];
+        int[] offsets = levelSummaryOffsets[level];
+        VEBTree upper = new VEBTree(0, false);
+        upper.summary = new long[levelSummaryLength[level]];
+        upper.cluster = new VEBTree[fanout];
+        upper.max = node.max;
+        VEBTree child = node.cluster[high];
+        VEBTree splitChild = null;
+        int from = high + 1;
+        
+        if (child != null && !less(child.max, low)) {
+            if (less(child.min, low)) {
+                splitChild = treeSplit(child, level + 1, low);
+            } else {
+                from = high;
+            }
+        }
+        
+        System.arraycopy(node.cluster, 
+                         from, 
+                         upper.cluster, 
+                         from, 
+                         fanout - from);
+        Arrays.fill(node.cluster, from, fanout, null);
+        
+        if (summarySplit(node.summary, upper.summary, offsets, from)) {
+            node.summary = null;
+            node.cluster = null;
+        }
+        
+        if (splitChild != null) {
+            upper.cluster[high] = splitChild;
+            summarySet(upper.summary, offsets, high);
+        }
+        
+        pullMinimum(upper, level);
+        fixMaximum(upper, level);
+        fixMaximum(node, level);
+        return upper;
+    }
+    
+    /**
+     * Moves all the keys of the subtree {@code b} to the subtree {@code a} at
+     * the same position. All the keys of {@code a} must be smaller than the 
+     * keys of {@code b}, so that only the cluster holding the maximum of 
+     * {@code a} may be present in both, and the other clusters of {@code b}
+     * are moved as a whole.
+     * 
+     * @param a     the subtree receiving the keys.
+     * @param b     the subtree whose keys to move.
+     * @param level the level of the subtrees.
+     */
+    private void treeJoin(VEBTree a, VEBTree b, int level) {
+        if (level == leafLevel) {
+            setLeafBits(a, a.bits | b.bits);
+            return;
+        }
+        
+        if (b.summary != null) {
+            if (a.summary == null) {
+                a.summary = b.summary;
+                a.cluster = b.cluster;
+            } else {
+                int[] offsets = levelSummaryOffsets[level];
+                int words = offsets.length > 1 ? offsets[1] : 1;
+                
+                for (int i = nextSummaryWord(b.summary, null, offsets, 0); 
+                        i < words; 
+                        i = nextSummaryWord(b.summary, null, offsets, i + 1)) {
+                    for (long word = b.summary[i]; 
+                            word != 0L; 
+                            word &= word - 1) {
+                        int high = (i << WORD_SHIFT) | 
+                                   Long.numberOfTrailingZeros(word);
+                        
+                        if (a.cluster[high] == null) {
+                            a.cluster[high] = b.cluster[high];
+                        } else {
+                            treeJoin(a.cluster[high], 
+                                     b.cluster[high], 
+                                     level + 1);
+                        }
+                    }
+                }
+                
+                for (int i = 0; i != a.summary.length; ++i) {
+                    a.summary[i] |= b.summary[i];
+                }
+            }
+        }
+        
+        insertIntoClusters(a, level, b.min);
+        a.max = b.max;
+    }
+    
+    /**
+     * Returns {@code true} only if the subtree rooted at {@code node} 
+     * contains the key {@code x}. Unlike the value table, the subtree does not
+     * hold the minimums of the ancestors of {@code node}.
+     * 
+     * @param node  the root of the subtree.
+     * @param level the level of {@code node}.
+     * @param x     the key to look for, relative to {@code node}.
+     * @return {@code true} if {@code x} is in the subtree.
+     */
+    private boolean treeContains(VEBTree node, int level, int x) {
+        for (;; ++level) {
+            if (level == leafLevel) {
+                return (node.bits & (1L << x)) != 0L;
+            }
+            
+            if (x == node.min) {
+                return true;
+            }
+            
+            if (node.summary == null) {
+                return false;
+            }
+            
+            node = node.cluster[x >>> levelShift[level]];
+            
+            if (node == null) {
+                return false;
+            }
+            
+            x &= levelMask[level];
+        }
+    }
+    
+    /**
+     * Returns a copy of the subtree {@code node} of {@code other}, copying 
+     * also the values of its keys into the table of this map.
+     * 
+     * @param other the map owning {@code node}.
+     * @param node  the subtree to copy.
+     * @param level the level of {@code node}.
+     * @param base  the translated key at which the subtree starts.
+     * @return the copy of the subtree.
+     */
+    private VEBTree copySubtree(VanEmdeBoasTreeIntMap<? extends V> other, 
+                                VEBTree node, 
+                                int level, 
+                                int base) {
+        VEBTree copy = new VEBTree(node.min, false);
+        copy.max = node.max;
+        
+        if (level == leafLevel) {
+            copy.bits = node.bits;
+            
+            for (long bits = node.bits; bits != 0L; bits &= bits - 1) {
+                copyValue(other, base | Long.numberOfTrailingZeros(bits));
+            }
+            
+            return copy;
+        }
+        
+        copyValue(other, base | node.min);
+        
+        if (node.summary != null) {
+            int shift = levelShift[level];
+            int[] offsets = levelSummaryOffsets[level];
+            copy.summary = node.summary.clone();
+            copy.cluster = new VEBTree[node.cluster.length];
+            
+            for (int high = summaryFirst(node.summary, offsets); 
+                    high != -1; 
+                    high = summaryNext(node.summary, offsets, high)) {
+                copy.cluster[high] = copySubtree(other, 
+                                                 node.cluster[high], 
+                                                 level + 1, 
+                                                 base | (high << shift));
+            }
+        }
+        
+        return copy;
+    }
+    
+    /**
+     * Inserts the key {@code x} that is neither present in the subtree 
+     * rooted at {@code node} nor smaller than its minimum into the clusters 
+     * of {@code node}. Does not update the maximum of {@code node}.
+     * 
+     * @param node  the internal node.
+     * @param level the level of {@code node}.
+     * @param x     the key to insert, relative to {@code node}.
+     */
+    private void insertIntoClusters(VEBTree node, int level, int x) {
+        int high = x >>> levelShift[level];
+        int low = x & levelMask[level];
+        
+        if (node.summary == null) {
+            node.summary = new long[levelSummaryLength[level]];
+            node.cluster = new VEBTree[levelFanout[level]];
+        }
+        
+        VEBTree child = node.cluster[high];
+        
+        if (child == null) {
+            node.cluster[high] = new VEBTree(low, level + 1 == leafLevel);
+            summarySet(node.summary, levelSummaryOffsets[level], high);
+        } else {
+            treeInsert(child, level + 1, low);
+        }
+    }
+    
+    /**
+     * Deletes the key {@code x} stored in the clusters of {@code node}. Does 
+     * not update the maximum of {@code node}.
+     * 
+     * @param node  the internal node.
+     * @param level the level of {@code node}.
+     * @param x     the key to delete, relative to {@code node}.
+     */
+    private void deleteFromClusters(VEBTree node, int level, int x) {
+        int high = x >>> levelShift[level];
+        VEBTree child = node.cluster[high];
+        
+        if (child.min == child.max) {
+            dropCluster(node, level, high);
+        } else {
+            treeDelete(child, level + 1, x & levelMask[level]);
+        }
+    }
+    
+    /**
+     * Replaces the minimum of {@code node} with the smallest key of its 
+     * clusters. Does not update the maximum of {@code node}.
+     * 
+     * @param node  the internal node.
+     * @param level the level of {@code node}.
+     * @return {@code false} if {@code node} has no clusters and thus became 
+     *         empty.
+     */
+    private boolean pullMinimum(VEBTree node, int level) {
+        if (node.summary == null) {
+            return false;
+        }
+        
+        int high = summaryFirst(node.summary, levelSummaryOffsets[level]);
+        int low = node.cluster[high].min;
+        deleteFromClusters(node, level, (high << levelShift[level]) | low);
+        node.min = (high << levelShift[level]) | low;
+        return true;
+    }
+    
+    /**
+     * Recomputes the maximum of the internal node {@code node}.
+     * 
+     * @param node  the internal node.
+     * @param level the level of {@code node}.
+     */
+    private void fixMaximum(VEBTree node, int level) {
+        if (node.summary == null) {
+            node.max = node.min;
+        } else {
+            int high = summaryLast(node.summary, levelSummaryOffsets[level]);
+            node.max = (high << levelShift[level]) | node.cluster[high].max;
+        }
+    }
+    
+    /**
+     * Removes the cluster {@code high} of {@code node}, releasing the 
+     * summary and the cluster array once they become empty.
+     * 
+     * @param node  the internal node.
+     * @param level the level of {@code node}.
+     * @param high  the index of the cluster.
+     */
+    private void dropCluster(VEBTree node, int level, int high) {
+        node.cluster[high] = null;
+        
+        if (summaryClear(node.summary, levelSummaryOffsets[level], high)) {
+            node.summary = null;
+            node.cluster = null;
+        }
+    }
+    
+    /**
+     * Sets the keys of the leaf {@code leaf} to {@code bits}.
+     * 
+     * @param leaf the leaf node.
+     * @param bits the new keys of the leaf.
+     * @return {@code leaf} or {@code null} if {@code bits} is empty.
+     */
+    private static VEBTree setLeafBits(VEBTree leaf, long bits) {
+        if (bits == 0L) {
+            return null;
+        }
+        
+        leaf.bits = bits;
+        leaf.min = Long.numberOfTrailingZeros(bits);
+        leaf.max = WORD_MASK - Long.numberOfLeadingZeros(bits);
+        return leaf;
+    }
+    
+    /**
+     * Returns the index of the first word of the finest summary level not 
+     * before {@code index} that may have set bits. If both summaries are 
+     * given, the words set in both are looked for, otherwise the words set in
+     * the given one. The second finest level is used to skip the empty 
+     * blocks of words.
+     * 
+     * @param a       the first summary or {@code null}.
+     * @param b       the second summary or {@code null}.
+     * @param offsets the offsets of the summary levels, the finest first.
+     * @param index   the word index to start from.
+     * @return the index of the next candidate word, or the number of the 
+     *         words of the finest level if there is no such.
+     */
+    private static int nextSummaryWord(long[] a, 
+                                       long[] b, 
+                                       int[] offsets, 
+                                       int index) {
+        if (offsets.length == 1) {
+            return index;
+        }
+        
+        int words = offsets[1];
+        int coarseWords = offsets.length > 2 ? offsets[2] - offsets[1] : 1;
+        
+        for (int i = index >>> WORD_SHIFT; i < coarseWords; ++i) {
+            long word = a == null ? b[offsets[1] + i] :
+                        b == null ? a[offsets[1] + i] : 
+                        a[offsets[1] + i] & b[offsets[1] + i];
+            
+            if (i == index >>> WORD_SHIFT) {
+                word &= -1L << index;
+            }
+            
+            if (word != 0L) {
+                return (i << WORD_SHIFT) | Long.numberOfTrailingZeros(word);
+            }
+        }
+        
+        return words;
+    }
+    
+    /**
+     * Removes all the keys within {@code [lo, hi]} from the cluster 
+     * {@code high} of {@code node}, dropping the cluster if it becomes empty.
+     * 
+     * @param node  the parent node.
+     * @param level the level of {@code node}.
+     * @param high  the index of the cluster.
+     * @param lo    the smallest key to remove, relative to the cluster.
+     * @param hi    the largest key to remove, relative to the cluster.
+     * @return {@code true} if the summary of {@code node} became empty.
+     */
+    private boolean removeRangeInCluster(VEBTree node, 
+                                         int level, 
+                                         int high, 
+                                         int lo, 
+                                         int hi) {
+        VEBTree child = node.cluster[high];
+        
+        if (child == null || 
+                treeRemoveRange(child, level + 1, lo, hi) != null) {
+            return false;
+        }
+        
+        node.cluster[high] = null;
+        return summaryClear(node.summary, levelSummaryOffsets[level], high);
+    }
+    
+    /**
+     * This inner interface specifies the API for key iterators.
+     */
+    public interface KeyIterator {
+        
+        /**
+         * Returns {@code true} only if there is more keys to iterate.
+         * 
+         * @return {@code true} if there is more keys to iterate.
+         */
+        public boolean hasNextKey();
+        
+        /**
+         * Returns the next key in the sorted iteration order.
+         * 
+         * @return the next key.
+         */
+        public int nextKey();
+        
+        /**
+         * Removes the entire key/value pair of the current key.
+         */
+        public void removeKey();
+    }
+    
+    /**
+     * This inner interface specifies the API for encoding and decoding the 
+     * values of a serialized map. The codec must handle {@code null} values 
+     * if the map holds any.
+     * 
+     * @param <V> the value type.
+     */
+    public interface ValueCodec<V> {
+        
+        /**
+         * Writes {@code value} to {@code output}.
+         * 
+         * @param value  the value to write.
+         * @param output the output.
+         * @throws IOException if the output fails.
+         */
+        public void write(V value, DataOutput output) throws IOException;
+        
+        /**
+         * Reads a value written by {@link #write(Object, DataOutput)} from
+         * {@code input}.
+         * 
+         * @param input the input.
+         * @return the value read.
+         * @throws IOException if the input fails.
+         */
+        public V read(DataInput input) throws IOException;
+    }
+    
+    /**
+     * Buffers the mappings fed to it in ascending key order and writes them 
+     * out a chunk at a time. The failures of the output are rethrown 
+     * unchecked, since the consumers may not throw checked exceptions.
+     * 
+     * @param <V> the value type.
+     */
+    private static final class ChunkWriter<V> 
+    implements KeyValueConsumer<V> {
+        
+        private final DataOutputStream output;
+        private final ValueCodec<? super V> codec;
+        
+        /**
+         * The encoded keys and values of the current chunk.
+         */
+        private final ByteArrayOutputStream keyBytes = 
+                new ByteArrayOutputStream();
+        private final ByteArrayOutputStream valueBytes = 
+                new ByteArrayOutputStream();
+        private final DataOutputStream keyOutput = 
+                new DataOutputStream(keyBytes);
+        private final DataOutputStream valueOutput = 
+                new DataOutputStream(valueBytes);
+        
+        /**
+         * The number of mappings in the current chunk.
+         */
+        private int count;
+        
+        /**
+         * The last key written, initially the one just below the key range.
+         */
+        private long previousKey;
+        
+        ChunkWriter(DataOutputStream output, 
+                    ValueCodec<? super V> codec, 
+                    int minimumKey) {
+            this.output = output;
+            this.codec = codec;
+            this.previousKey = (long) minimumKey - 1;
+        }
+        
+        @Override
+        public void accept(int key, V value) {
+            try {
+                writeVarLong(keyOutput, key - previousKey);
+                codec.write(value, valueOutput);
+                previousKey = key;
+                
+                if (++count == CHUNK_LENGTH) {
+                    flush();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        
+        /**
+         * Writes out the current chunk, if not empty.
+         * 
+         * @throws IOException if the output fails.
+         */
+        void flush() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            
+            writeVarLong(output, count);
+            writeVarLong(output, (long) keyBytes.size() + valueBytes.size());
+            keyBytes.writeTo(output);
+            valueBytes.writeTo(output);
+            keyBytes.reset();
+            valueBytes.reset();
+            count = 0;
+        }
+    }
+    
+    /**
+     * Reads the chunks written by a {@link ChunkWriter} into a map, a chunk 
+     * at a time, reusing its buffers over the calls.
+     * 
+     * @param <V> the value type.
+     */
+    private static final class ChunkReader<V> {
+        
+        private final DataInputStream input;
+        private final ValueCodec<? extends V> codec;
+        private final int[] keys = new int[CHUNK_LENGTH];
+        private final V[] values = (V[]) new Object[CHUNK_LENGTH];
+        private byte[] payload = new byte[0];
+        
+        ChunkReader(DataInputStream input, ValueCodec<? extends V> codec) {
+            this.input = input;
+            this.codec = codec;
+        }
+        
+        /**
+         * Reads the chunks up to the empty one into {@code map}. 
+         * 
+         * @param map         the map to load.
+         * @param previousKey the key just below the first key to read.
+         * @param lastKey     the largest key allowed.
+         * @param append      whether to append the mappings by 
+         *                    {@link #appendSorted(int[], Object[], int)}
+         *                    rather than to put them.
+         * @throws IOException if the input or the codec fails, or the chunks
+         *                     are corrupt.
+         */
+        void read(VanEmdeBoasTreeIntMap<V> map, 
+                  long previousKey, 
+                  long lastKey, 
+                  boolean append) throws IOException {
+            for (;;) {
+                long count = readVarLong(input);
+                
+                if (count == 0L) {
+                    return;
+                }
+                
+                long length = readVarLong(input);
+                
+                if (count > CHUNK_LENGTH || length < count || 
+                        length > Integer.MAX_VALUE) {
+                    throw new IOException("A chunk header is corrupt.");
+                }
+                
+                if (payload.length < length) {
+                    payload = new byte[(int) length];
+                }
+                
+                input.readFully(payload, 0, (int) length);
+                ByteArrayInputStream chunk = 
+                        new ByteArrayInputStream(payload, 0, (int) length);
+                DataInputStream chunkInput = new DataInputStream(chunk);
+                
+                for (int i = 0; i < count; ++i) {
+                    long key = previousKey + readVarLong(chunkInput);
+                    
+                    if (key <= previousKey || key > lastKey) {
+                        throw new IOException("A chunk holds a corrupt key.");
+                    }
+                    
+                    keys[i] = (int) key;
+                    previousKey = key;
+                }
+                
+                for (int i = 0; i < count; ++i) {
+                    values[i] = codec.read(chunkInput);
+                }
+                
+                if (chunk.available() != 0) {
+                    throw new IOException("A chunk has trailing bytes.");
+                }
+                
+                if (append) {
+                    map.appendSorted(keys, values, (int) count);
+                } else {
+                    for (int i = 0; i < count; ++i) {
+                        map.put(keys[i], values[i]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * This inner interface specifies the API for the consumers of the 
+     * key/value pairs. Unlike {@link java.util.function.BiConsumer}, it takes 
+     * the keys as primitive integers.
+     * 
+     * @param <V> the value type.
+     */
+    @FunctionalInterface
+    public interface KeyValueConsumer<V> {
+        
+        /**
+         * Consumes a single key/value pair.
+         * 
+         * @param key   the key.
+         * @param value the value mapped to {@code key}.
+         */
+        public void accept(int key, V value);
+    }
+    
+    /**
+     * This inner interface specifies the API for folding key/value pairs into
+     * a result, taking the keys as primitive integers.
+     * 
+     * @param <R> the result type.
+     * @param <V> the value type.
+     */
+    @FunctionalInterface
+    public interface KeyValueReducer<R, V> {
+        
+        /**
+         * Folds a single key/value pair into {@code result}.
+         * 
+         * @param result the result so far.
+         * @param key    the key.
+         * @param value  the value mapped to {@code key}.
+         * @return the new result.
+         */
+        public R reduce(R result, int key, V value);
+    }
+    
+    /**
+     * Holds a mapping while iterating the data structure.
+     * 
+     * @param <V> the value type.
+     */
+    public static final class KeyValueMapping<V> {
+        
+        public int key;
+        public V value;
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            
+            if (o == null) {
+                return false;
+            }
+            
+            if (!getClass().equals(o.getClass())) {
+                return false;
+            }
+            
+            KeyValueMapping<V> other = (KeyValueMapping<V>) o;
+            return key == other.key && Objects.equals(value, other.value);
+        }
+    }
+    
+    /**
+     * This inner interface specifies the API for the key/value iterators.
+     * 
+     * @param <V> the value type.
+     */
+    public interface KeyValueIterator<V> {
+        
+        /**
+         * Returns {@code true} only if there is more key/value pairs to 
+         * iterate.
+         * 
+         * @return {@code true} if there is more pairs to iterate.
+         */
+        public boolean hasNextKeyValuePair();
+        
+        /**
+         * Loads the current key/value pair.
+         * 
+         * @param keyValueMapping the key/value pair where to store the data.
+         */
+        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping);
+        
+        /**
+         * Removes the previously iterated key/value pair.
+         */
+        public void removeKeyValuePair();
+    }
+    
+    /**
+     * Implements the key iterator that traverses the integers in order via the
+     * underlying van Emde Boas tree.
+     */
+    public final class TreeKeyIterator implements KeyIterator {
+        
+        private int iterated;
+        private int lastReturned;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKey() {
+            return iterated < size;
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public int nextKey() {
+            if (!hasNextKey()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            if (iterated == 0) {
+                lastReturned = getMinimumKey();
+                iterated++;
+                return lastReturned;
+            } else {
+                int next = getNextIntKey(lastReturned);
+                lastReturned = next;
+                iterated++;
+                return next;
+            }
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKey() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(lastReturned);
+        }
+    }
+    
+    /**
+     * Implements a key iterator that traverses directly the mapping table. This
+     * may provide a speed up over the {@link TreeKeyIterator} if the table is 
+     * densely populated.
+     */
+    public final class TableKeyIterator implements KeyIterator {
+
+        private int iterated;
+        private int currentIndex;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKey() {
+            return iterated < size;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public int nextKey() {
+            if (!hasNextKey()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            if (iterated == 0) {
+                currentIndex = getMinimumKey() - minimumKey;
+                iterated++;
+                return getMinimumKey();
+            } else {
+                currentIndex = tableNextIndex(currentIndex);
+                iterated++;
+                return currentIndex + minimumKey;
+            }
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKey() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(currentIndex + minimumKey);
+        }
+    }
+    
+    /**
+     * Implements the key iterator that traverses the integers in order via the
+     * underlying van Emde Boas tree.
+     */
+    public final class TreeKeyValueIterator implements KeyValueIterator<V> {
+        
+        private int iterated;
+        private int lastReturned;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKeyValuePair() {
+            return iterated < size;
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
+            if (!hasNextKeyValuePair()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            if (iterated == 0) {
+                lastReturned = getMinimumKey();
+                iterated++;
+                V value = tableGet(lastReturned - minimumKey);
+                keyValueMapping.key = lastReturned;
+                keyValueMapping.value = value == NULL_VALUE ? null : value;
+            } else {
+                lastReturned = getNextIntKey(lastReturned);
+                iterated++;
+                V value = tableGet(lastReturned - minimumKey);
+                keyValueMapping.key = lastReturned;
+                keyValueMapping.value = value == NULL_VALUE ? null : value;
+            }
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKeyValuePair() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(lastReturned);
+        }
+    }
+    
+    /**
+     * Implements a key iterator that traverses directly the mapping table. This
+     * may provide a speed up over the {@link TreeKeyIterator} if the table is 
+     * densely populated.
+     */
+    public final class TableKeyValueIterator implements KeyValueIterator<V> {
+
+        private int iterated;
+        private int currentIndex;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKeyValuePair() {
+            return iterated < size;
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
+            if (!hasNextKeyValuePair()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            if (iterated == 0) {
+                currentIndex = getMinimumKey() - minimumKey;
+                V value = tableGet(currentIndex);
+                iterated++;
+                keyValueMapping.key = getMinimumKey();
+                keyValueMapping.value = value == NULL_VALUE ?
+                                        null :
+                                        value;
+            } else {
+                currentIndex = tableNextIndex(currentIndex);
+                iterated++;
+                V value = tableGet(currentIndex);
+                keyValueMapping.key = currentIndex + minimumKey;
+                keyValueMapping.value = value == NULL_VALUE ?
+                                        null :
+                                        value;
+            }
+        }
+
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKeyValuePair() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(currentIndex + minimumKey);
+        }
+    }
+    
+    public float getTableDensityFactor() {
+        if (size == 0) {
+            return 0.0f;
+        }
+        
+        long rangeLength = (long) getMaximumKey() - getMinimumKey() + 1;
+        return (1.0f * size) / rangeLength;
+    }
+    
+    public KeyIterator treeKeyIterator() {
+        return new TreeKeyIterator();
+    }
+    
+    public KeyIterator tableKeyIterator() {
+        return new TableKeyIterator();
+    }
+    
+    public KeyValueIterator<V> treeKeyValueIterator() {
+        return new TreeKeyValueIterator();
+    }
+    
+    public KeyValueIterator<V> tableKeyValueIterator() {
+        return new TableKeyValueIterator();
+    }
+    
+    public static final class Mapping<V> {
+        public int key;
+        public V value;
+        
+        @Override
+        public String toString() {
+            return "(" + key + " -> " + value + ")";
+        }
+    }
+    
+    public static final class MappingIterator<V> {
+        
+        private final VanEmdeBoasTreeIntMap<V> tree;
+        private int iterated = 0;
+        private int lastReturned;
+        
+        MappingIterator(VanEmdeBoasTreeIntMap<V> tree) {
+            this.tree = tree;
+        }
+        
+        public boolean hasNext() {
+            return iterated < tree.size;
+        }
+        
+        public void next(Mapping<V> mapping) {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            if (iterated == 0) {
+                lastReturned = tree.getMinimumKey();
                 iterated++;
-                return currentIndex + minimumKey;
+                mapping.key = lastReturned;
+                mapping.value = tree.tableGet(lastReturned - tree.minimumKey);
+            } else {
+                int next = tree.getNextIntKey(lastReturned);
+                lastReturned = next;
+                iterated++;
+                mapping.key = lastReturned;
+                mapping.value = tree.tableGet(lastReturned - tree.minimumKey);
             }
         }
-
+    }
+    
+    public MappingIterator<V> mappingIterator() {
+        return new MappingIterator<>(this);
+    }
+    
+    /**
+     * Returns a live view of the mappings whose keys are within the given 
+     * bounds. The view copies no data; the changes in the view are visible in
+     * this map and vice versa.
+     * 
+     * @param fromKey       the lower bound of the view.
+     * @param fromInclusive whether {@code fromKey} belongs to the view.
+     * @param toKey         the upper bound of the view.
+     * @param toInclusive   whether {@code toKey} belongs to the view.
+     * @return the range view.
+     */
+    public RangeView subMap(int fromKey, 
+                            boolean fromInclusive, 
+                            int toKey, 
+                            boolean toInclusive) {
+        return new RangeView(minimumKey, maximumKey, false)
+                .subMap(fromKey, fromInclusive, toKey, toInclusive);
+    }
+    
+    /**
+     * Returns a live view of the mappings whose keys are smaller than (or 
+     * equal to, if {@code inclusive} is set) {@code toKey}.
+     * 
+     * @param toKey     the upper bound of the view.
+     * @param inclusive whether {@code toKey} belongs to the view.
+     * @return the range view.
+     */
+    public RangeView headMap(int toKey, boolean inclusive) {
+        return new RangeView(minimumKey, maximumKey, false)
+                .headMap(toKey, inclusive);
+    }
+    
+    /**
+     * Returns a live view of the mappings whose keys are larger than (or 
+     * equal to, if {@code inclusive} is set) {@code fromKey}.
+     * 
+     * @param fromKey   the lower bound of the view.
+     * @param inclusive whether {@code fromKey} belongs to the view.
+     * @return the range view.
+     */
+    public RangeView tailMap(int fromKey, boolean inclusive) {
+        return new RangeView(minimumKey, maximumKey, false)
+                .tailMap(fromKey, inclusive);
+    }
+    
+    /**
+     * Returns a live view of this map iterating the keys in descending order.
+     * 
+     * @return the descending view.
+     */
+    public RangeView descendingMap() {
+        return new RangeView(minimumKey, maximumKey, true);
+    }
+    
+    /**
+     * This inner class implements a live view of a key range of the map. The
+     * view never copies any mappings: the queries are clamped to the range 
+     * and answered by the tree, and the size is computed on demand from the
+     * page counters of the value table. A descending view reverses the 
+     * meaning of all the navigation methods. A missing key is reported with 
+     * the sentinel of the corresponding method of the backing map.
+     * <p>
+     * The bounds of a view are absolute. Once the key range of the map slides
+     * or is trimmed past them, the view covers only the part of its range 
+     * within the current key range, which may be empty.
+     */
+    public final class RangeView {
+        
+        /**
+         * The smallest key of the view. Valid only if the view is not empty.
+         */
+        private final int fromKey;
+        
+        /**
+         * The largest key of the view. Valid only if the view is not empty.
+         */
+        private final int toKey;
+        
+        /**
+         * Set if the range of the view contains no keys at all.
+         */
+        private final boolean emptyRange;
+        
+        /**
+         * Set if the view iterates the keys in descending order.
+         */
+        private final boolean descending;
+        
+        private RangeView(long fromKey, long toKey, boolean descending) {
+            this.emptyRange = fromKey > toKey;
+            this.fromKey = (int) fromKey;
+            this.toKey = (int) toKey;
+            this.descending = descending;
+        }
+        
+        public int size() {
+            return isVoid() ? 
+                   0 : 
+                   tableCountRange(lo() - minimumKey, hi() - minimumKey);
+        }
+        
+        public boolean isEmpty() {
+            return first() == -1L;
+        }
+        
+        public boolean containsKey(int key) {
+            return inRange(key) && VanEmdeBoasTreeIntMap.this.containsKey(key);
+        }
+        
+        public V get(int key) {
+            return inRange(key) ? VanEmdeBoasTreeIntMap.this.get(key) : null;
+        }
+        
+        public V put(int key, V value) {
+            checkInBounds(key);
+            return VanEmdeBoasTreeIntMap.this.put(key, value);
+        }
+        
+        public V remove(int key) {
+            return inRange(key) ? VanEmdeBoasTreeIntMap.this.remove(key) : null;
+        }
+        
+        public void clear() {
+            if (!isVoid()) {
+                removeRange(lo(), hi());
+            }
+        }
+        
+        /**
+         * Returns the first key of the view in its iteration order.
+         * 
+         * @return the first key.
+         */
+        public int firstKey() {
+            return descending ? 
+                   toLowKey(last()) : 
+                   toHighKey(first());
+        }
+        
+        /**
+         * Returns the last key of the view in its iteration order.
+         * 
+         * @return the last key.
+         */
+        public int lastKey() {
+            return descending ? 
+                   toHighKey(first()) : 
+                   toLowKey(last());
+        }
+        
+        /**
+         * Returns the least key in the iteration order of the view that is 
+         * not preceding {@code key}. If there is no such, returns the 
+         * sentinel of {@link VanEmdeBoasTreeIntMap#ceilingKey(int)}, or of 
+         * {@link VanEmdeBoasTreeIntMap#floorKey(int)} if the view is 
+         * descending.
+         * 
+         * @param key the query key.
+         * @return the ceiling key.
+         */
+        public int ceilingKey(int key) {
+            return descending ? 
+                   orHighSentinel(naturalFloor(key)) : 
+                   orLowSentinel(naturalCeiling(key));
+        }
+        
+        /**
+         * Returns the greatest key in the iteration order of the view that is
+         * not after {@code key}. If there is no such, returns the sentinel of
+         * {@link VanEmdeBoasTreeIntMap#floorKey(int)}, or of 
+         * {@link VanEmdeBoasTreeIntMap#ceilingKey(int)} if the view is 
+         * descending.
+         * 
+         * @param key the query key.
+         * @return the floor key.
+         */
+        public int floorKey(int key) {
+            return descending ? 
+                   orLowSentinel(naturalCeiling(key)) : 
+                   orHighSentinel(naturalFloor(key));
+        }
+        
+        /**
+         * Returns the first key following {@code key} in the iteration order 
+         * of the view. If there is no such, returns the sentinel of 
+         * {@link VanEmdeBoasTreeIntMap#higherKey(int)}, or of 
+         * {@link VanEmdeBoasTreeIntMap#lowerKey(int)} if the view is 
+         * descending.
+         * 
+         * @param key the query key.
+         * @return the higher key.
+         */
+        public int higherKey(int key) {
+            return descending ? 
+                   orHighSentinel(naturalLower(key)) : 
+                   orLowSentinel(naturalHigher(key));
+        }
+        
+        /**
+         * Returns the last key preceding {@code key} in the iteration order of
+         * the view. If there is no such, returns the sentinel of 
+         * {@link VanEmdeBoasTreeIntMap#lowerKey(int)}, or of 
+         * {@link VanEmdeBoasTreeIntMap#higherKey(int)} if the view is 
+         * descending.
+         * 
+         * @param key the query key.
+         * @return the lower key.
+         */
+        public int lowerKey(int key) {
+            return descending ? 
+                   orLowSentinel(naturalHigher(key)) : 
+                   orHighSentinel(naturalLower(key));
+        }
+        
+        /**
+         * Returns the least key in the iteration order of the view that is 
+         * not preceding {@code key}, or {@link #NO_KEY} if there is no such.
+         * 
+         * @param key the query key.
+         * @return the ceiling key or {@link #NO_KEY}.
+         */
+        public long findCeilingKey(int key) {
+            return descending ? naturalFloor(key) : naturalCeiling(key);
+        }
+        
+        /**
+         * Returns the greatest key in the iteration order of the view that is
+         * not after {@code key}, or {@link #NO_KEY} if there is no such.
+         * 
+         * @param key the query key.
+         * @return the floor key or {@link #NO_KEY}.
+         */
+        public long findFloorKey(int key) {
+            return descending ? naturalCeiling(key) : naturalFloor(key);
+        }
+        
+        /**
+         * Returns the first key following {@code key} in the iteration order 
+         * of the view, or {@link #NO_KEY} if there is no such.
+         * 
+         * @param key the query key.
+         * @return the higher key or {@link #NO_KEY}.
+         */
+        public long findHigherKey(int key) {
+            return descending ? naturalLower(key) : naturalHigher(key);
+        }
+        
+        /**
+         * Returns the last key preceding {@code key} in the iteration order of
+         * the view, or {@link #NO_KEY} if there is no such.
+         * 
+         * @param key the query key.
+         * @return the lower key or {@link #NO_KEY}.
+         */
+        public long findLowerKey(int key) {
+            return descending ? naturalHigher(key) : naturalLower(key);
+        }
+        
+        /**
+         * Returns a narrower view of this view. The bounds are given in the 
+         * iteration order of this view and must lie within it.
+         * 
+         * @param fromKey       the first bound of the view.
+         * @param fromInclusive whether {@code fromKey} belongs to the view.
+         * @param toKey         the second bound of the view.
+         * @param toInclusive   whether {@code toKey} belongs to the view.
+         * @return the narrower view.
+         */
+        public RangeView subMap(int fromKey, 
+                                boolean fromInclusive, 
+                                int toKey, 
+                                boolean toInclusive) {
+            return descending ? 
+                   narrow(toKey, toInclusive, fromKey, fromInclusive) : 
+                   narrow(fromKey, fromInclusive, toKey, toInclusive);
+        }
+        
+        /**
+         * Returns a view of the keys of this view preceding {@code toKey} in 
+         * its iteration order.
+         * 
+         * @param toKey     the bound of the view.
+         * @param inclusive whether {@code toKey} belongs to the view.
+         * @return the narrower view.
+         */
+        public RangeView headMap(int toKey, boolean inclusive) {
+            return descending ? 
+                   narrow(toKey, inclusive, this.toKey, true) : 
+                   narrow(this.fromKey, true, toKey, inclusive);
+        }
+        
+        /**
+         * Returns a view of the keys of this view following {@code fromKey} in
+         * its iteration order.
+         * 
+         * @param fromKey   the bound of the view.
+         * @param inclusive whether {@code fromKey} belongs to the view.
+         * @return the narrower view.
+         */
+        public RangeView tailMap(int fromKey, boolean inclusive) {
+            return descending ? 
+                   narrow(this.fromKey, true, fromKey, inclusive) : 
+                   narrow(fromKey, inclusive, this.toKey, true);
+        }
+        
+        /**
+         * Returns a view of the same range iterated in the opposite order.
+         * 
+         * @return the reversed view.
+         */
+        public RangeView descendingMap() {
+            return emptyRange ? 
+                   new RangeView(1L, 0L, !descending) :
+                   new RangeView(fromKey, toKey, !descending);
+        }
+        
+        public KeyIterator keyIterator() {
+            return new RangeViewIterator();
+        }
+        
+        public KeyValueIterator<V> keyValueIterator() {
+            return new RangeViewIterator();
+        }
+        
+        /**
+         * Feeds all the mappings of this view to {@code consumer} in the 
+         * iteration order of the view. The consumer must not modify the map.
+         * 
+         * @param consumer the mapping consumer.
+         */
+        public void forEach(KeyValueConsumer<? super V> consumer) {
+            Objects.requireNonNull(consumer, "The input consumer is null.");
+            
+            if (isVoid() || root == null) {
+                return;
+            }
+            
+            int lo = lo() - minimumKey;
+            int hi = hi() - minimumKey;
+            
+            if (!descending) {
+                treeForEach(root, 0, 0, lo, hi, consumer);
+                return;
+            }
+            
+            for (long x = treeLastInRange(lo, hi); 
+                    x != -1L; 
+                    x = x == (lo & 0xFFFFFFFFL) ? 
+                        -1L : 
+                        treeLastInRange(lo, (int) x - 1)) {
+                accept((int) x, consumer);
+            }
+        }
+        
+        private RangeView narrow(int fromKey, 
+                                 boolean fromInclusive, 
+                                 int toKey, 
+                                 boolean toInclusive) {
+            checkInBounds(fromKey);
+            checkInBounds(toKey);
+            
+            if (fromKey > toKey) {
+                throw new IllegalArgumentException(
+                        "fromKey(" + fromKey + ") > toKey(" + toKey + ")");
+            }
+            
+            return new RangeView(fromInclusive ? fromKey : fromKey + 1L,
+                                 toInclusive ? toKey : toKey - 1L,
+                                 descending);
+        }
+        
+        private long naturalCeiling(int key) {
+            if (isVoid() || key > hi()) {
+                return NO_KEY;
+            }
+            
+            return toFoundKey(firstFrom(Math.max(key, lo())));
+        }
+        
+        private long naturalHigher(int key) {
+            if (isVoid() || key >= hi()) {
+                return NO_KEY;
+            }
+            
+            return toFoundKey(firstFrom(key < lo() ? lo() : key + 1));
+        }
+        
+        private long naturalFloor(int key) {
+            if (isVoid() || key < lo()) {
+                return NO_KEY;
+            }
+            
+            return toFoundKey(lastUntil(Math.min(key, hi())));
+        }
+        
+        private long naturalLower(int key) {
+            if (isVoid() || key <= lo()) {
+                return NO_KEY;
+            }
+            
+            return toFoundKey(lastUntil(key > hi() ? hi() : key - 1));
+        }
+        
+        private long first() {
+            return isVoid() ? -1L : firstFrom(lo());
+        }
+        
+        private long last() {
+            return isVoid() ? -1L : lastUntil(hi());
+        }
+        
+        private long firstFrom(int key) {
+            return treeFirstInRange(key - minimumKey, hi() - minimumKey);
+        }
+        
+        private long lastUntil(int key) {
+            return treeLastInRange(lo() - minimumKey, key - minimumKey);
+        }
+        
+        /**
+         * Returns {@code true} if no key of the view lies within the current
+         * key range of the map.
+         */
+        private boolean isVoid() {
+            return emptyRange || 
+                   fromKey > VanEmdeBoasTreeIntMap.this.maximumKey || 
+                   toKey < minimumKey;
+        }
+        
+        /**
+         * Returns the smallest key of the view within the current key range 
+         * of the map. Valid only if the view is not void.
+         */
+        private int lo() {
+            return Math.max(fromKey, minimumKey);
+        }
+        
+        /**
+         * Returns the largest key of the view within the current key range of
+         * the map. Valid only if the view is not void.
+         */
+        private int hi() {
+            return Math.min(toKey, VanEmdeBoasTreeIntMap.this.maximumKey);
+        }
+        
+        /**
+         * Converts the translated key {@code x} to a key, mapping the missing 
+         * key to {@link #NO_KEY}.
+         */
+        private long toFoundKey(long x) {
+            return x == -1L ? NO_KEY : (int) x + minimumKey;
+        }
+        
+        /**
+         * Converts the translated key {@code x} to a key, mapping the missing 
+         * key to {@code minimumKey - 1}.
+         */
+        private int toLowKey(long x) {
+            return x == -1L ? 
+                   VanEmdeBoasTreeIntMap.this.minimumKey - 1 : 
+                   (int) x + minimumKey;
+        }
+        
+        /**
+         * Converts the translated key {@code x} to a key, mapping the missing 
+         * key to {@code maximumKey + 1}.
+         */
+        private int toHighKey(long x) {
+            return x == -1L ? 
+                   VanEmdeBoasTreeIntMap.this.maximumKey + 1 : 
+                   (int) x + minimumKey;
+        }
+        
+        private boolean inRange(int key) {
+            return !isVoid() && key >= lo() && key <= hi();
+        }
+        
+        private void checkInBounds(int key) {
+            if (emptyRange || key < fromKey || key > toKey) {
+                throw new IllegalArgumentException(
+                        "The given key (" + key + ") is out of the view " + 
+                        "range.");
+            }
+        }
+        
         /**
-         * {@inheritDoc }
+         * Implements the iterators of the view. The next key is located by a 
+         * single descent clamped to the view range.
          */
-        @Override
-        public void removeKey() {
-            if (iterated == 0) {
-                throw new IllegalStateException(
-                        "No current key to remove yet.");
+        private final class RangeViewIterator 
+                implements KeyIterator, KeyValueIterator<V> {
+            
+            /**
+             * The next translated key to return, or {@code -1} if the 
+             * iteration is over.
+             */
+            private long next = descending ? last() : first();
+            
+            private int lastReturned;
+            private boolean hasLastReturned;
+            
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public boolean hasNextKey() {
+                return next != -1L;
             }
             
-            remove(currentIndex + minimumKey);
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public int nextKey() {
+                if (next == -1L) {
+                    throw new NoSuchElementException(
+                            "Nothing to iterate left.");
+                }
+                
+                int x = (int) next;
+                int key = x + minimumKey;
+                
+                if (descending) {
+                    next = key == lo() ? -1L : lastUntil(key - 1);
+                } else {
+                    next = key == hi() ? -1L : firstFrom(key + 1);
+                }
+                
+                lastReturned = key;
+                hasLastReturned = true;
+                return key;
+            }
+            
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public void removeKey() {
+                if (!hasLastReturned) {
+                    throw new IllegalStateException(
+                            "No current key to remove yet.");
+                }
+                
+                VanEmdeBoasTreeIntMap.this.remove(lastReturned);
+                hasLastReturned = false;
+            }
+            
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public boolean hasNextKeyValuePair() {
+                return hasNextKey();
+            }
+            
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
+                keyValueMapping.key = nextKey();
+                keyValueMapping.value = get(keyValueMapping.key);
+            }
+            
+            /**
+             * {@inheritDoc }
+             */
+            @Override
+            public void removeKeyValuePair() {
+                removeKey();
+            }
         }
     }
     
     /**
-     * Implements the key iterator that traverses the integers in order via the
-     * underlying van Emde Boas tree.
+     * Returns the value stored at the translated key {@code index}, or 
+     * {@code null} if there is no such mapping.
+     * 
+     * @param index the translated key.
+     * @return the stored value or {@code null}.
      */
-    public final class TreeKeyValueIterator implements KeyValueIterator<V> {
+    private V tableGet(int index) {
+        V[][] directory = directories[index >>> directoryShift];
         
-        private int iterated;
-        private int lastReturned;
+        if (directory == null) {
+            return null;
+        }
+        
+        V[] page = directory[(index >>> pageShift) & directoryMask];
+        return page == null ? null : page[index & pageMask];
+    }
+    
+    /**
+     * Stores a non-{@code null} value at the translated key {@code index},
+     * allocating the directory and the page if needed.
+     * 
+     * @param index the translated key.
+     * @param value the value to store.
+     */
+    private void tableSet(int index, V value) {
+        int directoryIndex = index >>> directoryShift;
+        int pageIndex = (index >>> pageShift) & directoryMask;
+        V[][] directory = directories[directoryIndex];
+        
+        if (directory == null) {
+            directory = (V[][]) new Object[directoryMask + 1][];
+            directories[directoryIndex] = directory;
+            pageSizes[directoryIndex] = new int[directoryMask + 1];
+        }
+        
+        V[] page = directory[pageIndex];
+        
+        if (page == null) {
+            page = (V[]) new Object[pageMask + 1];
+            directory[pageIndex] = page;
+        }
+        
+        if (page[index & pageMask] == null) {
+            directorySizes[directoryIndex]++;
+            pageSizes[directoryIndex][pageIndex]++;
+        }
+        
+        page[index & pageMask] = value;
+        
+        if (dirtyPages != null) {
+            markDirty(index, index);
+        }
+    }
+    
+    /**
+     * Stores a non-{@code null} value at the translated key {@code index}, 
+     * which is not yet present and whose directory is already allocated and 
+     * counted. Touches only the page of the key, so that the pages of 
+     * different root clusters may be filled concurrently.
+     * 
+     * @param index the translated key.
+     * @param value the value to store.
+     */
+    private void tableFill(int index, V value) {
+        int directoryIndex = index >>> directoryShift;
+        int pageIndex = (index >>> pageShift) & directoryMask;
+        V[][] directory = directories[directoryIndex];
+        V[] page = directory[pageIndex];
+        
+        if (page == null) {
+            page = (V[]) new Object[pageMask + 1];
+            directory[pageIndex] = page;
+        }
+        
+        page[index & pageMask] = value;
+        pageSizes[directoryIndex][pageIndex]++;
+    }
+    
+    /**
+     * Removes the value stored at the present translated key {@code index}, 
+     * releasing the page and the directory if they become empty.
+     * 
+     * @param index the translated key.
+     */
+    private void tableClear(int index) {
+        if (dirtyPages != null) {
+            markDirty(index, index);
+        }
+        
+        int directoryIndex = index >>> directoryShift;
+        int pageIndex = (index >>> pageShift) & directoryMask;
+        
+        if (--directorySizes[directoryIndex] == 0) {
+            directories[directoryIndex] = null;
+            pageSizes[directoryIndex] = null;
+        } else if (--pageSizes[directoryIndex][pageIndex] == 0) {
+            directories[directoryIndex][pageIndex] = null;
+        } else {
+            directories[directoryIndex][pageIndex][index & pageMask] = null;
+        }
+    }
+    
+    /**
+     * Removes the value stored at the translated key {@code index} and 
+     * accounts for the removed mapping.
+     * 
+     * @param index the translated key.
+     */
+    private void tableDrop(int index) {
+        tableClear(index);
+        size--;
+    }
+    
+    /**
+     * Removes the values stored at the translated keys 
+     * {@code base + i} for each bit {@code i} set in {@code bits}.
+     * 
+     * @param base the translated key of the bit zero.
+     * @param bits the keys to remove.
+     */
+    private void tableDropBits(int base, long bits) {
+        for (; bits != 0L; bits &= bits - 1) {
+            tableDrop(base | Long.numberOfTrailingZeros(bits));
+        }
+    }
+    
+    /**
+     * Copies the value stored at the translated key {@code index} of 
+     * {@code other} to this map, where the key is not yet present.
+     * 
+     * @param other the map to copy from.
+     * @param index the translated key.
+     */
+    private void copyValue(VanEmdeBoasTreeIntMap<? extends V> other, 
+                           int index) {
+        tableSet(index, other.tableGet(index));
+        size++;
+    }
+    
+    /**
+     * Removes all the values stored at the translated keys within 
+     * {@code [lo, hi]}. The directories and pages lying entirely within the
+     * range are dropped without visiting their slots.
+     * 
+     * @param lo the smallest translated key.
+     * @param hi the largest translated key.
+     * @return the number of removed values.
+     */
+    private int tableClearRange(int lo, int hi) {
+        if (dirtyPages != null) {
+            markDirty(lo, hi);
+        }
+        
+        long index = lo & 0xFFFFFFFFL;
+        long end = hi & 0xFFFFFFFFL;
+        int removed = 0;
+        
+        while (index <= end) {
+            int directoryIndex = (int) (index >>> directoryShift);
+            long directoryEnd = 
+                    (((long) directoryIndex + 1) << directoryShift) - 1;
+            V[][] directory = directories[directoryIndex];
+            
+            if (directory == null) {
+                index = directoryEnd + 1;
+                continue;
+            }
+            
+            if ((index & ((1L << directoryShift) - 1)) == 0 && 
+                    directoryEnd <= end) {
+                removed += directorySizes[directoryIndex];
+                directories[directoryIndex] = null;
+                directorySizes[directoryIndex] = 0;
+                pageSizes[directoryIndex] = null;
+                index = directoryEnd + 1;
+                continue;
+            }
+            
+            int pageIndex = (int) (index >>> pageShift) & directoryMask;
+            long pageEnd = index | pageMask;
+            V[] page = directory[pageIndex];
+            
+            if (page != null) {
+                int count = 0;
+                
+                if ((index & pageMask) == 0 && pageEnd <= end) {
+                    count = pageSizes[directoryIndex][pageIndex];
+                } else {
+                    int last = (int) (Math.min(pageEnd, end) & pageMask);
+                    
+                    for (int i = (int) (index & pageMask); i <= last; ++i) {
+                        if (page[i] != null) {
+                            page[i] = null;
+                            count++;
+                        }
+                    }
+                }
+                
+                removed += count;
+                
+                if ((directorySizes[directoryIndex] -= count) == 0) {
+                    directories[directoryIndex] = null;
+                    pageSizes[directoryIndex] = null;
+                    index = directoryEnd + 1;
+                    continue;
+                }
+                
+                if ((pageSizes[directoryIndex][pageIndex] -= count) == 0) {
+                    directory[pageIndex] = null;
+                }
+            }
+            
+            index = pageEnd + 1;
+        }
+        
+        return removed;
+    }
+    
+    /**
+     * Counts the values stored at the translated keys within 
+     * {@code [lo, hi]}. The directories and pages lying entirely within the 
+     * range are counted through their size counters without visiting their 
+     * slots.
+     * 
+     * @param lo the smallest translated key.
+     * @param hi the largest translated key.
+     * @return the number of values in the range.
+     */
+    private int tableCountRange(int lo, int hi) {
+        long index = lo & 0xFFFFFFFFL;
+        long end = hi & 0xFFFFFFFFL;
+        int count = 0;
+        
+        while (index <= end) {
+            int directoryIndex = (int) (index >>> directoryShift);
+            long directoryEnd = 
+                    (((long) directoryIndex + 1) << directoryShift) - 1;
+            V[][] directory = directories[directoryIndex];
+            
+            if (directory == null) {
+                index = directoryEnd + 1;
+                continue;
+            }
+            
+            if ((index & ((1L << directoryShift) - 1)) == 0 && 
+                    directoryEnd <= end) {
+                count += directorySizes[directoryIndex];
+                index = directoryEnd + 1;
+                continue;
+            }
+            
+            int pageIndex = (int) (index >>> pageShift) & directoryMask;
+            long pageEnd = index | pageMask;
+            V[] page = directory[pageIndex];
+            
+            if (page != null) {
+                if ((index & pageMask) == 0 && pageEnd <= end) {
+                    count += pageSizes[directoryIndex][pageIndex];
+                } else {
+                    int last = (int) (Math.min(pageEnd, end) & pageMask);
+                    
+                    for (int i = (int) (index & pageMask); i <= last; ++i) {
+                        if (page[i] != null) {
+                            count++;
+                        }
+                    }
+                }
+            }
+            
+            index = pageEnd + 1;
+        }
+        
+        return count;
+    }
+    
+    /**
+     * Moves all the values stored at the translated keys not smaller than 
+     * {@code index} to the empty table of {@code upper}. The directories and
+     * pages lying entirely above {@code index} are moved as a whole, and only
+     * the page holding {@code index} is split slot by slot.
+     * 
+     * @param index the smallest translated key to move.
+     * @param upper the map receiving the values.
+     * @return the number of moved values.
+     */
+    private int tableSplit(int index, VanEmdeBoasTreeIntMap<V> upper) {
+        int directoryIndex = index >>> directoryShift;
+        int pageIndex = (index >>> pageShift) & directoryMask;
+        int offset = index & pageMask;
+        int firstMovedDirectory = directoryIndex + 1;
+        int moved = 0;
+        V[][] directory = directories[directoryIndex];
+        
+        if (pageIndex == 0 && offset == 0) {
+            firstMovedDirectory = directoryIndex;
+        } else if (directory != null) {
+            int[] sizes = pageSizes[directoryIndex];
+            V[][] upperDirectory = (V[][]) new Object[directoryMask + 1][];
+            int[] upperSizes = new int[directoryMask + 1];
+            
+            for (int p = pageIndex; p <= directoryMask; ++p) {
+                V[] page = directory[p];
+                
+                if (page == null) {
+                    continue;
+                }
+                
+                int count = sizes[p];
+                
+                if (p == pageIndex && offset != 0) {
+                    count = 0;
+                    
+                    for (int i = offset; i <= pageMask; ++i) {
+                        if (page[i] != null) {
+                            count++;
+                        }
+                    }
+                    
+                    if (count == 0) {
+                        continue;
+                    }
+                    
+                    if (count != sizes[p]) {
+                        V[] upperPage = (V[]) new Object[pageMask + 1];
+                        System.arraycopy(page, 
+                                         offset, 
+                                         upperPage, 
+                                         offset, 
+                                         pageMask + 1 - offset);
+                        Arrays.fill(page, offset, pageMask + 1, null);
+                        page = upperPage;
+                    }
+                }
+                
+                upperDirectory[p] = page;
+                upperSizes[p] = count;
+                
+                if ((sizes[p] -= count) == 0) {
+                    directory[p] = null;
+                }
+                
+                moved += count;
+            }
+            
+            if (moved != 0) {
+                upper.directories[directoryIndex] = upperDirectory;
+                upper.pageSizes[directoryIndex] = upperSizes;
+                upper.directorySizes[directoryIndex] = moved;
+                
+                if ((directorySizes[directoryIndex] -= moved) == 0) {
+                    directories[directoryIndex] = null;
+                    pageSizes[directoryIndex] = null;
+                }
+            }
+        }
+        
+        for (int d = firstMovedDirectory; d < directories.length; ++d) {
+            if (directories[d] != null) {
+                upper.directories[d] = directories[d];
+                upper.pageSizes[d] = pageSizes[d];
+                upper.directorySizes[d] = directorySizes[d];
+                moved += directorySizes[d];
+                directories[d] = null;
+                pageSizes[d] = null;
+                directorySizes[d] = 0;
+            }
+        }
+        
+        return moved;
+    }
+    
+    /**
+     * Adds a new root level with {@code 2^growthShift} clusters, making the
+     * current root its cluster {@code high}. The current root is a complete 
+     * vEB tree one level deeper, except that the new root keeps the smallest 
+     * key out of its clusters.
+     * 
+     * @param growthShift the binary logarithm of the fanout of the new root.
+     * @param high        the index of the cluster of the current root.
+     */
+    private void addRootLevel(int growthShift, int high) {
+        int levels = leafLevel + 2;
+        levelShift = prependLevel(levelShift, universeShift);
+        levelMask = prependLevel(levelMask, (int) ((1L << universeShift) - 1));
+        levelFanout = prependLevel(levelFanout, 1 << growthShift);
+        int[][] summaryOffsets = new int[levels][];
+        summaryOffsets[0] = computeSummaryOffsets(growthShift);
+        System.arraycopy(levelSummaryOffsets, 
+                         0, 
+                         summaryOffsets, 
+                         1, 
+                         levels - 1);
+        levelSummaryOffsets = summaryOffsets;
+        levelSummaryLength = 
+                prependLevel(levelSummaryLength, 
+                             computeSummaryLength(summaryOffsets[0]));
+        leafLevel++;
+        deletionPath = new VEBTree[levels];
+        deletionPathHigh = new int[levels];
+        int oldUniverseShift = universeShift;
+        universeShift += growthShift;
+        
+        if (root != null) {
+            VEBTree child = root;
+            int base = high << oldUniverseShift;
+            root = new VEBTree(base | child.min, false);
+            root.max = base | child.max;
+            
+            if (child.min != child.max) {
+                treeDelete(child, 1, child.min);
+                root.summary = new long[levelSummaryLength[0]];
+                root.cluster = new VEBTree[levelFanout[0]];
+                root.cluster[high] = child;
+                summarySet(root.summary, levelSummaryOffsets[0], high);
+            }
+        }
+        
+        tableGrow(oldUniverseShift, high);
+        modCount++;
+    }
+    
+    /**
+     * Removes the root level from the level tables. The caller replaces the
+     * root.
+     */
+    private void removeRootLevel() {
+        universeShift = levelShift[0];
+        levelShift = Arrays.copyOfRange(levelShift, 1, levelShift.length);
+        levelMask = Arrays.copyOfRange(levelMask, 1, levelMask.length);
+        levelFanout = Arrays.copyOfRange(levelFanout, 1, levelFanout.length);
+        levelSummaryLength = Arrays.copyOfRange(levelSummaryLength, 
+                                                1, 
+                                                levelSummaryLength.length);
+        levelSummaryOffsets = Arrays.copyOfRange(levelSummaryOffsets, 
+                                                 1, 
+                                                 levelSummaryOffsets.length);
+        leafLevel--;
+        deletionPath = new VEBTree[leafLevel + 1];
+        deletionPathHigh = new int[leafLevel + 1];
+    }
+    
+    /**
+     * Moves all the values to a new value table allocated for the current 
+     * universe, subtracting {@code offset} from their translated keys.
+     * 
+     * @param offset the translated key of the smallest key of the old table 
+     *               to keep.
+     */
+    private void tableRebuild(int offset) {
+        V[][][] oldDirectories = directories;
+        int oldDirectoryShift = directoryShift;
+        int oldPageShift = pageShift;
+        allocateTable();
+        
+        for (int d = 0; d < oldDirectories.length; ++d) {
+            V[][] directory = oldDirectories[d];
+            
+            if (directory == null) {
+                continue;
+            }
+            
+            for (int p = 0; p < directory.length; ++p) {
+                V[] page = directory[p];
+                
+                if (page == null) {
+                    continue;
+                }
+                
+                int base = (d << oldDirectoryShift) | (p << oldPageShift);
+                
+                for (int i = 0; i < page.length; ++i) {
+                    if (page[i] != null) {
+                        tableSet((base | i) - offset, page[i]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Marks the value pages covering the translated keys within 
+     * {@code [lo, hi]} as modified since the last checkpoint.
+     * 
+     * @param lo the smallest translated key.
+     * @param hi the largest translated key.
+     */
+    private void markDirty(int lo, int hi) {
+        int first = lo >>> pageShift;
+        int last = (int) Math.min(hi >>> pageShift, 
+                                  (1L << (universeShift - pageShift)) - 1);
+        int firstWord = first >>> WORD_SHIFT;
+        int lastWord = last >>> WORD_SHIFT;
+        
+        if (firstWord == lastWord) {
+            dirtyPages[firstWord] |= (-1L << first) & (-1L >>> ~last);
+            return;
+        }
+        
+        dirtyPages[firstWord] |= -1L << first;
+        Arrays.fill(dirtyPages, firstWord + 1, lastWord, -1L);
+        dirtyPages[lastWord] |= -1L >>> ~last;
+    }
+    
+    /**
+     * Returns the first page not before {@code page} modified since the last
+     * checkpoint, or {@code pages} if there is no such.
+     */
+    private long nextDirtyPage(long page, long pages) {
+        while (page < pages) {
+            long word = dirtyPages[(int) (page >>> WORD_SHIFT)] & 
+                        (-1L << page);
+            
+            if (word != 0L) {
+                return Math.min((page & ~WORD_MASK) + 
+                                Long.numberOfTrailingZeros(word), 
+                                pages);
+            }
+            
+            page = (page | WORD_MASK) + 1;
+        }
+        
+        return pages;
+    }
+    
+    /**
+     * Returns the first page not before {@code page} not modified since the 
+     * last checkpoint, or {@code pages} if there is no such.
+     */
+    private long nextCleanPage(long page, long pages) {
+        while (page < pages) {
+            long word = ~dirtyPages[(int) (page >>> WORD_SHIFT)] & 
+                        (-1L << page);
+            
+            if (word != 0L) {
+                return Math.min((page & ~WORD_MASK) + 
+                                Long.numberOfTrailingZeros(word), 
+                                pages);
+            }
+            
+            page = (page | WORD_MASK) + 1;
+        }
+        
+        return pages;
+    }
+    
+    /**
+     * Stops tracking the current checkpoint after the key range changed, 
+     * since the modified pages can no longer be told apart.
+     */
+    private void loseCheckpoint() {
+        if (dirtyPages != null) {
+            dirtyPages = null;
+            checkpointLost = true;
+        }
+    }
+    
+    /**
+     * Estimates the number of bytes taken by the value table.
+     * 
+     * @return the estimated size of the value table in bytes.
+     */
+    private long tableBytes() {
+        long bytes = 2 * arrayBytes(directories.length, REFERENCE_BYTES) + 
+                     arrayBytes(directorySizes.length, Integer.BYTES);
+        
+        for (V[][] directory : directories) {
+            if (directory == null) {
+                continue;
+            }
+            
+            bytes += arrayBytes(directory.length, REFERENCE_BYTES) + 
+                     arrayBytes(directory.length, Integer.BYTES);
+            
+            for (V[] page : directory) {
+                if (page != null) {
+                    bytes += arrayBytes(page.length, REFERENCE_BYTES);
+                }
+            }
+        }
+        
+        return bytes;
+    }
+    
+    private static long arrayBytes(long length, int elementBytes) {
+        return (ARRAY_HEADER_BYTES + length * elementBytes + 7) & ~7L;
+    }
+    
+    /**
+     * Grows the value table to the current universe, moving the old table to
+     * the slice {@code high} of it. The pages keep their length. If the old 
+     * table was a single partially used directory, it is widened.
+     * 
+     * @param oldUniverseShift the binary logarithm of the old universe size.
+     * @param high             the index of the slice of the old table.
+     */
+    private void tableGrow(int oldUniverseShift, int high) {
+        V[][][] oldDirectories = directories;
+        int[] oldDirectorySizes = directorySizes;
+        int[][] oldPageSizes = pageSizes;
+        int directoryShiftDelta = Math.min(universeShift - pageShift,
+                                           MAXIMUM_DIRECTORY_SHIFT);
+        int newDirectoryShift = pageShift + directoryShiftDelta;
+        int numberOfDirectories = 1 << (universeShift - newDirectoryShift);
+        directories = (V[][][]) new Object[numberOfDirectories][][];
+        directorySizes = new int[numberOfDirectories];
+        pageSizes = new int[numberOfDirectories][];
+        
+        if (newDirectoryShift == directoryShift) {
+            // Whole directories move:
+            int offset = high << (oldUniverseShift - directoryShift);
+            int length = oldDirectories.length;
+            System.arraycopy(oldDirectories, 0, directories, offset, length);
+            System.arraycopy(oldPageSizes, 0, pageSizes, offset, length);
+            System.arraycopy(oldDirectorySizes, 
+                             0, 
+                             directorySizes, 
+                             offset, 
+                             length);
+            return;
+        }
+        
+        // The old table was a single directory:
+        directoryShift = newDirectoryShift;
+        directoryMask = (1 << directoryShiftDelta) - 1;
+        
+        if (oldDirectories[0] == null) {
+            return;
+        }
+        
+        int oldPages = oldDirectories[0].length;
+        int firstPage = high << (oldUniverseShift - pageShift);
+        int directory = firstPage >>> directoryShiftDelta;
+        int page = firstPage & directoryMask;
+        directories[directory] = (V[][]) new Object[directoryMask + 1][];
+        pageSizes[directory] = new int[directoryMask + 1];
+        directorySizes[directory] = oldDirectorySizes[0];
+        System.arraycopy(oldDirectories[0], 
+                         0, 
+                         directories[directory], 
+                         page, 
+                         oldPages);
+        System.arraycopy(oldPageSizes[0], 
+                         0, 
+                         pageSizes[directory], 
+                         page, 
+                         oldPages);
+    }
+    
+    /**
+     * Moves all the value pages down by {@code pages} page positions. The 
+     * pages below that must be empty. The pages are moved by pointer, and the
+     * directories emptied on the way are reused as destinations before the 
+     * unused ones are released.
+     * 
+     * @param pages the number of page positions to move the pages by.
+     */
+    private void tableShiftDown(int pages) {
+        int directoryBits = directoryShift - pageShift;
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public boolean hasNextKeyValuePair() {
-            return iterated < size;
+        if ((pages & directoryMask) == 0) {
+            // Whole directories move:
+            int distance = pages >>> directoryBits;
+            int length = directories.length - distance;
+            System.arraycopy(directories, distance, directories, 0, length);
+            System.arraycopy(pageSizes, distance, pageSizes, 0, length);
+            System.arraycopy(directorySizes, 
+                             distance, 
+                             directorySizes, 
+                             0, 
+                             length);
+            Arrays.fill(directories, length, directories.length, null);
+            Arrays.fill(pageSizes, length, pageSizes.length, null);
+            Arrays.fill(directorySizes, length, directorySizes.length, 0);
+            return;
         }
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
-            if (!hasNextKeyValuePair()) {
-                throw new NoSuchElementException("Nothing to iterate left.");
+        for (int d = 0; d < directories.length; ++d) {
+            V[][] directory = directories[d];
+            
+            if (directory == null) {
+                continue;
             }
             
-            if (iterated == 0) {
-                lastReturned = getMinimumKey();
-                iterated++;
-                V value = table[lastReturned - minimumKey];
-                keyValueMapping.key = lastReturned;
-                keyValueMapping.value = value == NULL_VALUE ? null : value;
-            } else {
-                lastReturned = getNextIntKey(lastReturned);
-                iterated++;
-                V value = table[lastReturned - minimumKey];
-                keyValueMapping.key = lastReturned;
-                keyValueMapping.value = value == NULL_VALUE ? null : value;
+            for (int p = 0; p <= directoryMask; ++p) {
+                V[] page = directory[p];
+                
+                if (page == null) {
+                    continue;
+                }
+                
+                int count = pageSizes[d][p];
+                int target = ((d << directoryBits) | p) - pages;
+                int targetDirectory = target >>> directoryBits;
+                int targetPage = target & directoryMask;
+                directory[p] = null;
+                pageSizes[d][p] = 0;
+                directorySizes[d] -= count;
+                
+                if (directories[targetDirectory] == null) {
+                    directories[targetDirectory] = 
+                            (V[][]) new Object[directoryMask + 1][];
+                    pageSizes[targetDirectory] = new int[directoryMask + 1];
+                }
+                
+                directories[targetDirectory][targetPage] = page;
+                pageSizes[targetDirectory][targetPage] = count;
+                directorySizes[targetDirectory] += count;
             }
         }
         
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public void removeKeyValuePair() {
-            if (iterated == 0) {
-                throw new IllegalStateException(
-                        "No current key to remove yet.");
+        for (int d = 0; d < directories.length; ++d) {
+            if (directorySizes[d] == 0) {
+                directories[d] = null;
+                pageSizes[d] = null;
             }
-            
-            remove(lastReturned);
         }
     }
     
     /**
-     * Implements a key iterator that traverses directly the mapping table. This
-     * may provide a speed up over the {@link TreeKeyIterator} if the table is 
-     * densely populated.
+     * Moves all the values of the table of {@code other} to this table, 
+     * leaving the table of {@code other} empty. The key sets of the two maps 
+     * must be disjoint. The directories and pages missing from this table are
+     * moved as a whole, and the others are merged slot by slot.
+     * 
+     * @param other the map whose values to move.
      */
-    public final class TableKeyValueIterator implements KeyValueIterator<V> {
-
-        private int iterated;
-        private int currentIndex;
-        
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public boolean hasNextKeyValuePair() {
-            return iterated < size;
-        }
-
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
-            if (!hasNextKeyValuePair()) {
-                throw new NoSuchElementException("Nothing to iterate left.");
+    private void tableJoin(VanEmdeBoasTreeIntMap<V> other) {
+        for (int d = 0; d < directories.length; ++d) {
+            V[][] otherDirectory = other.directories[d];
+            
+            if (otherDirectory == null) {
+                continue;
             }
             
-            if (iterated == 0) {
-                currentIndex = getMinimumKey() - minimumKey;
-                V value = table[currentIndex];
-                iterated++;
-                keyValueMapping.key = getMinimumKey();
-                keyValueMapping.value = value == NULL_VALUE ?
-                                        null :
-                                        value;
+            V[][] directory = directories[d];
+            
+            if (directory == null) {
+                directories[d] = otherDirectory;
+                pageSizes[d] = other.pageSizes[d];
             } else {
-                for (currentIndex++; 
-                        table[currentIndex] == null; 
-                        currentIndex++) {}
-                
-                iterated++;
-                V value = table[currentIndex];
-                keyValueMapping.key = currentIndex + minimumKey;
-                keyValueMapping.value = value == NULL_VALUE ?
-                                        null :
-                                        value;
+                for (int p = 0; p <= directoryMask; ++p) {
+                    V[] otherPage = otherDirectory[p];
+                    
+                    if (otherPage == null) {
+                        continue;
+                    }
+                    
+                    V[] page = directory[p];
+                    
+                    if (page == null) {
+                        directory[p] = otherPage;
+                    } else {
+                        for (int i = 0; i <= pageMask; ++i) {
+                            if (otherPage[i] != null) {
+                                page[i] = otherPage[i];
+                            }
+                        }
+                    }
+                    
+                    pageSizes[d][p] += other.pageSizes[d][p];
+                }
             }
+            
+            directorySizes[d] += other.directorySizes[d];
+            other.directories[d] = null;
+            other.pageSizes[d] = null;
+            other.directorySizes[d] = 0;
         }
-
-        /**
-         * {@inheritDoc }
-         */
-        @Override
-        public void removeKeyValuePair() {
-            if (iterated == 0) {
-                throw new IllegalStateException(
-                        "No current key to remove yet.");
+    }
+    
+    /**
+     * Returns the smallest translated key larger than {@code index} that has
+     * a value in the table. Unallocated directories and pages are skipped as a
+     * whole. The caller must make sure such a key exists.
+     * 
+     * @param index the starting translated key.
+     * @return the next occupied translated key.
+     */
+    private int tableNextIndex(int index) {
+        index++;
+        
+        for (;;) {
+            V[][] directory = directories[index >>> directoryShift];
+            
+            if (directory == null) {
+                index = ((index >>> directoryShift) + 1) << directoryShift;
+                continue;
             }
             
-            remove(currentIndex + minimumKey);
+            V[] page = directory[(index >>> pageShift) & directoryMask];
+            
+            if (page != null) {
+                for (int i = index & pageMask; i <= pageMask; ++i) {
+                    if (page[i] != null) {
+                        return (index & ~pageMask) | i;
+                    }
+                }
+            }
+            
+            index = ((index >>> pageShift) + 1) << pageShift;
         }
     }
     
-    public float getTableDensityFactor() {
-        if (size == 0) {
-            return 0.0f;
+    private void checkBounds(int minimumKey, int maximumKey) {
+        if (minimumKey > maximumKey) {
+            throw new IllegalArgumentException(
+                    "minimumKey(" + minimumKey + ") > " +
+                    "maximumKey(" + maximumKey + ")");
+        }
+    }
+    
+    /**
+     * Computes the binary logarithm of the smallest power of two no less than
+     * {@code requestedUniverseSize}. The result is at least 
+     * {@code LEAF_UNIVERSE_SHIFT} and at most 32.
+     * 
+     * @param requestedUniverseSize the requested universe size.
+     * @return the binary logarithm of the actual universe size.
+     */
+    private static int computeUniverseShift(long requestedUniverseSize) {
+        int shift = 64 - Long.numberOfLeadingZeros(requestedUniverseSize - 1);
+        return Math.max(shift, LEAF_UNIVERSE_SHIFT);
+    }
+    
+    /**
+     * Computes the offsets of the levels of a summary bit vector covering 
+     * {@code 2^highShift} clusters, the finest level first.
+     * 
+     * @param highShift the binary logarithm of the number of clusters.
+     * @return the level offsets.
+     */
+    private static int[] computeSummaryOffsets(int highShift) {
+        int summaryLevels = 
+                Math.max(1, (highShift + WORD_SHIFT - 1) / WORD_SHIFT);
+        int[] offsets = new int[summaryLevels];
+        int offset = 0;
+        
+        for (int i = 0; i != summaryLevels; ++i) {
+            offsets[i] = offset;
+            int wordsShift = highShift - (i + 1) * WORD_SHIFT;
+            offset += wordsShift > 0 ? 1 << wordsShift : 1;
         }
         
-        int rangeLength = getMaximumKey() - getMinimumKey() + 1;
-        return (1.0f * size) / rangeLength;
+        return offsets;
     }
     
-    public KeyIterator treeKeyIterator() {
-        return new TreeKeyIterator();
+    /**
+     * Returns the length of a summary bit vector with the level offsets 
+     * {@code offsets}. The coarsest level is always a single word.
+     */
+    private static int computeSummaryLength(int[] offsets) {
+        return offsets[offsets.length - 1] + 1;
     }
     
-    public KeyIterator tableKeyIterator() {
-        return new TableKeyIterator();
+    /**
+     * Writes the non-negative {@code value} to {@code output} in seven-bit 
+     * groups, the least significant first, the high bit of each byte telling
+     * whether more groups follow.
+     * 
+     * @param output the output.
+     * @param value  the value to write.
+     * @throws IOException if the output fails.
+     */
+    private static void writeVarLong(DataOutput output, long value) 
+    throws IOException {
+        while ((value & ~0x7FL) != 0L) {
+            output.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        
+        output.writeByte((int) value);
     }
     
-    public KeyValueIterator<V> treeKeyValueIterator() {
-        return new TreeKeyValueIterator();
+    /**
+     * Reads a value written by {@link #writeVarLong(DataOutput, long)}.
+     * 
+     * @param input the input.
+     * @return the value read.
+     * @throws IOException if the input fails or the value is too long.
+     */
+    private static long readVarLong(DataInput input) throws IOException {
+        long value = 0L;
+        
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        
+        throw new IOException("A variable-length integer is too long.");
     }
     
-    public KeyValueIterator<V> tableKeyValueIterator() {
-        return new TableKeyValueIterator();
+    private static int[] prependLevel(int[] levelTable, int value) {
+        int[] result = new int[levelTable.length + 1];
+        result[0] = value;
+        System.arraycopy(levelTable, 0, result, 1, levelTable.length);
+        return result;
     }
     
-    public static final class Mapping<V> {
-        public int key;
-        public V value;
+    private static void checkClusterShift(int clusterShift, 
+                                          int universeShift) {
+        if (clusterShift < 1 || clusterShift >= universeShift) {
+            throw new IllegalArgumentException(
+                    "The split policy returned a bad cluster shift (" + 
+                    clusterShift + ") for the universe shift " + 
+                    universeShift + ".");
+        }
         
-        @Override
-        public String toString() {
-            return "(" + key + " -> " + value + ")";
+        if (universeShift - clusterShift > MAXIMUM_FANOUT_SHIFT) {
+            throw new IllegalArgumentException(
+                    "The split policy returned a too small cluster shift (" +
+                    clusterShift + ") for the universe shift " + 
+                    universeShift + ".");
         }
     }
     
-    public static final class MappingIterator<V> {
+    private void checkSameLayout(VanEmdeBoasTreeIntMap<?> other) {
+        Objects.requireNonNull(other, "The input map is null.");
         
-        private final VanEmdeBoasTreeIntMap<V> tree;
-        private int iterated = 0;
-        private int lastReturned;
+        if (minimumKey != other.minimumKey || maximumKey != other.maximumKey) {
+            throw new IllegalArgumentException(
+                    "The maps have different key ranges.");
+        }
         
-        MappingIterator(VanEmdeBoasTreeIntMap<V> tree) {
-            this.tree = tree;
+        if (!Arrays.equals(levelShift, other.levelShift)) {
+            throw new IllegalArgumentException(
+                    "The maps have different split policies.");
+        }
+    }
+    
+    /**
+     * Makes sure that all the keys in {@code keys} are within the key range 
+     * of this map and that the output has room for {@code keys.length} 
+     * results. The key bounds are checked once, on the extreme keys.
+     * 
+     * @param keys           the keys to check.
+     * @param outputCapacity the number of results the output can hold.
+     */
+    private void checkKeys(int[] keys, long outputCapacity) {
+        Objects.requireNonNull(keys, "The key array is null.");
+        
+        if (outputCapacity < keys.length) {
+            throw new IllegalArgumentException(
+                    "The output holds only " + outputCapacity + " results " +
+                    "for " + keys.length + " keys.");
         }
         
-        public boolean hasNext() {
-            return iterated < tree.size;
+        if (keys.length == 0) {
+            return;
         }
         
-        public void next(Mapping<V> mapping) {
-            if (!hasNext()) {
-                throw new NoSuchElementException("Nothing to iterate left.");
+        int smallestKey = keys[0];
+        int largestKey = keys[0];
+        
+        for (int key : keys) {
+            smallestKey = Math.min(smallestKey, key);
+            largestKey = Math.max(largestKey, key);
+        }
+        
+        checkKey(smallestKey);
+        checkKey(largestKey);
+    }
+    
+    /**
+     * Makes sure that {@code sortedKeys} and {@code values} may be bulk 
+     * loaded: they have the same length, and the keys are strictly ascending,
+     * within the key range of this map, which grows if it is auto-growing,
+     * and larger than all the keys present.
+     * 
+     * @param sortedKeys the keys to check.
+     * @param values     the values of the keys.
+     */
+    private void checkBulkLoad(int[] sortedKeys, V[] values) {
+        Objects.requireNonNull(sortedKeys, "The key array is null.");
+        Objects.requireNonNull(values, "The value array is null.");
+        
+        if (sortedKeys.length != values.length) {
+            throw new IllegalArgumentException(
+                    "The key array and the value array have different " +
+                    "lengths (" + sortedKeys.length + " and " + 
+                    values.length + ").");
+        }
+        
+        if (sortedKeys.length == 0) {
+            return;
+        }
+        
+        for (int i = 1; i < sortedKeys.length; ++i) {
+            if (sortedKeys[i - 1] >= sortedKeys[i]) {
+                throw new IllegalArgumentException(
+                        "The keys are not strictly ascending at index " + i + 
+                        ".");
             }
+        }
+        
+        if (size != 0 && sortedKeys[0] <= getMaximumKey()) {
+            throw new IllegalArgumentException(
+                    "The first key (" + sortedKeys[0] + ") is not larger " +
+                    "than the maximum key of the map (" + getMaximumKey() + 
+                    ").");
+        }
+        
+        // Grow only once the whole input is known to be valid, so that a 
+        // rejected load leaves the key range and the checkpoint as they were:
+        if (autoGrowing) {
+            growToInclude(sortedKeys[0]);
+            growToInclude(sortedKeys[sortedKeys.length - 1]);
+        }
+        
+        checkKey(sortedKeys[0]);
+        checkKey(sortedKeys[sortedKeys.length - 1]);
+    }
+    
+    /**
+     * Returns the index of the first key in {@code sortedKeys[from, to)} 
+     * larger than {@code lastKey}, or {@code to} if there is no such.
+     * 
+     * @param sortedKeys the keys in ascending order.
+     * @param from       the first index to search.
+     * @param to         the index past the last one to search.
+     * @param lastKey    the largest key to skip.
+     * @return the index of the first larger key.
+     */
+    private static int runEnd(int[] sortedKeys, 
+                              int from, 
+                              int to, 
+                              long lastKey) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
             
-            if (iterated == 0) {
-                lastReturned = tree.getMinimumKey();
-                iterated++;
-                mapping.key = lastReturned;
-                mapping.value = tree.table[lastReturned - tree.minimumKey];
+            if (sortedKeys[middle] <= lastKey) {
+                from = middle + 1;
             } else {
-                int next = tree.getNextIntKey(lastReturned);
-                lastReturned = next;
-                iterated++;
-                mapping.key = lastReturned;
-                mapping.value = tree.table[lastReturned - tree.minimumKey];
+                to = middle;
             }
         }
+        
+        return from;
     }
     
-    public MappingIterator<V> mappingIterator() {
-        return new MappingIterator<>(this);
+    /**
+     * Converts the result of a {@code find} method to a key, mapping 
+     * {@link #NO_KEY} to {@code minimumKey - 1}.
+     */
+    private int orLowSentinel(long key) {
+        return key == NO_KEY ? minimumKey - 1 : (int) key;
     }
     
-    private void checkBounds(int minimumKey, int maximumKey) {
-        if (minimumKey > maximumKey) {
+    /**
+     * Converts the result of a {@code find} method to a key, mapping 
+     * {@link #NO_KEY} to {@code maximumKey + 1}.
+     */
+    private int orHighSentinel(long key) {
+        return key == NO_KEY ? maximumKey + 1 : (int) key;
+    }
+    
+    /**
+     * Makes sure that {@code keys} is sorted in ascending order, that all the
+     * keys are within the key range of this map and that an output of 
+     * {@code outputLength} slots has room for {@code keys.length} results.
+     * 
+     * @param keys         the keys to check.
+     * @param outputLength the length of the output array.
+     */
+    private void checkSortedKeys(int[] keys, int outputLength) {
+        Objects.requireNonNull(keys, "The key array is null.");
+        
+        if (outputLength < keys.length) {
             throw new IllegalArgumentException(
-                    "minimumKey(" + minimumKey + ") > " +
-                    "maximumKey(" + maximumKey + ")");
+                    "The output holds only " + outputLength + " results " +
+                    "for " + keys.length + " keys.");
+        }
+        
+        for (int i = 1; i < keys.length; ++i) {
+            if (keys[i - 1] > keys[i]) {
+                throw new IllegalArgumentException(
+                        "The keys are not sorted: keys[" + (i - 1) + "] = " +
+                        keys[i - 1] + " > keys[" + i + "] = " + keys[i] + 
+                        ".");
+            }
+        }
+        
+        // The extreme keys of a sorted array are at its ends:
+        if (keys.length != 0) {
+            checkKey(keys[0]);
+            checkKey(keys[keys.length - 1]);
+        }
+    }
+    
+    /**
+     * Makes sure that an output of {@code capacity} slots has room for 
+     * {@code count} items starting from the index {@code offset}.
+     */
+    private static void checkRoom(int capacity, int offset, int count) {
+        if (offset < 0 || offset > capacity) {
+            throw new IllegalArgumentException(
+                    "The offset (" + offset + ") is out of the output of " + 
+                    "length " + capacity + ".");
+        }
+        
+        if (capacity - offset < count) {
+            throw new IllegalArgumentException(
+                    "The output has room for only " + (capacity - offset) +
+                    " of the " + count + " items.");
         }
     }
     
-    private int fixUniverseSize(int requestedUniverseSize) {
-        int tmp = Integer.highestOneBit(requestedUniverseSize);
-        return tmp == requestedUniverseSize ?
-                requestedUniverseSize :
-               (tmp << 1);
+    private void checkRange(int lo, int hi) {
+        checkKey(lo);
+        checkKey(hi);
+        
+        if (lo > hi) {
+            throw new IllegalArgumentException(
+                    "lo(" + lo + ") > hi(" + hi + ")");
+        }
     }
     
     private void checkKey(int key) {
@@ -0,0 +1,315 @@
+package net.coderodde.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This class implements a sorted multimap mapping integer keys to any number
+ * of values. The present keys are kept in a {@link VanEmdeBoasTreeIntMap},
+ * which sees only one bucket per key. The values of a key are kept in its
+ * bucket, which is a singly-linked list threaded through a slab of value
+ * slots, so that appending a value and popping the oldest value of a key run
+ * in constant time and allocate nothing once the slab has grown. Emptied
+ * buckets and slots are recycled.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Dec 9, 2017)
+ * @param <V> the type of values.
+ */
+public final class VanEmdeBoasTreeIntMultimap<V> {
+    
+    /**
+     * The initial number of value slots.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /**
+     * Marks the end of a list of slots.
+     */
+    private static final int NIL = -1;
+    
+    /**
+     * This static inner class holds the first and the last slot of the
+     * values of a key, and their number. Empty buckets are pooled for reuse.
+     */
+    private static final class Bucket {
+        
+        /**
+         * The slot of the oldest value of the bucket.
+         */
+        private int head;
+        
+        /**
+         * The slot of the newest value of the bucket.
+         */
+        private int tail;
+        
+        /**
+         * The number of values in the bucket.
+         */
+        private int count;
+    }
+    
+    /**
+     * Maps each present key to its non-empty bucket.
+     */
+    private final VanEmdeBoasTreeIntMap<Bucket> buckets;
+    
+    /**
+     * The values, indexed by slots.
+     */
+    private V[] values = (V[]) new Object[INITIAL_CAPACITY];
+    
+    /**
+     * The next newer slot in the same bucket, or the next free slot for the
+     * free slots.
+     */
+    private int[] next = new int[INITIAL_CAPACITY];
+    
+    /**
+     * The first free slot below {@link #slotsInUse}, or {@link #NIL}.
+     */
+    private int freeSlot = NIL;
+    
+    /**
+     * The number of slots ever handed out. The slots starting from here
+     * have never been used.
+     */
+    private int slotsInUse;
+    
+    /**
+     * The emptied buckets waiting for reuse.
+     */
+    private Bucket[] bucketPool = new Bucket[INITIAL_CAPACITY];
+    private int bucketPoolSize;
+    
+    /**
+     * The total number of values.
+     */
+    private int size;
+    
+    public VanEmdeBoasTreeIntMultimap(int minimumKey, int maximumKey) {
+        this.buckets = new VanEmdeBoasTreeIntMap<>(minimumKey, maximumKey);
+    }
+    
+    /**
+     * Returns the total number of values in this multimap.
+     * 
+     * @return the number of values.
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the number of distinct keys in this multimap.
+     * 
+     * @return the number of keys.
+     */
+    public int keyCount() {
+        return buckets.size();
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    public boolean containsKey(int key) {
+        return buckets.containsKey(key);
+    }
+    
+    /**
+     * Returns the number of values of the key {@code key}.
+     * 
+     * @param key the key.
+     * @return the number of values.
+     */
+    public int count(int key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? 0 : bucket.count;
+    }
+    
+    public int getMinimumKey() {
+        return buckets.getMinimumKey();
+    }
+    
+    public int getMaximumKey() {
+        return buckets.getMaximumKey();
+    }
+    
+    public int getNextIntKey(int key) {
+        return buckets.getNextIntKey(key);
+    }
+    
+    public int getPreviousIntKey(int key) {
+        return buckets.getPreviousIntKey(key);
+    }
+    
+    /**
+     * Appends {@code value} to the values of the key {@code key}.
+     * 
+     * @param key   the key.
+     * @param value the value to append.
+     */
+    public void put(int key, V value) {
+        // The map validates the key before a bucket or a slot is taken:
+        Bucket bucket = buckets.get(key);
+        int slot = allocateSlot();
+        values[slot] = value;
+        next[slot] = NIL;
+        
+        if (bucket == null) {
+            bucket = newBucket();
+            buckets.put(key, bucket);
+            bucket.head = slot;
+            bucket.count = 0;
+        } else {
+            next[bucket.tail] = slot;
+        }
+        
+        bucket.tail = slot;
+        bucket.count++;
+        size++;
+    }
+    
+    /**
+     * Returns the oldest value of the key {@code key}.
+     * 
+     * @param key the key.
+     * @return the oldest value, or {@code null} if the key is not present.
+     */
+    public V peekFirst(int key) {
+        Bucket bucket = buckets.get(key);
+        return bucket == null ? null : values[bucket.head];
+    }
+    
+    /**
+     * Removes and returns the oldest value of the key {@code key}. The key is
+     * removed along with its last value.
+     * 
+     * @param key the key.
+     * @return the removed value, or {@code null} if the key is not present.
+     */
+    public V pollFirst(int key) {
+        Bucket bucket = buckets.get(key);
+        
+        if (bucket == null) {
+            return null;
+        }
+        
+        int slot = bucket.head;
+        V value = values[slot];
+        
+        if (--bucket.count == 0) {
+            releaseBucket(key);
+        } else {
+            bucket.head = next[slot];
+        }
+        
+        releaseSlots(slot, slot);
+        size--;
+        return value;
+    }
+    
+    /**
+     * Feeds the values of the key {@code key} to {@code consumer} from the
+     * oldest to the newest. The consumer must not modify this multimap.
+     * 
+     * @param key      the key.
+     * @param consumer the value consumer.
+     */
+    public void forEach(int key, Consumer<? super V> consumer) {
+        Objects.requireNonNull(consumer, "The input consumer is null.");
+        Bucket bucket = buckets.get(key);
+        
+        if (bucket == null) {
+            return;
+        }
+        
+        for (int slot = bucket.head; slot != NIL; slot = next[slot]) {
+            consumer.accept(values[slot]);
+        }
+    }
+    
+    /**
+     * Removes the key {@code key} with all its values. The value slots are
+     * released as a whole chain.
+     * 
+     * @param key the key.
+     * @return the number of removed values.
+     */
+    public int removeAll(int key) {
+        Bucket bucket = buckets.get(key);
+        
+        if (bucket == null) {
+            return 0;
+        }
+        
+        int count = bucket.count;
+        releaseBucket(key);
+        releaseSlots(bucket.head, bucket.tail);
+        size -= count;
+        return count;
+    }
+    
+    public void clear() {
+        buckets.clear();
+        Arrays.fill(values, 0, slotsInUse, null);
+        freeSlot = NIL;
+        slotsInUse = 0;
+        size = 0;
+    }
+    
+    private Bucket newBucket() {
+        return bucketPoolSize == 0 ?
+               new Bucket() :
+               bucketPool[--bucketPoolSize];
+    }
+    
+    /**
+     * Removes the key {@code key} from the tree and pools its bucket.
+     */
+    private void releaseBucket(int key) {
+        Bucket bucket = buckets.remove(key);
+        
+        if (bucketPoolSize == bucketPool.length) {
+            bucketPool = Arrays.copyOf(bucketPool, 2 * bucketPoolSize);
+        }
+        
+        bucketPool[bucketPoolSize++] = bucket;
+    }
+    
+    /**
+     * Pushes the chain of slots from {@code first} to {@code last} to the
+     * free list, clearing their values so that they can be collected.
+     */
+    private void releaseSlots(int first, int last) {
+        for (int slot = first;; slot = next[slot]) {
+            values[slot] = null;
+            
+            if (slot == last) {
+                break;
+            }
+        }
+        
+        next[last] = freeSlot;
+        freeSlot = first;
+    }
+    
+    private int allocateSlot() {
+        if (freeSlot != NIL) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        
+        if (slotsInUse == values.length) {
+            int capacity = 2 * values.length;
+            values = Arrays.copyOf(values, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        
+        return slotsInUse++;
+    }
+}
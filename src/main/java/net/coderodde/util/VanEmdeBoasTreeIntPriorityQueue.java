@@ -0,0 +1,409 @@
+package net.coderodde.util;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class implements a double-ended priority queue of integer elements
+ * with integer priorities drawn from a bounded range. The distinct priorities
+ * are kept in a {@link VanEmdeBoasTreeIntMap}, so that the smallest and the
+ * largest ones are read off the root of the tree, and the next ones are found
+ * in {@code O(log log U)} time. The elements sharing a priority are kept in a
+ * bucket, which is a doubly-linked list threaded through primitive arrays, so
+ * that equal priorities cost no tree operations at all and the elements of a
+ * bucket are polled in insertion order.
+ * <p>
+ * Each added element gets a handle, through which its priority may be
+ * decreased (or otherwise changed) or which may be removed in
+ * {@code O(log log U)} time, as needed by Dijkstra's algorithm and by event
+ * schedulers. A handle stays valid until its element leaves the queue, after
+ * which it may be reused for a new element.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Dec 9, 2017)
+ */
+public final class VanEmdeBoasTreeIntPriorityQueue {
+    
+    /**
+     * The initial number of element slots.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+    
+    /**
+     * Marks the end of a list of slots.
+     */
+    private static final int NIL = -1;
+    
+    /**
+     * Marks a slot that holds no element.
+     */
+    private static final int FREE = -2;
+    
+    /**
+     * This static inner class holds the first and the last slot of the
+     * elements sharing a priority. Empty buckets are pooled for reuse.
+     */
+    private static final class Bucket {
+        
+        /**
+         * The slot of the oldest element of the bucket.
+         */
+        private int head;
+        
+        /**
+         * The slot of the newest element of the bucket.
+         */
+        private int tail;
+    }
+    
+    /**
+     * Maps each present priority to its non-empty bucket.
+     */
+    private final VanEmdeBoasTreeIntMap<Bucket> buckets;
+    
+    /**
+     * The elements, indexed by slots.
+     */
+    private int[] elements = new int[INITIAL_CAPACITY];
+    
+    /**
+     * The priorities of the elements, indexed by slots.
+     */
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    
+    /**
+     * The next newer slot in the same bucket, or the next free slot for the
+     * free slots.
+     */
+    private int[] next = new int[INITIAL_CAPACITY];
+    
+    /**
+     * The next older slot in the same bucket, or {@link #FREE} for the free
+     * slots.
+     */
+    private int[] previous = new int[INITIAL_CAPACITY];
+    
+    /**
+     * The first free slot below {@link #slotsInUse}, or {@link #NIL}.
+     */
+    private int freeSlot = NIL;
+    
+    /**
+     * The number of slots ever handed out. The slots starting from here
+     * have never been used.
+     */
+    private int slotsInUse;
+    
+    /**
+     * The emptied buckets waiting for reuse.
+     */
+    private Bucket[] bucketPool = new Bucket[INITIAL_CAPACITY];
+    private int bucketPoolSize;
+    
+    private int size;
+    
+    public VanEmdeBoasTreeIntPriorityQueue(int minimumPriority,
+                                           int maximumPriority) {
+        this.buckets = new VanEmdeBoasTreeIntMap<>(minimumPriority,
+                                                   maximumPriority);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Adds {@code element} with priority {@code priority}. Among the
+     * elements of equal priority, the ones added earlier are polled first by
+     * {@link #pollFirst()}.
+     * 
+     * @param element  the element to add.
+     * @param priority the priority of the element.
+     * @return the handle of the added element.
+     */
+    public int add(int element, int priority) {
+        // The map validates the priority before a bucket or a slot is taken:
+        Bucket bucket = buckets.get(priority);
+        
+        if (bucket == null) {
+            bucket = newBucket();
+            buckets.put(priority, bucket);
+            bucket.head = NIL;
+            bucket.tail = NIL;
+        }
+        
+        int slot = allocateSlot();
+        elements[slot] = element;
+        priorities[slot] = priority;
+        link(bucket, slot);
+        size++;
+        return slot;
+    }
+    
+    /**
+     * Returns the element with the smallest priority without removing it.
+     * 
+     * @return the first element.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int peekFirst() {
+        return elements[firstBucket().head];
+    }
+    
+    /**
+     * Returns the element with the largest priority without removing it.
+     * 
+     * @return the last element.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int peekLast() {
+        return elements[lastBucket().tail];
+    }
+    
+    /**
+     * Returns the smallest priority in this queue.
+     * 
+     * @return the smallest priority.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int peekFirstPriority() {
+        checkNotEmpty();
+        return buckets.getMinimumKey();
+    }
+    
+    /**
+     * Returns the largest priority in this queue.
+     * 
+     * @return the largest priority.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int peekLastPriority() {
+        checkNotEmpty();
+        return buckets.getMaximumKey();
+    }
+    
+    /**
+     * Removes and returns the oldest element with the smallest priority.
+     * 
+     * @return the removed element.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int pollFirst() {
+        int slot = firstBucket().head;
+        int element = elements[slot];
+        remove(slot);
+        return element;
+    }
+    
+    /**
+     * Removes and returns the newest element with the largest priority.
+     * 
+     * @return the removed element.
+     * @throws NoSuchElementException if this queue is empty.
+     */
+    public int pollLast() {
+        int slot = lastBucket().tail;
+        int element = elements[slot];
+        remove(slot);
+        return element;
+    }
+    
+    /**
+     * Returns the element of the handle {@code handle}.
+     * 
+     * @param handle the handle of the element.
+     * @return the element.
+     */
+    public int getElement(int handle) {
+        checkHandle(handle);
+        return elements[handle];
+    }
+    
+    /**
+     * Returns the priority of the element of the handle {@code handle}.
+     * 
+     * @param handle the handle of the element.
+     * @return the priority of the element.
+     */
+    public int getPriority(int handle) {
+        checkHandle(handle);
+        return priorities[handle];
+    }
+    
+    /**
+     * Decreases the priority of the element of the handle {@code handle}.
+     * The element becomes the newest one of its new priority. The handle
+     * stays the same.
+     * 
+     * @param handle   the handle of the element.
+     * @param priority the new priority, not larger than the current one.
+     */
+    public void decreaseKey(int handle, int priority) {
+        checkHandle(handle);
+        
+        if (priority > priorities[handle]) {
+            throw new IllegalArgumentException(
+                    "The new priority (" + priority + ") is larger than " +
+                    "the current one (" + priorities[handle] + ").");
+        }
+        
+        changePriority(handle, priority);
+    }
+    
+    /**
+     * Changes the priority of the element of the handle {@code handle}.
+     * The element becomes the newest one of its new priority. The handle
+     * stays the same.
+     * 
+     * @param handle   the handle of the element.
+     * @param priority the new priority.
+     */
+    public void changePriority(int handle, int priority) {
+        checkHandle(handle);
+        
+        if (priority == priorities[handle]) {
+            return;
+        }
+        
+        Bucket bucket = buckets.get(priority);
+        
+        if (bucket == null) {
+            bucket = newBucket();
+            buckets.put(priority, bucket);
+            bucket.head = NIL;
+            bucket.tail = NIL;
+        }
+        
+        unlink(handle);
+        priorities[handle] = priority;
+        link(bucket, handle);
+    }
+    
+    /**
+     * Removes the element of the handle {@code handle}. The handle becomes
+     * invalid.
+     * 
+     * @param handle the handle of the element.
+     */
+    public void remove(int handle) {
+        checkHandle(handle);
+        unlink(handle);
+        previous[handle] = FREE;
+        next[handle] = freeSlot;
+        freeSlot = handle;
+        size--;
+    }
+    
+    public void clear() {
+        buckets.clear();
+        freeSlot = NIL;
+        slotsInUse = 0;
+        size = 0;
+    }
+    
+    private Bucket firstBucket() {
+        checkNotEmpty();
+        return buckets.get(buckets.getMinimumKey());
+    }
+    
+    private Bucket lastBucket() {
+        checkNotEmpty();
+        return buckets.get(buckets.getMaximumKey());
+    }
+    
+    /**
+     * Appends the slot {@code slot} to the bucket {@code bucket}.
+     */
+    private void link(Bucket bucket, int slot) {
+        previous[slot] = bucket.tail;
+        next[slot] = NIL;
+        
+        if (bucket.tail == NIL) {
+            bucket.head = slot;
+        } else {
+            next[bucket.tail] = slot;
+        }
+        
+        bucket.tail = slot;
+    }
+    
+    /**
+     * Unlinks the slot {@code slot} from its bucket, removing the bucket from
+     * the map if it becomes empty.
+     */
+    private void unlink(int slot) {
+        int previousSlot = previous[slot];
+        int nextSlot = next[slot];
+        
+        if (previousSlot == NIL && nextSlot == NIL) {
+            // The only element of its bucket:
+            Bucket bucket = buckets.remove(priorities[slot]);
+            
+            if (bucketPoolSize == bucketPool.length) {
+                bucketPool = Arrays.copyOf(bucketPool, 2 * bucketPoolSize);
+            }
+            
+            bucketPool[bucketPoolSize++] = bucket;
+            return;
+        }
+        
+        if (previousSlot == NIL || nextSlot == NIL) {
+            Bucket bucket = buckets.get(priorities[slot]);
+            
+            if (previousSlot == NIL) {
+                bucket.head = nextSlot;
+            } else {
+                bucket.tail = previousSlot;
+            }
+        }
+        
+        if (previousSlot != NIL) {
+            next[previousSlot] = nextSlot;
+        }
+        
+        if (nextSlot != NIL) {
+            previous[nextSlot] = previousSlot;
+        }
+    }
+    
+    private Bucket newBucket() {
+        return bucketPoolSize == 0 ?
+               new Bucket() :
+               bucketPool[--bucketPoolSize];
+    }
+    
+    private int allocateSlot() {
+        if (freeSlot != NIL) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+        
+        if (slotsInUse == elements.length) {
+            int capacity = 2 * elements.length;
+            elements = Arrays.copyOf(elements, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            next = Arrays.copyOf(next, capacity);
+            previous = Arrays.copyOf(previous, capacity);
+        }
+        
+        return slotsInUse++;
+    }
+    
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new NoSuchElementException("The queue is empty.");
+        }
+    }
+    
+    private void checkHandle(int handle) {
+        if (handle < 0 || handle >= slotsInUse || previous[handle] == FREE) {
+            throw new IllegalArgumentException(
+                    "The handle (" + handle + ") is not in use.");
+        }
+    }
+}
@@ -0,0 +1,1152 @@
+package net.coderodde.util;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * This class implements a sorted map mapping long keys to values of arbitrary
+ * type. The keys are ordered by a van Emde Boas tree over a universe of up to
+ * {@code 2^64} keys, so that the successor and predecessor queries run in
+ * {@code O(log log U)} time. Since such universes cannot be allocated
+ * eagerly, the clusters of the wide vEB nodes are kept in hash tables and
+ * only the non-empty ones are stored. The values are kept in an open
+ * addressing hash table with primitive keys.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Dec 9, 2017)
+ * @param <V> the type of values.
+ */
+public final class VanEmdeBoasTreeLongMap<V> {
+    
+    /**
+     * The binary logarithm of the largest universe size that is stored in a
+     * single 64-bit word.
+     */
+    private static final int LEAF_UNIVERSE_SHIFT = 6;
+    
+    /**
+     * The binary logarithm of the largest number of clusters that are stored
+     * in a plain array. Wider nodes keep their clusters in a hash table.
+     */
+    private static final int MAXIMUM_DIRECT_CLUSTER_SHIFT = 8;
+    
+    /**
+     * The initial capacity of the hash tables.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+    
+    /**
+     * Used to denote that there is a long mapped to a {@code null} value.
+     */
+    private final V NULL_VALUE = (V) new Object();
+    
+    /**
+     * This static inner class implements an open addressing hash table
+     * mapping cluster indices to the non-empty clusters of a vEB node.
+     */
+    private static final class ClusterTable {
+        
+        /**
+         * The cluster indices.
+         */
+        private int[] keys = new int[INITIAL_CAPACITY];
+        
+        /**
+         * The clusters. A {@code null} denotes an empty slot.
+         */
+        private VEBTree[] clusters = new VEBTree[INITIAL_CAPACITY];
+        
+        /**
+         * The number of clusters in this table.
+         */
+        private int size;
+        
+        VEBTree get(int key) {
+            int mask = keys.length - 1;
+            
+            for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+                VEBTree cluster = clusters[i];
+                
+                if (cluster == null || keys[i] == key) {
+                    return cluster;
+                }
+            }
+        }
+        
+        void put(int key, VEBTree cluster) {
+            if (2 * (size + 1) > keys.length) {
+                resize(2 * keys.length);
+            }
+            
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            
+            while (clusters[i] != null) {
+                i = (i + 1) & mask;
+            }
+            
+            keys[i] = key;
+            clusters[i] = cluster;
+            size++;
+        }
+        
+        void remove(int key) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            
+            while (keys[i] != key || clusters[i] == null) {
+                i = (i + 1) & mask;
+            }
+            
+            // Shift back the entries of the probe chain:
+            for (int j = (i + 1) & mask; clusters[j] != null;
+                    j = (j + 1) & mask) {
+                int home = hash(keys[j]) & mask;
+                
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    keys[i] = keys[j];
+                    clusters[i] = clusters[j];
+                    i = j;
+                }
+            }
+            
+            clusters[i] = null;
+            size--;
+        }
+        
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            VEBTree[] oldClusters = clusters;
+            keys = new int[capacity];
+            clusters = new VEBTree[capacity];
+            size = 0;
+            
+            for (int i = 0; i != oldKeys.length; ++i) {
+                if (oldClusters[i] != null) {
+                    put(oldKeys[i], oldClusters[i]);
+                }
+            }
+        }
+        
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+    
+    /**
+     * This static inner class implements a node in a van Emde Boas tree. Just
+     * like in {@link VanEmdeBoasTreeIntMap}, a node exists only while it holds
+     * at least one key. The keys are treated as unsigned longs.
+     */
+    private static final class VEBTree {
+        
+        /**
+         * The binary logarithm of the universe size of this vEB node.
+         */
+        private final int universeShift;
+        
+        /**
+         * The shift length for computing the high indices.
+         */
+        private final int highShift;
+        
+        /**
+         * The mask used to compute the low indices.
+         */
+        private final long lowMask;
+        
+        /**
+         * The minimum long key in the tree starting from this node.
+         */
+        private long min;
+        
+        /**
+         * The maximum long key in the tree starting from this node.
+         */
+        private long max;
+        
+        /**
+         * All the keys of a leaf node as a bit vector.
+         */
+        private long bits;
+        
+        /**
+         * The summary vEB-tree. Is {@code null} if there is no clusters.
+         */
+        private VEBTree summary;
+        
+        /**
+         * The children nodes of a narrow vEB node.
+         */
+        private VEBTree[] cluster;
+        
+        /**
+         * The children nodes of a wide vEB node.
+         */
+        private ClusterTable clusterTable;
+        
+        /**
+         * Constructs a vEB node holding the only key {@code x}.
+         * 
+         * @param universeShift the binary logarithm of the universe size.
+         * @param x             the only key of the new node.
+         */
+        VEBTree(int universeShift, long x) {
+            this.universeShift = universeShift;
+            this.highShift = universeShift >>> 1;
+            this.lowMask = (1L << highShift) - 1;
+            this.min = x;
+            this.max = x;
+            
+            if (universeShift <= LEAF_UNIVERSE_SHIFT) {
+                this.bits = 1L << x;
+            }
+        }
+        
+        /**
+         * Returns the smallest key larger than {@code x}. The caller must make
+         * sure that {@code x} is smaller than the maximum key of this node.
+         * 
+         * @param x the query key.
+         * @return the successor key.
+         */
+        long getSuccessor(long x) {
+            if (less(x, min)) {
+                return min;
+            }
+            
+            if (universeShift <= LEAF_UNIVERSE_SHIFT) {
+                return Long.numberOfTrailingZeros(bits & (-2L << x));
+            }
+            
+            int high = high(x);
+            long low = low(x);
+            VEBTree child = getCluster(high);
+            
+            if (child != null && less(low, child.max)) {
+                return index(high, child.getSuccessor(low));
+            }
+            
+            int successorCluster = 
+                    (int) summary.getSuccessor(high & 0xFFFFFFFFL);
+            return index(successorCluster, getCluster(successorCluster).min);
+        }
+        
+        /**
+         * Returns the largest key smaller than {@code x}. The caller must make
+         * sure that {@code x} is larger than the minimum key of this node.
+         * 
+         * @param x the query key.
+         * @return the predecessor key.
+         */
+        long getPredecessor(long x) {
+            if (less(max, x)) {
+                return max;
+            }
+            
+            if (universeShift <= LEAF_UNIVERSE_SHIFT) {
+                return 63 - Long.numberOfLeadingZeros(bits & ((1L << x) - 1));
+            }
+            
+            int high = high(x);
+            long low = low(x);
+            VEBTree child = getCluster(high);
+            
+            if (child != null && less(child.min, low)) {
+                return index(high, child.getPredecessor(low));
+            }
+            
+            long unsignedHigh = high & 0xFFFFFFFFL;
+            
+            if (summary != null && summary.min < unsignedHigh) {
+                int predecessorCluster =
+                        (int) summary.getPredecessor(unsignedHigh);
+                return index(predecessorCluster,
+                             getCluster(predecessorCluster).max);
+            }
+            
+            return min;
+        }
+        
+        /**
+         * Inserts the key {@code x} that is not yet present in this node.
+         * 
+         * @param x the key to insert.
+         */
+        void treeInsert(long x) {
+            if (universeShift <= LEAF_UNIVERSE_SHIFT) {
+                bits |= 1L << x;
+                min = Math.min(min, x);
+                max = Math.max(max, x);
+                return;
+            }
+            
+            if (less(x, min)) {
+                long tmp = x;
+                x = min;
+                min = tmp;
+            }
+            
+            int high = high(x);
+            long low = low(x);
+            
+            if (summary == null) {
+                summary = new VEBTree(universeShift - highShift,
+                                      high & 0xFFFFFFFFL);
+                
+                if (universeShift - highShift <= MAXIMUM_DIRECT_CLUSTER_SHIFT) {
+                    cluster = new VEBTree[1 << (universeShift - highShift)];
+                } else {
+                    clusterTable = new ClusterTable();
+                }
+                
+                putCluster(high, new VEBTree(highShift, low));
+            } else {
+                VEBTree child = getCluster(high);
+                
+                if (child == null) {
+                    summary.treeInsert(high & 0xFFFFFFFFL);
+                    putCluster(high, new VEBTree(highShift, low));
+                } else {
+                    child.treeInsert(low);
+                }
+            }
+            
+            if (less(max, x)) {
+                max = x;
+            }
+        }
+        
+        /**
+         * Deletes the present key {@code x}. The caller must make sure this
+         * node holds at least two keys; a node with a single key is dropped as
+         * a whole by its parent.
+         * 
+         * @param x the key to delete.
+         */
+        void treeDelete(long x) {
+            if (universeShift <= LEAF_UNIVERSE_SHIFT) {
+                bits &= ~(1L << x);
+                min = Long.numberOfTrailingZeros(bits);
+                max = 63 - Long.numberOfLeadingZeros(bits);
+                return;
+            }
+            
+            if (min == x) {
+                int firstCluster = (int) summary.min;
+                x = index(firstCluster, getCluster(firstCluster).min);
+                min = x;
+            }
+            
+            int high = high(x);
+            VEBTree child = getCluster(high);
+            
+            if (child.min == child.max) {
+                // Drop the entire cluster.
+                removeCluster(high);
+                
+                if (summary.min == summary.max) {
+                    summary = null;
+                    cluster = null;
+                    clusterTable = null;
+                    max = min;
+                    return;
+                }
+                
+                summary.treeDelete(high & 0xFFFFFFFFL);
+                
+                if (x == max) {
+                    int summaryMaximum = (int) summary.max;
+                    max = index(summaryMaximum,
+                                getCluster(summaryMaximum).max);
+                }
+            } else {
+                child.treeDelete(low(x));
+                
+                if (x == max) {
+                    max = index(high, child.max);
+                }
+            }
+        }
+        
+        private VEBTree getCluster(int high) {
+            return cluster != null ? cluster[high] : clusterTable.get(high);
+        }
+        
+        private void putCluster(int high, VEBTree child) {
+            if (cluster != null) {
+                cluster[high] = child;
+            } else {
+                clusterTable.put(high, child);
+            }
+        }
+        
+        private void removeCluster(int high) {
+            if (cluster != null) {
+                cluster[high] = null;
+            } else {
+                clusterTable.remove(high);
+            }
+        }
+        
+        private int high(long x) {
+            return (int) (x >>> highShift);
+        }
+        
+        private long low(long x) {
+            return x & lowMask;
+        }
+        
+        private long index(int x, long y) {
+            return ((x & 0xFFFFFFFFL) << highShift) | (y & lowMask);
+        }
+    }
+    
+    /**
+     * Compares two keys as unsigned longs.
+     * 
+     * @param a the first key.
+     * @param b the second key.
+     * @return {@code true} if {@code a} is smaller than {@code b}.
+     */
+    private static boolean less(long a, long b) {
+        return a + Long.MIN_VALUE < b + Long.MIN_VALUE;
+    }
+    
+    /**
+     * The root node of the vEB tree, or {@code null} if this map is empty.
+     */
+    private VEBTree root;
+    private final long minimumKey;
+    private final long maximumKey;
+    private final int universeShift;
+    private int size;
+    
+    /**
+     * The keys of the value hash table.
+     */
+    private long[] tableKeys = new long[INITIAL_CAPACITY];
+    
+    /**
+     * The values of the value hash table. A {@code null} denotes an empty
+     * slot.
+     */
+    private V[] tableValues = (V[]) new Object[INITIAL_CAPACITY];
+    
+    /**
+     * Constructs a map over all the {@code 2^64} long keys.
+     */
+    public VanEmdeBoasTreeLongMap() {
+        this(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+    
+    public VanEmdeBoasTreeLongMap(long minimumKey, long maximumKey) {
+        checkBounds(minimumKey, maximumKey);
+        this.minimumKey = minimumKey;
+        this.maximumKey = maximumKey;
+        // Zero denotes the universe of size 2^64:
+        long universeSize = maximumKey - minimumKey + 1;
+        this.universeShift = computeUniverseShift(universeSize);
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Returns the smallest key of this map, or {@code maximumKey + 1} of the 
+     * key range if this map is empty. If the key range ends at 
+     * {@link Long#MAX_VALUE}, as it does by default, the sentinel wraps 
+     * around to {@link Long#MIN_VALUE}, which is a valid key; use 
+     * {@link #findMinimumKey()} to tell them apart.
+     * 
+     * @return the smallest key.
+     */
+    public long getMinimumKey() {
+        return size != 0 ? root.min + minimumKey : this.maximumKey + 1;
+    }
+    
+    /**
+     * Returns the largest key of this map, or {@code minimumKey - 1} of the 
+     * key range if this map is empty. If the key range starts at 
+     * {@link Long#MIN_VALUE}, the sentinel wraps around to 
+     * {@link Long#MAX_VALUE}; use {@link #findMaximumKey()} to tell them 
+     * apart.
+     * 
+     * @return the largest key.
+     */
+    public long getMaximumKey() {
+        return size != 0 ? root.max + minimumKey : this.minimumKey - 1;
+    }
+    
+    /**
+     * Returns the smallest key of this map, if any.
+     * 
+     * @return the smallest key, or an empty optional if this map is empty.
+     */
+    public OptionalLong findMinimumKey() {
+        return size != 0 ? 
+               OptionalLong.of(root.min + minimumKey) : 
+               OptionalLong.empty();
+    }
+    
+    /**
+     * Returns the largest key of this map, if any.
+     * 
+     * @return the largest key, or an empty optional if this map is empty.
+     */
+    public OptionalLong findMaximumKey() {
+        return size != 0 ? 
+               OptionalLong.of(root.max + minimumKey) : 
+               OptionalLong.empty();
+    }
+    
+    /**
+     * Returns the smallest key larger than {@code key}, or 
+     * {@code minimumKey - 1} of the key range if there is no such. Over the 
+     * key range of all the longs, the sentinel wraps around to 
+     * {@link Long#MAX_VALUE}, which is a valid key; use 
+     * {@link #findNextKey(long)} to tell them apart.
+     * 
+     * @param key the query key.
+     * @return the next key.
+     */
+    public long getNextLongKey(long key) {
+        return findNextKey(key).orElse(this.minimumKey - 1);
+    }
+    
+    /**
+     * Returns the largest key smaller than {@code key}, or 
+     * {@code maximumKey + 1} of the key range if there is no such. Over the 
+     * key range of all the longs, the sentinel wraps around to 
+     * {@link Long#MIN_VALUE}, which is a valid key; use 
+     * {@link #findPreviousKey(long)} to tell them apart.
+     * 
+     * @param key the query key.
+     * @return the previous key.
+     */
+    public long getPreviousLongKey(long key) {
+        return findPreviousKey(key).orElse(this.maximumKey + 1);
+    }
+    
+    /**
+     * Returns the smallest key larger than {@code key}, if any.
+     * 
+     * @param key the query key.
+     * @return the next key, or an empty optional if there is no such.
+     */
+    public OptionalLong findNextKey(long key) {
+        checkKey(key);
+        key -= minimumKey;
+        
+        if (root == null || !less(key, root.max)) {
+            return OptionalLong.empty();
+        }
+        
+        return OptionalLong.of(root.getSuccessor(key) + minimumKey);
+    }
+    
+    /**
+     * Returns the largest key smaller than {@code key}, if any.
+     * 
+     * @param key the query key.
+     * @return the previous key, or an empty optional if there is no such.
+     */
+    public OptionalLong findPreviousKey(long key) {
+        checkKey(key);
+        key -= minimumKey;
+        
+        if (root == null || !less(root.min, key)) {
+            return OptionalLong.empty();
+        }
+        
+        return OptionalLong.of(root.getPredecessor(key) + minimumKey);
+    }
+    
+    public boolean containsKey(long key) {
+        checkKey(key);
+        return tableGet(key - minimumKey) != null;
+    }
+    
+    public V get(long key) {
+        checkKey(key);
+        V value = tableGet(key - minimumKey);
+        return (value == null || value == NULL_VALUE) ? null : value;
+    }
+    
+    /**
+     * Stores the value of each key {@code keys[i]} to {@code out[i]}, or 
+     * {@code null} if the key is not present. All the keys are validated 
+     * before the lookups, which are then done four at a time so that the 
+     * independent hash table probes may overlap.
+     * 
+     * @param keys the keys to look up.
+     * @param out  the array receiving the values.
+     * @return the number of the present keys.
+     */
+    public int getAll(long[] keys, V[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkKeys(keys, out.length);
+        int length = keys.length;
+        int found = 0;
+        int i = 0;
+        
+        for (; i + 4 <= length; i += 4) {
+            V value0 = tableGet(keys[i] - minimumKey);
+            V value1 = tableGet(keys[i + 1] - minimumKey);
+            V value2 = tableGet(keys[i + 2] - minimumKey);
+            V value3 = tableGet(keys[i + 3] - minimumKey);
+            found += (value0 != null ? 1 : 0) + (value1 != null ? 1 : 0) +
+                     (value2 != null ? 1 : 0) + (value3 != null ? 1 : 0);
+            out[i] = value0 == NULL_VALUE ? null : value0;
+            out[i + 1] = value1 == NULL_VALUE ? null : value1;
+            out[i + 2] = value2 == NULL_VALUE ? null : value2;
+            out[i + 3] = value3 == NULL_VALUE ? null : value3;
+        }
+        
+        for (; i < length; ++i) {
+            V value = tableGet(keys[i] - minimumKey);
+            
+            if (value != null) {
+                found++;
+            }
+            
+            out[i] = value == NULL_VALUE ? null : value;
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Stores to {@code out[i]} whether the key {@code keys[i]} is present. 
+     * All the keys are validated before the lookups.
+     * 
+     * @param keys the keys to look up.
+     * @param out  the array receiving the results.
+     * @return the number of the present keys.
+     */
+    public int containsAll(long[] keys, boolean[] out) {
+        Objects.requireNonNull(out, "The output array is null.");
+        checkKeys(keys, out.length);
+        int found = 0;
+        
+        for (int i = 0; i != keys.length; ++i) {
+            boolean present = tableGet(keys[i] - minimumKey) != null;
+            out[i] = present;
+            found += present ? 1 : 0;
+        }
+        
+        return found;
+    }
+    
+    /**
+     * Sets the bit {@code i} of the bitmask, that is the bit 
+     * {@code i % 64} of {@code bitmask[i / 64]}, if the key {@code keys[i]} 
+     * is present, and clears it otherwise. All the keys are validated before 
+     * the lookups, which are then done four at a time so that the 
+     * independent hash table probes may overlap. The bits of the last word 
+     * beyond the number of the keys are cleared.
+     * 
+     * @param keys    the keys to look up.
+     * @param bitmask the bitmask receiving the results.
+     * @return the number of the present keys.
+     */
+    public int containsAll(long[] keys, long[] bitmask) {
+        Objects.requireNonNull(bitmask, "The bitmask is null.");
+        checkKeys(keys, (long) bitmask.length * Long.SIZE);
+        int length = keys.length;
+        int found = 0;
+        
+        for (int wordStart = 0; wordStart < length; wordStart += Long.SIZE) {
+            int wordEnd = Math.min(length, wordStart + Long.SIZE);
+            long word = 0L;
+            int i = wordStart;
+            
+            for (; i + 4 <= wordEnd; i += 4) {
+                V value0 = tableGet(keys[i] - minimumKey);
+                V value1 = tableGet(keys[i + 1] - minimumKey);
+                V value2 = tableGet(keys[i + 2] - minimumKey);
+                V value3 = tableGet(keys[i + 3] - minimumKey);
+                word |= (value0 != null ? 1L : 0L) << i | 
+                        (value1 != null ? 2L : 0L) << i |
+                        (value2 != null ? 4L : 0L) << i |
+                        (value3 != null ? 8L : 0L) << i;
+            }
+            
+            for (; i < wordEnd; ++i) {
+                if (tableGet(keys[i] - minimumKey) != null) {
+                    word |= 1L << i;
+                }
+            }
+            
+            bitmask[wordStart / Long.SIZE] = word;
+            found += Long.bitCount(word);
+        }
+        
+        return found;
+    }
+    
+    public V put(long key, V value) {
+        checkKey(key);
+        // Translate the key:
+        key -= minimumKey;
+        V currentValue = tablePut(key, value == null ? NULL_VALUE : value);
+        
+        if (currentValue != null) {
+            // key is present in this map.
+            return currentValue == NULL_VALUE ? null : currentValue;
+        }
+        
+        if (root == null) {
+            root = new VEBTree(universeShift, key);
+        } else {
+            root.treeInsert(key);
+        }
+        
+        size++;
+        return null;
+    }
+    
+    public V remove(long key) {
+        checkKey(key);
+        // Translate the key:
+        key -= minimumKey;
+        V value = tableRemove(key);
+        
+        if (value == null) {
+            return null;
+        }
+        
+        if (size == 1) {
+            root = null;
+        } else {
+            root.treeDelete(key);
+        }
+        
+        size--;
+        return value == NULL_VALUE ? null : value;
+    }
+    
+    public void clear() {
+        root = null;
+        tableKeys = new long[INITIAL_CAPACITY];
+        tableValues = (V[]) new Object[INITIAL_CAPACITY];
+        size = 0;
+    }
+    
+    /**
+     * This inner interface specifies the API for key iterators.
+     */
+    public interface KeyIterator {
+        
+        /**
+         * Returns {@code true} only if there is more keys to iterate.
+         * 
+         * @return {@code true} if there is more keys to iterate.
+         */
+        public boolean hasNextKey();
+        
+        /**
+         * Returns the next key in the sorted iteration order.
+         * 
+         * @return the next key.
+         */
+        public long nextKey();
+        
+        /**
+         * Removes the entire key/value pair of the current key.
+         */
+        public void removeKey();
+    }
+    
+    /**
+     * Holds a mapping while iterating the data structure.
+     * 
+     * @param <V> the value type.
+     */
+    public static final class KeyValueMapping<V> {
+        
+        public long key;
+        public V value;
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            
+            if (o == null) {
+                return false;
+            }
+            
+            if (!getClass().equals(o.getClass())) {
+                return false;
+            }
+            
+            KeyValueMapping<V> other = (KeyValueMapping<V>) o;
+            return key == other.key && Objects.equals(value, other.value);
+        }
+    }
+    
+    /**
+     * This inner interface specifies the API for the key/value iterators.
+     * 
+     * @param <V> the value type.
+     */
+    public interface KeyValueIterator<V> {
+        
+        /**
+         * Returns {@code true} only if there is more key/value pairs to
+         * iterate.
+         * 
+         * @return {@code true} if there is more pairs to iterate.
+         */
+        public boolean hasNextKeyValuePair();
+        
+        /**
+         * Loads the current key/value pair.
+         * 
+         * @param keyValueMapping the key/value pair where to store the data.
+         */
+        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping);
+        
+        /**
+         * Removes the previously iterated key/value pair.
+         */
+        public void removeKeyValuePair();
+    }
+    
+    /**
+     * Implements the key iterator that traverses the long keys in order via
+     * the underlying van Emde Boas tree.
+     */
+    public final class TreeKeyIterator implements KeyIterator {
+        
+        private int iterated;
+        private long lastReturned;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKey() {
+            return iterated < size;
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public long nextKey() {
+            if (!hasNextKey()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            lastReturned = iterated == 0 ?
+                           getMinimumKey() :
+                           getNextLongKey(lastReturned);
+            iterated++;
+            return lastReturned;
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKey() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(lastReturned);
+            iterated--;
+        }
+    }
+    
+    /**
+     * Implements the key/value iterator that traverses the long keys in order
+     * via the underlying van Emde Boas tree.
+     */
+    public final class TreeKeyValueIterator implements KeyValueIterator<V> {
+        
+        private int iterated;
+        private long lastReturned;
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public boolean hasNextKeyValuePair() {
+            return iterated < size;
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void nextKeyValuePair(KeyValueMapping<V> keyValueMapping) {
+            if (!hasNextKeyValuePair()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            lastReturned = iterated == 0 ?
+                           getMinimumKey() :
+                           getNextLongKey(lastReturned);
+            iterated++;
+            keyValueMapping.key = lastReturned;
+            keyValueMapping.value = get(lastReturned);
+        }
+        
+        /**
+         * {@inheritDoc }
+         */
+        @Override
+        public void removeKeyValuePair() {
+            if (iterated == 0) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            remove(lastReturned);
+            iterated--;
+        }
+    }
+    
+    public KeyIterator treeKeyIterator() {
+        return new TreeKeyIterator();
+    }
+    
+    public KeyValueIterator<V> treeKeyValueIterator() {
+        return new TreeKeyValueIterator();
+    }
+    
+    public static final class Mapping<V> {
+        public long key;
+        public V value;
+        
+        @Override
+        public String toString() {
+            return "(" + key + " -> " + value + ")";
+        }
+    }
+    
+    public static final class MappingIterator<V> {
+        
+        private final VanEmdeBoasTreeLongMap<V> tree;
+        private int iterated = 0;
+        private long lastReturned;
+        
+        MappingIterator(VanEmdeBoasTreeLongMap<V> tree) {
+            this.tree = tree;
+        }
+        
+        public boolean hasNext() {
+            return iterated < tree.size;
+        }
+        
+        public void next(Mapping<V> mapping) {
+            if (!hasNext()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            lastReturned = iterated == 0 ?
+                           tree.getMinimumKey() :
+                           tree.getNextLongKey(lastReturned);
+            iterated++;
+            mapping.key = lastReturned;
+            mapping.value = tree.get(lastReturned);
+        }
+    }
+    
+    public MappingIterator<V> mappingIterator() {
+        return new MappingIterator<>(this);
+    }
+    
+    /**
+     * Returns the value stored at the translated key {@code key}, or
+     * {@code null} if there is no such mapping.
+     * 
+     * @param key the translated key.
+     * @return the stored value or {@code null}.
+     */
+    private V tableGet(long key) {
+        int mask = tableKeys.length - 1;
+        
+        for (int i = hash(key) & mask;; i = (i + 1) & mask) {
+            V value = tableValues[i];
+            
+            if (value == null || tableKeys[i] == key) {
+                return value;
+            }
+        }
+    }
+    
+    /**
+     * Stores a non-{@code null} value at the translated key {@code key}.
+     * 
+     * @param key   the translated key.
+     * @param value the value to store.
+     * @return the previous value or {@code null} if there was none.
+     */
+    private V tablePut(long key, V value) {
+        if (2 * (size + 1) > tableKeys.length) {
+            resizeTable(2 * tableKeys.length);
+        }
+        
+        int mask = tableKeys.length - 1;
+        int i = hash(key) & mask;
+        
+        for (; tableValues[i] != null; i = (i + 1) & mask) {
+            if (tableKeys[i] == key) {
+                V oldValue = tableValues[i];
+                tableValues[i] = value;
+                return oldValue;
+            }
+        }
+        
+        tableKeys[i] = key;
+        tableValues[i] = value;
+        return null;
+    }
+    
+    /**
+     * Removes the value stored at the translated key {@code key}.
+     * 
+     * @param key the translated key.
+     * @return the removed value or {@code null} if there was none.
+     */
+    private V tableRemove(long key) {
+        int mask = tableKeys.length - 1;
+        int i = hash(key) & mask;
+        
+        for (; tableValues[i] != null; i = (i + 1) & mask) {
+            if (tableKeys[i] != key) {
+                continue;
+            }
+            
+            V value = tableValues[i];
+            
+            // Shift back the entries of the probe chain:
+            for (int j = (i + 1) & mask; tableValues[j] != null;
+                    j = (j + 1) & mask) {
+                int home = hash(tableKeys[j]) & mask;
+                
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    tableKeys[i] = tableKeys[j];
+                    tableValues[i] = tableValues[j];
+                    i = j;
+                }
+            }
+            
+            tableValues[i] = null;
+            return value;
+        }
+        
+        return null;
+    }
+    
+    private void resizeTable(int capacity) {
+        long[] oldKeys = tableKeys;
+        V[] oldValues = tableValues;
+        tableKeys = new long[capacity];
+        tableValues = (V[]) new Object[capacity];
+        int mask = capacity - 1;
+        
+        for (int i = 0; i != oldKeys.length; ++i) {
+            if (oldValues[i] != null) {
+                int j = hash(oldKeys[i]) & mask;
+                
+                while (tableValues[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                
+                tableKeys[j] = oldKeys[i];
+                tableValues[j] = oldValues[i];
+            }
+        }
+    }
+    
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+    
+    private void checkBounds(long minimumKey, long maximumKey) {
+        if (minimumKey > maximumKey) {
+            throw new IllegalArgumentException(
+                    "minimumKey(" + minimumKey + ") > " +
+                    "maximumKey(" + maximumKey + ")");
+        }
+    }
+    
+    /**
+     * Computes the binary logarithm of the smallest power of two no less than
+     * the unsigned {@code requestedUniverseSize}, where zero stands for
+     * {@code 2^64}. The result is at least one.
+     * 
+     * @param requestedUniverseSize the requested universe size.
+     * @return the binary logarithm of the actual universe size.
+     */
+    private static int computeUniverseShift(long requestedUniverseSize) {
+        if (requestedUniverseSize == 0L) {
+            return Long.SIZE;
+        }
+        
+        int shift = 64 - Long.numberOfLeadingZeros(requestedUniverseSize - 1);
+        return Math.max(shift, 1);
+    }
+    
+    /**
+     * Makes sure that all the keys in {@code keys} are within the key range 
+     * of this map and that the output has room for {@code keys.length} 
+     * results. The key bounds are checked once, on the extreme keys.
+     * 
+     * @param keys           the keys to check.
+     * @param outputCapacity the number of results the output can hold.
+     */
+    private void checkKeys(long[] keys, long outputCapacity) {
+        Objects.requireNonNull(keys, "The key array is null.");
+        
+        if (outputCapacity < keys.length) {
+            throw new IllegalArgumentException(
+                    "The output holds only " + outputCapacity + " results " +
+                    "for " + keys.length + " keys.");
+        }
+        
+        if (keys.length == 0) {
+            return;
+        }
+        
+        long smallestKey = keys[0];
+        long largestKey = keys[0];
+        
+        for (long key : keys) {
+            smallestKey = Math.min(smallestKey, key);
+            largestKey = Math.max(largestKey, key);
+        }
+        
+        checkKey(smallestKey);
+        checkKey(largestKey);
+    }
+    
+    private void checkKey(long key) {
+        if (key < minimumKey) {
+            throw new IllegalArgumentException(
+                    "The given key (" + key + ") is too small. Must be at " +
+                    "least " + minimumKey + ".");
+        }
+        
+        if (key > maximumKey) {
+            throw new IllegalArgumentException(
+                    "The given key (" + key + ") is too large. Must be at " +
+                    "most " + maximumKey + ".");
+        }
+    }
+}
@@ -0,0 +1,875 @@
+package net.coderodde.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import net.coderodde.util.VanEmdeBoasTreeIntMap.KeyValueConsumer;
+
+/**
+ * This class adapts {@link VanEmdeBoasTreeIntMap} to the
+ * {@link java.util.NavigableMap} interface, so that it may replace a
+ * {@link java.util.TreeMap} with integer keys. All the views (sub maps,
+ * descending maps, key and entry sets) are live and copy no data, and all the
+ * iterators are fail-fast. The keys must lie within the key range given at
+ * construction; {@link #put(Integer, Object)} throws an
+ * {@link IllegalArgumentException} for other keys, while the queries simply
+ * find no mapping for them.
+ * <p>
+ * The primitive methods, such as {@link #get(int)},
+ * {@link #putInt(int, Object)} and {@link #ceilingIntKey(int, int)}, avoid
+ * boxing the keys.
+ * 
+ * @author Rodion "rodde" Efremov
+ * @version 1.6 (Dec 9, 2017)
+ * @param <V> the type of values.
+ */
+public final class VanEmdeBoasTreeNavigableMap<V>
+        extends AbstractMap<Integer, V>
+        implements NavigableMap<Integer, V> {
+    
+    /**
+     * The actual map storing the mappings.
+     */
+    private final VanEmdeBoasTreeIntMap<V> map;
+    
+    /**
+     * The view of the backing map restricted to the range of this map, or
+     * {@code null} if the range is empty.
+     */
+    private final VanEmdeBoasTreeIntMap<V>.RangeView view;
+    
+    /**
+     * The smallest key within the bounds of this map. It may lie outside the
+     * key range of the backing map.
+     */
+    private final long lo;
+    
+    /**
+     * The largest key within the bounds of this map. It may lie outside the
+     * key range of the backing map.
+     */
+    private final long hi;
+    
+    /**
+     * The smallest and the largest key a bound of a sub map of this view may
+     * be. They equal {@code lo} and {@code hi} for the inclusive bounds, and 
+     * lie just outside of them for the exclusive ones.
+     */
+    private final long loBound;
+    private final long hiBound;
+    
+    /**
+     * Set if this map orders the keys in descending order.
+     */
+    private final boolean descending;
+    
+    /**
+     * Set if this map is a sub map view of another map. The bounds of the
+     * sub maps of a view must lie within the view.
+     */
+    private final boolean isView;
+    
+    public VanEmdeBoasTreeNavigableMap(int minimumKey, int maximumKey) {
+        this.map = new VanEmdeBoasTreeIntMap<>(minimumKey, maximumKey);
+        this.view = map.subMap(minimumKey, true, maximumKey, true);
+        this.lo = minimumKey;
+        this.hi = maximumKey;
+        this.loBound = minimumKey;
+        this.hiBound = maximumKey;
+        this.descending = false;
+        this.isView = false;
+    }
+    
+    private VanEmdeBoasTreeNavigableMap(VanEmdeBoasTreeIntMap<V> map,
+                                        long lo,
+                                        long hi,
+                                        long loBound,
+                                        long hiBound,
+                                        boolean descending) {
+        this.map = map;
+        this.lo = lo;
+        this.hi = hi;
+        this.loBound = loBound;
+        this.hiBound = hiBound;
+        this.descending = descending;
+        this.isView = true;
+        
+        long from = Math.max(lo, map.getRangeMinimumKey());
+        long to = Math.min(hi, map.getRangeMaximumKey());
+        
+        if (from > to) {
+            this.view = null;
+        } else {
+            VanEmdeBoasTreeIntMap<V>.RangeView rangeView =
+                    map.subMap((int) from, true, (int) to, true);
+            
+            this.view = descending ? rangeView.descendingMap() : rangeView;
+        }
+    }
+    
+    /**
+     * Returns the underlying primitive map. The modifications made through it
+     * are visible in this map.
+     * 
+     * @return the underlying map.
+     */
+    public VanEmdeBoasTreeIntMap<V> getIntMap() {
+        return map;
+    }
+    
+    @Override
+    public int size() {
+        return view == null ? 0 : view.size();
+    }
+    
+    @Override
+    public boolean isEmpty() {
+        return view == null || view.isEmpty();
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return containsKey((int)(Integer) key);
+    }
+    
+    public boolean containsKey(int key) {
+        return view != null && view.containsKey(key);
+    }
+    
+    @Override
+    public V get(Object key) {
+        return get((int)(Integer) key);
+    }
+    
+    public V get(int key) {
+        return view == null ? null : view.get(key);
+    }
+    
+    @Override
+    public V put(Integer key, V value) {
+        return putInt(key, value);
+    }
+    
+    /**
+     * Maps {@code key} to {@code value} without boxing the key. Unlike an 
+     * overload of {@link #put(Integer, Object)}, this method is unambiguous 
+     * also for integer values.
+     * 
+     * @param key   the key.
+     * @param value the value.
+     * @return the previous value of {@code key} or {@code null}.
+     */
+    public V putInt(int key, V value) {
+        if (view == null) {
+            throw new IllegalArgumentException(
+                    "The given key (" + key + ") is out of the map range.");
+        }
+        
+        return isView ? view.put(key, value) : map.put(key, value);
+    }
+    
+    @Override
+    public V remove(Object key) {
+        return remove((int)(Integer) key);
+    }
+    
+    public V remove(int key) {
+        return view == null ? null : view.remove(key);
+    }
+    
+    @Override
+    public void clear() {
+        if (!isView) {
+            map.clear();
+        } else if (view != null) {
+            view.clear();
+        }
+    }
+    
+    /**
+     * Feeds all the mappings to {@code consumer} in the order of this map
+     * without boxing the keys. The consumer must not modify this map.
+     * 
+     * @param consumer the mapping consumer.
+     */
+    public void forEachMapping(KeyValueConsumer<? super V> consumer) {
+        Objects.requireNonNull(consumer, "The input consumer is null.");
+        
+        if (view != null) {
+            view.forEach(consumer);
+        }
+    }
+    
+    /**
+     * Returns the first key of this map.
+     * 
+     * @return the first key.
+     * @throws NoSuchElementException if this map is empty.
+     */
+    public int firstIntKey() {
+        int key = view == null ? 0 : view.firstKey();
+        
+        if (!containsKey(key)) {
+            throw new NoSuchElementException("The map is empty.");
+        }
+        
+        return key;
+    }
+    
+    /**
+     * Returns the last key of this map.
+     * 
+     * @return the last key.
+     * @throws NoSuchElementException if this map is empty.
+     */
+    public int lastIntKey() {
+        int key = view == null ? 0 : view.lastKey();
+        
+        if (!containsKey(key)) {
+            throw new NoSuchElementException("The map is empty.");
+        }
+        
+        return key;
+    }
+    
+    /**
+     * Returns the least key not preceding {@code key} in the order of this
+     * map, or {@code absentKey} if there is no such.
+     * 
+     * @param key       the query key.
+     * @param absentKey the key to return if there is no ceiling key.
+     * @return the ceiling key or {@code absentKey}.
+     */
+    public int ceilingIntKey(int key, int absentKey) {
+        if (view == null) {
+            return absentKey;
+        }
+        
+        long ceiling = view.findCeilingKey(key);
+        return ceiling == VanEmdeBoasTreeIntMap.NO_KEY ? 
+               absentKey : 
+               (int) ceiling;
+    }
+    
+    /**
+     * Returns the greatest key not after {@code key} in the order of this
+     * map, or {@code absentKey} if there is no such.
+     * 
+     * @param key       the query key.
+     * @param absentKey the key to return if there is no floor key.
+     * @return the floor key or {@code absentKey}.
+     */
+    public int floorIntKey(int key, int absentKey) {
+        if (view == null) {
+            return absentKey;
+        }
+        
+        long floor = view.findFloorKey(key);
+        return floor == VanEmdeBoasTreeIntMap.NO_KEY ? 
+               absentKey : 
+               (int) floor;
+    }
+    
+    /**
+     * Returns the least key after {@code key} in the order of this map, or
+     * {@code absentKey} if there is no such.
+     * 
+     * @param key       the query key.
+     * @param absentKey the key to return if there is no higher key.
+     * @return the higher key or {@code absentKey}.
+     */
+    public int higherIntKey(int key, int absentKey) {
+        if (view == null) {
+            return absentKey;
+        }
+        
+        long higher = view.findHigherKey(key);
+        return higher == VanEmdeBoasTreeIntMap.NO_KEY ? 
+               absentKey : 
+               (int) higher;
+    }
+    
+    /**
+     * Returns the greatest key preceding {@code key} in the order of this map,
+     * or {@code absentKey} if there is no such.
+     * 
+     * @param key       the query key.
+     * @param absentKey the key to return if there is no lower key.
+     * @return the lower key or {@code absentKey}.
+     */
+    public int lowerIntKey(int key, int absentKey) {
+        if (view == null) {
+            return absentKey;
+        }
+        
+        long lower = view.findLowerKey(key);
+        return lower == VanEmdeBoasTreeIntMap.NO_KEY ? 
+               absentKey : 
+               (int) lower;
+    }
+    
+    @Override
+    public Comparator<? super Integer> comparator() {
+        return descending ? Collections.reverseOrder() : null;
+    }
+    
+    @Override
+    public Integer firstKey() {
+        return firstIntKey();
+    }
+    
+    @Override
+    public Integer lastKey() {
+        return lastIntKey();
+    }
+    
+    @Override
+    public Entry<Integer, V> firstEntry() {
+        return isEmpty() ? null : exportEntry(firstIntKey());
+    }
+    
+    @Override
+    public Entry<Integer, V> lastEntry() {
+        return isEmpty() ? null : exportEntry(lastIntKey());
+    }
+    
+    @Override
+    public Entry<Integer, V> pollFirstEntry() {
+        Entry<Integer, V> entry = firstEntry();
+        
+        if (entry != null) {
+            map.remove(entry.getKey());
+        }
+        
+        return entry;
+    }
+    
+    @Override
+    public Entry<Integer, V> pollLastEntry() {
+        Entry<Integer, V> entry = lastEntry();
+        
+        if (entry != null) {
+            map.remove(entry.getKey());
+        }
+        
+        return entry;
+    }
+    
+    @Override
+    public Entry<Integer, V> lowerEntry(Integer key) {
+        return exportEntry(lowerKey(key));
+    }
+    
+    @Override
+    public Integer lowerKey(Integer key) {
+        return view == null ? null : toKey(view.findLowerKey(key));
+    }
+    
+    @Override
+    public Entry<Integer, V> floorEntry(Integer key) {
+        return exportEntry(floorKey(key));
+    }
+    
+    @Override
+    public Integer floorKey(Integer key) {
+        return view == null ? null : toKey(view.findFloorKey(key));
+    }
+    
+    @Override
+    public Entry<Integer, V> ceilingEntry(Integer key) {
+        return exportEntry(ceilingKey(key));
+    }
+    
+    @Override
+    public Integer ceilingKey(Integer key) {
+        return view == null ? null : toKey(view.findCeilingKey(key));
+    }
+    
+    @Override
+    public Entry<Integer, V> higherEntry(Integer key) {
+        return exportEntry(higherKey(key));
+    }
+    
+    @Override
+    public Integer higherKey(Integer key) {
+        return view == null ? null : toKey(view.findHigherKey(key));
+    }
+    
+    @Override
+    public Set<Entry<Integer, V>> entrySet() {
+        return new EntrySet();
+    }
+    
+    @Override
+    public Set<Integer> keySet() {
+        return navigableKeySet();
+    }
+    
+    @Override
+    public NavigableSet<Integer> navigableKeySet() {
+        return new KeySet<>(this);
+    }
+    
+    @Override
+    public NavigableSet<Integer> descendingKeySet() {
+        return descendingMap().navigableKeySet();
+    }
+    
+    @Override
+    public NavigableMap<Integer, V> descendingMap() {
+        return new VanEmdeBoasTreeNavigableMap<>(map,
+                                                 lo,
+                                                 hi,
+                                                 loBound,
+                                                 hiBound,
+                                                 !descending);
+    }
+    
+    @Override
+    public NavigableMap<Integer, V> subMap(Integer fromKey,
+                                           boolean fromInclusive,
+                                           Integer toKey,
+                                           boolean toInclusive) {
+        if (precedes(toKey, fromKey)) {
+            throw new IllegalArgumentException(
+                    "fromKey(" + fromKey + ") > toKey(" + toKey + ")");
+        }
+        
+        return descending ?
+               narrow(toKey, toInclusive, fromKey, fromInclusive) :
+               narrow(fromKey, fromInclusive, toKey, toInclusive);
+    }
+    
+    @Override
+    public NavigableMap<Integer, V> headMap(Integer toKey, boolean inclusive) {
+        Objects.requireNonNull(toKey, "The input key is null.");
+        return descending ?
+               narrow(toKey, inclusive, null, true) :
+               narrow(null, true, toKey, inclusive);
+    }
+    
+    @Override
+    public NavigableMap<Integer, V> tailMap(Integer fromKey,
+                                            boolean inclusive) {
+        Objects.requireNonNull(fromKey, "The input key is null.");
+        return descending ?
+               narrow(null, true, fromKey, inclusive) :
+               narrow(fromKey, inclusive, null, true);
+    }
+    
+    @Override
+    public SortedMap<Integer, V> subMap(Integer fromKey, Integer toKey) {
+        return subMap(fromKey, true, toKey, false);
+    }
+    
+    @Override
+    public SortedMap<Integer, V> headMap(Integer toKey) {
+        return headMap(toKey, false);
+    }
+    
+    @Override
+    public SortedMap<Integer, V> tailMap(Integer fromKey) {
+        return tailMap(fromKey, true);
+    }
+    
+    /**
+     * Returns {@code true} only if {@code a} comes before {@code b} in the
+     * order of this map.
+     */
+    private boolean precedes(int a, int b) {
+        return descending ? a > b : a < b;
+    }
+    
+    /**
+     * Boxes a key found by the backing map, mapping 
+     * {@link VanEmdeBoasTreeIntMap#NO_KEY} to {@code null}.
+     */
+    private static Integer toKey(long key) {
+        return key == VanEmdeBoasTreeIntMap.NO_KEY ? null : (int) key;
+    }
+    
+    private Entry<Integer, V> exportEntry(Integer key) {
+        return key == null ?
+               null :
+               new SimpleImmutableEntry<>(key, map.get(key));
+    }
+    
+    /**
+     * Returns the view of the keys within the given natural order bounds. A
+     * {@code null} bound stands for the corresponding bound of this map.
+     */
+    private NavigableMap<Integer, V> narrow(Integer fromKey,
+                                            boolean fromInclusive,
+                                            Integer toKey,
+                                            boolean toInclusive) {
+        long newLo = lo;
+        long newHi = hi;
+        long newLoBound = loBound;
+        long newHiBound = hiBound;
+        
+        if (fromKey != null) {
+            checkBound(fromKey, fromInclusive);
+            newLo = fromInclusive ? fromKey : fromKey + 1L;
+            newLoBound = fromKey;
+        }
+        
+        if (toKey != null) {
+            checkBound(toKey, toInclusive);
+            newHi = toInclusive ? toKey : toKey - 1L;
+            newHiBound = toKey;
+        }
+        
+        return new VanEmdeBoasTreeNavigableMap<>(map,
+                                                 newLo,
+                                                 newHi,
+                                                 newLoBound,
+                                                 newHiBound,
+                                                 descending);
+    }
+    
+    /**
+     * Makes sure a bound of a sub map lies within this view, like 
+     * {@link java.util.TreeMap} does: an inclusive bound must be within the 
+     * bounds of this view, and an exclusive one within their closed range, so
+     * that it may equal an exclusive bound of this view. The bounds of the 
+     * sub maps of the top level map are not checked.
+     */
+    private void checkBound(int key, boolean inclusive) {
+        if (!isView) {
+            return;
+        }
+        
+        if (inclusive ? 
+                key < lo || key > hi : 
+                key < loBound || key > hiBound) {
+            throw new IllegalArgumentException(
+                    "The given key (" + key + ") is out of the view range.");
+        }
+    }
+    
+    /**
+     * Implements the fail-fast iteration over the keys of this map.
+     * 
+     * @param <T> the type of the iterated elements.
+     */
+    private abstract class BaseIterator<T> implements Iterator<T> {
+        
+        private final VanEmdeBoasTreeIntMap.KeyIterator iterator =
+                view == null ? null : view.keyIterator();
+        
+        private int expectedModCount = map.modCount;
+        
+        @Override
+        public boolean hasNext() {
+            return iterator != null && iterator.hasNextKey();
+        }
+        
+        @Override
+        public void remove() {
+            if (iterator == null) {
+                throw new IllegalStateException(
+                        "No current key to remove yet.");
+            }
+            
+            checkForComodification();
+            iterator.removeKey();
+            expectedModCount = map.modCount;
+        }
+        
+        int nextIntKey() {
+            checkForComodification();
+            
+            if (!hasNext()) {
+                throw new NoSuchElementException("Nothing to iterate left.");
+            }
+            
+            return iterator.nextKey();
+        }
+        
+        private void checkForComodification() {
+            if (map.modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+    
+    private final class KeySetIterator extends BaseIterator<Integer> {
+        
+        @Override
+        public Integer next() {
+            return nextIntKey();
+        }
+    }
+    
+    private final class EntrySetIterator
+            extends BaseIterator<Entry<Integer, V>> {
+        
+        @Override
+        public Entry<Integer, V> next() {
+            int key = nextIntKey();
+            return new MapEntry(key, map.get(key));
+        }
+    }
+    
+    /**
+     * The entries returned by the entry set iterators. Setting a value writes
+     * it through to the map.
+     */
+    private final class MapEntry implements Entry<Integer, V> {
+        
+        private final int key;
+        private V value;
+        
+        MapEntry(int key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+        
+        @Override
+        public Integer getKey() {
+            return key;
+        }
+        
+        @Override
+        public V getValue() {
+            return value;
+        }
+        
+        @Override
+        public V setValue(V value) {
+            map.put(key, value);
+            V oldValue = this.value;
+            this.value = value;
+            return oldValue;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return Integer.valueOf(key).equals(entry.getKey()) &&
+                   Objects.equals(value, entry.getValue());
+        }
+        
+        @Override
+        public int hashCode() {
+            return key ^ Objects.hashCode(value);
+        }
+        
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+    
+    private final class EntrySet extends AbstractSet<Entry<Integer, V>> {
+        
+        @Override
+        public Iterator<Entry<Integer, V>> iterator() {
+            return new EntrySetIterator();
+        }
+        
+        @Override
+        public int size() {
+            return VanEmdeBoasTreeNavigableMap.this.size();
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return VanEmdeBoasTreeNavigableMap.this.isEmpty();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            
+            if (!(entry.getKey() instanceof Integer)) {
+                return false;
+            }
+            
+            int key = (Integer) entry.getKey();
+            return containsKey(key) &&
+                   Objects.equals(get(key), entry.getValue());
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            
+            VanEmdeBoasTreeNavigableMap.this.remove(
+                    (int)(Integer)((Entry<?, ?>) o).getKey());
+            return true;
+        }
+        
+        @Override
+        public void clear() {
+            VanEmdeBoasTreeNavigableMap.this.clear();
+        }
+    }
+    
+    /**
+     * Implements the navigable key set view of a map.
+     * 
+     * @param <V> the type of the values of the map.
+     */
+    private static final class KeySet<V>
+            extends AbstractSet<Integer>
+            implements NavigableSet<Integer> {
+        
+        private final VanEmdeBoasTreeNavigableMap<V> owner;
+        
+        KeySet(VanEmdeBoasTreeNavigableMap<V> owner) {
+            this.owner = owner;
+        }
+        
+        @Override
+        public Iterator<Integer> iterator() {
+            return owner.new KeySetIterator();
+        }
+        
+        @Override
+        public Iterator<Integer> descendingIterator() {
+            return descendingSet().iterator();
+        }
+        
+        @Override
+        public int size() {
+            return owner.size();
+        }
+        
+        @Override
+        public boolean isEmpty() {
+            return owner.isEmpty();
+        }
+        
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Integer && owner.containsKey((int)(Integer) o);
+        }
+        
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            
+            owner.remove((int)(Integer) o);
+            return true;
+        }
+        
+        @Override
+        public void clear() {
+            owner.clear();
+        }
+        
+        @Override
+        public Comparator<? super Integer> comparator() {
+            return owner.comparator();
+        }
+        
+        @Override
+        public Integer first() {
+            return owner.firstKey();
+        }
+        
+        @Override
+        public Integer last() {
+            return owner.lastKey();
+        }
+        
+        @Override
+        public Integer lower(Integer e) {
+            return owner.lowerKey(e);
+        }
+        
+        @Override
+        public Integer floor(Integer e) {
+            return owner.floorKey(e);
+        }
+        
+        @Override
+        public Integer ceiling(Integer e) {
+            return owner.ceilingKey(e);
+        }
+        
+        @Override
+        public Integer higher(Integer e) {
+            return owner.higherKey(e);
+        }
+        
+        @Override
+        public Integer pollFirst() {
+            Entry<Integer, V> entry = owner.pollFirstEntry();
+            return entry == null ? null : entry.getKey();
+        }
+        
+        @Override
+        public Integer pollLast() {
+            Entry<Integer, V> entry = owner.pollLastEntry();
+            return entry == null ? null : entry.getKey();
+        }
+        
+        @Override
+        public NavigableSet<Integer> descendingSet() {
+            return owner.descendingMap().navigableKeySet();
+        }
+        
+        @Override
+        public NavigableSet<Integer> subSet(Integer fromElement,
+                                            boolean fromInclusive,
+                                            Integer toElement,
+                                            boolean toInclusive) {
+            return owner.subMap(fromElement,
+                                fromInclusive,
+                                toElement,
+                                toInclusive).navigableKeySet();
+        }
+        
+        @Override
+        public NavigableSet<Integer> headSet(Integer toElement,
+                                             boolean inclusive) {
+            return owner.headMap(toElement, inclusive).navigableKeySet();
+        }
+        
+        @Override
+        public NavigableSet<Integer> tailSet(Integer fromElement,
+                                             boolean inclusive) {
+            return owner.tailMap(fromElement, inclusive).navigableKeySet();
+        }
+        
+        @Override
+        public SortedSet<Integer> subSet(Integer fromElement,
+                                         Integer toElement) {
+            return subSet(fromElement, true, toElement, false);
+        }
+        
+        @Override
+        public SortedSet<Integer> headSet(Integer toElement) {
+            return headSet(toElement, false);
+        }
+        
+        @Override
+        public SortedSet<Integer> tailSet(Integer fromElement) {
+            return tailSet(fromElement, true);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package net.coderodde.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import static net.coderodde.util.VanEmdeBoasTreeIntMapTest.INTEGER_CODEC;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VanEmdeBoasTreeDurableIntMapTest {
+    
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testRecovery() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Random random = new Random(137L);
+        Map<Integer, Integer> expected = new TreeMap<>();
+        
+        for (int round = 0; round < 4; ++round) {
+            try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                    VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                      -1000, 
+                                                      1000, 
+                                                      INTEGER_CODEC)) {
+                check(expected, map);
+                
+                for (int i = 0; i < 2000; ++i) {
+                    int key = random.nextInt(2001) - 1000;
+                    
+                    if (random.nextInt(3) == 0) {
+                        assertEquals(expected.remove(key), map.remove(key));
+                    } else {
+                        Integer value = random.nextInt(10) == 0 ?
+                                        null :
+                                        random.nextInt();
+                        assertEquals(expected.put(key, value), 
+                                     map.put(key, value));
+                    }
+                }
+                
+                if (round == 1) {
+                    map.checkpoint();
+                    assertEquals(0L, Files.size(directory.resolve(
+                            VanEmdeBoasTreeDurableIntMap.LOG_FILE_NAME)));
+                }
+            }
+        }
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  0, 
+                                                  INTEGER_CODEC)) {
+            check(expected, map);
+        }
+    }
+    
+    @Test
+    public void testTornTailIsCutOff() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path log = directory.resolve(
+                VanEmdeBoasTreeDurableIntMap.LOG_FILE_NAME);
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  100, 
+                                                  INTEGER_CODEC)) {
+            map.put(1, 10);
+            map.put(2, 20);
+            map.remove(1);
+        }
+        
+        long intactLength = Files.size(log);
+        // A record cut short by a crash:
+        Files.write(log, 
+                    new byte[]{ 0, 0, 0, 10, 1, 0, 0 }, 
+                    StandardOpenOption.APPEND);
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  100, 
+                                                  INTEGER_CODEC)) {
+            assertEquals(intactLength, Files.size(log));
+            assertEquals(1, map.size());
+            assertFalse(map.containsKey(1));
+            assertEquals(Integer.valueOf(20), map.get(2));
+            map.put(3, 30);
+        }
+        
+        // A record with a corrupt checksum:
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(log, bytes);
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  100, 
+                                                  INTEGER_CODEC)) {
+            assertEquals(intactLength, Files.size(log));
+            assertNull(map.get(3));
+            assertEquals(1, map.size());
+        }
+    }
+    
+    @Test(expected = IOException.class)
+    public void testClosedMapRejectsModifications() throws IOException {
+        VanEmdeBoasTreeDurableIntMap<Integer> map = 
+                VanEmdeBoasTreeDurableIntMap.open(folder.getRoot().toPath(), 
+                                                  0, 
+                                                  100, 
+                                                  INTEGER_CODEC);
+        map.close();
+        map.put(1, 1);
+    }
+    
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int threadCount = 8;
+        int keysPerThread = 300;
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  100_000, 
+                                                  INTEGER_CODEC)) {
+            for (int t = 0; t < threadCount; ++t) {
+                int thread = t;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; i < keysPerThread; ++i) {
+                            int key = i * threadCount + thread;
+                            map.put(key, -key);
+                            
+                            if (i % 3 == 0) {
+                                map.remove(key);
+                            }
+                            
+                            if (thread == 0 && i == keysPerThread / 2) {
+                                map.checkpoint();
+                            }
+                        }
+                    } catch (Throwable ex) {
+                        error.compareAndSet(null, ex);
+                    }
+                }));
+            }
+            
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+        
+        try (VanEmdeBoasTreeDurableIntMap<Integer> map =
+                VanEmdeBoasTreeDurableIntMap.open(directory, 
+                                                  0, 
+                                                  100_000, 
+                                                  INTEGER_CODEC)) {
+            assertEquals(threadCount * (keysPerThread - keysPerThread / 3), 
+                         map.size());
+            
+            for (int i = 0; i < keysPerThread; ++i) {
+                for (int thread = 0; thread < threadCount; ++thread) {
+                    int key = i * threadCount + thread;
+                    
+                    if (i % 3 == 0) {
+                        assertFalse(map.containsKey(key));
+                    } else {
+                        assertEquals(Integer.valueOf(-key), map.get(key));
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void check(Map<Integer, Integer> expected,
+                              VanEmdeBoasTreeDurableIntMap<Integer> map) {
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -1,10 +1,29 @@
 package net.coderodde.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
 import net.coderodde.util.VanEmdeBoasTreeIntMap.KeyValueMapping;
+import net.coderodde.util.VanEmdeBoasTreeIntMap.SplitPolicy;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Test;
 
 public class VanEmdeBoasTreeIntMapTest {
@@ -408,4 +427,1959 @@ public class VanEmdeBoasTreeIntMapTest {
             assertNull(tree.remove(i));
         }
     }
+    
+    @Test
+    public void testTableIteratorsSkipReleasedPages() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(-100_000, 100_000);
+        
+        for (int i = -100_000; i <= 100_000; i += 777) {
+            tree.put(i, i);
+        }
+        
+        // Empty a couple of pages completely:
+        for (int i = -50_000; i <= 50_000; ++i) {
+            tree.remove(i);
+        }
+        
+        VanEmdeBoasTreeIntMap.KeyIterator tableIterator = 
+                tree.tableKeyIterator();
+        VanEmdeBoasTreeIntMap.KeyIterator treeIterator = 
+                tree.treeKeyIterator();
+        KeyValueMapping<Integer> mapping = new KeyValueMapping<>();
+        VanEmdeBoasTreeIntMap.KeyValueIterator<Integer> tableKeyValueIterator =
+                tree.tableKeyValueIterator();
+        
+        while (treeIterator.hasNextKey()) {
+            assertTrue(tableIterator.hasNextKey());
+            int key = treeIterator.nextKey();
+            assertEquals(key, tableIterator.nextKey());
+            tableKeyValueIterator.nextKeyValuePair(mapping);
+            assertEquals(key, mapping.key);
+            assertEquals(Integer.valueOf(key), mapping.value);
+        }
+        
+        assertFalse(tableIterator.hasNextKey());
+        
+        for (int i = -100_000; i <= 100_000; i += 777) {
+            assertEquals(i < -50_000 || i > 50_000, tree.containsKey(i));
+        }
+    }
+    
+    @Test
+    public void testFullIntegerRange() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        
+        tree.put(Integer.MAX_VALUE, 1);
+        tree.put(Integer.MIN_VALUE, 2);
+        tree.put(0, 3);
+        tree.put(-1, 4);
+        
+        assertEquals(4, tree.size());
+        assertEquals(Integer.MIN_VALUE, tree.getMinimumKey());
+        assertEquals(Integer.MAX_VALUE, tree.getMaximumKey());
+        assertEquals(-1, tree.getNextIntKey(Integer.MIN_VALUE));
+        assertEquals(0, tree.getNextIntKey(-1));
+        assertEquals(Integer.MAX_VALUE, tree.getNextIntKey(0));
+        assertEquals(0, tree.getPreviousIntKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, tree.getPreviousIntKey(-1));
+        assertEquals(Integer.valueOf(1), tree.get(Integer.MAX_VALUE));
+        assertEquals(Integer.valueOf(2), tree.get(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(4), tree.remove(-1));
+        assertEquals(0, tree.getNextIntKey(-1));
+        assertEquals(Integer.MAX_VALUE, tree.getNextIntKey(1));
+        assertEquals(Integer.valueOf(2), tree.remove(Integer.MIN_VALUE));
+        assertEquals(0, tree.getMinimumKey());
+        
+        VanEmdeBoasTreeIntMap.KeyIterator iterator = tree.tableKeyIterator();
+        assertEquals(0, iterator.nextKey());
+        assertEquals(Integer.MAX_VALUE, iterator.nextKey());
+        assertFalse(iterator.hasNextKey());
+    }
+    
+    @Test
+    public void testFullIntegerRangeAbsentKeys() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        
+        // The int sentinels wrap around onto valid keys:
+        assertEquals(Integer.MIN_VALUE, tree.getMinimumKey());
+        assertEquals(Integer.MAX_VALUE, tree.getMaximumKey());
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, tree.findMinimumKey());
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, tree.findMaximumKey());
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, tree.findNextKey(0));
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, tree.findPreviousKey(0));
+        
+        tree.put(Integer.MIN_VALUE, 1);
+        tree.put(Integer.MAX_VALUE, 2);
+        assertEquals(Integer.MIN_VALUE, tree.findMinimumKey());
+        assertEquals(Integer.MAX_VALUE, tree.findMaximumKey());
+        assertEquals(Integer.MAX_VALUE, tree.findNextKey(Integer.MIN_VALUE));
+        assertEquals(Integer.MAX_VALUE, tree.getNextIntKey(Integer.MIN_VALUE));
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, 
+                     tree.findNextKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, tree.getNextIntKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, 
+                     tree.findPreviousKey(Integer.MAX_VALUE));
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, 
+                     tree.findPreviousKey(Integer.MIN_VALUE));
+        assertEquals(-7, 
+                     new VanEmdeBoasTreeIntMap<Integer>(-6, 10)
+                             .getNextIntKey(3));
+    }
+    
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(13L);
+        int[] keys = new int[12_001];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = i - 3_000;
+        }
+        
+        checkAgainstTreeMap(-3_000, 9_000, keys, random);
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = random.nextInt();
+        }
+        
+        keys[0] = Integer.MIN_VALUE;
+        keys[1] = Integer.MAX_VALUE;
+        checkAgainstTreeMap(Integer.MIN_VALUE, Integer.MAX_VALUE, keys, random);
+    }
+    
+    @Test
+    public void testSplitPolicies() {
+        Random random = new Random(29L);
+        int[] keys = new int[20_000];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = random.nextInt(1 << 22);
+        }
+        
+        checkAgainstTreeMap(0, 
+                            (1 << 22) - 1, 
+                            keys, 
+                            random, 
+                            SplitPolicy.withFanoutShifts(12, 4));
+        
+        checkAgainstTreeMap(0, 
+                            (1 << 22) - 1, 
+                            keys, 
+                            random, 
+                            (level, universeShift) -> universeShift - 1);
+        
+        checkAgainstTreeMap(0, 
+                            (1 << 22) - 1, 
+                            keys, 
+                            random, 
+                            SplitPolicy.withFanoutShifts(16));
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = random.nextInt(50);
+        }
+        
+        checkAgainstTreeMap(0, 49, keys, random, SplitPolicy.SQUARE_ROOT);
+    }
+    
+    @Test
+    public void testRemoveRangeAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        tree.put(Integer.MIN_VALUE, 1);
+        tree.put(-1, 2);
+        tree.put(0, 3);
+        tree.put(Integer.MAX_VALUE, 4);
+        
+        // A range between two keys:
+        assertEquals(0, tree.removeRange(1, 1000));
+        assertEquals(4, tree.size());
+        
+        assertEquals(1, tree.removeRange(Integer.MIN_VALUE, 
+                                         Integer.MIN_VALUE));
+        assertEquals(-1, tree.getMinimumKey());
+        assertEquals(1, tree.removeRange(Integer.MAX_VALUE, 
+                                         Integer.MAX_VALUE));
+        assertEquals(0, tree.getMaximumKey());
+        assertEquals(2, tree.removeRange(Integer.MIN_VALUE, 
+                                         Integer.MAX_VALUE));
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.removeRange(Integer.MIN_VALUE, 
+                                         Integer.MAX_VALUE));
+    }
+    
+    @Test
+    public void testRemoveRangeDropsWholeClusters() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(0, 
+                                            1 << 20, 
+                                            SplitPolicy.withFanoutShifts(8, 6));
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int key = 0; key <= 1 << 20; key += 3) {
+            tree.put(key, key);
+            treeMap.put(key, key);
+        }
+        
+        // Partial clusters at both ends, and whole ones in between:
+        NavigableMap<Integer, Integer> range = 
+                treeMap.subMap(1000, true, (1 << 19) + 5, true);
+        assertEquals(range.size(), tree.removeRange(1000, (1 << 19) + 5));
+        range.clear();
+        checkSameMappings(treeMap, tree);
+        assertEquals(999, tree.getPreviousIntKey((1 << 19) + 7));
+        
+        // The whole key range:
+        assertEquals(treeMap.size(), tree.removeRange(0, 1 << 20));
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.tableKeyIterator().hasNextKey());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveRangeThrowsOnInvertedRange() {
+        new VanEmdeBoasTreeIntMap<>(0, 100).removeRange(50, 49);
+    }
+    
+    @Test
+    public void testNavigationOutsideRange() {
+        VanEmdeBoasTreeIntMap<String> tree = 
+                new VanEmdeBoasTreeIntMap<>(-100, 100);
+        
+        assertEquals(-101, tree.ceilingKey(0));
+        assertEquals(101, tree.floorKey(0));
+        
+        tree.put(-50, "-50");
+        tree.put(10, "10");
+        tree.put(100, "100");
+        
+        assertEquals(-50, tree.ceilingKey(Integer.MIN_VALUE));
+        assertEquals(-50, tree.higherKey(-101));
+        assertEquals(-101, tree.ceilingKey(101));
+        assertEquals(-101, tree.higherKey(100));
+        assertEquals(10, tree.ceilingKey(10));
+        assertEquals(100, tree.higherKey(10));
+        
+        assertEquals(100, tree.floorKey(Integer.MAX_VALUE));
+        assertEquals(100, tree.lowerKey(101));
+        assertEquals(101, tree.floorKey(-101));
+        assertEquals(101, tree.lowerKey(-50));
+        assertEquals(10, tree.floorKey(10));
+        assertEquals(-50, tree.lowerKey(10));
+    }
+    
+    @Test
+    public void testNavigationOverFullRange() {
+        VanEmdeBoasTreeIntMap<String> tree = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        long none = VanEmdeBoasTreeIntMap.NO_KEY;
+        tree.put(Integer.MIN_VALUE, "min");
+        tree.put(Integer.MAX_VALUE, "max");
+        
+        // The int sentinels coincide with the keys:
+        assertEquals(Integer.MIN_VALUE, tree.ceilingKey(Integer.MIN_VALUE));
+        assertEquals(Integer.MAX_VALUE, tree.higherKey(Integer.MAX_VALUE));
+        
+        assertEquals(Integer.MIN_VALUE, tree.findCeilingKey(Integer.MIN_VALUE));
+        assertEquals(Integer.MAX_VALUE, tree.findCeilingKey(0));
+        assertEquals(none, tree.findHigherKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, tree.findFloorKey(Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, tree.findFloorKey(0));
+        assertEquals(none, tree.findLowerKey(Integer.MIN_VALUE));
+        assertEquals(none, tree.findFirstInRange(0, 10));
+        assertEquals(none, tree.findLastInRange(0, 10));
+        assertEquals(Integer.MAX_VALUE, 
+                     tree.findFirstInRange(0, Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, 
+                     tree.findLastInRange(Integer.MIN_VALUE, 0));
+        
+        int[] queries = { Integer.MIN_VALUE, 0, Integer.MAX_VALUE };
+        long[] out = new long[3];
+        tree.successors(queries, out);
+        assertTrue(Arrays.equals(
+                new long[]{ Integer.MAX_VALUE, Integer.MAX_VALUE, none }, out));
+        tree.predecessors(queries, out);
+        assertTrue(Arrays.equals(
+                new long[]{ none, Integer.MIN_VALUE, Integer.MIN_VALUE }, out));
+        
+        VanEmdeBoasTreeIntMap<String>.RangeView view = 
+                tree.subMap(Integer.MIN_VALUE, true, 0, true);
+        assertEquals(Integer.MIN_VALUE, view.findCeilingKey(Integer.MIN_VALUE));
+        assertEquals(none, view.findHigherKey(Integer.MIN_VALUE));
+        assertEquals(none, 
+                     view.descendingMap().findLowerKey(Integer.MIN_VALUE));
+        assertEquals(Integer.MIN_VALUE, 
+                     view.descendingMap().findHigherKey(0));
+    }
+    
+    @Test
+    public void testRangeQueriesOnEmptyMap() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(-10, 10);
+        List<Integer> keys = new ArrayList<>();
+        
+        assertTrue(tree.isRangeEmpty(-10, 10));
+        assertEquals(11, tree.firstInRange(-10, 10));
+        assertEquals(-11, tree.lastInRange(-10, 10));
+        tree.forEachInRange(-10, 10, (key, value) -> keys.add(key));
+        assertTrue(keys.isEmpty());
+    }
+    
+    @Test
+    public void testRangeQueriesAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        tree.put(Integer.MIN_VALUE, 1);
+        tree.put(5, null);
+        tree.put(Integer.MAX_VALUE, 3);
+        List<Integer> keys = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        
+        assertTrue(tree.isRangeEmpty(Integer.MIN_VALUE + 1, 4));
+        assertTrue(tree.isRangeEmpty(6, Integer.MAX_VALUE - 1));
+        assertFalse(tree.isRangeEmpty(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(Integer.MIN_VALUE, 
+                     tree.firstInRange(Integer.MIN_VALUE, Integer.MIN_VALUE));
+        assertEquals(Integer.MAX_VALUE, 
+                     tree.lastInRange(Integer.MAX_VALUE, Integer.MAX_VALUE));
+        assertEquals(5, tree.lastInRange(Integer.MIN_VALUE + 1, 
+                                         Integer.MAX_VALUE - 1));
+        
+        tree.forEachInRange(Integer.MIN_VALUE, 
+                            Integer.MAX_VALUE, 
+                            (key, value) -> {
+                                keys.add(key);
+                                values.add(value);
+                            });
+        assertEquals(Arrays.asList(Integer.MIN_VALUE, 5, Integer.MAX_VALUE), 
+                     keys);
+        assertEquals(Arrays.asList(1, null, 3), values);
+    }
+    
+    @Test
+    public void testRangeQueriesAtClusterBoundaries() {
+        // Root clusters of 4096 keys, their clusters of 256 keys, and leaves
+        // of 64 keys:
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(0, 
+                                            (1 << 16) - 1, 
+                                            SplitPolicy.withFanoutShifts(4, 4));
+        List<Integer> keys = new ArrayList<>();
+        
+        for (int key : new int[]{ 63, 64, 4095, 4096, (1 << 16) - 1 }) {
+            tree.put(key, key);
+        }
+        
+        assertTrue(tree.isRangeEmpty(65, 4094));
+        assertTrue(tree.isRangeEmpty(4097, (1 << 16) - 2));
+        assertEquals(64, tree.firstInRange(64, 64));
+        assertEquals(4095, tree.firstInRange(65, (1 << 16) - 1));
+        assertEquals(4095, tree.lastInRange(0, 4095));
+        assertEquals(63, tree.lastInRange(0, 63));
+        
+        tree.forEachInRange(64, 4096, (key, value) -> keys.add(key));
+        assertEquals(Arrays.asList(64, 4095, 4096), keys);
+    }
+    
+    @Test
+    public void testRangeViews() {
+        Random random = new Random(41L);
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(-5_000, 5_000);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int i = 0; i < 3_000; ++i) {
+            int key = random.nextInt(10_001) - 5_000;
+            tree.put(key, i);
+            treeMap.put(key, i);
+        }
+        
+        for (int iteration = 0; iteration < 300; ++iteration) {
+            int a = random.nextInt(10_001) - 5_000;
+            int b = a + random.nextInt(5_001 - a);
+            boolean aInclusive = random.nextBoolean();
+            boolean bInclusive = random.nextBoolean();
+            VanEmdeBoasTreeIntMap<Integer>.RangeView view;
+            NavigableMap<Integer, Integer> expected;
+            
+            switch (iteration % 4) {
+                case 0:
+                    view = tree.subMap(a, aInclusive, b, bInclusive);
+                    expected = treeMap.subMap(a, aInclusive, b, bInclusive);
+                    break;
+                    
+                case 1:
+                    view = tree.headMap(b, bInclusive);
+                    expected = treeMap.headMap(b, bInclusive);
+                    break;
+                    
+                case 2:
+                    view = tree.tailMap(a, aInclusive);
+                    expected = treeMap.tailMap(a, aInclusive);
+                    break;
+                    
+                default:
+                    view = tree.subMap(a, aInclusive, b, bInclusive)
+                               .descendingMap();
+                    expected = treeMap.subMap(a, aInclusive, b, bInclusive)
+                                      .descendingMap();
+            }
+            
+            checkRangeView(view, expected, random);
+            
+            if (expected.size() > 2) {
+                int first = expected.firstKey();
+                int last = expected.lastKey();
+                checkRangeView(view.subMap(first, false, last, true), 
+                               expected.subMap(first, false, last, true),
+                               random);
+                checkRangeView(view.headMap(last, false), 
+                               expected.headMap(last, false),
+                               random);
+                checkRangeView(view.tailMap(first, true).descendingMap(), 
+                               expected.tailMap(first, true).descendingMap(),
+                               random);
+            }
+        }
+        
+        VanEmdeBoasTreeIntMap<Integer>.RangeView view = 
+                tree.subMap(-100, true, 100, false);
+        
+        view.put(-100, -1);
+        assertEquals(Integer.valueOf(-1), tree.get(-100));
+        tree.put(99, -2);
+        assertEquals(Integer.valueOf(-2), view.get(99));
+        assertNull(view.get(100));
+        
+        int sizeBefore = tree.size();
+        int viewSize = view.size();
+        view.clear();
+        assertTrue(view.isEmpty());
+        assertEquals(0, view.size());
+        assertEquals(sizeBefore - viewSize, tree.size());
+        assertEquals(tree.headMap(-100, false).size() + 
+                     tree.tailMap(100, true).size(), 
+                     tree.size());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRangeViewRejectsOuterKeys() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 100).subMap(10, true, 20, true)
+                                                  .put(21, 21);
+    }
+    
+    @Test
+    public void testSetAlgebraWithEmptyMap() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        VanEmdeBoasTreeIntMap<Integer> empty = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map.put(0, 0);
+        map.put(50, null);
+        map.put(100, 100);
+        
+        assertEquals(0, map.intersectionSize(empty));
+        assertEquals(0, empty.intersectionSize(map));
+        assertEquals(0, map.addAll(empty));
+        assertEquals(0, map.removeAll(empty));
+        assertEquals(0, empty.retainAll(map));
+        assertEquals(3, map.size());
+        
+        VanEmdeBoasTreeIntMap<Integer> copy = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        assertEquals(3, copy.addAll(map));
+        assertEquals(0, copy.retainAll(map));
+        assertEquals(3, copy.intersectionSize(map));
+        assertTrue(Arrays.equals(map.toKeyArray(), copy.toKeyArray()));
+        assertTrue(copy.containsKey(50));
+        assertEquals(3, copy.retainAll(empty));
+        assertTrue(copy.isEmpty());
+    }
+    
+    @Test
+    public void testSetAlgebraAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> map1 = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        VanEmdeBoasTreeIntMap<Integer> map2 = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        VanEmdeBoasTreeIntMap<Integer> union = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        
+        for (int key : new int[]{ Integer.MIN_VALUE, 0, Integer.MAX_VALUE }) {
+            map1.put(key, 1);
+        }
+        
+        for (int key : new int[]{ Integer.MIN_VALUE, 1, Integer.MAX_VALUE }) {
+            map2.put(key, 2);
+        }
+        
+        assertEquals(2, map1.intersectionSize(map2));
+        assertEquals(2, map2.intersectionSize(map1));
+        assertEquals(3, union.addAll(map1));
+        assertEquals(1, union.addAll(map2));
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MIN_VALUE, 0, 1, Integer.MAX_VALUE }, 
+                union.toKeyArray()));
+        // The values of the keys present already are kept:
+        assertEquals(Integer.valueOf(1), union.get(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(2), union.get(1));
+        
+        assertEquals(3, union.removeAll(map2));
+        assertTrue(Arrays.equals(new int[]{ 0 }, union.toKeyArray()));
+        assertEquals(1, map1.retainAll(map2));
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MIN_VALUE, Integer.MAX_VALUE }, 
+                map1.toKeyArray()));
+    }
+    
+    @Test
+    public void testSetAlgebraAcrossClusters() {
+        // Root clusters of 1024 keys with leaves of 64 keys:
+        SplitPolicy splitPolicy = SplitPolicy.withFanoutShifts(6, 4);
+        VanEmdeBoasTreeIntMap<Integer> map1 = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1, splitPolicy);
+        VanEmdeBoasTreeIntMap<Integer> map2 = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1, splitPolicy);
+        TreeMap<Integer, Integer> treeMap1 = new TreeMap<>();
+        TreeMap<Integer, Integer> treeMap2 = new TreeMap<>();
+        
+        // The second map shares a partial leaf and a whole cluster with the 
+        // first one, and has a cluster of its own:
+        for (int key = 0; key < 3000; ++key) {
+            map1.put(key, key);
+            treeMap1.put(key, key);
+        }
+        
+        for (int key = 1000; key < 1100; key += 3) {
+            map2.put(key, -key);
+            treeMap2.put(key, -key);
+        }
+        
+        for (int key = 2048; key < 3072; ++key) {
+            map2.put(key, -key);
+            treeMap2.put(key, -key);
+        }
+        
+        map2.put(40_000, 0);
+        treeMap2.put(40_000, 0);
+        
+        TreeMap<Integer, Integer> intersection = new TreeMap<>(treeMap1);
+        intersection.keySet().retainAll(treeMap2.keySet());
+        assertEquals(intersection.size(), map1.intersectionSize(map2));
+        
+        VanEmdeBoasTreeIntMap<Integer> actual = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1, splitPolicy);
+        actual.addAll(map1);
+        assertEquals(treeMap1.size() - intersection.size(), 
+                     actual.retainAll(map2));
+        checkSameMappings(intersection, actual);
+        
+        TreeMap<Integer, Integer> union = new TreeMap<>(treeMap2);
+        union.putAll(treeMap1);
+        actual.addAll(map1);
+        assertEquals(union.size() - treeMap1.size(), actual.addAll(map2));
+        checkSameMappings(union, actual);
+        
+        TreeMap<Integer, Integer> difference = new TreeMap<>(treeMap1);
+        difference.keySet().removeAll(treeMap2.keySet());
+        assertEquals(treeMap2.size(), actual.removeAll(map2));
+        checkSameMappings(difference, actual);
+        checkSameMappings(treeMap2, map2);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSetAlgebraRejectsDifferentRanges() {
+        new VanEmdeBoasTreeIntMap<>(0, 100).retainAll(
+                new VanEmdeBoasTreeIntMap<>(0, 101));
+    }
+    
+    @Test
+    public void testSplitAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        int[] keys = { Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE };
+        
+        for (int key : keys) {
+            map.put(key, key);
+        }
+        
+        VanEmdeBoasTreeIntMap<Integer> upper = map.splitAt(Integer.MIN_VALUE);
+        assertTrue(map.isEmpty());
+        assertTrue(Arrays.equals(keys, upper.toKeyArray()));
+        map.join(upper);
+        assertTrue(upper.isEmpty());
+        
+        upper = map.splitAt(Integer.MAX_VALUE);
+        assertEquals(0, map.getMaximumKey());
+        assertEquals(Integer.MAX_VALUE, upper.getMinimumKey());
+        assertEquals(1, upper.size());
+        map.join(upper);
+        
+        upper = map.splitAt(0);
+        assertTrue(Arrays.equals(new int[]{ Integer.MIN_VALUE, -1 }, 
+                                 map.toKeyArray()));
+        upper.join(map);
+        assertTrue(map.isEmpty());
+        assertTrue(Arrays.equals(keys, upper.toKeyArray()));
+        
+        for (int key : keys) {
+            assertEquals(Integer.valueOf(key), upper.get(key));
+        }
+    }
+    
+    @Test
+    public void testSplitAtClusterBoundaries() {
+        // Root clusters of 1024 keys with leaves of 64 keys:
+        SplitPolicy splitPolicy = SplitPolicy.withFanoutShifts(6, 4);
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1, splitPolicy);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int key = 0; key < 3000; ++key) {
+            map.put(key, key % 7 == 0 ? null : key);
+            treeMap.put(key, key % 7 == 0 ? null : key);
+        }
+        
+        for (int splitKey : new int[]{ 1024, 1030, 2999, 3000 }) {
+            VanEmdeBoasTreeIntMap<Integer> upper = map.splitAt(splitKey);
+            TreeMap<Integer, Integer> expectedLower = 
+                    new TreeMap<>(treeMap.headMap(splitKey, false));
+            TreeMap<Integer, Integer> expectedUpper = 
+                    new TreeMap<>(treeMap.tailMap(splitKey, true));
+            checkSameMappings(expectedLower, map);
+            checkSameMappings(expectedUpper, upper);
+            
+            // Both parts remain functional next to the split key:
+            assertEquals(expectedLower.remove(splitKey - 1), 
+                         map.remove(splitKey - 1));
+            assertEquals(expectedLower.put(splitKey - 1, -1), 
+                         map.put(splitKey - 1, -1));
+            assertEquals(expectedUpper.put(splitKey, -2), 
+                         upper.put(splitKey, -2));
+            checkSameMappings(expectedLower, map);
+            checkSameMappings(expectedUpper, upper);
+            
+            map.join(upper);
+            treeMap.putAll(expectedLower);
+            treeMap.putAll(expectedUpper);
+            checkSameMappings(treeMap, map);
+            assertTrue(upper.isEmpty());
+        }
+    }
+    
+    @Test
+    public void testJoinWithEmptyMap() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        VanEmdeBoasTreeIntMap<Integer> empty = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map.put(0, 0);
+        map.put(100, 100);
+        
+        map.join(empty);
+        assertEquals(2, map.size());
+        empty.join(map);
+        assertTrue(map.isEmpty());
+        assertTrue(Arrays.equals(new int[]{ 0, 100 }, empty.toKeyArray()));
+        
+        // Splitting at the largest key of the range:
+        assertEquals(1, empty.splitAt(100).size());
+        assertEquals(0, empty.getMaximumKey());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testJoinRejectsOverlappingMaps() {
+        VanEmdeBoasTreeIntMap<Integer> map1 = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        VanEmdeBoasTreeIntMap<Integer> map2 = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map1.put(10, 10);
+        map1.put(20, 20);
+        map2.put(15, 15);
+        map1.join(map2);
+    }
+    
+    @Test
+    public void testBatchedLookups() {
+        Random random = new Random(59L);
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(-1000, 1000);
+        
+        for (int i = 0; i < 500; ++i) {
+            int key = random.nextInt(2001) - 1000;
+            map.put(key, key % 5 == 0 ? null : key);
+        }
+        
+        for (int length : new int[]{ 0, 1, 3, 4, 63, 64, 65, 130, 1000 }) {
+            int[] keys = new int[length];
+            
+            for (int i = 0; i < length; ++i) {
+                keys[i] = random.nextInt(2001) - 1000;
+            }
+            
+            Integer[] values = new Integer[length];
+            boolean[] present = new boolean[length];
+            long[] bitmask = new long[(length + 63) / 64];
+            Arrays.fill(bitmask, -1L);
+            int expectedFound = 0;
+            
+            for (int key : keys) {
+                if (map.containsKey(key)) {
+                    expectedFound++;
+                }
+            }
+            
+            assertEquals(expectedFound, map.getAll(keys, values));
+            assertEquals(expectedFound, map.containsAll(keys, present));
+            assertEquals(expectedFound, map.containsAll(keys, bitmask));
+            
+            for (int i = 0; i < length; ++i) {
+                assertEquals(map.get(keys[i]), values[i]);
+                assertEquals(map.containsKey(keys[i]), present[i]);
+                assertEquals(map.containsKey(keys[i]), 
+                             (bitmask[i / 64] & (1L << i)) != 0L);
+            }
+            
+            if (length % 64 != 0) {
+                assertEquals(0L, bitmask[length / 64] >>> (length % 64));
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedLookupRejectsOuterKeys() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 100).getAll(
+                new int[]{ 1, 2, 101, 3 }, 
+                new Integer[4]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedLookupRejectsShortOutput() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 100).containsAll(
+                new int[65], 
+                new long[1]);
+    }
+    
+    @Test
+    public void testBatchedSuccessorsAndPredecessors() {
+        Random random = new Random(61L);
+        
+        for (int iteration = 0; iteration < 60; ++iteration) {
+            SplitPolicy splitPolicy = iteration % 3 == 0 ? 
+                    SplitPolicy.withFanoutShifts(4, 6) : 
+                    SplitPolicy.SQUARE_ROOT;
+            int minimumKey = iteration % 5 == 0 ? Integer.MIN_VALUE : -100;
+            int maximumKey = iteration % 5 == 0 ? 
+                             Integer.MAX_VALUE : 
+                             iteration % 2 == 0 ? 1 << 16 : 1 << 20;
+            VanEmdeBoasTreeIntMap<Integer> map = 
+                    new VanEmdeBoasTreeIntMap<>(minimumKey, 
+                                                maximumKey, 
+                                                splitPolicy);
+            int window = 1 + random.nextInt(1 << 15);
+            int start = -90 + random.nextInt(1 << 15);
+            int count = random.nextInt(3_000);
+            
+            for (int i = 0; i < count; ++i) {
+                map.put(start + random.nextInt(window), i);
+            }
+            
+            // Queries both dense around the keys and beyond them:
+            int[] queries = new int[random.nextInt(2_000)];
+            
+            for (int i = 0; i < queries.length; ++i) {
+                queries[i] = i % 10 == 0 ?
+                        minimumKey + random.nextInt(1 << 16) :
+                        start - 10 + random.nextInt(window + 20);
+            }
+            
+            Arrays.sort(queries);
+            int[] successors = new int[queries.length];
+            int[] predecessors = new int[queries.length];
+            map.successors(queries, successors);
+            map.predecessors(queries, predecessors);
+            
+            for (int i = 0; i < queries.length; ++i) {
+                assertEquals(map.getNextIntKey(queries[i]), successors[i]);
+                assertEquals(map.getPreviousIntKey(queries[i]), 
+                             predecessors[i]);
+            }
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedSuccessorsRejectUnsortedQueries() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map.put(50, 50);
+        map.successors(new int[]{ 1, 5, 3 }, new int[3]);
+    }
+    
+    @Test
+    public void testBulkKeyExport() {
+        Random random = new Random(67L);
+        
+        for (int iteration = 0; iteration < 40; ++iteration) {
+            SplitPolicy splitPolicy = iteration % 3 == 0 ? 
+                    SplitPolicy.withFanoutShifts(4, 6) : 
+                    SplitPolicy.SQUARE_ROOT;
+            VanEmdeBoasTreeIntMap<Integer> map = 
+                    new VanEmdeBoasTreeIntMap<>(-100, 1 << 16, splitPolicy);
+            TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+            int count = random.nextInt(2_000);
+            
+            for (int i = 0; i < count; ++i) {
+                int key = -100 + random.nextInt(1 << 15);
+                Integer value = i % 4 == 0 ? null : i;
+                map.put(key, value);
+                treeMap.put(key, value);
+            }
+            
+            int[] expectedKeys = toIntArray(treeMap.keySet());
+            assertTrue(Arrays.equals(expectedKeys, map.toKeyArray()));
+            
+            int[] keys = new int[expectedKeys.length + 3];
+            assertEquals(expectedKeys.length, map.keysInto(keys, 2));
+            assertTrue(Arrays.equals(expectedKeys, 
+                                     Arrays.copyOfRange(keys, 
+                                                        2, 
+                                                        keys.length - 1)));
+            
+            Integer[] values = new Integer[expectedKeys.length];
+            assertEquals(expectedKeys.length, 
+                         map.entriesInto(new int[expectedKeys.length], 
+                                         values));
+            assertEquals(new ArrayList<>(treeMap.values()), 
+                         Arrays.asList(values));
+            
+            int lo = -100 + random.nextInt(1 << 15);
+            int hi = lo + random.nextInt((1 << 16) - lo + 1);
+            NavigableMap<Integer, Integer> range = 
+                    treeMap.subMap(lo, true, hi, true);
+            int[] expectedRangeKeys = toIntArray(range.keySet());
+            assertTrue(Arrays.equals(expectedRangeKeys, 
+                                     map.toKeyArray(lo, hi)));
+            
+            IntBuffer buffer = iteration % 2 == 0 ? 
+                    IntBuffer.allocate(expectedRangeKeys.length + 4) : 
+                    ByteBuffer.allocateDirect(
+                            4 * (expectedRangeKeys.length + 4))
+                              .asIntBuffer();
+            buffer.position(4);
+            buffer = buffer.slice();
+            assertEquals(expectedRangeKeys.length, 
+                         map.keysInto(lo, hi, buffer));
+            assertEquals(expectedRangeKeys.length, buffer.position());
+            buffer.flip();
+            
+            for (int key : expectedRangeKeys) {
+                assertEquals(key, buffer.get());
+            }
+            
+            int[] rangeKeys = new int[expectedRangeKeys.length];
+            Integer[] rangeValues = new Integer[expectedRangeKeys.length];
+            assertEquals(expectedRangeKeys.length, 
+                         map.entriesInto(lo, hi, rangeKeys, rangeValues));
+            assertTrue(Arrays.equals(expectedRangeKeys, rangeKeys));
+            assertEquals(new ArrayList<>(range.values()), 
+                         Arrays.asList(rangeValues));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeysIntoRejectsShortArray() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map.put(1, 1);
+        map.put(2, 2);
+        map.keysInto(new int[2], 1);
+    }
+    
+    @Test
+    public void testSlideWithinRootCluster() {
+        // Root clusters of 256 keys:
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int key = 0; key < 1 << 16; key += 5) {
+            map.put(key, key);
+            treeMap.put(key, key);
+        }
+        
+        assertEquals(0, map.slideTo(0));
+        checkSameMappings(treeMap, map);
+        
+        // Less than a root cluster drops the keys but keeps the range:
+        assertEquals(0, map.slideTo(100));
+        treeMap.headMap(100).clear();
+        checkSameMappings(treeMap, map);
+        assertEquals((1 << 16) - 1, map.getRangeMaximumKey());
+        
+        assertEquals(256, map.slideTo(300));
+        treeMap.headMap(300).clear();
+        checkSameMappings(treeMap, map);
+        assertEquals((1 << 16) + 255, map.getRangeMaximumKey());
+        
+        // The slots freed at the low end hold the keys at the high end:
+        map.put((1 << 16) + 255, -1);
+        treeMap.put((1 << 16) + 255, -1);
+        checkSameMappings(treeMap, map);
+    }
+    
+    @Test
+    public void testRangeViewsAfterSliding() {
+        // Root clusters of 64 keys:
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 4095);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int key = 0; key < 3000; key += 3) {
+            map.put(key, key);
+            treeMap.put(key, key);
+        }
+        
+        VanEmdeBoasTreeIntMap<Integer>.RangeView view = 
+                map.subMap(0, true, 2000, true);
+        VanEmdeBoasTreeIntMap<Integer>.RangeView slidOut = 
+                map.subMap(0, true, 900, true);
+        
+        assertEquals(960, map.slideTo(960));
+        treeMap.headMap(960).clear();
+        NavigableMap<Integer, Integer> expected = 
+                treeMap.subMap(0, true, 2000, true);
+        
+        assertEquals(expected.size(), view.size());
+        assertFalse(view.isEmpty());
+        assertFalse(view.containsKey(3));
+        assertNull(view.get(3));
+        assertNull(view.remove(3));
+        assertTrue(view.containsKey(963));
+        assertEquals(960, view.firstKey());
+        assertEquals(1998, view.lastKey());
+        assertEquals(960, view.descendingMap().lastKey());
+        assertEquals(960, view.ceilingKey(0));
+        assertEquals(VanEmdeBoasTreeIntMap.NO_KEY, view.findLowerKey(960));
+        
+        List<Integer> keys = new ArrayList<>();
+        VanEmdeBoasTreeIntMap.KeyIterator iterator = view.keyIterator();
+        
+        while (iterator.hasNextKey()) {
+            keys.add(iterator.nextKey());
+        }
+        
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+        keys.clear();
+        view.descendingMap().forEach((key, value) -> keys.add(key));
+        assertEquals(new ArrayList<>(expected.descendingKeySet()), keys);
+        
+        assertEquals(0, slidOut.size());
+        assertTrue(slidOut.isEmpty());
+        assertFalse(slidOut.containsKey(3));
+        assertFalse(slidOut.keyIterator().hasNextKey());
+        slidOut.clear();
+        assertEquals(treeMap.size(), map.size());
+        
+        view.clear();
+        expected.clear();
+        checkSameMappings(treeMap, map);
+    }
+    
+    @Test
+    public void testRangeViewsAfterTrimming() {
+        VanEmdeBoasTreeIntMap<Integer> map = createTrimmableMap();
+        VanEmdeBoasTreeIntMap<Integer>.RangeView view = 
+                map.subMap(0, true, 1 << 20, true);
+        
+        assertTrue(map.trimToSize(true) > 0L);
+        assertEquals(14, view.size());
+        assertFalse(view.containsKey(1 << 20));
+        assertEquals(105, view.firstKey());
+        assertEquals(196, view.lastKey());
+        assertEquals(196, view.floorKey(1 << 20));
+    }
+    
+    @Test
+    public void testSlidePastAllKeys() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1);
+        map.put(0, 0);
+        map.put((1 << 16) - 1, 1);
+        
+        assertEquals(1 << 20, map.slideTo(1 << 20));
+        assertTrue(map.isEmpty());
+        assertEquals((1 << 20) + (1 << 16) - 1, map.getRangeMaximumKey());
+        map.put(1 << 20, 2);
+        assertEquals(1 << 20, map.getMinimumKey());
+    }
+    
+    @Test
+    public void testSlideToLargestIntegers() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1);
+        map.put(1 << 15, 0);
+        
+        assertEquals(Integer.MAX_VALUE - (1 << 16) + 1, 
+                     map.slideTo(Integer.MAX_VALUE - (1 << 16) + 1));
+        assertEquals(Integer.MAX_VALUE, map.getRangeMaximumKey());
+        assertTrue(map.isEmpty());
+        map.put(Integer.MAX_VALUE, 1);
+        assertEquals(Integer.MAX_VALUE, map.getMaximumKey());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlidePastLargestIntegerIsRejected() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, (1 << 16) - 1)
+                .slideTo(Integer.MAX_VALUE - 255);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlideToRejectsSmallerMinimum() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 1000).slideTo(-1);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSlidOutKeysAreRejected() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1);
+        map.slideTo(1 << 12);
+        map.put(0, 0);
+    }
+    
+    @Test
+    public void testAutoGrowingUpwards() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 100);
+        map.setAutoGrowing(true);
+        map.put(0, 0);
+        map.put(100, 100);
+        
+        // Within the universe of 128 keys only the bound moves:
+        map.put(127, 127);
+        assertEquals(0, map.getRangeMinimumKey());
+        assertEquals(127, map.getRangeMaximumKey());
+        
+        map.put(128, 128);
+        map.put(1 << 20, 1);
+        assertEquals(0, map.getRangeMinimumKey());
+        assertTrue(map.getRangeMaximumKey() >= 1 << 20);
+        assertTrue(Arrays.equals(new int[]{ 0, 100, 127, 128, 1 << 20 }, 
+                                 map.toKeyArray()));
+        assertEquals(1 << 20, map.getNextIntKey(128));
+        assertEquals(128, map.getPreviousIntKey(1 << 20));
+        assertEquals(Integer.valueOf(100), map.get(100));
+    }
+    
+    @Test
+    public void testAutoGrowingDownwards() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(1000, 1999);
+        map.setAutoGrowing(true);
+        map.put(1000, 0);
+        map.put(1999, 1);
+        map.put(999, 2);
+        map.put(-5, 3);
+        
+        assertTrue(map.getRangeMinimumKey() <= -5);
+        assertTrue(map.getRangeMaximumKey() >= 1999);
+        assertTrue(Arrays.equals(new int[]{ -5, 999, 1000, 1999 }, 
+                                 map.toKeyArray()));
+        assertEquals(-5, map.getPreviousIntKey(999));
+        assertEquals(Integer.valueOf(1), map.get(1999));
+        assertEquals(Integer.valueOf(3), map.remove(-5));
+        assertEquals(999, map.getMinimumKey());
+    }
+    
+    @Test
+    public void testGrowthToAllIntegers() {
+        // The universe reaches 32 bits while not aligned to the smallest 
+        // integer:
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 63);
+        map.setAutoGrowing(true);
+        map.put(-5, 1);
+        map.put(Integer.MAX_VALUE, 2);
+        map.put(Integer.MIN_VALUE, 3);
+        assertEquals(Integer.MIN_VALUE, map.getRangeMinimumKey());
+        assertEquals(Integer.MAX_VALUE, map.getRangeMaximumKey());
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MIN_VALUE, -5, Integer.MAX_VALUE }, 
+                map.toKeyArray()));
+        assertEquals(Integer.valueOf(1), map.get(-5));
+        assertEquals(Integer.valueOf(2), map.get(Integer.MAX_VALUE));
+        assertEquals(Integer.valueOf(3), map.get(Integer.MIN_VALUE));
+        
+        // No room to prepend below the minimum:
+        map = new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE + 5, 
+                                          Integer.MIN_VALUE + 1000);
+        map.put(Integer.MIN_VALUE + 7, 4);
+        map.growToInclude(Integer.MIN_VALUE);
+        assertEquals(Integer.MIN_VALUE, map.getRangeMinimumKey());
+        map.put(Integer.MIN_VALUE, 5);
+        assertEquals(Integer.MIN_VALUE, map.getMinimumKey());
+        assertEquals(Integer.valueOf(4), map.get(Integer.MIN_VALUE + 7));
+        
+        // A 32-bit universe starting above the smallest integer:
+        map = new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE + 5, 
+                                          Integer.MAX_VALUE);
+        map.put(Integer.MAX_VALUE, 6);
+        map.growToInclude(Integer.MIN_VALUE);
+        map.put(Integer.MIN_VALUE, 7);
+        assertEquals(Integer.MIN_VALUE, map.getMinimumKey());
+        assertEquals(Integer.MAX_VALUE, map.getMaximumKey());
+        assertEquals(Integer.valueOf(6), map.get(Integer.MAX_VALUE));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testOuterKeysAreRejectedWithoutAutoGrowing() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 100).put(101, 0);
+    }
+    
+    @Test
+    public void testTrimToSizeWithNothingToTrim() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(-1000, 1 << 20);
+        
+        assertEquals(0L, map.trimToSize(true));
+        
+        // The keys spread over two root clusters:
+        map.put(-1000, 0);
+        map.put(1 << 20, 1);
+        assertEquals(0L, map.trimToSize(true));
+        assertEquals(-1000, map.getRangeMinimumKey());
+        assertEquals(1 << 20, map.getRangeMaximumKey());
+    }
+    
+    @Test
+    public void testTrimToSizeAtLargestIntegers() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        map.put(Integer.MIN_VALUE, 0);
+        map.put(Integer.MAX_VALUE - 10, 1);
+        map.put(Integer.MAX_VALUE, 2);
+        
+        assertEquals(0L, map.trimToSize());
+        map.remove(Integer.MIN_VALUE);
+        assertTrue(map.trimToSize(true) > 0L);
+        assertEquals(0L, map.trimToSize(true));
+        assertEquals(Integer.MAX_VALUE, map.getRangeMaximumKey());
+        assertTrue(map.getRangeMinimumKey() > 0);
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MAX_VALUE - 10, Integer.MAX_VALUE }, 
+                map.toKeyArray()));
+        assertEquals(Integer.MAX_VALUE, 
+                     map.getNextIntKey(Integer.MAX_VALUE - 10));
+        assertEquals(Integer.valueOf(2), map.get(Integer.MAX_VALUE));
+    }
+    
+    @Test
+    public void testTrimmedAutoGrowingMapGrowsBack() {
+        VanEmdeBoasTreeIntMap<Integer> map = createTrimmableMap();
+        map.setAutoGrowing(true);
+        
+        assertTrue(map.trimToSize(true) > 0L);
+        map.put(0, -1);
+        map.put(1 << 20, -2);
+        assertTrue(map.getRangeMinimumKey() <= 0);
+        assertTrue(map.getRangeMaximumKey() >= 1 << 20);
+        assertEquals(16, map.size());
+        assertEquals(105, map.getNextIntKey(0));
+        assertEquals(1 << 20, map.getNextIntKey(196));
+        assertEquals(Integer.valueOf(196), map.get(196));
+    }
+    
+    @Test
+    public void testTrimToSizeKeepsKeyRange() {
+        VanEmdeBoasTreeIntMap<Integer> map = createTrimmableMap();
+        
+        assertEquals(0L, map.trimToSize());
+        assertEquals(0, map.getRangeMinimumKey());
+        assertEquals(1 << 20, map.getRangeMaximumKey());
+        assertNull(map.put(5000, 1));
+        assertNull(map.put(1 << 20, 2));
+        assertEquals(Integer.valueOf(105), map.get(105));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testTrimToSizeNarrowsKeyRangeOnRequest() {
+        VanEmdeBoasTreeIntMap<Integer> map = createTrimmableMap();
+        
+        assertTrue(map.trimToSize(true) > 0L);
+        assertTrue(map.getRangeMinimumKey() <= 105);
+        assertTrue(map.getRangeMaximumKey() >= 196);
+        assertTrue(map.getRangeMaximumKey() < 5000);
+        assertEquals(Integer.valueOf(196), map.get(196));
+        map.put(5000, 1);
+    }
+    
+    // Returns a map over [0, 2^20] purged down to the keys 105, 112, ..., 196.
+    private static VanEmdeBoasTreeIntMap<Integer> createTrimmableMap() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1 << 20);
+        
+        for (int key = 0; key <= 1 << 20; key += 7) {
+            map.put(key, key);
+        }
+        
+        map.removeRange(0, 99);
+        map.removeRange(200, 1 << 20);
+        return map;
+    }
+    
+    @Test
+    public void testBulkLoad() {
+        Random random = new Random(109L);
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(-100_000, 100_000);
+        VanEmdeBoasTreeIntMap<Integer> expected = 
+                new VanEmdeBoasTreeIntMap<>(-100_000, 100_000);
+        int key = -100_000 + random.nextInt(10);
+        
+        while (key <= 100_000 - 1000) {
+            // Load in batches of ascending keys with gaps of various sizes:
+            int length = 1 + random.nextInt(100);
+            int[] keys = new int[length];
+            Integer[] values = new Integer[length];
+            int loaded = 0;
+            
+            for (; loaded < length && key <= 100_000; ++loaded) {
+                keys[loaded] = key;
+                values[loaded] = random.nextInt(10) == 0 ? null : key * 3;
+                expected.put(key, values[loaded]);
+                key += 1 + (random.nextBoolean() ? 
+                            random.nextInt(4) : 
+                            random.nextInt(300));
+            }
+            
+            map.bulkLoad(Arrays.copyOf(keys, loaded), 
+                         Arrays.copyOf(values, loaded));
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.getMaximumKey(), map.getMaximumKey());
+        }
+        
+        assertTrue(Arrays.equals(expected.toKeyArray(), map.toKeyArray()));
+        
+        for (int k : expected.toKeyArray()) {
+            assertEquals(expected.get(k), map.get(k));
+            assertTrue(map.containsKey(k));
+            assertEquals(expected.getNextIntKey(k), map.getNextIntKey(k));
+            assertEquals(expected.getPreviousIntKey(k), 
+                         map.getPreviousIntKey(k));
+        }
+        
+        for (int k : expected.toKeyArray()) {
+            assertEquals(expected.remove(k), map.remove(k));
+        }
+        
+        assertTrue(map.isEmpty());
+    }
+    
+    @Test
+    public void testParallelBulkLoadOfSmallBatches() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 63);
+        
+        map.parallelBulkLoad(new int[0], new Integer[0]);
+        assertTrue(map.isEmpty());
+        
+        // A single leaf:
+        map.parallelBulkLoad(new int[]{ 0, 5, 63 }, 
+                             new Integer[]{ 1, null, 3 });
+        assertTrue(Arrays.equals(new int[]{ 0, 5, 63 }, map.toKeyArray()));
+        assertTrue(map.containsKey(5));
+        assertNull(map.get(5));
+        assertEquals(5, map.getPreviousIntKey(63));
+    }
+    
+    @Test
+    public void testParallelBulkLoadAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        
+        map.parallelBulkLoad(new int[]{ Integer.MIN_VALUE, -1 }, 
+                             new Integer[]{ 1, 2 });
+        // The keys in the root cluster of the maximum key are appended:
+        map.parallelBulkLoad(new int[]{ 0, Integer.MAX_VALUE }, 
+                             new Integer[]{ 3, 4 });
+        
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE }, 
+                map.toKeyArray()));
+        assertEquals(Integer.valueOf(1), map.get(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(4), map.get(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, map.getNextIntKey(0));
+        assertEquals(-1, map.getPreviousIntKey(0));
+    }
+    
+    @Test
+    public void testParallelBulkLoadAcrossRootClusters() throws IOException {
+        // Enough keys to split the load into tasks:
+        int count = 1 << 18;
+        int[] keys = new int[count];
+        Integer[] values = new Integer[count];
+        
+        for (int i = 0; i < count; ++i) {
+            keys[i] = -5 + 3 * i;
+            values[i] = i % 10 == 0 ? null : i;
+        }
+        
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(-5, 1 << 20);
+        VanEmdeBoasTreeIntMap<Integer> expected = 
+                new VanEmdeBoasTreeIntMap<>(-5, 1 << 20);
+        byte[] snapshot = writeSnapshot(map);
+        map.markCheckpoint();
+        map.parallelBulkLoad(keys, values);
+        expected.bulkLoad(keys, values);
+        checkSameMaps(expected, map);
+        
+        for (int key : new int[]{ -5, 1 << 19, keys[count - 1] }) {
+            assertEquals(expected.getNextIntKey(key), map.getNextIntKey(key));
+            assertEquals(expected.getPreviousIntKey(key), 
+                         map.getPreviousIntKey(key));
+        }
+        
+        // The pages loaded are marked as modified:
+        checkSameMaps(map, applyDeltas(snapshot, writeDelta(map)));
+    }
+    
+    @Test
+    public void testReduceEmptyRange() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1000);
+        
+        assertEquals("", map.reduceRange(0, 1000, "", STRING_REDUCER, 
+                                         String::concat));
+        assertEquals(0L, map.sumValues(0, 1000, value -> 1L));
+        
+        map.put(10, 10);
+        map.put(900, 900);
+        assertEquals("", map.reduceRange(11, 899, "", STRING_REDUCER, 
+                                         String::concat));
+        assertEquals(0L, map.sumValues(11, 899, value -> 1L));
+    }
+    
+    @Test
+    public void testReduceRangeAtIntegerLimits() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        map.put(Integer.MIN_VALUE, 1);
+        map.put(0, null);
+        map.put(Integer.MAX_VALUE, 3);
+        
+        assertEquals(Integer.MIN_VALUE + "=1;0=null;" + 
+                     Integer.MAX_VALUE + "=3;", 
+                     map.reduceRange(Integer.MIN_VALUE, 
+                                     Integer.MAX_VALUE, 
+                                     "", 
+                                     STRING_REDUCER, 
+                                     String::concat));
+        assertEquals(Integer.MIN_VALUE + "=1;", 
+                     map.reduceRange(Integer.MIN_VALUE, 
+                                     Integer.MIN_VALUE, 
+                                     "", 
+                                     STRING_REDUCER, 
+                                     String::concat));
+        assertEquals(11L, 
+                     map.sumValues(Integer.MIN_VALUE, 
+                                   Integer.MAX_VALUE, 
+                                   value -> value == null ? 7 : value));
+        assertEquals(10L, 
+                     map.sumValues(0, 
+                                   Integer.MAX_VALUE, 
+                                   value -> value == null ? 7 : value));
+    }
+    
+    @Test
+    public void testReduceRangeKeepsKeyOrder() {
+        // Enough keys to split the reduction into tasks:
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1 << 20);
+        
+        for (int key = 0; key <= 1 << 20; key += 2) {
+            map.put(key, key % 10 == 0 ? null : key);
+        }
+        
+        // An order-sensitive hash: {hash, 31^count}.
+        VanEmdeBoasTreeIntMap.KeyValueReducer<long[], Integer> accumulator = 
+                (result, key, value) -> new long[]{ 
+                    31L * result[0] + key + (value == null ? 7 : value),
+                    31L * result[1]
+                };
+        BinaryOperator<long[]> combiner = (left, right) -> new long[]{ 
+            left[0] * right[1] + right[0],
+            left[1] * right[1]
+        };
+        
+        // The whole range, and one starting and ending inside clusters:
+        for (int[] range : new int[][]{ { 0, 1 << 20 }, { 1001, 777_777 } }) {
+            long[] expectedHash = { 0L, 1L };
+            long[] expectedSum = { 0L };
+            map.forEachInRange(range[0], range[1], (key, value) -> {
+                long[] next = accumulator.reduce(expectedHash, key, value);
+                expectedHash[0] = next[0];
+                expectedHash[1] = next[1];
+                expectedSum[0] += value == null ? 7 : value;
+            });
+            
+            assertTrue(Arrays.equals(expectedHash, 
+                                     map.reduceRange(range[0], 
+                                                     range[1], 
+                                                     new long[]{ 0L, 1L }, 
+                                                     accumulator, 
+                                                     combiner)));
+            assertEquals(expectedSum[0], 
+                         map.sumValues(range[0], 
+                                       range[1], 
+                                       value -> value == null ? 7 : value));
+        }
+    }
+    
+    private static final VanEmdeBoasTreeIntMap.KeyValueReducer<String, Integer>
+            STRING_REDUCER = 
+                    (result, key, value) -> result + key + "=" + value + ";";
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkLoadRejectsKeysBelowMaximum() {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1000);
+        map.put(500, 0);
+        map.bulkLoad(new int[]{ 400, 600 }, new Integer[2]);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBulkLoadRejectsUnsortedKeys() {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 1000)
+                .bulkLoad(new int[]{ 1, 3, 2 }, new Integer[3]);
+    }
+    
+    @Test
+    public void testRejectedBulkLoadDoesNotGrow() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1000);
+        map.setAutoGrowing(true);
+        map.put(5, 5);
+        byte[] snapshot = writeSnapshot(map);
+        map.markCheckpoint();
+        
+        try {
+            map.bulkLoad(new int[]{ 5000, 10, 20000 }, new Integer[3]);
+            fail("Unsorted keys were loaded.");
+        } catch (IllegalArgumentException ex) {
+            // The keys are rejected before growing.
+        }
+        
+        assertEquals(0, map.getRangeMinimumKey());
+        assertEquals(1000, map.getRangeMaximumKey());
+        map.put(7, 7);
+        checkSameMaps(map, applyDeltas(snapshot, writeDelta(map)));
+    }
+    
+    static final VanEmdeBoasTreeIntMap.ValueCodec<Integer> 
+            INTEGER_CODEC = new VanEmdeBoasTreeIntMap.ValueCodec<Integer>() {
+        
+        @Override
+        public void write(Integer value, DataOutput output) 
+        throws IOException {
+            output.writeBoolean(value != null);
+            
+            if (value != null) {
+                output.writeInt(value);
+            }
+        }
+        
+        @Override
+        public Integer read(DataInput input) throws IOException {
+            return input.readBoolean() ? input.readInt() : null;
+        }
+    };
+    
+    @Test
+    public void testSerializationOfEmptyMap() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> copyMap = 
+                writeAndRead(new VanEmdeBoasTreeIntMap<>(-5, 200));
+        
+        assertEquals(-5, copyMap.getRangeMinimumKey());
+        assertEquals(200, copyMap.getRangeMaximumKey());
+        assertTrue(copyMap.isEmpty());
+    }
+    
+    @Test
+    public void testSerializationOfSingleKeyRange() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = new VanEmdeBoasTreeIntMap<>(0, 0);
+        map.put(0, null);
+        VanEmdeBoasTreeIntMap<Integer> copyMap = writeAndRead(map);
+        
+        assertEquals(0, copyMap.getRangeMaximumKey());
+        assertEquals(1, copyMap.size());
+        assertTrue(copyMap.containsKey(0));
+        assertNull(copyMap.get(0));
+    }
+    
+    @Test
+    public void testSerializationAtIntegerLimits() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        map.put(Integer.MIN_VALUE, 1);
+        map.put(-1, null);
+        map.put(0, 3);
+        map.put(Integer.MAX_VALUE, 4);
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        map.writeTo(bytes, INTEGER_CODEC);
+        // A second map written to the same stream must not be read along:
+        map.remove(0);
+        map.writeTo(bytes, INTEGER_CODEC);
+        ByteArrayInputStream input = 
+                new ByteArrayInputStream(bytes.toByteArray());
+        VanEmdeBoasTreeIntMap<Integer> copyMap = 
+                VanEmdeBoasTreeIntMap.readFrom(input, INTEGER_CODEC);
+        
+        assertEquals(Integer.MIN_VALUE, copyMap.getRangeMinimumKey());
+        assertEquals(Integer.MAX_VALUE, copyMap.getRangeMaximumKey());
+        assertTrue(Arrays.equals(
+                new int[]{ Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE }, 
+                copyMap.toKeyArray()));
+        assertEquals(Integer.valueOf(1), copyMap.get(Integer.MIN_VALUE));
+        assertTrue(copyMap.containsKey(-1));
+        assertNull(copyMap.get(-1));
+        assertEquals(Integer.valueOf(4), copyMap.get(Integer.MAX_VALUE));
+        
+        copyMap = VanEmdeBoasTreeIntMap.readFrom(input, INTEGER_CODEC);
+        assertTrue(Arrays.equals(map.toKeyArray(), copyMap.toKeyArray()));
+        assertEquals(0, input.available());
+    }
+    
+    private static VanEmdeBoasTreeIntMap<Integer> 
+        writeAndRead(VanEmdeBoasTreeIntMap<Integer> map) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        map.writeTo(bytes, INTEGER_CODEC);
+        return VanEmdeBoasTreeIntMap.readFrom(
+                new ByteArrayInputStream(bytes.toByteArray()), 
+                INTEGER_CODEC);
+    }
+    
+    @Test
+    public void testSerializationThroughChannels() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1 << 20);
+        
+        for (int key = 0; key < 1 << 20; key += 7) {
+            map.put(key, key);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        map.writeTo(Channels.newChannel(bytes), INTEGER_CODEC);
+        VanEmdeBoasTreeIntMap<Integer> copyMap = 
+                VanEmdeBoasTreeIntMap.readFrom(
+                        Channels.newChannel(
+                                new ByteArrayInputStream(bytes.toByteArray())),
+                        INTEGER_CODEC);
+        
+        assertTrue(Arrays.equals(map.toKeyArray(), copyMap.toKeyArray()));
+        // A single byte per key gap, and five bytes per value:
+        assertTrue(bytes.size() < map.size() * 7);
+    }
+    
+    @Test(expected = IOException.class)
+    public void testReadFromRejectsCorruptStream() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1000);
+        
+        for (int key = 0; key <= 1000; key += 3) {
+            map.put(key, key);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        map.writeTo(bytes, INTEGER_CODEC);
+        byte[] data = bytes.toByteArray();
+        VanEmdeBoasTreeIntMap.readFrom(
+                new ByteArrayInputStream(Arrays.copyOf(data, data.length - 9)),
+                INTEGER_CODEC);
+    }
+    
+    @Test
+    public void testDeltaWithoutChanges() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1 << 20);
+        
+        for (int key = 0; key <= 1 << 20; key += 7) {
+            map.put(key, key);
+        }
+        
+        byte[] snapshot = writeSnapshot(map);
+        map.markCheckpoint();
+        byte[] emptyDelta = writeDelta(map);
+        
+        assertTrue(emptyDelta.length < 32);
+        checkSameMaps(map, applyDeltas(snapshot, emptyDelta));
+        
+        // A single modification costs a page, not a snapshot:
+        map.put(1 << 19, -1);
+        byte[] delta = writeDelta(map);
+        assertTrue(delta.length * 100 < snapshot.length);
+        checkSameMaps(map, applyDeltas(snapshot, emptyDelta, delta));
+    }
+    
+    @Test
+    public void testDeltaAtIntegerLimits() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(Integer.MIN_VALUE, 
+                                            Integer.MAX_VALUE);
+        map.put(Integer.MIN_VALUE, 1);
+        map.put(0, 2);
+        map.put(Integer.MAX_VALUE, 3);
+        byte[] snapshot = writeSnapshot(map);
+        map.markCheckpoint();
+        
+        map.remove(Integer.MIN_VALUE);
+        map.put(Integer.MIN_VALUE + 1, null);
+        map.put(Integer.MAX_VALUE, 4);
+        byte[] delta1 = writeDelta(map);
+        map.removeRange(Integer.MIN_VALUE, 0);
+        map.put(Integer.MAX_VALUE - 1, 5);
+        byte[] delta2 = writeDelta(map);
+        
+        checkSameMaps(map, applyDeltas(snapshot, delta1, delta2));
+    }
+    
+    @Test
+    public void testDeltaAfterClearAndSplit() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(-10_000, 1 << 20);
+        
+        for (int key = -10_000; key <= 1 << 20; key += 11) {
+            map.put(key, key);
+        }
+        
+        byte[] snapshot = writeSnapshot(map);
+        map.markCheckpoint();
+        map.clear();
+        map.put(5, 5);
+        byte[] delta1 = writeDelta(map);
+        
+        for (int key = 0; key < 5000; key += 3) {
+            map.put(key, -key);
+        }
+        
+        // Splitting modifies the whole upper part:
+        map.join(map.splitAt(1000));
+        byte[] delta2 = writeDelta(map);
+        
+        checkSameMaps(map, applyDeltas(snapshot, delta1, delta2));
+    }
+    
+    private static byte[] writeSnapshot(VanEmdeBoasTreeIntMap<Integer> map) 
+    throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        map.writeTo(snapshot, INTEGER_CODEC);
+        return snapshot.toByteArray();
+    }
+    
+    private static byte[] writeDelta(VanEmdeBoasTreeIntMap<Integer> map) 
+    throws IOException {
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        map.writeDelta(delta, INTEGER_CODEC);
+        return delta.toByteArray();
+    }
+    
+    private static VanEmdeBoasTreeIntMap<Integer> 
+        applyDeltas(byte[] snapshot, byte[]... deltas) throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                VanEmdeBoasTreeIntMap.readFrom(
+                        new ByteArrayInputStream(snapshot), 
+                        INTEGER_CODEC);
+        
+        for (byte[] delta : deltas) {
+            ByteArrayInputStream input = new ByteArrayInputStream(delta);
+            map.readDelta(input, INTEGER_CODEC);
+            assertEquals(0, input.available());
+        }
+        
+        return map;
+    }
+    
+    private static void checkSameMaps(VanEmdeBoasTreeIntMap<Integer> expected,
+                                      VanEmdeBoasTreeIntMap<Integer> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertTrue(Arrays.equals(expected.toKeyArray(), actual.toKeyArray()));
+        
+        for (int key : expected.toKeyArray()) {
+            assertEquals(expected.get(key), actual.get(key));
+        }
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testWriteDeltaRequiresCheckpoint() throws IOException {
+        new VanEmdeBoasTreeIntMap<Integer>(0, 1000)
+                .writeDelta(new ByteArrayOutputStream(), INTEGER_CODEC);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testSlidingLosesCheckpoint() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, (1 << 16) - 1);
+        map.markCheckpoint();
+        map.slideTo(1 << 12);
+        map.writeDelta(new ByteArrayOutputStream(), INTEGER_CODEC);
+    }
+    
+    @Test(expected = IOException.class)
+    public void testReadDeltaRejectsWrongBase() throws IOException {
+        VanEmdeBoasTreeIntMap<Integer> map = 
+                new VanEmdeBoasTreeIntMap<>(0, 1 << 20);
+        map.put(10, 10);
+        map.markCheckpoint();
+        map.put(1 << 19, 1);
+        ByteArrayOutputStream delta = new ByteArrayOutputStream();
+        map.writeDelta(delta, INTEGER_CODEC);
+        
+        // The key 10 outside of the delta is missing:
+        new VanEmdeBoasTreeIntMap<Integer>(0, 1 << 20).readDelta(
+                new ByteArrayInputStream(delta.toByteArray()), 
+                INTEGER_CODEC);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadSplitPolicy() {
+        new VanEmdeBoasTreeIntMap<>(0, 1000, (level, universeShift) -> 0);
+    }
+    
+    private static void checkRangeView(
+            VanEmdeBoasTreeIntMap<Integer>.RangeView view,
+            NavigableMap<Integer, Integer> expected,
+            Random random) {
+        assertEquals(expected.size(), view.size());
+        assertEquals(expected.isEmpty(), view.isEmpty());
+        
+        if (!expected.isEmpty()) {
+            assertEquals((int) expected.firstKey(), view.firstKey());
+            assertEquals((int) expected.lastKey(), view.lastKey());
+        }
+        
+        VanEmdeBoasTreeIntMap.KeyValueIterator<Integer> iterator = 
+                view.keyValueIterator();
+        KeyValueMapping<Integer> mapping = new KeyValueMapping<>();
+        
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(iterator.hasNextKeyValuePair());
+            iterator.nextKeyValuePair(mapping);
+            assertEquals((int) entry.getKey(), mapping.key);
+            assertEquals(entry.getValue(), mapping.value);
+        }
+        
+        assertFalse(iterator.hasNextKeyValuePair());
+        
+        List<Integer> keys = new ArrayList<>();
+        view.forEach((key, value) -> keys.add(key));
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+        
+        for (int i = 0; i < 50; ++i) {
+            int key = random.nextInt(10_101) - 5_050;
+            assertEquals(expected.containsKey(key), view.containsKey(key));
+            checkViewKey(expected.ceilingKey(key), view.ceilingKey(key));
+            checkViewKey(expected.floorKey(key), view.floorKey(key));
+            checkViewKey(expected.higherKey(key), view.higherKey(key));
+            checkViewKey(expected.lowerKey(key), view.lowerKey(key));
+        }
+    }
+    
+    private static void checkViewKey(Integer expected, int actual) {
+        if (expected != null) {
+            assertEquals((int) expected, actual);
+        } else {
+            assertTrue(actual == -5_001 || actual == 5_001);
+        }
+    }
+    
+    private static int[] toIntArray(Collection<Integer> collection) {
+        int[] array = new int[collection.size()];
+        int index = 0;
+        
+        for (Integer element : collection) {
+            array[index++] = element;
+        }
+        
+        return array;
+    }
+    
+    private static void checkSameMappings(TreeMap<Integer, Integer> expected,
+                                          VanEmdeBoasTreeIntMap<Integer> tree) {
+        assertEquals(expected.size(), tree.size());
+        
+        if (!expected.isEmpty()) {
+            assertEquals((int) expected.firstKey(), tree.getMinimumKey());
+            assertEquals((int) expected.lastKey(), tree.getMaximumKey());
+        }
+        
+        VanEmdeBoasTreeIntMap.KeyIterator tableIterator = 
+                tree.tableKeyIterator();
+        List<Integer> keys = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        
+        for (Integer key : expected.keySet()) {
+            assertEquals((int) key, tableIterator.nextKey());
+        }
+        
+        if (!tree.isEmpty()) {
+            tree.forEachInRange(tree.getMinimumKey(), 
+                                tree.getMaximumKey(), 
+                                (key, value) -> { 
+                                    keys.add(key); 
+                                    values.add(value); 
+                                });
+        }
+        
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+        assertEquals(new ArrayList<>(expected.values()), values);
+        
+        // Walk the tree also backwards:
+        Integer previous = null;
+        
+        for (Integer key : expected.descendingKeySet()) {
+            if (previous != null) {
+                assertEquals((int) key, tree.getPreviousIntKey(previous));
+            }
+            
+            previous = key;
+        }
+    }
+    
+    private static void checkRangeQueries(
+            TreeMap<Integer, Integer> treeMap,
+            VanEmdeBoasTreeIntMap<Integer> tree,
+            int lo,
+            int hi) {
+        NavigableMap<Integer, Integer> range = 
+                treeMap.subMap(lo, true, hi, true);
+        List<Integer> keys = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        
+        assertEquals(range.isEmpty(), tree.isRangeEmpty(lo, hi));
+        assertEquals(range.isEmpty() ? 
+                     VanEmdeBoasTreeIntMap.NO_KEY : 
+                     range.firstKey(), 
+                     tree.findFirstInRange(lo, hi));
+        assertEquals(range.isEmpty() ? 
+                     VanEmdeBoasTreeIntMap.NO_KEY : 
+                     range.lastKey(), 
+                     tree.findLastInRange(lo, hi));
+        
+        tree.forEachInRange(lo, hi, (key, value) -> {
+            keys.add(key);
+            values.add(value);
+        });
+        assertEquals(new ArrayList<>(range.keySet()), keys);
+        assertEquals(new ArrayList<>(range.values()), values);
+    }
+    
+    private static void checkAgainstTreeMap(int minimumKey,
+                                            int maximumKey,
+                                            int[] keys,
+                                            Random random) {
+        checkAgainstTreeMap(minimumKey, 
+                            maximumKey, 
+                            keys, 
+                            random, 
+                            SplitPolicy.SQUARE_ROOT);
+    }
+    
+    private static void checkAgainstTreeMap(int minimumKey,
+                                            int maximumKey,
+                                            int[] keys,
+                                            Random random,
+                                            SplitPolicy splitPolicy) {
+        VanEmdeBoasTreeIntMap<Integer> tree = 
+                new VanEmdeBoasTreeIntMap<>(minimumKey, 
+                                            maximumKey, 
+                                            splitPolicy);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int iteration = 0; iteration < 50_000; ++iteration) {
+            int key = keys[random.nextInt(keys.length)];
+            
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                    assertEquals(treeMap.put(key, iteration), 
+                                 tree.put(key, iteration));
+                    break;
+                    
+                case 4:
+                    assertEquals(treeMap.remove(key), tree.remove(key));
+                    break;
+                    
+                case 5:
+                    if (random.nextInt(20) == 0) {
+                        int hi = (int) Math.min(maximumKey, 
+                                                (long) key + 
+                                                random.nextInt(1000));
+                        NavigableMap<Integer, Integer> range = 
+                                treeMap.subMap(key, true, hi, true);
+                        assertEquals(range.size(), tree.removeRange(key, hi));
+                        range.clear();
+                    }
+                    
+                    break;
+                    
+                case 6:
+                    checkRangeQueries(treeMap, 
+                                      tree, 
+                                      key, 
+                                      (int) Math.min(maximumKey, 
+                                                     (long) key + 
+                                                     random.nextInt(1000)));
+                    break;
+                    
+                default:
+                    Integer higher = treeMap.higherKey(key);
+                    Integer lower = treeMap.lowerKey(key);
+                    assertEquals(higher == null ? minimumKey - 1 : higher,
+                                 tree.getNextIntKey(key));
+                    assertEquals(lower == null ? maximumKey + 1 : lower,
+                                 tree.getPreviousIntKey(key));
+                    assertEquals(higher == null ? minimumKey - 1 : higher,
+                                 tree.higherKey(key));
+                    assertEquals(lower == null ? maximumKey + 1 : lower,
+                                 tree.lowerKey(key));
+                    
+                    Integer ceiling = treeMap.ceilingKey(key);
+                    Integer floor = treeMap.floorKey(key);
+                    assertEquals(ceiling == null ? minimumKey - 1 : ceiling,
+                                 tree.ceilingKey(key));
+                    assertEquals(floor == null ? maximumKey + 1 : floor,
+                                 tree.floorKey(key));
+            }
+            
+            assertEquals(treeMap.size(), tree.size());
+            
+            if (!treeMap.isEmpty()) {
+                assertEquals((int) treeMap.firstKey(), tree.getMinimumKey());
+                assertEquals((int) treeMap.lastKey(), tree.getMaximumKey());
+            }
+        }
+        
+        VanEmdeBoasTreeIntMap.KeyIterator iterator = tree.treeKeyIterator();
+        
+        for (Integer key : treeMap.keySet()) {
+            assertEquals((int) key, iterator.nextKey());
+        }
+        
+        assertFalse(iterator.hasNextKey());
+    }
 }
@@ -0,0 +1,124 @@
+package net.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VanEmdeBoasTreeIntMultimapTest {
+    
+    @Test
+    public void testBasicOperations() {
+        VanEmdeBoasTreeIntMultimap<String> multimap =
+                new VanEmdeBoasTreeIntMultimap<>(0, 100);
+        
+        assertTrue(multimap.isEmpty());
+        assertNull(multimap.pollFirst(5));
+        multimap.put(5, "a");
+        multimap.put(7, "b");
+        multimap.put(5, null);
+        multimap.put(5, "c");
+        
+        assertEquals(4, multimap.size());
+        assertEquals(2, multimap.keyCount());
+        assertEquals(3, multimap.count(5));
+        assertEquals(0, multimap.count(6));
+        assertTrue(multimap.containsKey(7));
+        assertEquals(5, multimap.getMinimumKey());
+        assertEquals(7, multimap.getMaximumKey());
+        assertEquals(7, multimap.getNextIntKey(5));
+        assertEquals("a", multimap.peekFirst(5));
+        
+        List<String> values = new ArrayList<>();
+        multimap.forEach(5, values::add);
+        assertEquals(Arrays.asList("a", null, "c"), values);
+        
+        assertEquals("a", multimap.pollFirst(5));
+        assertNull(multimap.pollFirst(5));
+        assertEquals("c", multimap.pollFirst(5));
+        assertFalse(multimap.containsKey(5));
+        assertEquals(1, multimap.removeAll(7));
+        assertTrue(multimap.isEmpty());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeyOutOfRange() {
+        new VanEmdeBoasTreeIntMultimap<String>(0, 100).put(101, "a");
+    }
+    
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(73L);
+        VanEmdeBoasTreeIntMultimap<Integer> multimap =
+                new VanEmdeBoasTreeIntMultimap<>(-1000, 1000);
+        TreeMap<Integer, List<Integer>> expected = new TreeMap<>();
+        int size = 0;
+        
+        for (int iteration = 0; iteration < 100_000; ++iteration) {
+            int key = random.nextInt(201) - 100;
+            
+            switch (random.nextInt(8)) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                    multimap.put(key, iteration);
+                    expected.computeIfAbsent(key, k -> new ArrayList<>())
+                            .add(iteration);
+                    size++;
+                    break;
+                
+                case 4:
+                case 5:
+                case 6:
+                    List<Integer> values = expected.get(key);
+                    
+                    if (values == null) {
+                        assertNull(multimap.pollFirst(key));
+                        break;
+                    }
+                    
+                    assertEquals(values.remove(0), multimap.pollFirst(key));
+                    size--;
+                    
+                    if (values.isEmpty()) {
+                        expected.remove(key);
+                    }
+                    
+                    break;
+                
+                default:
+                    List<Integer> removed = expected.remove(key);
+                    int count = removed == null ? 0 : removed.size();
+                    assertEquals(count, multimap.removeAll(key));
+                    size -= count;
+            }
+            
+            assertEquals(size, multimap.size());
+            assertEquals(expected.size(), multimap.keyCount());
+            
+            if (!expected.isEmpty()) {
+                assertEquals((int) expected.firstKey(),
+                             multimap.getMinimumKey());
+                assertEquals(expected.firstEntry().getValue().size(),
+                             multimap.count(expected.firstKey()));
+            }
+        }
+        
+        for (Integer key : expected.keySet()) {
+            List<Integer> values = new ArrayList<>();
+            multimap.forEach(key, values::add);
+            assertEquals(expected.get(key), values);
+        }
+        
+        multimap.clear();
+        assertTrue(multimap.isEmpty());
+        assertEquals(0, multimap.keyCount());
+    }
+}
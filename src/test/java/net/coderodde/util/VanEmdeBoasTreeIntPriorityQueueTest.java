@@ -0,0 +1,191 @@
+package net.coderodde.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VanEmdeBoasTreeIntPriorityQueueTest {
+    
+    @Test
+    public void testBasicOperations() {
+        VanEmdeBoasTreeIntPriorityQueue queue =
+                new VanEmdeBoasTreeIntPriorityQueue(0, 1000);
+        
+        assertTrue(queue.isEmpty());
+        int a = queue.add(1, 50);
+        int b = queue.add(2, 10);
+        queue.add(3, 50);
+        queue.add(4, 900);
+        queue.add(5, 10);
+        
+        assertEquals(5, queue.size());
+        assertEquals(2, queue.peekFirst());
+        assertEquals(10, queue.peekFirstPriority());
+        assertEquals(4, queue.peekLast());
+        assertEquals(900, queue.peekLastPriority());
+        assertEquals(1, queue.getElement(a));
+        assertEquals(50, queue.getPriority(a));
+        
+        queue.decreaseKey(a, 5);
+        assertEquals(1, queue.peekFirst());
+        queue.changePriority(b, 1000);
+        assertEquals(2, queue.peekLast());
+        
+        assertEquals(1, queue.pollFirst());
+        assertEquals(5, queue.pollFirst());
+        assertEquals(3, queue.pollFirst());
+        assertEquals(2, queue.pollLast());
+        assertEquals(4, queue.pollLast());
+        assertTrue(queue.isEmpty());
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testPollEmptyQueue() {
+        new VanEmdeBoasTreeIntPriorityQueue(0, 10).pollFirst();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testPriorityOutOfRange() {
+        new VanEmdeBoasTreeIntPriorityQueue(0, 10).add(1, 11);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemovedHandleIsRejected() {
+        VanEmdeBoasTreeIntPriorityQueue queue =
+                new VanEmdeBoasTreeIntPriorityQueue(0, 10);
+        int handle = queue.add(1, 5);
+        queue.pollFirst();
+        queue.decreaseKey(handle, 1);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testDecreaseKeyRejectsLargerPriority() {
+        VanEmdeBoasTreeIntPriorityQueue queue =
+                new VanEmdeBoasTreeIntPriorityQueue(0, 10);
+        queue.decreaseKey(queue.add(1, 5), 6);
+    }
+    
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(71L);
+        VanEmdeBoasTreeIntPriorityQueue queue =
+                new VanEmdeBoasTreeIntPriorityQueue(-500, 500);
+        // Maps each priority to its elements in insertion order. The handles
+        // and the priorities are indexed by the elements:
+        TreeMap<Integer, List<Integer>> expected = new TreeMap<>();
+        List<Integer> handles = new ArrayList<>();
+        List<Integer> handlePriorities = new ArrayList<>();
+        int size = 0;
+        
+        for (int iteration = 0; iteration < 50_000; ++iteration) {
+            int element = iteration;
+            
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1:
+                    int priority = random.nextInt(1001) - 500;
+                    int handle = queue.add(element, priority);
+                    expected.computeIfAbsent(priority, p -> new ArrayList<>())
+                            .add(element);
+                    setHandle(handles, handlePriorities, element, handle,
+                              priority);
+                    size++;
+                    break;
+                
+                case 2:
+                    if (size != 0) {
+                        int first = poll(expected, expected.firstKey(), true);
+                        assertEquals(first, queue.pollFirst());
+                        handles.set(first, -1);
+                        size--;
+                    }
+                    
+                    break;
+                
+                case 3:
+                    if (size != 0) {
+                        int last = poll(expected, expected.lastKey(), false);
+                        assertEquals(last, queue.pollLast());
+                        handles.set(last, -1);
+                        size--;
+                    }
+                    
+                    break;
+                
+                default:
+                    // Decrease the priority of a random live element:
+                    if (size == 0) {
+                        break;
+                    }
+                    
+                    int candidate = random.nextInt(handles.size());
+                    
+                    if (handles.get(candidate) == -1) {
+                        break;
+                    }
+                    
+                    int oldPriority = handlePriorities.get(candidate);
+                    int newPriority =
+                            oldPriority - random.nextInt(oldPriority + 501);
+                    queue.decreaseKey(handles.get(candidate), newPriority);
+                    List<Integer> oldElements = expected.get(oldPriority);
+                    oldElements.remove(Integer.valueOf(candidate));
+                    
+                    if (oldElements.isEmpty()) {
+                        expected.remove(oldPriority);
+                    }
+                    
+                    expected.computeIfAbsent(newPriority,
+                                             p -> new ArrayList<>())
+                            .add(candidate);
+                    handlePriorities.set(candidate, newPriority);
+            }
+            
+            assertEquals(size, queue.size());
+            
+            if (size != 0) {
+                assertEquals((int) expected.firstKey(),
+                             queue.peekFirstPriority());
+                assertEquals((int) expected.lastKey(),
+                             queue.peekLastPriority());
+                assertEquals((int) expected.firstEntry().getValue().get(0),
+                             queue.peekFirst());
+            }
+        }
+        
+        queue.clear();
+        assertTrue(queue.isEmpty());
+    }
+    
+    private static void setHandle(List<Integer> handles,
+                                  List<Integer> handlePriorities,
+                                  int element,
+                                  int handle,
+                                  int priority) {
+        while (handles.size() <= element) {
+            handles.add(-1);
+            handlePriorities.add(0);
+        }
+        
+        handles.set(element, handle);
+        handlePriorities.set(element, priority);
+    }
+    
+    private static int poll(TreeMap<Integer, List<Integer>> expected,
+                            int priority,
+                            boolean first) {
+        List<Integer> elements = expected.get(priority);
+        int element = elements.remove(first ? 0 : elements.size() - 1);
+        
+        if (elements.isEmpty()) {
+            expected.remove(priority);
+        }
+        
+        return element;
+    }
+}
@@ -0,0 +1,245 @@
+package net.coderodde.util;
+
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.TreeMap;
+import net.coderodde.util.VanEmdeBoasTreeLongMap.KeyValueMapping;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VanEmdeBoasTreeLongMapTest {
+    
+    @Test
+    public void testPutGetRemove() {
+        VanEmdeBoasTreeLongMap<String> map = new VanEmdeBoasTreeLongMap<>();
+        
+        assertTrue(map.isEmpty());
+        assertNull(map.put(Long.MIN_VALUE, "min"));
+        assertNull(map.put(Long.MAX_VALUE, "max"));
+        assertNull(map.put(0L, null));
+        assertEquals("min", map.put(Long.MIN_VALUE, "MIN"));
+        
+        assertEquals(3, map.size());
+        assertTrue(map.containsKey(0L));
+        assertNull(map.get(0L));
+        assertEquals("MIN", map.get(Long.MIN_VALUE));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertFalse(map.containsKey(1L));
+        
+        assertEquals("max", map.remove(Long.MAX_VALUE));
+        assertNull(map.remove(Long.MAX_VALUE));
+        assertEquals(2, map.size());
+        assertEquals(0L, map.getMaximumKey());
+        
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(Long.MIN_VALUE));
+    }
+    
+    @Test
+    public void testNextAndPreviousKeys() {
+        VanEmdeBoasTreeLongMap<Long> map = new VanEmdeBoasTreeLongMap<>();
+        long[] keys = { Long.MIN_VALUE, -1L << 40, -1L, 0L, 1L, 1L << 33,
+                        Long.MAX_VALUE };
+        
+        for (long key : keys) {
+            map.put(key, key);
+        }
+        
+        assertEquals(Long.MIN_VALUE, map.getMinimumKey());
+        assertEquals(Long.MAX_VALUE, map.getMaximumKey());
+        
+        for (int i = 0; i < keys.length - 1; ++i) {
+            assertEquals(keys[i + 1], map.getNextLongKey(keys[i]));
+            assertEquals(keys[i], map.getPreviousLongKey(keys[i + 1]));
+        }
+        
+        assertEquals(1L << 33, map.getNextLongKey(2L));
+        assertEquals(1L, map.getPreviousLongKey(1L << 32));
+    }
+    
+    @Test
+    public void testFindKeysAtFullRangeEnds() {
+        VanEmdeBoasTreeLongMap<String> map = new VanEmdeBoasTreeLongMap<>();
+        
+        assertEquals(OptionalLong.empty(), map.findMinimumKey());
+        assertEquals(OptionalLong.empty(), map.findMaximumKey());
+        assertEquals(OptionalLong.empty(), map.findNextKey(0L));
+        
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, "max");
+        
+        // The sentinels coincide with the keys:
+        assertEquals(Long.MAX_VALUE, map.getNextLongKey(Long.MAX_VALUE));
+        assertEquals(Long.MIN_VALUE, map.getPreviousLongKey(Long.MIN_VALUE));
+        
+        assertEquals(OptionalLong.empty(), map.findNextKey(Long.MAX_VALUE));
+        assertEquals(OptionalLong.empty(), 
+                     map.findPreviousKey(Long.MIN_VALUE));
+        assertEquals(OptionalLong.of(Long.MAX_VALUE), 
+                     map.findNextKey(Long.MIN_VALUE));
+        assertEquals(OptionalLong.of(Long.MIN_VALUE), 
+                     map.findPreviousKey(Long.MAX_VALUE));
+        assertEquals(OptionalLong.of(Long.MIN_VALUE), map.findMinimumKey());
+        assertEquals(OptionalLong.of(Long.MAX_VALUE), map.findMaximumKey());
+    }
+    
+    @Test
+    public void testBoundedRange() {
+        VanEmdeBoasTreeLongMap<Integer> map =
+                new VanEmdeBoasTreeLongMap<>(-10L, 10L);
+        
+        assertEquals(11L, map.getMinimumKey());
+        assertEquals(-11L, map.getMaximumKey());
+        
+        map.put(-10L, 1);
+        map.put(10L, 2);
+        
+        assertEquals(10L, map.getNextLongKey(-10L));
+        assertEquals(-11L, map.getNextLongKey(10L));
+        assertEquals(11L, map.getPreviousLongKey(-10L));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testUpperBound() {
+        new VanEmdeBoasTreeLongMap<String>(-4L, 4L).put(5L, "5");
+    }
+    
+    @Test
+    public void testTreeKeyValueIterator() {
+        VanEmdeBoasTreeLongMap<String> map = new VanEmdeBoasTreeLongMap<>();
+        
+        for (long i = 4; i >= -4; --i) {
+            map.put(i << 40, "" + i);
+        }
+        
+        VanEmdeBoasTreeLongMap.KeyValueIterator<String> iterator =
+                map.treeKeyValueIterator();
+        KeyValueMapping<String> mapping = new KeyValueMapping<>();
+        
+        for (long i = -4; i <= 4; ++i) {
+            assertTrue(iterator.hasNextKeyValuePair());
+            iterator.nextKeyValuePair(mapping);
+            assertEquals(i << 40, mapping.key);
+            assertEquals("" + i, mapping.value);
+            
+            if (i % 2 == 0) {
+                iterator.removeKeyValuePair();
+            }
+        }
+        
+        assertFalse(iterator.hasNextKeyValuePair());
+        assertEquals(4, map.size());
+        
+        VanEmdeBoasTreeLongMap.KeyIterator keyIterator =
+                map.treeKeyIterator();
+        
+        for (long i = -3; i <= 3; i += 2) {
+            assertEquals(i << 40, keyIterator.nextKey());
+        }
+        
+        assertFalse(keyIterator.hasNextKey());
+    }
+    
+    @Test
+    public void testBatchedLookups() {
+        VanEmdeBoasTreeLongMap<String> map = new VanEmdeBoasTreeLongMap<>();
+        long[] keys = new long[100];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = (i - 50L) << 40;
+            
+            if (i % 3 == 0) {
+                map.put(keys[i], i % 2 == 0 ? null : "" + i);
+            }
+        }
+        
+        String[] values = new String[keys.length];
+        boolean[] present = new boolean[keys.length];
+        long[] bitmask = new long[2];
+        
+        assertEquals(34, map.getAll(keys, values));
+        assertEquals(34, map.containsAll(keys, present));
+        assertEquals(34, map.containsAll(keys, bitmask));
+        
+        for (int i = 0; i < keys.length; ++i) {
+            assertEquals(i % 3 == 0 && i % 2 != 0 ? "" + i : null, values[i]);
+            assertEquals(i % 3 == 0, present[i]);
+            assertEquals(i % 3 == 0, (bitmask[i / 64] & (1L << i)) != 0L);
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testBatchedLookupRejectsOuterKeys() {
+        new VanEmdeBoasTreeLongMap<String>(-4L, 4L).containsAll(
+                new long[]{ 0L, -5L }, 
+                new boolean[2]);
+    }
+    
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(17L);
+        long[] keys = new long[5_000];
+        
+        for (int i = 0; i < keys.length; ++i) {
+            switch (i % 3) {
+                case 0:
+                    keys[i] = random.nextLong();
+                    break;
+                
+                case 1:
+                    keys[i] = random.nextInt(10_000);
+                    break;
+                
+                default:
+                    keys[i] = (random.nextLong() & ~0xFFFFL) |
+                              random.nextInt(16);
+            }
+        }
+        
+        VanEmdeBoasTreeLongMap<Integer> map = new VanEmdeBoasTreeLongMap<>();
+        TreeMap<Long, Integer> treeMap = new TreeMap<>();
+        
+        for (int iteration = 0; iteration < 100_000; ++iteration) {
+            long key = keys[random.nextInt(keys.length)];
+            
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(treeMap.put(key, iteration),
+                                 map.put(key, iteration));
+                    break;
+                
+                case 2:
+                    assertEquals(treeMap.remove(key), map.remove(key));
+                    break;
+                
+                default:
+                    Long higher = treeMap.higherKey(key);
+                    Long lower = treeMap.lowerKey(key);
+                    assertEquals(higher == null ? Long.MAX_VALUE : higher,
+                                 map.getNextLongKey(key));
+                    assertEquals(lower == null ? Long.MIN_VALUE : lower,
+                                 map.getPreviousLongKey(key));
+            }
+            
+            assertEquals(treeMap.size(), map.size());
+            
+            if (!treeMap.isEmpty()) {
+                assertEquals((long) treeMap.firstKey(), map.getMinimumKey());
+                assertEquals((long) treeMap.lastKey(), map.getMaximumKey());
+            }
+        }
+        
+        VanEmdeBoasTreeLongMap.KeyIterator iterator = map.treeKeyIterator();
+        
+        for (Long key : treeMap.keySet()) {
+            assertEquals((long) key, iterator.nextKey());
+        }
+        
+        assertFalse(iterator.hasNextKey());
+    }
+}
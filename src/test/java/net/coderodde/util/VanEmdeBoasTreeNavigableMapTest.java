@@ -0,0 +1,274 @@
+package net.coderodde.util;
+
+import java.util.AbstractMap;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class VanEmdeBoasTreeNavigableMapTest {
+    
+    @Test
+    public void testBasicOperations() {
+        VanEmdeBoasTreeNavigableMap<String> map =
+                new VanEmdeBoasTreeNavigableMap<>(-10, 10);
+        
+        assertTrue(map.isEmpty());
+        assertNull(map.firstEntry());
+        assertNull(map.put(3, "3"));
+        assertNull(map.put(-7, "-7"));
+        assertEquals("3", map.put(3, "three"));
+        assertEquals(2, map.size());
+        assertEquals("three", map.get(3));
+        assertEquals("-7", map.get(Integer.valueOf(-7)));
+        assertNull(map.get(100));
+        assertFalse(map.containsKey(-100));
+        assertEquals(Integer.valueOf(-7), map.firstKey());
+        assertEquals(Integer.valueOf(3), map.lastKey());
+        assertEquals(Integer.valueOf(3), map.ceilingKey(0));
+        assertEquals(Integer.valueOf(-7), map.floorKey(0));
+        assertNull(map.higherKey(3));
+        assertNull(map.lowerKey(-7));
+        assertEquals(-7, map.ceilingIntKey(-100, 99));
+        assertEquals(99, map.higherIntKey(3, 99));
+        assertEquals("{-7=-7, 3=three}", map.toString());
+        
+        TreeMap<Integer, String> treeMap = new TreeMap<>(map);
+        assertEquals(treeMap, map);
+        assertEquals(map, treeMap);
+        assertEquals(treeMap.hashCode(), map.hashCode());
+        
+        Map.Entry<Integer, String> entry = map.pollFirstEntry();
+        assertEquals(Integer.valueOf(-7), entry.getKey());
+        assertEquals("-7", entry.getValue());
+        assertEquals(1, map.size());
+    }
+    
+    @Test
+    public void testNavigationAtIntegerLimits() {
+        VanEmdeBoasTreeNavigableMap<String> map =
+                new VanEmdeBoasTreeNavigableMap<>(Integer.MIN_VALUE, 
+                                                  Integer.MAX_VALUE);
+        map.put(Integer.MIN_VALUE, "min");
+        map.put(Integer.MAX_VALUE, "max");
+        
+        assertNull(map.higherKey(Integer.MAX_VALUE));
+        assertNull(map.lowerKey(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), 
+                     map.ceilingKey(Integer.MAX_VALUE));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), 
+                     map.floorKey(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), map.higherKey(0));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), map.lowerKey(0));
+        assertEquals(7, map.higherIntKey(Integer.MAX_VALUE, 7));
+        assertEquals(Integer.MAX_VALUE, map.ceilingIntKey(1, 7));
+        assertEquals(Integer.MIN_VALUE, 
+                     map.descendingMap().higherKey(0).intValue());
+        assertNull(map.descendingMap().higherKey(Integer.MIN_VALUE));
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutOutOfRange() {
+        new VanEmdeBoasTreeNavigableMap<String>(0, 10).put(11, "11");
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testFirstKeyOfEmptyMap() {
+        new VanEmdeBoasTreeNavigableMap<String>(0, 10).firstKey();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubMapBoundOutOfView() {
+        new VanEmdeBoasTreeNavigableMap<String>(0, 100).headMap(50, true)
+                                                       .tailMap(51, true);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testExclusiveBoundPastInclusiveEnd() {
+        new VanEmdeBoasTreeNavigableMap<String>(0, 1000)
+                .subMap(85, true, 100, true)
+                .headMap(101, false);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInclusiveBoundAtExclusiveEnd() {
+        new VanEmdeBoasTreeNavigableMap<String>(0, 1000)
+                .subMap(85, false, 100, false)
+                .tailMap(85, true);
+    }
+    
+    @Test
+    public void testExclusiveBoundAtExclusiveEnd() {
+        NavigableMap<Integer, String> map = 
+                new VanEmdeBoasTreeNavigableMap<String>(0, 1000)
+                        .subMap(85, false, 100, false);
+        
+        map.put(86, "86");
+        map.put(99, "99");
+        
+        assertEquals(2, map.headMap(100, false).size());
+        assertEquals(2, map.tailMap(85, false).size());
+        assertEquals(2, map.descendingMap().headMap(85, false).size());
+        assertEquals(1, map.headMap(100, false).tailMap(99, true).size());
+        
+        // A view keeps its bounds past the key range of the backing map:
+        map = new VanEmdeBoasTreeNavigableMap<String>(0, 100)
+                .headMap(200, false);
+        assertEquals(0, map.headMap(150, true).size());
+    }
+    
+    @Test
+    public void testEntryContract() {
+        VanEmdeBoasTreeNavigableMap<String> map =
+                new VanEmdeBoasTreeNavigableMap<>(0, 10);
+        
+        map.put(3, "3");
+        Map.Entry<Integer, String> entry = map.entrySet().iterator().next();
+        Map.Entry<Integer, String> expected = 
+                new AbstractMap.SimpleImmutableEntry<>(3, "3");
+        
+        assertEquals(expected, entry);
+        assertEquals(entry, expected);
+        assertEquals(expected.hashCode(), entry.hashCode());
+        assertEquals("3=3", entry.toString());
+        assertEquals("3", entry.setValue("three"));
+        assertEquals("three", entry.getValue());
+        assertEquals("three", map.get(3));
+    }
+    
+    @Test(expected = ConcurrentModificationException.class)
+    public void testFailFastIterator() {
+        VanEmdeBoasTreeNavigableMap<String> map =
+                new VanEmdeBoasTreeNavigableMap<>(0, 100);
+        
+        map.put(1, "1");
+        map.put(2, "2");
+        Iterator<Integer> iterator = map.keySet().iterator();
+        iterator.next();
+        map.put(3, "3");
+        iterator.next();
+    }
+    
+    @Test
+    public void testIteratorRemoveAndSetValue() {
+        VanEmdeBoasTreeNavigableMap<Integer> map =
+                new VanEmdeBoasTreeNavigableMap<>(0, 1000);
+        
+        for (int i = 0; i < 1000; i += 3) {
+            map.put(i, i);
+        }
+        
+        Iterator<Map.Entry<Integer, Integer>> iterator =
+                map.entrySet().iterator();
+        
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            
+            if (entry.getKey() % 2 == 0) {
+                iterator.remove();
+            } else {
+                entry.setValue(-entry.getValue());
+            }
+        }
+        
+        for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+            assertEquals(1, entry.getKey() % 2);
+            assertEquals(-entry.getKey(), (int) entry.getValue());
+        }
+        
+        assertEquals(167, map.size());
+    }
+    
+    @Test
+    public void testAgainstTreeMap() {
+        Random random = new Random(43L);
+        VanEmdeBoasTreeNavigableMap<Integer> map =
+                new VanEmdeBoasTreeNavigableMap<>(Integer.MIN_VALUE,
+                                                  Integer.MAX_VALUE);
+        TreeMap<Integer, Integer> treeMap = new TreeMap<>();
+        
+        for (int i = 0; i < 2_000; ++i) {
+            int key = random.nextInt(2_000) - 1_000;
+            map.put(key, i);
+            treeMap.put(key, i);
+        }
+        
+        map.put(Integer.MIN_VALUE, 0);
+        treeMap.put(Integer.MIN_VALUE, 0);
+        checkSameMap(treeMap, map, random);
+        checkSameMap(treeMap.descendingMap(), map.descendingMap(), random);
+        
+        for (int iteration = 0; iteration < 200; ++iteration) {
+            int a = random.nextInt(2_200) - 1_100;
+            int b = a + random.nextInt(500);
+            boolean aInclusive = random.nextBoolean();
+            boolean bInclusive = random.nextBoolean();
+            
+            NavigableMap<Integer, Integer> expected =
+                    treeMap.subMap(a, aInclusive, b, bInclusive);
+            NavigableMap<Integer, Integer> actual =
+                    map.subMap(a, aInclusive, b, bInclusive);
+            
+            if (iteration % 3 == 0) {
+                expected = expected.descendingMap();
+                actual = actual.descendingMap();
+            }
+            
+            checkSameMap(expected, actual, random);
+            checkSameMap(treeMap.headMap(a, aInclusive),
+                         map.headMap(a, aInclusive),
+                         random);
+            checkSameMap(treeMap.tailMap(b, bInclusive).descendingMap(),
+                         map.tailMap(b, bInclusive).descendingMap(),
+                         random);
+            
+            if (iteration % 10 == 0) {
+                expected.pollFirstEntry();
+                actual.pollFirstEntry();
+                expected.pollLastEntry();
+                actual.pollLastEntry();
+                assertEquals(treeMap, map);
+            }
+        }
+        
+        map.headMap(0).clear();
+        treeMap.headMap(0).clear();
+        assertEquals(treeMap, map);
+        map.keySet().removeIf(key -> key % 3 == 0);
+        treeMap.keySet().removeIf(key -> key % 3 == 0);
+        assertEquals(treeMap, map);
+    }
+    
+    private static void checkSameMap(NavigableMap<Integer, Integer> expected,
+                                     NavigableMap<Integer, Integer> actual,
+                                     Random random) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(expected.firstEntry(), actual.firstEntry());
+        assertEquals(expected.lastEntry(), actual.lastEntry());
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.keySet().toString(),
+                     actual.navigableKeySet().toString());
+        assertEquals(expected.descendingKeySet().toString(),
+                     actual.descendingKeySet().toString());
+        
+        for (int i = 0; i < 50; ++i) {
+            int key = random.nextInt(2_400) - 1_200;
+            assertEquals(expected.get(key), actual.get(key));
+            assertEquals(expected.ceilingKey(key), actual.ceilingKey(key));
+            assertEquals(expected.floorKey(key), actual.floorKey(key));
+            assertEquals(expected.higherKey(key), actual.higherKey(key));
+            assertEquals(expected.lowerKey(key), actual.lowerKey(key));
+            assertEquals(expected.ceilingEntry(key),
+                         actual.ceilingEntry(key));
+        }
+    }
+}